@@ -37,7 +37,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.net.URLDecoder;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -93,18 +96,30 @@ public final class AgentImplementation {
         try {
             CodeInjector codeInjector = cic.getDeclaredConstructor(AgentConfiguration.class).newInstance(agentConfiguration);
 
+            // Classes the JVM loaded before the agent, which can only be instrumented by re-transforming them.
+            // They are referenced before the transformer is added, so that their first load is never transformed.
             DataOfConfigurationForException exceptionData = agentConfiguration.getBuiltInConfiguration().getDataOfConfigurationForException();
+            List<Class<?>> classesToRetransform = new ArrayList<Class<?>>();
+            if (exceptionData.isEnabled()) {
+                classesToRetransform.add(RuntimeException.class);
+            }
+            if (agentConfiguration.getBuiltInConfiguration().isThreadPoolEnabled()) {
+                classesToRetransform.add(ThreadPoolExecutor.class);
+            }
+
             if (inst.isRetransformClassesSupported()) {
-                if (exceptionData.isEnabled()) {
-                    InternalAgentLogger.INSTANCE.trace("Instrumenting runtime exceptions.");
+                if (!classesToRetransform.isEmpty()) {
+                    if (exceptionData.isEnabled()) {
+                        InternalAgentLogger.INSTANCE.trace("Instrumenting runtime exceptions.");
+                        ImplementationsCoordinator.INSTANCE.setExceptionData(exceptionData);
+                    }
 
                     inst.addTransformer(codeInjector, true);
-                    ImplementationsCoordinator.INSTANCE.setExceptionData(exceptionData);
-                    inst.retransformClasses(RuntimeException.class);
+                    inst.retransformClasses(classesToRetransform.toArray(new Class<?>[classesToRetransform.size()]));
                     inst.removeTransformer(codeInjector);
                 }
             } else {
-                if (exceptionData.isEnabled()) {
+                if (!classesToRetransform.isEmpty()) {
                     InternalAgentLogger.INSTANCE.trace("The JVM does not support re-transformation of classes.");
                 }
             }
@@ -0,0 +1,142 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A bounded cache of the super class and interfaces of the types {@link CustomClassWriter} looks up when it
+ * computes frames, so the class files of common super types are read and parsed once rather than on every
+ * frame merge of every class that is instrumented.
+ *
+ * Types are cached per class loader, since the same name may be a different class in another loader, and the
+ * entries of a class loader go away with it. Types under 'java/' can only be defined by the bootstrap class loader,
+ * so they are cached once for all the class loaders.
+ */
+final class ClassHierarchyCache {
+    private final static int MAX_TYPES_PER_CLASS_LOADER = 2048;
+
+    static final ClassHierarchyCache INSTANCE = new ClassHierarchyCache(MAX_TYPES_PER_CLASS_LOADER);
+
+    /**
+     * The super class and interfaces of a type.
+     */
+    static final class TypeInfo {
+        final String superName;
+        final String[] interfaces;
+        final boolean isInterface;
+
+        private TypeInfo(ClassReader reader) {
+            superName = reader.getSuperName();
+            interfaces = reader.getInterfaces();
+            isInterface = (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0;
+        }
+    }
+
+    private final int maxTypesPerClassLoader;
+    private final Map<ClassLoader, Map<String, TypeInfo>> typesByClassLoader = new WeakHashMap<ClassLoader, Map<String, TypeInfo>>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxTypesPerClassLoader The number of types kept per class loader, the least recently used ones are
+     *                               dropped first. Zero disables the cache.
+     */
+    ClassHierarchyCache(int maxTypesPerClassLoader) {
+        this.maxTypesPerClassLoader = maxTypesPerClassLoader;
+    }
+
+    /**
+     * @param type The internal name of the type.
+     * @param loader The class loader the type is resolved with, null for the bootstrap class loader.
+     * @return The super class and interfaces of the type.
+     * @throws IOException If the class file of the type cannot be found or read.
+     */
+    TypeInfo getTypeInfo(String type, ClassLoader loader) throws IOException {
+        if (maxTypesPerClassLoader == 0) {
+            misses.incrementAndGet();
+            return read(type, loader);
+        }
+
+        Map<String, TypeInfo> types = getTypes(type.startsWith("java/") ? null : loader);
+        TypeInfo info;
+        synchronized (types) {
+            info = types.get(type);
+        }
+        if (info != null) {
+            hits.incrementAndGet();
+            return info;
+        }
+
+        misses.incrementAndGet();
+        info = read(type, loader);
+        synchronized (types) {
+            types.put(type, info);
+        }
+        return info;
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    private Map<String, TypeInfo> getTypes(ClassLoader loader) {
+        synchronized (typesByClassLoader) {
+            Map<String, TypeInfo> types = typesByClassLoader.get(loader);
+            if (types == null) {
+                types = new LinkedHashMap<String, TypeInfo>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, TypeInfo> eldest) {
+                        return size() > maxTypesPerClassLoader;
+                    }
+                };
+                typesByClassLoader.put(loader, types);
+            }
+            return types;
+        }
+    }
+
+    private static TypeInfo read(String type, ClassLoader loader) throws IOException {
+        String resource = type + ".class";
+        InputStream is = loader != null ? loader.getResourceAsStream(resource) : ClassLoader.getSystemResourceAsStream(resource);
+        if (is == null) {
+            throw new IOException("Class file of " + type + " was not found");
+        }
+        try {
+            return new TypeInfo(new ClassReader(is));
+        } finally {
+            is.close();
+        }
+    }
+}
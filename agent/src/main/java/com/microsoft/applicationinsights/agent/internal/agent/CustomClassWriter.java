@@ -1,10 +1,6 @@
 package com.microsoft.applicationinsights.agent.internal.agent;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.Opcodes;
-
 import java.io.IOException;
-import java.io.InputStream;
 
 /**
  * This class overwrites default class writer of ASM to use the ClassLoader
@@ -13,11 +9,17 @@ import java.io.InputStream;
  */
 public class CustomClassWriter extends org.objectweb.asm.ClassWriter {
 
-    private ClassLoader classLoader;
+    private final ClassLoader classLoader;
+    private final ClassHierarchyCache hierarchyCache;
 
     public CustomClassWriter(int writerFlag, ClassLoader loader) {
+        this(writerFlag, loader, ClassHierarchyCache.INSTANCE);
+    }
+
+    CustomClassWriter(int writerFlag, ClassLoader loader, ClassHierarchyCache hierarchyCache) {
         super(writerFlag);
         this.classLoader = loader;
+        this.hierarchyCache = hierarchyCache;
     }
 
     /**
@@ -30,20 +32,20 @@ public class CustomClassWriter extends org.objectweb.asm.ClassWriter {
     @Override
     protected String getCommonSuperClass(final String type1, final String type2) {
         try {
-            ClassReader info1 = typeInfo(type1);
-            ClassReader info2 = typeInfo(type2);
-            if ((info1.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
+            ClassHierarchyCache.TypeInfo info1 = typeInfo(type1);
+            ClassHierarchyCache.TypeInfo info2 = typeInfo(type2);
+            if (info1.isInterface) {
                 if (typeImplements(type2, info2, type1)) {
                     return type1;
                 }
-                if ((info2.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
+                if (info2.isInterface) {
                     if (typeImplements(type1, info1, type2)) {
                         return type2;
                     }
                 }
                 return "java/lang/Object";
             }
-            if ((info2.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
+            if (info2.isInterface) {
                 if (typeImplements(type1, info1, type2)) {
                     return type2;
                 } else {
@@ -87,11 +89,11 @@ public class CustomClassWriter extends org.objectweb.asm.ClassWriter {
      * @return
      * @throws IOException
      */
-    private StringBuilder typeAncestors(String type, ClassReader info) throws IOException {
+    private StringBuilder typeAncestors(String type, ClassHierarchyCache.TypeInfo info) throws IOException {
         StringBuilder b = new StringBuilder();
         while (!"java/lang/Object".equals(type)) {
             b.append(';').append(type);
-            type = info.getSuperName();
+            type = info.superName;
             info = typeInfo(type);
         }
         return b;
@@ -106,9 +108,9 @@ public class CustomClassWriter extends org.objectweb.asm.ClassWriter {
      * @return
      * @throws IOException
      */
-    private boolean typeImplements(String type, ClassReader info, String itf) throws IOException {
+    private boolean typeImplements(String type, ClassHierarchyCache.TypeInfo info, String itf) throws IOException {
         while (!"java/lang/Object".equals(type)) {
-            String[] itfs = info.getInterfaces();
+            String[] itfs = info.interfaces;
             for (String itf2 : itfs) {
                 if (itf2.equals(itf)) {
                     return true;
@@ -119,22 +121,19 @@ public class CustomClassWriter extends org.objectweb.asm.ClassWriter {
                     return true;
                 }
             }
-            type = info.getSuperName();
+            type = info.superName;
             info = typeInfo(type);
         }
         return false;
     }
 
     /**
-     * Generates ASM Classwriter from the Input Stream for detailed information
+     * Gets the super class and interfaces of a type from the shared {@link ClassHierarchyCache}
      * @param type
      * @return
      * @throws IOException
      */
-    private ClassReader typeInfo(final String type) throws IOException {
-        InputStream is = classLoader.getResourceAsStream(type + ".class");
-        return new ClassReader(is);
+    private ClassHierarchyCache.TypeInfo typeInfo(final String type) throws IOException {
+        return hierarchyCache.getTypeInfo(type, classLoader);
     }
 }
-
-
@@ -24,6 +24,7 @@ package com.microsoft.applicationinsights.agent.internal.agent;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
 //import org.objectweb.asm.util.CheckClassAdapter;
 
 
@@ -34,6 +35,10 @@ import org.objectweb.asm.ClassWriter;
  * Created by gupele on 7/27/2015.
  */
 final class DefaultByteCodeTransformer implements ByteCodeTransformer {
+    // Class files older than Java 6 have no stack map frames, the verifier infers the types itself
+    private final static int FIRST_VERSION_WITH_FRAMES = Opcodes.V1_6;
+    private final static int MAJOR_VERSION_OFFSET = 6;
+
     private final boolean debugMode;
 
     private final ClassInstrumentationData classInstrumentationData;
@@ -56,7 +61,7 @@ final class DefaultByteCodeTransformer implements ByteCodeTransformer {
         }
 
         ClassReader cr = new ClassReader(originalBuffer);
-        ClassWriter cw = new CustomClassWriter(ClassWriter.COMPUTE_FRAMES, loader);
+        ClassWriter cw = new CustomClassWriter(getWriterFlags(cr), loader);
         ClassVisitor dcv = classInstrumentationData.getDefaultClassInstrumentor(cw);
         cr.accept(dcv, ClassReader.SKIP_FRAMES);
 
@@ -77,4 +82,13 @@ final class DefaultByteCodeTransformer implements ByteCodeTransformer {
 
         return newBuffer;
     }
+
+    /**
+     * Frames are only computed for class files that must have them, since computing them needs the class
+     * hierarchy of the types that meet in the instrumented methods.
+     */
+    static int getWriterFlags(ClassReader cr) {
+        int majorVersion = cr.readUnsignedShort(MAJOR_VERSION_OFFSET);
+        return majorVersion < FIRST_VERSION_WITH_FRAMES ? ClassWriter.COMPUTE_MAXS : ClassWriter.COMPUTE_FRAMES;
+    }
 }
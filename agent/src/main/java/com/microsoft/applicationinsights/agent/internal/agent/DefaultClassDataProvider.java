@@ -27,9 +27,12 @@ import java.util.HashSet;
 import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.microsoft.applicationinsights.agent.internal.agent.concurrent.ThreadPoolExecutorClassDataProvider;
 import com.microsoft.applicationinsights.agent.internal.agent.exceptions.RuntimeExceptionProvider;
 import com.microsoft.applicationinsights.agent.internal.agent.http.HttpClassDataProvider;
 import com.microsoft.applicationinsights.agent.internal.agent.redis.JedisClassDataProvider;
+import com.microsoft.applicationinsights.agent.internal.agent.redis.LettuceClassDataProvider;
+import com.microsoft.applicationinsights.agent.internal.agent.sql.ConnectionPoolClassDataProvider;
 import com.microsoft.applicationinsights.agent.internal.agent.sql.PreparedStatementClassDataProvider;
 import com.microsoft.applicationinsights.agent.internal.agent.sql.StatementClassDataDataProvider;
 import com.microsoft.applicationinsights.agent.internal.config.AgentConfiguration;
@@ -88,6 +91,11 @@ class DefaultClassDataProvider implements ClassDataProvider {
                 new PreparedStatementClassDataProvider(classesToInstrument).add();
             }
 
+            if (agentConfiguration.getBuiltInConfiguration().isConnectionPoolEnabled()) {
+				InternalAgentLogger.INSTANCE.trace("Adding built-in JDBC connection pool instrumentation");
+                new ConnectionPoolClassDataProvider(classesToInstrument).add();
+            }
+
             if (agentConfiguration.getBuiltInConfiguration().isHttpEnabled()) {
 				InternalAgentLogger.INSTANCE.trace("Adding built-in HTTP instrumentation");
                 new HttpClassDataProvider(classesToInstrument).add();
@@ -98,6 +106,16 @@ class DefaultClassDataProvider implements ClassDataProvider {
                 new JedisClassDataProvider(classesToInstrument).add();
             }
 
+            if (agentConfiguration.getBuiltInConfiguration().isLettuceEnabled()) {
+				InternalAgentLogger.INSTANCE.trace("Adding built-in Lettuce instrumentation");
+                new LettuceClassDataProvider(classesToInstrument).add();
+            }
+
+            if (agentConfiguration.getBuiltInConfiguration().isThreadPoolEnabled()) {
+				InternalAgentLogger.INSTANCE.trace("Adding built-in ThreadPoolExecutor instrumentation");
+                new ThreadPoolExecutorClassDataProvider(classesToInstrument).add();
+            }
+
             if (agentConfiguration.getBuiltInConfiguration().getDataOfConfigurationForException().isEnabled()) {
 				InternalAgentLogger.INSTANCE.trace("Adding built-in Runtime instrumentation");
                 new RuntimeExceptionProvider(classesToInstrument).add();
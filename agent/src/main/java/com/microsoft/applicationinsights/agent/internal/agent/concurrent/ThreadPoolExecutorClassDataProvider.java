@@ -0,0 +1,85 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent.concurrent;
+
+import java.util.Map;
+
+import com.microsoft.applicationinsights.agent.internal.agent.ClassInstrumentationData;
+import com.microsoft.applicationinsights.agent.internal.agent.ClassToMethodTransformationData;
+import com.microsoft.applicationinsights.agent.internal.agent.MethodInstrumentationDecision;
+import com.microsoft.applicationinsights.agent.internal.agent.MethodVisitorFactory;
+import com.microsoft.applicationinsights.agent.internal.coresync.InstrumentedClassType;
+import com.microsoft.applicationinsights.agent.internal.logger.InternalAgentLogger;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Instruments ThreadPoolExecutor so that the core can tell how long the tasks of every executor wait in its queue.
+ *
+ * A task is stamped when it is handed to 'execute', which 'submit' and 'invokeAll' go through as well, and
+ * the stamp is consumed in 'beforeExecute', which runs on the worker thread whether the task was queued or
+ * given to a new worker directly.
+ */
+public final class ThreadPoolExecutorClassDataProvider {
+    public final static String THREAD_POOL_EXECUTOR_CLASS_NAME = "java/util/concurrent/ThreadPoolExecutor";
+
+    final static String EXECUTE_METHOD_NAME = "execute";
+    final static String EXECUTE_METHOD_SIGNATURE = "(Ljava/lang/Runnable;)V";
+    final static String BEFORE_EXECUTE_METHOD_NAME = "beforeExecute";
+    final static String BEFORE_EXECUTE_METHOD_SIGNATURE = "(Ljava/lang/Thread;Ljava/lang/Runnable;)V";
+
+    private final Map<String, ClassInstrumentationData> classesToInstrument;
+
+    public ThreadPoolExecutorClassDataProvider(Map<String, ClassInstrumentationData> classesToInstrument) {
+        this.classesToInstrument = classesToInstrument;
+    }
+
+    public void add() {
+        try {
+            ClassInstrumentationData data =
+                    new ClassInstrumentationData(THREAD_POOL_EXECUTOR_CLASS_NAME, InstrumentedClassType.ThreadPool)
+                            .setReportCaughtExceptions(false)
+                            .setReportExecutionTime(true);
+            MethodVisitorFactory methodVisitorFactory = new MethodVisitorFactory() {
+                @Override
+                public MethodVisitor create(MethodInstrumentationDecision decision, int access, String desc, String owner, String methodName, MethodVisitor methodVisitor, ClassToMethodTransformationData additionalData) {
+                    return new ThreadPoolExecutorMethodVisitor(access, desc, owner, methodName, methodVisitor, additionalData);
+                }
+            };
+            // The visitors only notify on enter, the execution time flag keeps the methods selected
+            data.addMethod(EXECUTE_METHOD_NAME, EXECUTE_METHOD_SIGNATURE, false, true, 0, methodVisitorFactory);
+            data.addMethod(BEFORE_EXECUTE_METHOD_NAME, BEFORE_EXECUTE_METHOD_SIGNATURE, false, true, 0, methodVisitorFactory);
+
+            classesToInstrument.put(THREAD_POOL_EXECUTOR_CLASS_NAME, data);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalAgentLogger.INSTANCE.error("Failed to load instrumentation for ThreadPoolExecutor: '%s'", ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+    }
+}
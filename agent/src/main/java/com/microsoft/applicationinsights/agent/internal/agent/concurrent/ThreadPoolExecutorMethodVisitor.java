@@ -0,0 +1,71 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent.concurrent;
+
+import com.microsoft.applicationinsights.agent.internal.agent.ClassToMethodTransformationData;
+import com.microsoft.applicationinsights.agent.internal.agent.DefaultMethodVisitor;
+import com.microsoft.applicationinsights.agent.internal.coresync.impl.ImplementationsCoordinator;
+
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Tells the core when a ThreadPoolExecutor is handed a task and when one of its workers is about to run it.
+ *
+ * Nothing is injected at the exits of the methods, the wait ends when the task starts.
+ */
+final class ThreadPoolExecutorMethodVisitor extends DefaultMethodVisitor {
+    private final static String ON_SUBMIT_METHOD_NAME = "threadPoolTaskSubmitted";
+    private final static String ON_SUBMIT_METHOD_SIGNATURE = "(Ljava/util/concurrent/ThreadPoolExecutor;Ljava/lang/Runnable;)V";
+    private final static String ON_START_METHOD_NAME = "threadPoolTaskStarted";
+    private final static String ON_START_METHOD_SIGNATURE = "(Ljava/util/concurrent/ThreadPoolExecutor;Ljava/lang/Thread;Ljava/lang/Runnable;)V";
+
+    private final boolean isBeforeExecute;
+
+    public ThreadPoolExecutorMethodVisitor(int access,
+                                           String desc,
+                                           String owner,
+                                           String methodName,
+                                           MethodVisitor methodVisitor,
+                                           ClassToMethodTransformationData additionalData) {
+        super(false, false, 0, access, desc, owner, methodName, methodVisitor, additionalData);
+        this.isBeforeExecute = ThreadPoolExecutorClassDataProvider.BEFORE_EXECUTE_METHOD_NAME.equals(methodName);
+    }
+
+    @Override
+    protected void onMethodEnter() {
+        super.visitFieldInsn(GETSTATIC, ImplementationsCoordinator.internalName, "INSTANCE", ImplementationsCoordinator.internalNameAsJavaName);
+
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        if (isBeforeExecute) {
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitMethodInsn(INVOKEVIRTUAL, ImplementationsCoordinator.internalName, ON_START_METHOD_NAME, ON_START_METHOD_SIGNATURE, false);
+        } else {
+            mv.visitMethodInsn(INVOKEVIRTUAL, ImplementationsCoordinator.internalName, ON_SUBMIT_METHOD_NAME, ON_SUBMIT_METHOD_SIGNATURE, false);
+        }
+    }
+
+    @Override
+    protected void byteCodeForMethodExit(int opcode) {
+        // The exception handler added around the method only rethrows, there is no start to finish
+    }
+}
@@ -38,6 +38,8 @@ import com.microsoft.applicationinsights.agent.internal.coresync.InstrumentedCla
  */
 public final class JedisClassDataProvider {
     private final static String JEDIS_CLASS_NAME = "redis/clients/jedis/Jedis";
+    private final static String PIPELINE_CLASS_NAME = "redis/clients/jedis/Pipeline";
+    private final static String TRANSACTION_CLASS_NAME = "redis/clients/jedis/Transaction";
 
     private final Map<String, ClassInstrumentationData> classesToInstrument;
 
@@ -60,6 +62,8 @@ public final class JedisClassDataProvider {
             data.addAllMethods(false, true, methodVisitorFactory);
 
             classesToInstrument.put(JEDIS_CLASS_NAME, data);
+
+            addPipelines();
         } catch (ThreadDeath td) {
             throw td;
         } catch (Throwable t) {
@@ -72,4 +76,29 @@ public final class JedisClassDataProvider {
             }
         }
     }
+
+    // Commands queued on a pipeline or transaction are sent and read back in one round trip
+    private void addPipelines() {
+        MethodVisitorFactory methodVisitorFactory = new MethodVisitorFactory() {
+            @Override
+            public MethodVisitor create(MethodInstrumentationDecision decision, int access, String desc, String owner, String methodName, MethodVisitor methodVisitor, ClassToMethodTransformationData additionalData) {
+                return new JedisPipelineMethodVisitor(access, desc, owner, methodName, methodVisitor, additionalData);
+            }
+        };
+
+        ClassInstrumentationData pipelineData =
+                new ClassInstrumentationData(PIPELINE_CLASS_NAME, InstrumentedClassType.RedisPipeline)
+                        .setReportCaughtExceptions(false)
+                        .setReportExecutionTime(true);
+        pipelineData.addMethod("sync", "()V", false, true, 0, methodVisitorFactory);
+        pipelineData.addMethod("syncAndReturnAll", "()Ljava/util/List;", false, true, 0, methodVisitorFactory);
+        classesToInstrument.put(PIPELINE_CLASS_NAME, pipelineData);
+
+        ClassInstrumentationData transactionData =
+                new ClassInstrumentationData(TRANSACTION_CLASS_NAME, InstrumentedClassType.RedisPipeline)
+                        .setReportCaughtExceptions(false)
+                        .setReportExecutionTime(true);
+        transactionData.addMethod("exec", "()Ljava/util/List;", false, true, 0, methodVisitorFactory);
+        classesToInstrument.put(TRANSACTION_CLASS_NAME, transactionData);
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent.redis;
+
+import com.microsoft.applicationinsights.agent.internal.agent.ClassToMethodTransformationData;
+import com.microsoft.applicationinsights.agent.internal.agent.DefaultMethodVisitor;
+import com.microsoft.applicationinsights.agent.internal.coresync.impl.ImplementationsCoordinator;
+
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Hands every command dispatched by a Lettuce connection to the core when it is dispatched.
+ *
+ * Lettuce completes commands on its I/O threads, so the duration is measured by a completion callback
+ * the core registers on the command, and nothing is injected at the exits of the method.
+ */
+final class LettuceDispatchMethodVisitor extends DefaultMethodVisitor {
+    private final static String ON_ENTER_METHOD_NAME = "lettuceCommandDispatched";
+    private final static String ON_ENTER_METHOD_SIGNATURE = "(Ljava/lang/String;Ljava/lang/Object;)V";
+
+    public LettuceDispatchMethodVisitor(int access,
+                                        String desc,
+                                        String owner,
+                                        String methodName,
+                                        MethodVisitor methodVisitor,
+                                        ClassToMethodTransformationData additionalData) {
+        super(false, false, 0, access, desc, owner, methodName, methodVisitor, additionalData);
+    }
+
+    @Override
+    protected void onMethodEnter() {
+        super.visitFieldInsn(GETSTATIC, ImplementationsCoordinator.internalName, "INSTANCE", ImplementationsCoordinator.internalNameAsJavaName);
+
+        mv.visitLdcInsn(getMethodName());
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ImplementationsCoordinator.internalName, ON_ENTER_METHOD_NAME, ON_ENTER_METHOD_SIGNATURE, false);
+    }
+
+    @Override
+    protected void byteCodeForMethodExit(int opcode) {
+        // The exception handler added around the method only rethrows, there is no start to finish
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent.sql;
+
+import java.util.Map;
+
+import com.microsoft.applicationinsights.agent.internal.agent.ClassInstrumentationData;
+import com.microsoft.applicationinsights.agent.internal.agent.ClassToMethodTransformationData;
+import com.microsoft.applicationinsights.agent.internal.agent.MethodInstrumentationDecision;
+import com.microsoft.applicationinsights.agent.internal.agent.MethodVisitorFactory;
+import com.microsoft.applicationinsights.agent.internal.coresync.InstrumentedClassType;
+import com.microsoft.applicationinsights.agent.internal.logger.InternalAgentLogger;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Instruments the 'getConnection()' method of the data sources of common JDBC connection pools,
+ * to measure how long threads wait to borrow a connection.
+ */
+public final class ConnectionPoolClassDataProvider {
+    private final static String[] POOLING_DATA_SOURCE_CLASS_NAMES = new String[] {
+            "com/zaxxer/hikari/HikariDataSource",
+            "org/apache/commons/dbcp2/BasicDataSource",
+            "org/apache/tomcat/jdbc/pool/DataSourceProxy"
+    };
+
+    private final static String GET_CONNECTION_METHOD_NAME = "getConnection";
+    private final static String GET_CONNECTION_METHOD_SIGNATURE = "()Ljava/sql/Connection;";
+
+    private final Map<String, ClassInstrumentationData> classesToInstrument;
+
+    public ConnectionPoolClassDataProvider(Map<String, ClassInstrumentationData> classesToInstrument) {
+        this.classesToInstrument = classesToInstrument;
+    }
+
+    public void add() {
+        MethodVisitorFactory methodVisitorFactory = new MethodVisitorFactory() {
+            @Override
+            public MethodVisitor create(MethodInstrumentationDecision decision, int access, String desc, String owner, String methodName, MethodVisitor methodVisitor, ClassToMethodTransformationData additionalData) {
+                return new ConnectionPoolMethodVisitor(access, desc, owner, methodName, methodVisitor, additionalData);
+            }
+        };
+
+        for (String className : POOLING_DATA_SOURCE_CLASS_NAMES) {
+            try {
+                ClassInstrumentationData data =
+                        new ClassInstrumentationData(className, InstrumentedClassType.ConnectionPool)
+                                .setReportCaughtExceptions(false)
+                                .setReportExecutionTime(true);
+                data.addMethod(GET_CONNECTION_METHOD_NAME, GET_CONNECTION_METHOD_SIGNATURE, false, true, 0, methodVisitorFactory);
+
+                classesToInstrument.put(className, data);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                try {
+                    InternalAgentLogger.INSTANCE.error("Failed to load instrumentation for connection pool '%s': '%s'", className, ExceptionUtils.getStackTrace(t));
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t2) {
+                    // chomp
+                }
+            }
+        }
+    }
+}
@@ -37,6 +37,15 @@ public class AgentBuiltInConfiguration {
     private final boolean jmxEnabled;
     private final long maxSqlQueryLimitInMS;
     private final long redisThresholdInMS;
+    private final boolean lettuceEnabled;
+    private final long redisAggregationIntervalInSeconds;
+    private final boolean httpAggregationEnabled;
+    private final long httpSlowThresholdInMS;
+    private final long httpAggregationIntervalInSeconds;
+    private final boolean connectionPoolEnabled;
+    private final long connectionPoolSlowThresholdInMS;
+    private final long connectionPoolAggregationIntervalInSeconds;
+    private final boolean threadPoolEnabled;
     private final DataOfConfigurationForException dataOfConfigurationForException;
     private final List<ClassInstrumentationData> simpleBuiltInClasses;
 
@@ -49,7 +58,16 @@ public class AgentBuiltInConfiguration {
                                      boolean jmxEnabled,
                                      Long maxSqlQueryLimitInMS,
                                      long redisThresholdInMS,
-                                     DataOfConfigurationForException dataOfConfigurationForException) {
+                                     DataOfConfigurationForException dataOfConfigurationForException,
+                                     boolean httpAggregationEnabled,
+                                     long httpSlowThresholdInMS,
+                                     long httpAggregationIntervalInSeconds,
+                                     boolean connectionPoolEnabled,
+                                     long connectionPoolSlowThresholdInMS,
+                                     long connectionPoolAggregationIntervalInSeconds,
+                                     boolean lettuceEnabled,
+                                     long redisAggregationIntervalInSeconds,
+                                     boolean threadPoolEnabled) {
         this.simpleBuiltInClasses = simpleBuiltInClasses;
         this.enabled = enabled;
         this.httpEnabled = httpEnabled;
@@ -63,6 +81,15 @@ public class AgentBuiltInConfiguration {
         this.jedisEnabled = jedisEnabled;
         this.maxSqlQueryLimitInMS = maxSqlQueryLimitInMS;
         this.dataOfConfigurationForException = dataOfConfigurationForException;
+        this.httpAggregationEnabled = httpAggregationEnabled;
+        this.httpSlowThresholdInMS = httpSlowThresholdInMS;
+        this.httpAggregationIntervalInSeconds = httpAggregationIntervalInSeconds;
+        this.connectionPoolEnabled = connectionPoolEnabled;
+        this.connectionPoolSlowThresholdInMS = connectionPoolSlowThresholdInMS;
+        this.connectionPoolAggregationIntervalInSeconds = connectionPoolAggregationIntervalInSeconds;
+        this.lettuceEnabled = lettuceEnabled;
+        this.redisAggregationIntervalInSeconds = redisAggregationIntervalInSeconds;
+        this.threadPoolEnabled = threadPoolEnabled;
     }
 
     public boolean isEnabled() {
@@ -73,6 +100,34 @@ public class AgentBuiltInConfiguration {
         return httpEnabled;
     }
 
+    public boolean isHttpAggregationEnabled() {
+        return httpAggregationEnabled;
+    }
+
+    public long getHttpSlowThresholdInMS() {
+        return httpSlowThresholdInMS;
+    }
+
+    public long getHttpAggregationIntervalInSeconds() {
+        return httpAggregationIntervalInSeconds;
+    }
+
+    public boolean isConnectionPoolEnabled() {
+        return connectionPoolEnabled;
+    }
+
+    public long getConnectionPoolSlowThresholdInMS() {
+        return connectionPoolSlowThresholdInMS;
+    }
+
+    public long getConnectionPoolAggregationIntervalInSeconds() {
+        return connectionPoolAggregationIntervalInSeconds;
+    }
+
+    public boolean isThreadPoolEnabled() {
+        return threadPoolEnabled;
+    }
+
     public boolean isJdbcEnabled() {
         return jdbcEnabled;
     }
@@ -93,6 +148,14 @@ public class AgentBuiltInConfiguration {
         return redisThresholdInMS;
     }
 
+    public boolean isLettuceEnabled() {
+        return lettuceEnabled;
+    }
+
+    public long getRedisAggregationIntervalInSeconds() {
+        return redisAggregationIntervalInSeconds;
+    }
+
     public boolean isJmxEnabled() {
         return jmxEnabled;
     }
@@ -36,6 +36,15 @@ public class AgentBuiltInConfigurationBuilder {
     private boolean jedisEnabled = false;
     private boolean jmxEnabled = false;
     private long jedisThresholdInMS = 10000L;
+    private boolean lettuceEnabled = false;
+    private long redisAggregationIntervalInSeconds = 60L;
+    private boolean httpAggregationEnabled = false;
+    private long httpSlowThresholdInMS = 1000L;
+    private long httpAggregationIntervalInSeconds = 60L;
+    private boolean connectionPoolEnabled = false;
+    private long connectionPoolSlowThresholdInMS = 100L;
+    private long connectionPoolAggregationIntervalInSeconds = 60L;
+    private boolean threadPoolEnabled = false;
     private Long maxSqlQueryLimitInMS = 10000L;
     private DataOfConfigurationForException dataOfConfigurationForException = new DataOfConfigurationForException();
     private List<ClassInstrumentationData> simpleBuiltInClasses;
@@ -54,7 +63,16 @@ public class AgentBuiltInConfigurationBuilder {
                                              enabled && jmxEnabled,
                                              maxSqlQueryLimitInMS,
                                              jedisThresholdInMS,
-                                             dataOfConfigurationForException);
+                                             dataOfConfigurationForException,
+                                             httpAggregationEnabled && httpEnabled && enabled,
+                                             httpSlowThresholdInMS,
+                                             httpAggregationIntervalInSeconds,
+                                             connectionPoolEnabled && enabled,
+                                             connectionPoolSlowThresholdInMS,
+                                             connectionPoolAggregationIntervalInSeconds,
+                                             lettuceEnabled && enabled,
+                                             redisAggregationIntervalInSeconds,
+                                             threadPoolEnabled && enabled);
     }
 
     public AgentBuiltInConfigurationBuilder setEnabled(boolean enabled) {
@@ -67,6 +85,25 @@ public class AgentBuiltInConfigurationBuilder {
         return this;
     }
 
+    public AgentBuiltInConfigurationBuilder setHttpAggregationValues(boolean httpAggregationEnabled, long httpSlowThresholdInMS, long httpAggregationIntervalInSeconds) {
+        this.httpAggregationEnabled = httpAggregationEnabled;
+        this.httpSlowThresholdInMS = httpSlowThresholdInMS < 0 ? 0 : httpSlowThresholdInMS;
+        this.httpAggregationIntervalInSeconds = httpAggregationIntervalInSeconds < 1 ? 1 : httpAggregationIntervalInSeconds;
+        return this;
+    }
+
+    public AgentBuiltInConfigurationBuilder setConnectionPoolValues(boolean connectionPoolEnabled, long connectionPoolSlowThresholdInMS, long connectionPoolAggregationIntervalInSeconds) {
+        this.connectionPoolEnabled = connectionPoolEnabled;
+        this.connectionPoolSlowThresholdInMS = connectionPoolSlowThresholdInMS < 0 ? 0 : connectionPoolSlowThresholdInMS;
+        this.connectionPoolAggregationIntervalInSeconds = connectionPoolAggregationIntervalInSeconds < 1 ? 1 : connectionPoolAggregationIntervalInSeconds;
+        return this;
+    }
+
+    public AgentBuiltInConfigurationBuilder setThreadPoolEnabled(boolean threadPoolEnabled) {
+        this.threadPoolEnabled = threadPoolEnabled;
+        return this;
+    }
+
     public AgentBuiltInConfigurationBuilder setJdbcEnabled(boolean jdbcEnabled) {
         this.jdbcEnabled = jdbcEnabled;
         return this;
@@ -97,6 +134,16 @@ public class AgentBuiltInConfigurationBuilder {
         return this;
     }
 
+    public AgentBuiltInConfigurationBuilder setLettuceEnabled(boolean lettuceEnabled) {
+        this.lettuceEnabled = lettuceEnabled;
+        return this;
+    }
+
+    public AgentBuiltInConfigurationBuilder setRedisAggregationIntervalInSeconds(long redisAggregationIntervalInSeconds) {
+        this.redisAggregationIntervalInSeconds = redisAggregationIntervalInSeconds < 1 ? 1 : redisAggregationIntervalInSeconds;
+        return this;
+    }
+
     public void setDataOfConfigurationForException(DataOfConfigurationForException dataOfConfigurationForException) {
         if (dataOfConfigurationForException != null) {
             this.dataOfConfigurationForException = dataOfConfigurationForException;
@@ -54,8 +54,11 @@ final class XmlAgentConfigurationBuilder implements AgentConfigurationBuilder {
 
     private final static String BUILT_IN_TAG = "BuiltIn";
     private final static String JEDIS_TAG = "Jedis";
+    private final static String LETTUCE_TAG = "Lettuce";
     private final static String HTTP_TAG = "HTTP";
     private final static String JDBC_TAG = "JDBC";
+    private final static String CONNECTION_POOL_TAG = "ConnectionPool";
+    private final static String THREAD_POOL_TAG = "ThreadPool";
     private final static String HIBERNATE_TAG = "HIBERNATE";
     private final static String JMX_TAG = "AgentJmx";
     private final static String MAX_STATEMENT_QUERY_LIMIT_TAG = "MaxStatementQueryLimitInMS";
@@ -63,12 +66,19 @@ final class XmlAgentConfigurationBuilder implements AgentConfigurationBuilder {
     private final static String AGENT_LOGGER_TAG = "AgentLogger";
 
     private final static long JEDIS_ARGS_THRESHOLD_IN_MS = 10000L;
+    private final static long REDIS_AGGREGATION_INTERVAL_IN_SECONDS = 60L;
+    private final static long HTTP_SLOW_THRESHOLD_IN_MS = 1000L;
+    private final static long HTTP_AGGREGATION_INTERVAL_IN_SECONDS = 60L;
+    private final static long CONNECTION_POOL_SLOW_THRESHOLD_IN_MS = 100L;
+    private final static long CONNECTION_POOL_AGGREGATION_INTERVAL_IN_SECONDS = 60L;
 
     private final static String EXCLUDED_PREFIXES_TAG = "ExcludedPrefixes";
     private final static String FORBIDDEN_PREFIX_TAG = "Prefix";
 
     private final static String THRESHOLD_ATTRIBUTE = "thresholdInMS";
     private final static String ENABLED_ATTRIBUTE = "enabled";
+    private final static String AGGREGATE_ATTRIBUTE = "aggregate";
+    private final static String AGGREGATION_INTERVAL_ATTRIBUTE = "aggregationIntervalInSeconds";
     private final static String NAME_ATTRIBUTE = "name";
     private final static String REPORT_CAUGHT_EXCEPTIONS_ATTRIBUTE = "reportCaughtExceptions";
     private final static String REPORT_EXECUTION_TIME_ATTRIBUTE = "reportExecutionTime";
@@ -213,15 +223,37 @@ final class XmlAgentConfigurationBuilder implements AgentConfigurationBuilder {
         Element element = XmlParserUtils.getFirst(nodes);
         long threshold = XmlParserUtils.getLongAttribute(element, JEDIS_TAG, THRESHOLD_ATTRIBUTE, JEDIS_ARGS_THRESHOLD_IN_MS);
         builtInConfigurationBuilder.setJedisValues(XmlParserUtils.getEnabled(element, JEDIS_TAG), threshold);
+        builtInConfigurationBuilder.setRedisAggregationIntervalInSeconds(
+                XmlParserUtils.getLongAttribute(element, JEDIS_TAG, AGGREGATION_INTERVAL_ATTRIBUTE, REDIS_AGGREGATION_INTERVAL_IN_SECONDS));
+
+        nodes = builtInElement.getElementsByTagName(LETTUCE_TAG);
+        builtInConfigurationBuilder.setLettuceEnabled(XmlParserUtils.getEnabled(XmlParserUtils.getFirst(nodes), LETTUCE_TAG));
 
         new ConfigRuntimeExceptionDataBuilder().setRuntimeExceptionData(builtInElement, builtInConfigurationBuilder);
 
         nodes = builtInElement.getElementsByTagName(HTTP_TAG);
-        builtInConfigurationBuilder.setHttpEnabled(XmlParserUtils.getEnabled(XmlParserUtils.getFirst(nodes), HTTP_TAG));
+        element = XmlParserUtils.getFirst(nodes);
+        builtInConfigurationBuilder.setHttpEnabled(XmlParserUtils.getEnabled(element, HTTP_TAG));
+        builtInConfigurationBuilder.setHttpAggregationValues(
+                XmlParserUtils.getBooleanAttribute(element, HTTP_TAG, AGGREGATE_ATTRIBUTE, false),
+                XmlParserUtils.getLongAttribute(element, HTTP_TAG, THRESHOLD_ATTRIBUTE, HTTP_SLOW_THRESHOLD_IN_MS),
+                XmlParserUtils.getLongAttribute(element, HTTP_TAG, AGGREGATION_INTERVAL_ATTRIBUTE, HTTP_AGGREGATION_INTERVAL_IN_SECONDS));
 
         nodes = builtInElement.getElementsByTagName(JDBC_TAG);
         builtInConfigurationBuilder.setJdbcEnabled(XmlParserUtils.getEnabled(XmlParserUtils.getFirst(nodes), JDBC_TAG));
 
+        nodes = builtInElement.getElementsByTagName(CONNECTION_POOL_TAG);
+        element = XmlParserUtils.getFirst(nodes);
+        builtInConfigurationBuilder.setConnectionPoolValues(
+                XmlParserUtils.getEnabled(element, CONNECTION_POOL_TAG),
+                XmlParserUtils.getLongAttribute(element, CONNECTION_POOL_TAG, THRESHOLD_ATTRIBUTE, CONNECTION_POOL_SLOW_THRESHOLD_IN_MS),
+                XmlParserUtils.getLongAttribute(element, CONNECTION_POOL_TAG, AGGREGATION_INTERVAL_ATTRIBUTE, CONNECTION_POOL_AGGREGATION_INTERVAL_IN_SECONDS));
+
+        // Instrumenting ThreadPoolExecutor reaches every executor of the JVM, so it must be asked for
+        nodes = builtInElement.getElementsByTagName(THREAD_POOL_TAG);
+        builtInConfigurationBuilder.setThreadPoolEnabled(
+                XmlParserUtils.getBooleanAttribute(XmlParserUtils.getFirst(nodes), THREAD_POOL_TAG, ENABLED_ATTRIBUTE, false));
+
         nodes = builtInElement.getElementsByTagName(HIBERNATE_TAG);
         builtInConfigurationBuilder.setHibernateEnabled(XmlParserUtils.getEnabled(XmlParserUtils.getFirst(nodes), HIBERNATE_TAG));
 
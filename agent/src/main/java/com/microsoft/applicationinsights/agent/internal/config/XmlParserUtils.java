@@ -78,6 +78,24 @@ final class XmlParserUtils {
         return defaultValue;
     }
 
+    public static boolean getBooleanAttribute(Element element, String elementName, String attributeName, boolean defaultValue) {
+        if (element == null) {
+            return defaultValue;
+        }
+
+        try {
+            String strValue = element.getAttribute(attributeName);
+            if (!StringUtils.isNullOrEmpty(strValue)) {
+                return Boolean.valueOf(strValue);
+            }
+            return defaultValue;
+        } catch (Exception e) {
+            InternalAgentLogger.INSTANCE.error("Failed to parse attribute '%s' of '%s', default value (%b) will be used.", attributeName, elementName, defaultValue);
+        }
+
+        return defaultValue;
+    }
+
     public static long getLongAttribute(Element element, String elementName, String attributeName, long defaultValue) {
         if (element == null) {
             return defaultValue;
@@ -24,6 +24,7 @@ package com.microsoft.applicationinsights.agent.internal.coresync;
 import java.net.URISyntaxException;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * The Agent will inject code in the user's code that will be activated on predefined methods.
@@ -107,6 +108,47 @@ public interface AgentNotificationsHandler {
      */
     void jedisMethodStarted(String classAndMethodNames);
 
+    /**
+     * Called before the commands queued on a Jedis pipeline or transaction are sent to the server.
+     * The matching methodFinished call marks the end of the round trip.
+     * @param classAndMethodNames The name of the class and method separated by '.'
+     * @param pipeline The pipeline or transaction whose commands are sent
+     */
+    void jedisPipelineMethodStarted(String classAndMethodNames, Object pipeline);
+
+    /**
+     * Called when a command is dispatched by the Lettuce Redis client, whatever API it was issued from.
+     * There is no matching methodFinished call, the command reports its completion asynchronously.
+     * @param classAndMethodNames The name of the class and method separated by '.'
+     * @param command The dispatched command
+     */
+    void lettuceCommandDispatched(String classAndMethodNames, Object command);
+
+    /**
+     * Called before a connection is borrowed from a JDBC connection pool.
+     * The matching methodFinished call marks the end of the wait.
+     * @param classAndMethodNames The name of the class and method separated by '.'
+     * @param dataSource The pooling data source the connection is borrowed from
+     */
+    void connectionPoolMethodStarted(String classAndMethodNames, Object dataSource);
+
+    /**
+     * Called when a task is handed to a ThreadPoolExecutor.
+     * There is no matching methodFinished call, the task is matched with its start.
+     * @param executor The executor the task is handed to
+     * @param task The task
+     */
+    void threadPoolTaskSubmitted(ThreadPoolExecutor executor, Runnable task);
+
+    /**
+     * Called by a worker thread of a ThreadPoolExecutor just before it runs a task.
+     * There is no matching methodFinished call.
+     * @param executor The executor that runs the task
+     * @param worker The thread that runs the task
+     * @param task The task
+     */
+    void threadPoolTaskStarted(ThreadPoolExecutor executor, Thread worker, Runnable task);
+
     /**
      * A 'regular' method enter. Non HTTP/SQL method
      * @param classAndMethodNames The name of the class and method separated by '.'
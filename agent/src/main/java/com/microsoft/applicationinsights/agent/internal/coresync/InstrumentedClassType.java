@@ -28,5 +28,8 @@ public enum InstrumentedClassType {
     SQL,
     HTTP,
     OTHER,
-    Redis
+    Redis,
+    RedisPipeline,
+    ConnectionPool,
+    ThreadPool
 }
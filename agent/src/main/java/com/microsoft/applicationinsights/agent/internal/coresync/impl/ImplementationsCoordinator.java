@@ -26,6 +26,7 @@ import java.sql.Statement;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import com.microsoft.applicationinsights.agent.internal.config.DataOfConfigurationForException;
 import org.objectweb.asm.Type;
@@ -52,6 +53,12 @@ public enum ImplementationsCoordinator implements AgentNotificationsHandler {
 
     private volatile long maxSqlMaxQueryThresholdInMS = 10000L;
     private volatile long redisThresholdInNS = 10000L * 1000000;
+    private volatile long redisAggregationIntervalInSeconds = 60L;
+    private volatile boolean httpAggregationEnabled = false;
+    private volatile long httpSlowThresholdInMS = 1000L;
+    private volatile long httpAggregationIntervalInSeconds = 60L;
+    private volatile long connectionPoolSlowThresholdInMS = 100L;
+    private volatile long connectionPoolAggregationIntervalInSeconds = 60L;
 
     private static RuntimeExceptionDecider runtimeExceptionDecider;
 
@@ -63,6 +70,12 @@ public enum ImplementationsCoordinator implements AgentNotificationsHandler {
     public void initialize(AgentConfiguration configurationData) {
         maxSqlMaxQueryThresholdInMS = configurationData.getBuiltInConfiguration().getSqlMaxQueryLimitInMS();
         setRedisThresholdInMS(configurationData.getBuiltInConfiguration().getRedisThresholdInMS());
+        redisAggregationIntervalInSeconds = configurationData.getBuiltInConfiguration().getRedisAggregationIntervalInSeconds();
+        httpAggregationEnabled = configurationData.getBuiltInConfiguration().isHttpAggregationEnabled();
+        httpSlowThresholdInMS = configurationData.getBuiltInConfiguration().getHttpSlowThresholdInMS();
+        httpAggregationIntervalInSeconds = configurationData.getBuiltInConfiguration().getHttpAggregationIntervalInSeconds();
+        connectionPoolSlowThresholdInMS = configurationData.getBuiltInConfiguration().getConnectionPoolSlowThresholdInMS();
+        connectionPoolAggregationIntervalInSeconds = configurationData.getBuiltInConfiguration().getConnectionPoolAggregationIntervalInSeconds();
         runtimeExceptionDecider = new RuntimeExceptionDecider();
     }
 
@@ -211,6 +224,71 @@ public enum ImplementationsCoordinator implements AgentNotificationsHandler {
         }
     }
 
+    @Override
+    public void jedisPipelineMethodStarted(String name, Object pipeline) {
+        try {
+            AgentNotificationsHandler implementation = getImplementation();
+            if (implementation != null) {
+                implementation.jedisPipelineMethodStarted(name, pipeline);
+            }
+        } catch (ThreadDeath td) {
+        	throw td;
+        } catch (Throwable t) {
+        }
+    }
+
+    @Override
+    public void lettuceCommandDispatched(String name, Object command) {
+        try {
+            AgentNotificationsHandler implementation = getImplementation();
+            if (implementation != null) {
+                implementation.lettuceCommandDispatched(name, command);
+            }
+        } catch (ThreadDeath td) {
+        	throw td;
+        } catch (Throwable t) {
+        }
+    }
+
+    @Override
+    public void connectionPoolMethodStarted(String name, Object dataSource) {
+        try {
+            AgentNotificationsHandler implementation = getImplementation();
+            if (implementation != null) {
+                implementation.connectionPoolMethodStarted(name, dataSource);
+            }
+        } catch (ThreadDeath td) {
+        	throw td;
+        } catch (Throwable t) {
+        }
+    }
+
+    @Override
+    public void threadPoolTaskSubmitted(ThreadPoolExecutor executor, Runnable task) {
+        try {
+            AgentNotificationsHandler implementation = getImplementation();
+            if (implementation != null) {
+                implementation.threadPoolTaskSubmitted(executor, task);
+            }
+        } catch (ThreadDeath td) {
+        	throw td;
+        } catch (Throwable t) {
+        }
+    }
+
+    @Override
+    public void threadPoolTaskStarted(ThreadPoolExecutor executor, Thread worker, Runnable task) {
+        try {
+            AgentNotificationsHandler implementation = getImplementation();
+            if (implementation != null) {
+                implementation.threadPoolTaskStarted(executor, worker, task);
+            }
+        } catch (ThreadDeath td) {
+        	throw td;
+        } catch (Throwable t) {
+        }
+    }
+
     @Override
     public void methodStarted(String name) {
         try {
@@ -352,6 +430,10 @@ public enum ImplementationsCoordinator implements AgentNotificationsHandler {
         return redisThresholdInNS;
     }
 
+    public long getRedisAggregationIntervalInSeconds() {
+        return redisAggregationIntervalInSeconds;
+    }
+
     public long getQueryPlanThresholdInMS() {
         return maxSqlMaxQueryThresholdInMS;
     }
@@ -362,6 +444,32 @@ public enum ImplementationsCoordinator implements AgentNotificationsHandler {
         }
     }
 
+    /**
+     * @return True if successful and fast outbound HTTP calls should be reported as interval summaries instead of one by one.
+     */
+    public boolean isHttpAggregationEnabled() {
+        return httpAggregationEnabled;
+    }
+
+    public long getHttpSlowThresholdInMS() {
+        return httpSlowThresholdInMS;
+    }
+
+    public long getHttpAggregationIntervalInSeconds() {
+        return httpAggregationIntervalInSeconds;
+    }
+
+    /**
+     * @return The time above which borrowing a pooled JDBC connection is reported as a dependency of its own.
+     */
+    public long getConnectionPoolSlowThresholdInMS() {
+        return connectionPoolSlowThresholdInMS;
+    }
+
+    public long getConnectionPoolAggregationIntervalInSeconds() {
+        return connectionPoolAggregationIntervalInSeconds;
+    }
+
     public void setExceptionData    (DataOfConfigurationForException exceptionData) {
         this.runtimeExceptionDecider.setExceptionData(exceptionData);
     }
@@ -0,0 +1,96 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class ClassHierarchyCacheTest {
+    private static final String LIST_TYPE = "java/util/ArrayList";
+    private static final String TEST_TYPE = ClassHierarchyCacheTest.class.getName().replace('.', '/');
+
+    @Test
+    public void testTypeInfoIsRead() throws IOException {
+        ClassHierarchyCache.TypeInfo info = new ClassHierarchyCache(16).getTypeInfo(LIST_TYPE, getClass().getClassLoader());
+
+        assertEquals("java/util/AbstractList", info.superName);
+        assertTrue(Arrays.asList(info.interfaces).contains("java/util/List"));
+        assertFalse(info.isInterface);
+    }
+
+    @Test
+    public void testTypeIsReadOnce() throws IOException {
+        ClassHierarchyCache cache = new ClassHierarchyCache(16);
+
+        ClassHierarchyCache.TypeInfo first = cache.getTypeInfo(TEST_TYPE, getClass().getClassLoader());
+        ClassHierarchyCache.TypeInfo second = cache.getTypeInfo(TEST_TYPE, getClass().getClassLoader());
+
+        assertSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testJdkTypesAreSharedByClassLoaders() throws IOException {
+        ClassHierarchyCache cache = new ClassHierarchyCache(16);
+
+        cache.getTypeInfo(LIST_TYPE, getClass().getClassLoader());
+        cache.getTypeInfo(LIST_TYPE, new ClassLoader(getClass().getClassLoader()) {});
+
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTypeIsDropped() throws IOException {
+        ClassHierarchyCache cache = new ClassHierarchyCache(1);
+        ClassLoader loader = getClass().getClassLoader();
+
+        cache.getTypeInfo(TEST_TYPE, loader);
+        cache.getTypeInfo(CustomClassWriter.class.getName().replace('.', '/'), loader);
+        cache.getTypeInfo(TEST_TYPE, loader);
+
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testZeroSizeDisablesCache() throws IOException {
+        ClassHierarchyCache cache = new ClassHierarchyCache(0);
+
+        cache.getTypeInfo(TEST_TYPE, getClass().getClassLoader());
+        cache.getTypeInfo(TEST_TYPE, getClass().getClassLoader());
+
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingTypeThrows() throws IOException {
+        new ClassHierarchyCache(16).getTypeInfo("com/example/Missing", getClass().getClassLoader());
+    }
+}
@@ -21,7 +21,22 @@
 
 package com.microsoft.applicationinsights.agent.internal.agent;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.microsoft.applicationinsights.agent.internal.agent.sql.ConnectionPoolClassDataProvider;
+import com.microsoft.applicationinsights.agent.internal.coresync.AgentNotificationsHandler;
+import com.microsoft.applicationinsights.agent.internal.coresync.impl.ImplementationsCoordinator;
 import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 import static org.junit.Assert.*;
 
@@ -33,4 +48,86 @@ public final class DefaultByteCodeTransformerTest {
         byte[] result = tested.transform(mockArray, "mock", ClassLoader.getSystemClassLoader());
         assertSame(result, mockArray);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void framesAreOnlyComputedForClassFilesThatHaveThem() {
+        assertEquals(ClassWriter.COMPUTE_MAXS, DefaultByteCodeTransformer.getWriterFlags(createClassFile(Opcodes.V1_5)));
+        assertEquals(ClassWriter.COMPUTE_FRAMES, DefaultByteCodeTransformer.getWriterFlags(createClassFile(Opcodes.V1_6)));
+        assertEquals(ClassWriter.COMPUTE_FRAMES, DefaultByteCodeTransformer.getWriterFlags(createClassFile(Opcodes.V1_8)));
+    }
+
+    @Test
+    public void connectionPoolGetConnectionReportsItsDataSource() throws Exception {
+        final String className = "com/zaxxer/hikari/HikariDataSource";
+        Map<String, ClassInstrumentationData> classesToInstrument = new HashMap<String, ClassInstrumentationData>();
+        new ConnectionPoolClassDataProvider(classesToInstrument).add();
+        byte[] original = createDataSourceClassFile(className);
+
+        DefaultByteCodeTransformer tested = new DefaultByteCodeTransformer(classesToInstrument.get(className), false);
+        final byte[] transformed = tested.transform(original, className, getClass().getClassLoader());
+        assertNotSame(original, transformed);
+
+        final List<String> calls = new ArrayList<String>();
+        final Object[] dataSource = new Object[1];
+        ImplementationsCoordinator.INSTANCE.registerSelf((AgentNotificationsHandler) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { AgentNotificationsHandler.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getName")) {
+                            return "test";
+                        }
+                        calls.add(method.getName());
+                        if (method.getName().equals("connectionPoolMethodStarted")) {
+                            dataSource[0] = args[1];
+                        }
+                        return null;
+                    }
+                }));
+
+        Class<?> stubClass = new ClassLoader(getClass().getClassLoader()) {
+            {
+                defineClass(className.replace('/', '.'), transformed, 0, transformed.length);
+            }
+        }.loadClass(className.replace('/', '.'));
+        Object stub = stubClass.newInstance();
+        assertNull(stubClass.getMethod("getConnection").invoke(stub));
+
+        assertEquals(2, calls.size());
+        assertEquals("connectionPoolMethodStarted", calls.get(0));
+        assertEquals("methodFinished", calls.get(1));
+        assertSame(stub, dataSource[0]);
+    }
+
+    // A public class with a default constructor and a 'getConnection()' that returns null
+    private static byte[] createDataSourceClassFile(String className) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+
+        MethodVisitor ctor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        ctor.visitCode();
+        ctor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        ctor.visitInsn(Opcodes.RETURN);
+        ctor.visitMaxs(0, 0);
+        ctor.visitEnd();
+
+        MethodVisitor getConnection = writer.visitMethod(Opcodes.ACC_PUBLIC, "getConnection", "()Ljava/sql/Connection;", null, null);
+        getConnection.visitCode();
+        getConnection.visitInsn(Opcodes.ACONST_NULL);
+        getConnection.visitInsn(Opcodes.ARETURN);
+        getConnection.visitMaxs(0, 0);
+        getConnection.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static ClassReader createClassFile(int version) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(version, Opcodes.ACC_PUBLIC, "Mock", null, "java/lang/Object", null);
+        writer.visitEnd();
+        return new ClassReader(writer.toByteArray());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent.redis;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.microsoft.applicationinsights.agent.internal.agent.ClassInstrumentationData;
+import com.microsoft.applicationinsights.agent.internal.agent.MethodInstrumentationDecision;
+import com.microsoft.applicationinsights.agent.internal.coresync.InstrumentedClassType;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class JedisClassDataProviderTest {
+    private final static String PIPELINE_CLASS_NAME = "redis/clients/jedis/Pipeline";
+    private final static String TRANSACTION_CLASS_NAME = "redis/clients/jedis/Transaction";
+
+    @Test
+    public void testJedisAndItsPipelinesAreRegistered() {
+        Map<String, ClassInstrumentationData> classesToInstrument = createClassesToInstrument();
+
+        assertEquals(3, classesToInstrument.size());
+        assertEquals(InstrumentedClassType.Redis.toString(), classesToInstrument.get("redis/clients/jedis/Jedis").getClassType());
+        assertEquals(InstrumentedClassType.RedisPipeline.toString(), classesToInstrument.get(PIPELINE_CLASS_NAME).getClassType());
+        assertEquals(InstrumentedClassType.RedisPipeline.toString(), classesToInstrument.get(TRANSACTION_CLASS_NAME).getClassType());
+    }
+
+    @Test
+    public void testPipelineSyncMethodsAreInstrumented() {
+        ClassInstrumentationData data = createClassesToInstrument().get(PIPELINE_CLASS_NAME);
+
+        assertPipelineMethod(data, "sync", "()V");
+        assertPipelineMethod(data, "syncAndReturnAll", "()Ljava/util/List;");
+        assertNull(data.getMethodInstrumentationInfo().getDecision("get", "(Ljava/lang/String;)Lredis/clients/jedis/Response;"));
+    }
+
+    @Test
+    public void testTransactionExecIsInstrumented() {
+        ClassInstrumentationData data = createClassesToInstrument().get(TRANSACTION_CLASS_NAME);
+
+        assertPipelineMethod(data, "exec", "()Ljava/util/List;");
+        assertNull(data.getMethodInstrumentationInfo().getDecision("discard", "()Ljava/lang/String;"));
+    }
+
+    private static Map<String, ClassInstrumentationData> createClassesToInstrument() {
+        Map<String, ClassInstrumentationData> classesToInstrument = new HashMap<String, ClassInstrumentationData>();
+        new JedisClassDataProvider(classesToInstrument).add();
+        return classesToInstrument;
+    }
+
+    private static void assertPipelineMethod(ClassInstrumentationData data, String methodName, String signature) {
+        MethodInstrumentationDecision decision = data.getMethodInstrumentationInfo().getDecision(methodName, signature);
+        assertNotNull(decision);
+        assertTrue(decision.isReportExecutionTime());
+        assertFalse(decision.isReportCaughtExceptions());
+        assertTrue(decision.getMethodVisitorFactory().create(decision, Opcodes.ACC_PUBLIC, signature, data.getClassName(), methodName, null, null) instanceof JedisPipelineMethodVisitor);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent.redis;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.microsoft.applicationinsights.agent.internal.agent.ClassInstrumentationData;
+import com.microsoft.applicationinsights.agent.internal.agent.MethodInstrumentationDecision;
+import com.microsoft.applicationinsights.agent.internal.coresync.InstrumentedClassType;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class LettuceClassDataProviderTest {
+    private final static String CHANNEL_HANDLER_CLASS_NAME = "io/lettuce/core/RedisChannelHandler";
+    private final static String DISPATCH_SIGNATURE = "(Lio/lettuce/core/protocol/RedisCommand;)Lio/lettuce/core/protocol/RedisCommand;";
+
+    @Test
+    public void testChannelHandlerIsRegistered() {
+        Map<String, ClassInstrumentationData> classesToInstrument = createClassesToInstrument();
+
+        assertEquals(1, classesToInstrument.size());
+        ClassInstrumentationData data = classesToInstrument.get(CHANNEL_HANDLER_CLASS_NAME);
+        assertNotNull(data);
+        assertEquals(InstrumentedClassType.Redis.toString(), data.getClassType());
+    }
+
+    @Test
+    public void testOnlyTheSingleCommandDispatchIsInstrumented() {
+        ClassInstrumentationData data = createClassesToInstrument().get(CHANNEL_HANDLER_CLASS_NAME);
+
+        MethodInstrumentationDecision decision = data.getMethodInstrumentationInfo().getDecision("dispatch", DISPATCH_SIGNATURE);
+        assertNotNull(decision);
+        assertTrue(decision.isReportExecutionTime());
+        assertFalse(decision.isReportCaughtExceptions());
+        assertTrue(decision.getMethodVisitorFactory().create(decision, Opcodes.ACC_PUBLIC, DISPATCH_SIGNATURE, CHANNEL_HANDLER_CLASS_NAME, "dispatch", null, null) instanceof LettuceDispatchMethodVisitor);
+
+        assertNull(data.getMethodInstrumentationInfo().getDecision("dispatch", "(Ljava/util/Collection;)Ljava/util/Collection;"));
+        assertNull(data.getMethodInstrumentationInfo().getDecision("close", "()V"));
+    }
+
+    private static Map<String, ClassInstrumentationData> createClassesToInstrument() {
+        Map<String, ClassInstrumentationData> classesToInstrument = new HashMap<String, ClassInstrumentationData>();
+        new LettuceClassDataProvider(classesToInstrument).add();
+        return classesToInstrument;
+    }
+}
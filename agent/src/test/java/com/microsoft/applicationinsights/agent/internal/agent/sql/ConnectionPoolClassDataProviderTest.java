@@ -0,0 +1,78 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent.sql;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.microsoft.applicationinsights.agent.internal.agent.ClassInstrumentationData;
+import com.microsoft.applicationinsights.agent.internal.agent.MethodInstrumentationDecision;
+import com.microsoft.applicationinsights.agent.internal.coresync.InstrumentedClassType;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class ConnectionPoolClassDataProviderTest {
+    private final static String GET_CONNECTION_SIGNATURE = "()Ljava/sql/Connection;";
+
+    @Test
+    public void testPoolingDataSourcesAreRegistered() {
+        Map<String, ClassInstrumentationData> classesToInstrument = createClassesToInstrument();
+
+        assertEquals(3, classesToInstrument.size());
+        assertPoolingDataSource(classesToInstrument, "com/zaxxer/hikari/HikariDataSource");
+        assertPoolingDataSource(classesToInstrument, "org/apache/commons/dbcp2/BasicDataSource");
+        assertPoolingDataSource(classesToInstrument, "org/apache/tomcat/jdbc/pool/DataSourceProxy");
+    }
+
+    @Test
+    public void testOnlyGetConnectionWithoutArgumentsIsInstrumented() {
+        ClassInstrumentationData data = createClassesToInstrument().get("com/zaxxer/hikari/HikariDataSource");
+
+        assertNull(data.getMethodInstrumentationInfo().getDecision("getConnection", "(Ljava/lang/String;Ljava/lang/String;)Ljava/sql/Connection;"));
+        assertNull(data.getMethodInstrumentationInfo().getDecision("close", "()V"));
+    }
+
+    private static Map<String, ClassInstrumentationData> createClassesToInstrument() {
+        Map<String, ClassInstrumentationData> classesToInstrument = new HashMap<String, ClassInstrumentationData>();
+        new ConnectionPoolClassDataProvider(classesToInstrument).add();
+        return classesToInstrument;
+    }
+
+    private static void assertPoolingDataSource(Map<String, ClassInstrumentationData> classesToInstrument, String className) {
+        ClassInstrumentationData data = classesToInstrument.get(className);
+        assertNotNull(data);
+        assertEquals(className, data.getClassName());
+        assertEquals(InstrumentedClassType.ConnectionPool.toString(), data.getClassType());
+
+        MethodInstrumentationDecision decision = data.getMethodInstrumentationInfo().getDecision("getConnection", GET_CONNECTION_SIGNATURE);
+        assertNotNull(decision);
+        assertTrue(decision.isReportExecutionTime());
+        assertFalse(decision.isReportCaughtExceptions());
+        assertTrue(decision.getMethodVisitorFactory().create(decision, Opcodes.ACC_PUBLIC, GET_CONNECTION_SIGNATURE, className, "getConnection", null, null) instanceof ConnectionPoolMethodVisitor);
+    }
+}
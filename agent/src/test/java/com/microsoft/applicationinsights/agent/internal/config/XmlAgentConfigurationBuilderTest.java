@@ -75,6 +75,41 @@ public final class XmlAgentConfigurationBuilderTest {
         assertEquals(builtInConfiguration.isHibernateEnabled(), false);
     }
 
+    @Test
+    public void testHttpAggregationConfiguration() throws IOException {
+        AgentConfiguration configuration = testConfiguration("HttpAggregationTest.xml");
+        AgentBuiltInConfiguration builtInConfiguration = configuration.getBuiltInConfiguration();
+        assertEquals(builtInConfiguration.isHttpEnabled(), true);
+        assertEquals(builtInConfiguration.isHttpAggregationEnabled(), true);
+        assertEquals(builtInConfiguration.getHttpSlowThresholdInMS(), 500);
+        assertEquals(builtInConfiguration.getHttpAggregationIntervalInSeconds(), 60);
+    }
+
+    @Test
+    public void testConnectionPoolConfiguration() throws IOException {
+        AgentConfiguration configuration = testConfiguration("ConnectionPoolTest.xml");
+        AgentBuiltInConfiguration builtInConfiguration = configuration.getBuiltInConfiguration();
+        assertEquals(builtInConfiguration.isConnectionPoolEnabled(), true);
+        assertEquals(builtInConfiguration.getConnectionPoolSlowThresholdInMS(), 250);
+        assertEquals(builtInConfiguration.getConnectionPoolAggregationIntervalInSeconds(), 60);
+    }
+
+    @Test
+    public void testRedisConfiguration() throws IOException {
+        AgentConfiguration configuration = testConfiguration("RedisTest.xml");
+        AgentBuiltInConfiguration builtInConfiguration = configuration.getBuiltInConfiguration();
+        assertEquals(builtInConfiguration.isRedisEnabled(), true);
+        assertEquals(builtInConfiguration.getRedisAggregationIntervalInSeconds(), 30);
+        assertEquals(builtInConfiguration.isLettuceEnabled(), false);
+    }
+
+    @Test
+    public void testThreadPoolConfiguration() throws IOException {
+        AgentConfiguration configuration = testConfiguration("ThreadPoolTest.xml");
+        AgentBuiltInConfiguration builtInConfiguration = configuration.getBuiltInConfiguration();
+        assertEquals(builtInConfiguration.isThreadPoolEnabled(), true);
+    }
+
     private AgentConfiguration testConfiguration(String testFileName) throws IOException {
         File folder = null;
         try {
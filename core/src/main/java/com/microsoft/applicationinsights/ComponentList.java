@@ -0,0 +1,126 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A list of configured components that lets its owner know whenever it is modified.
+ *
+ * Every modification of an {@link AbstractList} goes through {@link #add(int, Object)}, {@link #set(int, Object)}
+ * or {@link #remove(int)}, so overriding those is enough to rebuild the owner's snapshot after any change,
+ * including the ones made through iterators or sub lists. All the lists of an owner share its lock.
+ */
+final class ComponentList<E> extends AbstractList<E> implements RandomAccess {
+    interface Owner {
+        void componentsChanged();
+    }
+
+    private final ArrayList<E> elements = new ArrayList<E>();
+    private final Object lock;
+    private final Owner owner;
+
+    ComponentList(Object lock, Owner owner) {
+        this.lock = lock;
+        this.owner = owner;
+    }
+
+    @Override
+    public E get(int index) {
+        synchronized (lock) {
+            return elements.get(index);
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (lock) {
+            return elements.size();
+        }
+    }
+
+    @Override
+    public void add(int index, E element) {
+        synchronized (lock) {
+            elements.add(index, element);
+            ++modCount;
+            owner.componentsChanged();
+        }
+    }
+
+    @Override
+    public E set(int index, E element) {
+        synchronized (lock) {
+            E previous = elements.set(index, element);
+            owner.componentsChanged();
+            return previous;
+        }
+    }
+
+    @Override
+    public E remove(int index) {
+        synchronized (lock) {
+            E removed = elements.remove(index);
+            ++modCount;
+            owner.componentsChanged();
+            return removed;
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        synchronized (lock) {
+            boolean changed = elements.addAll(collection);
+            if (changed) {
+                ++modCount;
+                owner.componentsChanged();
+            }
+            return changed;
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        synchronized (lock) {
+            return elements.toArray();
+        }
+    }
+
+    @Override
+    public <T> T[] toArray(T[] array) {
+        synchronized (lock) {
+            return elements.toArray(array);
+        }
+    }
+
+    /**
+     * Replaces all the elements without letting the owner know, the caller holds the lock and rebuilds the snapshot.
+     */
+    void replaceWith(Collection<? extends E> collection) {
+        elements.clear();
+        elements.addAll(collection);
+        ++modCount;
+    }
+}
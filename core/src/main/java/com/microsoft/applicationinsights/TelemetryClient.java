@@ -27,10 +27,9 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import com.microsoft.applicationinsights.common.CommonUtils;
 import com.microsoft.applicationinsights.extensibility.ContextInitializer;
-import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
-import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.extensibility.context.InternalContext;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.pipeline.TelemetryPipeline;
 import com.microsoft.applicationinsights.internal.quickpulse.QuickPulseDataCollector;
 import com.microsoft.applicationinsights.internal.util.ChannelFetcher;
 import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
@@ -436,13 +435,20 @@ public class TelemetryClient {
             }
         }
 
-        activateInitializers(telemetry);
+        // A single read, so that a concurrent reconfiguration is either fully seen or not at all
+        TelemetryPipeline pipeline = configuration.getPipeline();
+
+        if (pipeline.isSampledOut(telemetry)) {
+            return;
+        }
+
+        pipeline.initialize(telemetry);
 
         if (Strings.isNullOrEmpty(telemetry.getContext().getInstrumentationKey())) {
             throw new IllegalArgumentException("Instrumentation key cannot be undefined.");
         }
 
-        if (!activateProcessors(telemetry)) {
+        if (!pipeline.process(telemetry)) {
             return;
         }
 
@@ -467,44 +473,6 @@ public class TelemetryClient {
         }
     }
 
-    private void activateInitializers(Telemetry telemetry) {
-        for (TelemetryInitializer initializer : this.configuration.getTelemetryInitializers()) {
-            try {
-                initializer.initialize(telemetry);
-            } catch (ThreadDeath td) {
-                throw td;
-            } catch (Throwable e) {
-                try {
-                    InternalLogger.INSTANCE.error("Failed during telemetry initialization class '%s', exception: %s", initializer.getClass().getName(), e.toString());                } catch (ThreadDeath td) {
-                    throw td;
-                } catch (Throwable t2) {
-                    // chomp
-                }
-            }
-        }
-    }
-
-    private boolean activateProcessors(Telemetry telemetry) {
-        for (TelemetryProcessor processor : configuration.getTelemetryProcessors()) {
-            try {
-                if (!processor.process(telemetry)) {
-                    return false;
-                }
-            } catch (ThreadDeath td) {
-            	throw td;
-            } catch (Throwable t) {
-                try {
-                    InternalLogger.INSTANCE.error("Exception while processing telemetry: '%s'",t.toString());                } catch (ThreadDeath td) {
-                    throw td;
-                } catch (Throwable t2) {
-                    // chomp
-                }
-            }
-        }
-
-        return true;
-    }
-
     /**
      * Flushes possible pending Telemetries in the channel. Not required for a continuously-running server application.
      */
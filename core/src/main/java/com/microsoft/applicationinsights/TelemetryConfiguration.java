@@ -29,6 +29,7 @@ import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
 import com.microsoft.applicationinsights.extensibility.TelemetryModule;
 import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.internal.config.TelemetryConfigurationFactory;
+import com.microsoft.applicationinsights.internal.pipeline.TelemetryPipeline;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -48,9 +49,19 @@ public final class TelemetryConfiguration {
     private String instrumentationKey;
 
     private final ArrayList<ContextInitializer> contextInitializers = new   ArrayList<ContextInitializer>();
-    private final ArrayList<TelemetryInitializer> telemetryInitializers = new ArrayList<TelemetryInitializer>();
     private final ArrayList<TelemetryModule> telemetryModules = new ArrayList<TelemetryModule>();
-    private final ArrayList<TelemetryProcessor> telemetryProcessors = new ArrayList<TelemetryProcessor>();
+
+    // Guards both lists below, which compile the pipeline that is run by TelemetryClient.track() whenever they change
+    private final Object componentsLock = new Object();
+    private final ComponentList.Owner componentsOwner = new ComponentList.Owner() {
+        @Override
+        public void componentsChanged() {
+            compilePipeline();
+        }
+    };
+    private final ComponentList<TelemetryInitializer> telemetryInitializers = new ComponentList<TelemetryInitializer>(componentsLock, componentsOwner);
+    private final ComponentList<TelemetryProcessor> telemetryProcessors = new ComponentList<TelemetryProcessor>(componentsLock, componentsOwner);
+    private volatile TelemetryPipeline pipeline = TelemetryPipeline.EMPTY;
 
     private TelemetryChannel channel;
 
@@ -180,6 +191,26 @@ public final class TelemetryConfiguration {
         return telemetryProcessors;
     }
 
+    /**
+     * This method is part of the Application Insights infrastructure. Do not call it directly.
+     *
+     * Replaces the telemetry initializers and processors at once, so that no telemetry is tracked with
+     * the new initializers and the old processors or the other way around.
+     * @param telemetryInitializers The new telemetry initializers.
+     * @param telemetryProcessors The new telemetry processors.
+     */
+    public void replaceTelemetryComponents(List<TelemetryInitializer> telemetryInitializers, List<TelemetryProcessor> telemetryProcessors) {
+        synchronized (componentsLock) {
+            this.telemetryInitializers.replaceWith(telemetryInitializers);
+            this.telemetryProcessors.replaceWith(telemetryProcessors);
+            compilePipeline();
+        }
+    }
+
+    TelemetryPipeline getPipeline() {
+        return pipeline;
+    }
+
     /**
      * Gets or sets the default instrumentation key for the application.
      *
@@ -211,6 +242,12 @@ public final class TelemetryConfiguration {
         instrumentationKey = key;
     }
 
+    private void compilePipeline() {
+        synchronized (componentsLock) {
+            pipeline = TelemetryPipeline.compile(telemetryInitializers, telemetryProcessors);
+        }
+    }
+
     /**
      * Method for tear down in tests
      */
@@ -240,6 +240,8 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
 
     /**
      * Stops on going work
+     *
+     * The buffered telemetries are flushed first so they are sent, or persisted, as part of stopping the transmitter.
      */
     @Override
     public synchronized void stop(long timeout, TimeUnit timeUnit) {
@@ -248,6 +250,7 @@ public abstract class TelemetryChannelBase<T> implements TelemetryChannel {
                 return;
             }
 
+            telemetryBuffer.flush();
             telemetriesTransmitter.stop(timeout, timeUnit);
             stopped = true;
         } catch (ThreadDeath td) {
@@ -53,7 +53,8 @@ final class InProcessTelemetryTransmitterFactory implements TransmitterFactory {
         TransmissionOutput activeFileSystemOutput = new ActiveTransmissionFileSystemOutput(fileSystemSender, stateFetcher);
 
         // The dispatcher works with the two active senders
-        TransmissionDispatcher dispatcher = new NonBlockingDispatcher(new TransmissionOutput[] {networkSender, activeFileSystemOutput});
+        // What is left when stopping is persisted directly by the file system sender
+        TransmissionDispatcher dispatcher = new NonBlockingDispatcher(new TransmissionOutput[] {networkSender, activeFileSystemOutput}, fileSystemSender);
         actualNetworkSender.setTransmissionDispatcher(dispatcher);
         
 
@@ -35,8 +35,11 @@ import com.microsoft.localforwarder.library.inputs.contracts.StackFrame;
 import com.microsoft.localforwarder.library.inputs.contracts.Telemetry;
 import com.microsoft.localforwarder.library.inputs.contracts.Telemetry.Builder;
 
+import java.text.DateFormat;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 final class LocalForwarderModelTransformer {
 
@@ -47,6 +50,17 @@ final class LocalForwarderModelTransformer {
     @VisibleForTesting
     static final int CURRENT_ENVELOPE_VERSION = 1;
 
+    // Data type names are derived from a handful of instrumentation keys and envelope names, no need to rebuild them per item
+    private static final int MAX_CACHED_DATA_TYPE_NAMES = 256;
+    private static final ConcurrentMap<String, String> dataTypeNames = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<DateFormat> dateFormatter = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return LocalStringsUtils.getDateFormatter();
+        }
+    };
+
     @VisibleForTesting
     static final Function<com.microsoft.applicationinsights.internal.schemav2.StackFrame, StackFrame> STACK_FRAME_TRANSFORMER_FUNCTION = new Function<com.microsoft.applicationinsights.internal.schemav2.StackFrame, StackFrame>() {
         @Override
@@ -116,7 +130,7 @@ final class LocalForwarderModelTransformer {
         Preconditions.checkArgument(iKey != null, "The TelemetryContext.InstrumentationKey is null inside "+telemetry.getBaseTypeName());
 
         final Builder tb = Telemetry.newBuilder();
-        if (telemetry.getTimestamp() != null) tb.setDateTime(LocalStringsUtils.getDateFormatter().format(telemetry.getTimestamp()));
+        if (telemetry.getTimestamp() != null) tb.setDateTime(dateFormatter.get().format(telemetry.getTimestamp()));
         if (telemetry.getSequence() != null) tb.setSequenceNumber(telemetry.getSequence());
         if (telemetry instanceof BaseSampleSourceTelemetry) {
             final BaseSampleSourceTelemetry bsst = (BaseSampleSourceTelemetry) telemetry;
@@ -138,7 +152,15 @@ final class LocalForwarderModelTransformer {
 
     @VisibleForTesting
     static String generateDataTypeName(String iKey, String envelopName) {
-        return BaseTelemetry.getTelemetryName(BaseTelemetry.normalizeInstrumentationKey(iKey), envelopName);
+        final String cacheKey = iKey + '|' + envelopName;
+        String name = dataTypeNames.get(cacheKey);
+        if (name == null) {
+            name = BaseTelemetry.getTelemetryName(BaseTelemetry.normalizeInstrumentationKey(iKey), envelopName);
+            if (dataTypeNames.size() < MAX_CACHED_DATA_TYPE_NAMES) {
+                dataTypeNames.put(cacheKey, name);
+            }
+        }
+        return name;
     }
 
     @VisibleForTesting
@@ -211,7 +233,7 @@ final class LocalForwarderModelTransformer {
 
                 String metricName = null;
                 if (t.getCategoryName() != null && t.getCounterName() != null) {
-                    metricName = String.format("%s - %s", t.getCategoryName(), t.getCounterName());
+                    metricName = t.getCategoryName() + " - " + t.getCounterName();
                 } else if (t.getCategoryName() != null) {
                     metricName = t.getCategoryName();
                 } else if (t.getCounterName() != null) {
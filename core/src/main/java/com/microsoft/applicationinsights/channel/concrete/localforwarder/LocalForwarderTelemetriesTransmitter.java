@@ -2,9 +2,13 @@ package com.microsoft.applicationinsights.channel.concrete.localforwarder;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
+import com.microsoft.applicationinsights.internal.channel.common.Transmission;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionFileSystemOutput;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
-import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
 import com.microsoft.localforwarder.library.inputs.contracts.AITelemetryServiceGrpc;
 import com.microsoft.localforwarder.library.inputs.contracts.AITelemetryServiceGrpc.AITelemetryServiceStub;
 import com.microsoft.localforwarder.library.inputs.contracts.AiResponse;
@@ -12,27 +16,68 @@ import com.microsoft.localforwarder.library.inputs.contracts.Telemetry;
 import com.microsoft.localforwarder.library.inputs.contracts.TelemetryBatch;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends telemetry batches to the LocalForwarder over a single long-lived {@code SendTelemetryBatch} stream.
+ *
+ * Batches are written only while gRPC reports the stream as ready. Up to {@link #MAX_PENDING_BATCHES} batches
+ * wait in memory for the stream; the rest, and everything that is pending while the forwarder is unavailable,
+ * is persisted to disk and sent once a stream is ready again. A failed stream is reopened with an exponential back-off.
+ *
+ * The forwarder answers every batch with an {@link AiResponse}. Up to {@link #MAX_UNACKNOWLEDGED_BATCHES} written batches
+ * are kept until they are answered; those that are not answered when the stream fails are persisted with the pending ones.
+ *
+ * Sends and reconnects run on the {@link SdkScheduler}. The stream state is guarded by the instance's monitor.
+ */
 public class LocalForwarderTelemetriesTransmitter implements TelemetriesTransmitter<Telemetry> {
 
-    private ManagedChannel channel;
-    private AITelemetryServiceStub asyncService;
+    @VisibleForTesting
+    static final int MAX_PENDING_BATCHES = 16;
+
+    @VisibleForTesting
+    static final int MAX_UNACKNOWLEDGED_BATCHES = 16;
+
+    @VisibleForTesting
+    static final long MIN_RECONNECT_DELAY_IN_MILLIS = 1000;
+
+    @VisibleForTesting
+    static final long MAX_RECONNECT_DELAY_IN_MILLIS = 60000;
+
+    @VisibleForTesting
+    static final String PROTOBUF_CONTENT_TYPE = "application/x-protobuf";
 
-    private final ScheduledExecutorService executor;
-    private final ExecutorService grpcServiceExecutor;
+    private static final String PROTOBUF_CONTENT_ENCODING = "identity";
 
-    private StreamObserver<AiResponse> responseObserver = new StreamObserver<AiResponse>() {
-        private final LocalForwarderTelemetriesTransmitter thiz = LocalForwarderTelemetriesTransmitter.this;
+    private final ManagedChannel channel;
+    private final AITelemetryServiceStub asyncService;
+
+    private final TaskGroup tasks;
+    private final TaskGroup grpcTasks;
+    private final TransmissionFileSystemOutput spillOutput;
+
+    // The following are guarded by the instance's monitor
+    private final ArrayDeque<TelemetryBatch> pendingBatches = new ArrayDeque<TelemetryBatch>();
+    private final ArrayDeque<TelemetryBatch> unacknowledgedBatches = new ArrayDeque<TelemetryBatch>();
+    private BatchStream currentStream;
+    private boolean reconnectScheduled;
+    private long reconnectDelayInMillis = MIN_RECONNECT_DELAY_IN_MILLIS;
+    private boolean mayHaveSpilledBatches = true;
+
+    private volatile boolean stopped;
+
+    private volatile StreamObserver<AiResponse> responseObserver = new StreamObserver<AiResponse>() {
         @Override
         public void onNext(AiResponse value) {
             trace("Response received: %s", value.toString());
@@ -40,31 +85,51 @@ public class LocalForwarderTelemetriesTransmitter implements TelemetriesTransmit
 
         @Override
         public void onError(Throwable t) {
-            error("Error encountered:%n%s", ExceptionUtils.getStackTrace(t));
+            trace("Stream error: %s", t.toString());
         }
 
         @Override
         public void onCompleted() {
-            trace("Send completed.");
+            trace("Stream completed.");
         }
     };
 
     @VisibleForTesting
     LocalForwarderTelemetriesTransmitter(ManagedChannelBuilder channelBuilder, boolean createDefaultGrpcExecutor, int instanceId) {
+        this(channelBuilder, createDefaultGrpcExecutor, instanceId, null);
+    }
+
+    /**
+     * @param spillOutput Where batches are persisted while the forwarder cannot take them, may be null in which case they are dropped.
+     */
+    LocalForwarderTelemetriesTransmitter(ManagedChannelBuilder channelBuilder, boolean createDefaultGrpcExecutor, int instanceId, TransmissionFileSystemOutput spillOutput) {
         Preconditions.checkNotNull(channelBuilder, "channelBuilder");
 
+        String name = String.format("%s_%d", LocalForwarderTelemetriesTransmitter.class.getSimpleName(), instanceId);
         if (createDefaultGrpcExecutor) {
-            this.grpcServiceExecutor = new ThreadPoolExecutor(1, 10, 30, TimeUnit.SECONDS, new LinkedBlockingDeque<Runnable>(),
-                    ThreadPoolUtils.createDaemonThreadFactory(LocalForwarderTelemetriesTransmitter.class, String.format("%d-grpcPool", instanceId)));
-            channelBuilder.executor(this.grpcServiceExecutor);
+            // gRPC serializes the callbacks of every call on top of the executor, so they can share the I/O pool
+            this.grpcTasks = SdkScheduler.INSTANCE.createIoTaskGroup(name + "-grpc", false);
+            channelBuilder.executor(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    if (!grpcTasks.execute("callback", command)) {
+                        throw new RejectedExecutionException("The LocalForwarder transmitter is stopped");
+                    }
+                }
+            });
         } else {
-            this.grpcServiceExecutor = null;
+            this.grpcTasks = null;
         }
-        this.executor = Executors.newScheduledThreadPool(1, ThreadPoolUtils.createDaemonThreadFactory(LocalForwarderTelemetriesTransmitter.class, instanceId));
+        this.spillOutput = spillOutput;
+        // Scheduled sends that are still pending on stop are run, their batches are written or persisted
+        this.tasks = SdkScheduler.INSTANCE.createIoTaskGroup(name, true);
         this.channel = channelBuilder.build();
         this.asyncService = AITelemetryServiceGrpc.newStub(channel);
     }
 
+    /**
+     * Sets an observer that is notified of every response and of the end of every stream.
+     */
     @VisibleForTesting
     void setResponseObserver(StreamObserver<AiResponse> responseObserver) {
         this.responseObserver = responseObserver;
@@ -72,80 +137,82 @@ public class LocalForwarderTelemetriesTransmitter implements TelemetriesTransmit
 
     @Override
     public boolean scheduleSend(final TelemetriesFetcher<Telemetry> telemetriesFetcher, long value, TimeUnit timeUnit) {
-        final Collection<Telemetry> telemetries = telemetriesFetcher.fetch();
         try {
-            this.executor.schedule(getSenderRunnable(telemetries), value, timeUnit);
-            return true;
+            boolean scheduled = tasks.schedule("scheduledSend", new Runnable() {
+                @Override
+                public void run() {
+                    enqueue(telemetriesFetcher.fetch());
+                }
+            }, value, timeUnit);
+            if (!scheduled) {
+                error("scheduledSend was rejected, the transmitter is stopped");
+            }
+            return scheduled;
         } catch (Exception e) {
-            error("Error in scheduledSend. %d items not sent", telemetries.size());
+            error("Error in scheduledSend: %s", e.toString());
         }
         return false;
     }
 
-    private Runnable getSenderRunnable(final Collection<Telemetry> telemetries) {
-        return new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    StreamObserver<TelemetryBatch> requestObserver = asyncService.sendTelemetryBatch(responseObserver);
-                    try {
-                        requestObserver.onNext(TelemetryBatch.newBuilder().addAllItems(telemetries).build());
-                        requestObserver.onCompleted();
-                    } catch (ThreadDeath td) {
-                        throw td;
-                    } catch (Throwable t) {
-                        requestObserver.onError(t);
-                    }
-                } catch (ThreadDeath td) {
-                    throw td;
-                } catch (Throwable t) {
-                    error("Exception issuing sendTelemetryBatch:%n%s", ExceptionUtils.getStackTrace(t));
-                }
-            }
-        };
-    }
-
     @Override
-    public boolean sendNow(Collection<Telemetry> telemetries) {
+    public boolean sendNow(final Collection<Telemetry> telemetries) {
         try {
-            this.executor.execute(getSenderRunnable(telemetries));
-            return true;
+            boolean accepted = tasks.execute("sendNow", new Runnable() {
+                @Override
+                public void run() {
+                    enqueue(telemetries);
+                }
+            });
+            if (!accepted) {
+                error("sendNow was rejected. %d items not sent", telemetries.size());
+            }
+            return accepted;
         } catch (Exception e) {
-            error("Exception from executor: ", ExceptionUtils.getStackTrace(e));
+            error("Exception from executor: %s. %d items not sent", ExceptionUtils.getStackTrace(e), telemetries.size());
         }
         return false;
     }
 
     @Override
     public void stop(long timeout, TimeUnit timeUnit) {
-        executor.shutdown();
-        if (grpcServiceExecutor != null) {
-            grpcServiceExecutor.shutdown();
-        }
-        channel.shutdown();
-        try {
-            if (!executor.awaitTermination(timeout, timeUnit)) {
-                warn("executor did not terminate. Attempting forced shutdown.");
-                executor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            executor.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-        if (grpcServiceExecutor != null) {
+        final long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        stopped = true;
+
+        // Runs the scheduled sends that are still pending and waits for the running ones
+        tasks.stop(remainingNanos(deadline) / 2, TimeUnit.NANOSECONDS);
+
+        synchronized (this) {
+            closeStream();
+            // The forwarder answers the batches that are still on their way and then completes the stream
+            long streamDeadline = System.nanoTime() + remainingNanos(deadline) / 2;
             try {
-                if (!grpcServiceExecutor.awaitTermination(timeout, timeUnit)) {
-                    warn("grpcServiceExecutor did not terminate. Attempting forced shutdown.");
-                    grpcServiceExecutor.shutdownNow();
+                while (currentStream != null) {
+                    long remaining = remainingNanos(streamDeadline);
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
                 }
             } catch (InterruptedException e) {
-                grpcServiceExecutor.shutdownNow();
                 Thread.currentThread().interrupt();
             }
+            if (currentStream != null) {
+                warn("Stream did not complete before the stop timeout, %d batches are persisted", unacknowledgedBatches.size());
+                BatchStream stream = currentStream;
+                onStreamClosed(stream, null);
+                try {
+                    stream.requestStream.cancel("The transmitter is stopped", null);
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t) {
+                    // chomp
+                }
+            }
         }
 
+        channel.shutdown();
         try {
-            if (!channel.awaitTermination(timeout, timeUnit)) {
+            if (!channel.awaitTermination(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
                 warn("grpcChannel did not terminate. Attempting forced shutdown.");
                 channel.shutdownNow();
             }
@@ -153,6 +220,262 @@ public class LocalForwarderTelemetriesTransmitter implements TelemetriesTransmit
             channel.shutdownNow();
             Thread.currentThread().interrupt();
         }
+
+        if (grpcTasks != null) {
+            grpcTasks.stop(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void enqueue(Collection<Telemetry> telemetries) {
+        if (telemetries == null || telemetries.isEmpty()) {
+            return;
+        }
+        try {
+            pendingBatches.add(TelemetryBatch.newBuilder().addAllItems(telemetries).build());
+            if (currentStream == null && (stopped || reconnectScheduled)) {
+                // The forwarder is not available, don't hold the batch in memory until it is
+                spillPendingBatches();
+                return;
+            }
+            while (pendingBatches.size() > MAX_PENDING_BATCHES) {
+                spill(pendingBatches.poll());
+            }
+            drain();
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                error("Exception while sending batch:%n%s", ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+    }
+
+    /**
+     * Writes pending batches, and then batches that were persisted, as long as the stream can take them without buffering
+     * and the forwarder keeps up with answering them.
+     */
+    private void drain() {
+        if (currentStream == null) {
+            if (reconnectScheduled || stopped) {
+                return;
+            }
+            connect();
+            if (currentStream == null) {
+                return;
+            }
+        }
+
+        BatchStream stream = currentStream;
+        ClientCallStreamObserver<TelemetryBatch> requestStream = stream.requestStream;
+        while (requestStream.isReady() && unacknowledgedBatches.size() < MAX_UNACKNOWLEDGED_BATCHES) {
+            TelemetryBatch batch = pendingBatches.poll();
+            if (batch == null) {
+                batch = loadSpilledBatch();
+                if (batch == null) {
+                    return;
+                }
+            }
+            // Added before it is written, the answer may arrive on this thread
+            unacknowledgedBatches.add(batch);
+            try {
+                requestStream.onNext(batch);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                requestStream.onError(t);
+                onStreamClosed(stream, t);
+                return;
+            }
+            if (stream != currentStream) {
+                // The stream was closed by a callback that ran while writing
+                return;
+            }
+        }
+    }
+
+    private void connect() {
+        BatchStream stream = new BatchStream();
+        currentStream = stream;
+        try {
+            asyncService.sendTelemetryBatch(stream);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            onStreamClosed(stream, t);
+        }
+    }
+
+    private synchronized void onStreamClosed(BatchStream stream, Throwable t) {
+        if (stream != currentStream) {
+            return;
+        }
+        currentStream = null;
+        notifyAll();
+
+        // The forwarder might not have received the batches it did not answer, they are sent again
+        TelemetryBatch batch;
+        while ((batch = unacknowledgedBatches.pollLast()) != null) {
+            pendingBatches.addFirst(batch);
+        }
+        spillPendingBatches();
+        if (stopped) {
+            return;
+        }
+
+        if (reconnectDelayInMillis == MIN_RECONNECT_DELAY_IN_MILLIS) {
+            if (t != null) {
+                warn("Stream to the forwarder failed, will reconnect in %d ms: %s", reconnectDelayInMillis, t.toString());
+            } else {
+                trace("Stream was completed by the forwarder, will reconnect in %d ms", reconnectDelayInMillis);
+            }
+        } else {
+            trace("Stream to the forwarder closed, will reconnect in %d ms: %s", reconnectDelayInMillis, String.valueOf(t));
+        }
+
+        reconnectScheduled = tasks.schedule("reconnect", new Runnable() {
+            @Override
+            public void run() {
+                synchronized (LocalForwarderTelemetriesTransmitter.this) {
+                    reconnectScheduled = false;
+                    drain();
+                }
+            }
+        }, reconnectDelayInMillis, TimeUnit.MILLISECONDS);
+        reconnectDelayInMillis = Math.min(reconnectDelayInMillis * 2, MAX_RECONNECT_DELAY_IN_MILLIS);
+    }
+
+    private synchronized void onStreamReady(BatchStream stream) {
+        if (stream != currentStream) {
+            return;
+        }
+        if (reconnectDelayInMillis != MIN_RECONNECT_DELAY_IN_MILLIS) {
+            trace("Stream to the forwarder is ready again");
+            reconnectDelayInMillis = MIN_RECONNECT_DELAY_IN_MILLIS;
+            mayHaveSpilledBatches = true;
+        }
+        drain();
+    }
+
+    private synchronized void onBatchAcknowledged(BatchStream stream) {
+        if (stream != currentStream) {
+            return;
+        }
+        unacknowledgedBatches.poll();
+        drain();
+    }
+
+    /**
+     * Writes what the stream can take, persists the rest and half-closes the stream, which stays current
+     * until the forwarder completes it so that the last batches can still be answered.
+     */
+    private void closeStream() {
+        drain();
+        spillPendingBatches();
+        BatchStream stream = currentStream;
+        if (stream != null) {
+            try {
+                stream.requestStream.onCompleted();
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                onStreamClosed(stream, t);
+            }
+        }
+    }
+
+    private void spillPendingBatches() {
+        if (pendingBatches.isEmpty()) {
+            return;
+        }
+        if (spillOutput == null) {
+            warn("%d batches were dropped, the forwarder is not available", pendingBatches.size());
+            pendingBatches.clear();
+            return;
+        }
+        List<Transmission> transmissions = new ArrayList<Transmission>(pendingBatches.size());
+        for (TelemetryBatch batch : pendingBatches) {
+            transmissions.add(new Transmission(batch.toByteArray(), PROTOBUF_CONTENT_TYPE, PROTOBUF_CONTENT_ENCODING));
+        }
+        pendingBatches.clear();
+        if (spillOutput.sendAll(transmissions)) {
+            mayHaveSpilledBatches = true;
+        } else {
+            warn("%d batches were dropped, they could not be persisted", transmissions.size());
+        }
+    }
+
+    private void spill(TelemetryBatch batch) {
+        if (spillOutput != null && spillOutput.send(new Transmission(batch.toByteArray(), PROTOBUF_CONTENT_TYPE, PROTOBUF_CONTENT_ENCODING))) {
+            mayHaveSpilledBatches = true;
+        } else {
+            warn("A batch of %d items was dropped, the forwarder is not keeping up", batch.getItemsCount());
+        }
+    }
+
+    private TelemetryBatch loadSpilledBatch() {
+        if (spillOutput == null || !mayHaveSpilledBatches) {
+            return null;
+        }
+        while (true) {
+            Transmission transmission = spillOutput.fetchOldestFile();
+            if (transmission == null) {
+                mayHaveSpilledBatches = false;
+                return null;
+            }
+            if (!PROTOBUF_CONTENT_TYPE.equals(transmission.getWebContentType())) {
+                warn("Skipping persisted transmission of type '%s'", transmission.getWebContentType());
+                continue;
+            }
+            try {
+                return TelemetryBatch.parseFrom(transmission.getContent());
+            } catch (InvalidProtocolBufferException e) {
+                error("Failed to parse persisted batch: %s", e.toString());
+            }
+        }
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * One call of {@code SendTelemetryBatch}. Its callbacks run on the gRPC executor.
+     */
+    private final class BatchStream implements ClientResponseObserver<TelemetryBatch, AiResponse> {
+        private ClientCallStreamObserver<TelemetryBatch> requestStream;
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<TelemetryBatch> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.setOnReadyHandler(new Runnable() {
+                @Override
+                public void run() {
+                    onStreamReady(BatchStream.this);
+                }
+            });
+        }
+
+        @Override
+        public void onNext(AiResponse value) {
+            onBatchAcknowledged(this);
+            responseObserver.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            onStreamClosed(this, t);
+            responseObserver.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            onStreamClosed(this, null);
+            responseObserver.onCompleted();
+        }
     }
 
     private void error(String format, Object... args) {
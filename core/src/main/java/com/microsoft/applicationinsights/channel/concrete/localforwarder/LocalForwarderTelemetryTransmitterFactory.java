@@ -4,18 +4,43 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter;
 import com.microsoft.applicationinsights.internal.channel.TransmitterFactory;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionFileSystemOutput;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.util.LocalFileSystemUtils;
 import com.microsoft.localforwarder.library.inputs.contracts.Telemetry;
 import io.grpc.ManagedChannelBuilder;
 
+import java.io.File;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public final class LocalForwarderTelemetryTransmitterFactory implements TransmitterFactory<Telemetry> {
     private static final AtomicInteger INSTANCE_ID_POOL = new AtomicInteger(0);
 
+    // Kept apart from the folder of the in-process channel, whose files hold JSON
+    private static final String SPILL_FOLDER_NAME = "localforwarder-transmissions";
+
     @Override
     public TelemetriesTransmitter<Telemetry> create(String endpoint, String maxTransmissionStorageCapacity, boolean throttlingIsEnabled, int maxInstantRetries) {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(endpoint), "a non-empty endpoint must be specified");
-        return new LocalForwarderTelemetriesTransmitter(ManagedChannelBuilder.forTarget(endpoint).usePlaintext().enableRetry(), true, INSTANCE_ID_POOL.getAndIncrement());
+        return new LocalForwarderTelemetriesTransmitter(ManagedChannelBuilder.forTarget(endpoint).usePlaintext().enableRetry(), true,
+                INSTANCE_ID_POOL.getAndIncrement(), createSpillOutput(maxTransmissionStorageCapacity));
     }
 
+    private static TransmissionFileSystemOutput createSpillOutput(String maxTransmissionStorageCapacity) {
+        try {
+            File folder = new File(LocalFileSystemUtils.getTempDir(), SPILL_FOLDER_NAME);
+            return new TransmissionFileSystemOutput(folder.getPath(), maxTransmissionStorageCapacity);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.warn("LocalForwarder: telemetry will not be persisted while the forwarder is unavailable: %s", t.toString());
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+        return null;
+    }
 }
@@ -22,8 +22,10 @@
 package com.microsoft.applicationinsights.extensibility.initializer.docker;
 
 import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.extensibility.ContextInitializer;
 import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
 import com.microsoft.applicationinsights.extensibility.initializer.docker.internal.Constants;
+import com.microsoft.applicationinsights.extensibility.initializer.docker.internal.ContainerIdentity;
 import com.microsoft.applicationinsights.extensibility.initializer.docker.internal.DockerContext;
 import com.microsoft.applicationinsights.extensibility.initializer.docker.internal.DockerContextPoller;
 import com.microsoft.applicationinsights.extensibility.initializer.docker.internal.FileFactory;
@@ -32,6 +34,7 @@ import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
 import com.microsoft.applicationinsights.telemetry.TelemetryContext;
 import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
 // Created by yonisha on 7/29/2015.
@@ -44,28 +47,48 @@ import java.util.concurrent.ConcurrentMap;
  *      telemetries with Docker context.
  *  2) Write SDK context file which enables the Application Insights for Docker container to discover containers with
  *      integrated SDK, and stop sending performance counters in that case (SDK provides OOB performance counters).
+ *
+ * In addition, the identity of the container (see {@link ContainerIdentity}) is resolved once, when the initializer
+ * is created. When the initializer is also configured as a context initializer, the identity is set on the context
+ * of each {@link com.microsoft.applicationinsights.TelemetryClient}, which all its telemetry items share, rather
+ * than on every item.
  */
-public class DockerContextInitializer implements TelemetryInitializer {
+public class DockerContextInitializer implements TelemetryInitializer, ContextInitializer {
 
     private FileFactory fileFactory;
     private DockerContextPoller dockerContextPoller;
+    private final Map<String, String> containerProperties;
     private boolean sdkInfoFileWritten = false;
 
-    protected DockerContextInitializer(FileFactory fileFactory, DockerContextPoller dockerContextPoller) {
+    protected DockerContextInitializer(FileFactory fileFactory, DockerContextPoller dockerContextPoller, ContainerIdentity containerIdentity) {
         this.fileFactory = fileFactory;
         this.dockerContextPoller = dockerContextPoller;
+        this.containerProperties = containerIdentity.getProperties();
         this.dockerContextPoller.start();
     }
 
+    protected DockerContextInitializer(FileFactory fileFactory, DockerContextPoller dockerContextPoller) {
+        this(fileFactory, dockerContextPoller, ContainerIdentity.resolve());
+    }
+
     /**
      * Constructs new @DockerContextInitializer.
-     * The constructor start a dedicated thread that periodically checks if a context file exists, and if so, updates
-     * the docker context.
+     * The constructor resolves the container identity, and starts waiting for the context file on the SDK scheduler
+     * if it does not exist yet.
      */
     public DockerContextInitializer() {
         this(new FileFactory(), new DockerContextPoller(Constants.AI_SDK_DIRECTORY));
     }
 
+    /**
+     * Initialize the given context with the container identity.
+     * @param context A client's context to initialize.
+     */
+    @Override
+    public void initialize(TelemetryContext context) {
+        context.getProperties().putAll(containerProperties);
+    }
+
     /**
      * Initialize the given telemetry with the Docker context.
      * @param telemetry A Telemetry to initialize.
@@ -83,6 +106,14 @@ public class DockerContextInitializer implements TelemetryInitializer {
             }
         }
 
+        if (!containerProperties.isEmpty()) {
+            // Only written if the client's context, which the telemetry reads through, does not have them yet
+            ConcurrentMap<String, String> properties = telemetry.getContext().getProperties();
+            for (Map.Entry<String, String> entry : containerProperties.entrySet()) {
+                properties.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
         if (dockerContextPoller.isCompleted() && (dockerContext = dockerContextPoller.getDockerContext()) != null) {
             TelemetryContext context = telemetry.getContext();
 
@@ -34,4 +34,12 @@ public class Constants {
     public static final String DOCKER_IMAGE_PROPERTY_KEY = "Docker image";
     public static final String DOCKER_CONTAINER_NAME_PROPERTY_KEY = "Docker container name";
     public static final String DOCKER_CONTAINER_ID_PROPERTY_KEY = "Docker container id";
+    public static final String CONTAINER_HOST_NAME_PROPERTY_KEY = "Container host name";
+    public static final String KUBERNETES_POD_PROPERTY_KEY = "Kubernetes pod";
+    public static final String KUBERNETES_NAMESPACE_PROPERTY_KEY = "Kubernetes namespace";
+
+    public static final String PROC_SELF_CGROUP_FILE = "/proc/self/cgroup";
+    public static final String PROC_SELF_MOUNTINFO_FILE = "/proc/self/mountinfo";
+    public static final String KUBERNETES_DOWNWARD_API_DIRECTORY = "/etc/podinfo";
+    public static final String KUBERNETES_SERVICE_ACCOUNT_NAMESPACE_FILE = "/var/run/secrets/kubernetes.io/serviceaccount/namespace";
 }
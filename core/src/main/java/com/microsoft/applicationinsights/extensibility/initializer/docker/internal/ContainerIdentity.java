@@ -0,0 +1,154 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.extensibility.initializer.docker.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
+
+/**
+ * The identity of the container the application runs in, read once from the files the container runtime and
+ * Kubernetes provide:
+ * <ul>
+ *     <li>The container id, from the cgroup of the process or, with cgroup v2, from its mounts</li>
+ *     <li>The host name, which is the container's or the pod's name</li>
+ *     <li>The Kubernetes pod and namespace, from the 'name' and 'namespace' files of a downward API volume
+ *     mounted at {@link Constants#KUBERNETES_DOWNWARD_API_DIRECTORY}, or else from the host name and the
+ *     service account's namespace file</li>
+ * </ul>
+ */
+public final class ContainerIdentity {
+    private static final Pattern CGROUP_CONTAINER_ID = Pattern.compile("([0-9a-f]{64})");
+    private static final Pattern MOUNTINFO_CONTAINER_ID = Pattern.compile("/containers/([0-9a-f]{64})/");
+
+    private final Map<String, String> properties;
+
+    private ContainerIdentity(Map<String, String> properties) {
+        this.properties = Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * @return The identity of the container this process runs in.
+     */
+    public static ContainerIdentity resolve() {
+        return resolve(new File(Constants.PROC_SELF_CGROUP_FILE),
+                new File(Constants.PROC_SELF_MOUNTINFO_FILE),
+                new File(Constants.KUBERNETES_DOWNWARD_API_DIRECTORY),
+                new File(Constants.KUBERNETES_SERVICE_ACCOUNT_NAMESPACE_FILE),
+                System.getenv());
+    }
+
+    static ContainerIdentity resolve(File cgroupFile, File mountInfoFile, File downwardApiDirectory,
+                                     File serviceAccountNamespaceFile, Map<String, String> environment) {
+        Map<String, String> properties = new HashMap<String, String>();
+
+        String containerId = findFirst(cgroupFile, CGROUP_CONTAINER_ID);
+        if (containerId == null) {
+            containerId = findFirst(mountInfoFile, MOUNTINFO_CONTAINER_ID);
+        }
+        String hostName = environment.get("HOSTNAME");
+
+        String podName = readFirstLine(new File(downwardApiDirectory, "name"));
+        String namespace = readFirstLine(new File(downwardApiDirectory, "namespace"));
+        if (namespace == null) {
+            namespace = readFirstLine(serviceAccountNamespaceFile);
+        }
+        if (podName == null && namespace != null) {
+            // A pod's host name is its name unless the pod spec overrides it
+            podName = hostName;
+        }
+
+        put(properties, Constants.DOCKER_CONTAINER_ID_PROPERTY_KEY, containerId);
+        if (containerId != null || namespace != null) {
+            put(properties, Constants.CONTAINER_HOST_NAME_PROPERTY_KEY, hostName);
+        }
+        put(properties, Constants.KUBERNETES_POD_PROPERTY_KEY, podName);
+        put(properties, Constants.KUBERNETES_NAMESPACE_PROPERTY_KEY, namespace);
+
+        return new ContainerIdentity(properties);
+    }
+
+    /**
+     * @return True if the process runs in a container.
+     */
+    public boolean isContainer() {
+        return !properties.isEmpty();
+    }
+
+    public String getContainerId() {
+        return properties.get(Constants.DOCKER_CONTAINER_ID_PROPERTY_KEY);
+    }
+
+    /**
+     * @return The identity as telemetry properties, empty if the process does not run in a container.
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    private static void put(Map<String, String> properties, String key, String value) {
+        if (!LocalStringsUtils.isNullOrEmpty(value)) {
+            properties.put(key, value);
+        }
+    }
+
+    private static String findFirst(File file, Pattern pattern) {
+        for (String line : readLines(file)) {
+            Matcher matcher = pattern.matcher(line);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    private static String readFirstLine(File file) {
+        List<String> lines = readLines(file);
+        if (lines.isEmpty()) {
+            return null;
+        }
+        String line = lines.get(0).trim();
+        return line.isEmpty() ? null : line;
+    }
+
+    private static List<String> readLines(File file) {
+        if (!file.isFile()) {
+            return Collections.emptyList();
+        }
+        try {
+            return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.trace("Failed to read '%s': %s", file, e.toString());
+            return Collections.emptyList();
+        }
+    }
+}
@@ -22,18 +22,40 @@
 package com.microsoft.applicationinsights.extensibility.initializer.docker.internal;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 /**
  * Created by yonisha on 7/29/2015.
+ *
+ * Waits for the Docker context file without a thread of its own.
+ *
+ * The file is read right away if it exists. Otherwise a task on the {@link SdkScheduler} checks for it
+ * periodically. Once the file's folder exists, it is registered with a {@link WatchService} and the task only
+ * reads the file after the folder reported a change to it.
  */
-public class DockerContextPoller extends Thread {
+public class DockerContextPoller {
     private static final String CONTEXT_FILE_NAME = "docker.info";
-    private File contextFile;
-    private DockerContextFactory dockerContextFactory;
+    protected static final long POLLING_INTERVAL_IN_SECONDS = 2;
+
+    private final File contextFile;
+    private final DockerContextFactory dockerContextFactory;
     private volatile DockerContext dockerContext;
-    protected int THREAD_POLLING_INTERVAL_MS = 2 * 1000; // 2 Seconds.
+    private volatile boolean completed;
+
+    private TaskGroup tasks;
+    private WatchService watchService;
 
     protected DockerContextPoller(File contextFile, DockerContextFactory dockerContextFactory) {
         this.contextFile = contextFile;
@@ -42,28 +64,41 @@ public class DockerContextPoller extends Thread {
 
     public DockerContextPoller(String contextFileDirectory) {
         this(new File(contextFileDirectory + "/" + CONTEXT_FILE_NAME), new DockerContextFactory());
-        this.setDaemon(true);
-        this.setName(DockerContextPoller.class.getSimpleName());
     }
 
-    @Override
-    public void run() {
-        InternalLogger.INSTANCE.info("Starting to poll for Docker context file under: %s", this.contextFile.getAbsolutePath());
-
-        boolean fileExists = false;
-        while (!fileExists){
-            fileExists = contextFile.exists();
-
-            if (!fileExists) {
-                try {
-                    Thread.sleep(THREAD_POLLING_INTERVAL_MS);
+    /**
+     * Reads the context file if it exists, or else starts waiting for it.
+     */
+    public synchronized void start() {
+        if (completed || tasks != null) {
+            return;
+        }
+        if (poll()) {
+            return;
+        }
 
-                    continue;
-                } catch (InterruptedException e) {
-                    InternalLogger.INSTANCE.error("Error while executing docker context poller");
-                    InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
+        InternalLogger.INSTANCE.info("Waiting for Docker context file under: %s", this.contextFile.getAbsolutePath());
+        tasks = SdkScheduler.INSTANCE.createIoTaskGroup(DockerContextPoller.class.getSimpleName(), false);
+        tasks.scheduleAtFixedRate("poll", new Runnable() {
+            @Override
+            public void run() {
+                if (poll()) {
+                    stop();
                 }
             }
+        }, POLLING_INTERVAL_IN_SECONDS, POLLING_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Checks for the context file once, and reads it if it is there.
+     * @return True if the poller is done, whether the context file could be parsed or not.
+     */
+    boolean poll() {
+        if (completed) {
+            return true;
+        }
+        if (!contextFileMayExist()) {
+            return false;
         }
 
         try {
@@ -76,13 +111,71 @@ public class DockerContextPoller extends Thread {
         }
 
         InternalLogger.INSTANCE.info("Docker context poller finished polling for context file.");
+        completed = true;
+        return true;
     }
 
     public boolean isCompleted() {
-        return !this.isAlive();
+        return completed;
     }
 
     public DockerContext getDockerContext() {
         return this.dockerContext;
     }
-}
\ No newline at end of file
+
+    private boolean contextFileMayExist() {
+        if (watchService == null) {
+            watchFolder();
+            return contextFile.exists();
+        }
+
+        boolean changed = false;
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || contextFile.getName().equals(String.valueOf(event.context()))) {
+                    changed = true;
+                }
+            }
+            if (!key.reset()) {
+                // The folder is gone, go back to checking for the file until the folder is back
+                closeWatchService();
+                return contextFile.exists();
+            }
+        }
+        return changed && contextFile.exists();
+    }
+
+    private void watchFolder() {
+        File folder = contextFile.getParentFile();
+        if (folder == null || !folder.isDirectory()) {
+            return;
+        }
+        try {
+            WatchService newWatchService = FileSystems.getDefault().newWatchService();
+            Path folderPath = folder.toPath();
+            folderPath.register(newWatchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = newWatchService;
+        } catch (IOException | UnsupportedOperationException e) {
+            InternalLogger.INSTANCE.trace("Cannot watch folder '%s', checking for the Docker context file instead: %s", folder, e.toString());
+        }
+    }
+
+    private synchronized void stop() {
+        closeWatchService();
+        if (tasks != null) {
+            tasks.stop(0, TimeUnit.SECONDS);
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // chomp
+            }
+            watchService = null;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+
+import java.lang.reflect.Method;
+import java.sql.SQLTransientConnectionException;
+import java.util.NoSuchElementException;
+
+/**
+ * Aggregates the time threads wait to borrow a connection from a JDBC connection pool into interval summaries
+ * per pool.
+ *
+ * Every interval a {@link MetricTelemetry} named {@link #WAIT_TIME_METRIC_NAME} is sent per pool with the count,
+ * sum, min, max and standard deviation of the waits in milliseconds and, as properties, their 50th, 95th and 99th
+ * percentiles. The number of waits that timed out, and the active and idle connections of the pool at the end of
+ * the interval, are sent as metrics of their own. Pools with no waits in an interval are forgotten.
+ *
+ * The active and idle counts are read with reflection from HikariCP, Apache DBCP2 and Tomcat JDBC pools.
+ */
+final class ConnectionPoolAggregator extends IntervalAggregator<Object, ConnectionPoolAggregator.PoolHistogram> {
+    static final String WAIT_TIME_METRIC_NAME = "Connection pool wait time";
+    static final String TIMEOUTS_METRIC_NAME = "Connection pool timeouts";
+    static final String ACTIVE_CONNECTIONS_METRIC_NAME = "Connection pool active connections";
+    static final String IDLE_CONNECTIONS_METRIC_NAME = "Connection pool idle connections";
+
+    // Bounds the memory used by aggregates; waits on pools beyond that are reported one by one
+    static final int MAX_NUMBER_OF_POOLS = 100;
+
+    private static final long NANOS_IN_MILLI = 1000000L;
+
+    private final long slowThresholdInNS;
+
+    ConnectionPoolAggregator(TelemetryClient telemetryClient, long slowThresholdInMS, long intervalInSeconds) {
+        super(telemetryClient, "JDBC connection pools", MAX_NUMBER_OF_POOLS, intervalInSeconds);
+        this.slowThresholdInNS = slowThresholdInMS * NANOS_IN_MILLI;
+    }
+
+    /**
+     * Adds the wait to the summary of its pool.
+     *
+     * @param dataSource The pooling data source the connection was borrowed from.
+     * @param throwable The exception that ended the wait, or null if a connection was borrowed.
+     * @return True if the wait should also be reported on its own: it failed, was slow or could not be aggregated.
+     */
+    boolean record(Object dataSource, long waitInNS, Throwable throwable) {
+        if (!record(dataSource, waitInNS, isTimeout(throwable))) {
+            return true;
+        }
+        return throwable != null || waitInNS >= slowThresholdInNS;
+    }
+
+    @Override
+    PoolHistogram createHistogram(Object dataSource) {
+        return new PoolHistogram(dataSource);
+    }
+
+    @Override
+    void send(Object dataSource, PoolHistogram histogram, IntervalHistogram.Snapshot snapshot) {
+        MetricTelemetry waitTime = snapshot.createMetricTelemetry(WAIT_TIME_METRIC_NAME);
+        histogram.addPoolProperties(waitTime);
+        telemetryClient.track(waitTime);
+        telemetryClient.track(histogram.createMetric(TIMEOUTS_METRIC_NAME, snapshot.getFlaggedCount()));
+
+        // The pool is queried outside the lock of the histogram so that waits are not held up by it
+        Number active = histogram.gauges.getActive();
+        if (active != null) {
+            telemetryClient.track(histogram.createMetric(ACTIVE_CONNECTIONS_METRIC_NAME, active.doubleValue()));
+        }
+        Number idle = histogram.gauges.getIdle();
+        if (idle != null) {
+            telemetryClient.track(histogram.createMetric(IDLE_CONNECTIONS_METRIC_NAME, idle.doubleValue()));
+        }
+    }
+
+    /**
+     * @return True if the exception means no connection became available in time.
+     */
+    static boolean isTimeout(Throwable throwable) {
+        if (throwable == null) {
+            return false;
+        }
+        // HikariCP
+        if (throwable instanceof SQLTransientConnectionException) {
+            return true;
+        }
+        // Tomcat JDBC
+        if ("PoolExhaustedException".equals(throwable.getClass().getSimpleName())) {
+            return true;
+        }
+        // Apache DBCP2 wraps the exception of its commons-pool2 object pool
+        return throwable.getCause() instanceof NoSuchElementException;
+    }
+
+    static String getPoolName(Object dataSource) {
+        for (String getter : new String[] {"getPoolName", "getUrl"}) {
+            Object name = invoke(findMethod(dataSource.getClass(), getter), dataSource);
+            if (name != null) {
+                return name.toString();
+            }
+        }
+        return dataSource.getClass().getSimpleName();
+    }
+
+    static String getPoolType(Object dataSource) {
+        String className = dataSource.getClass().getName();
+        if (className.startsWith("com.zaxxer.hikari.")) {
+            return "HikariCP";
+        }
+        if (className.startsWith("org.apache.commons.dbcp2.")) {
+            return "DBCP2";
+        }
+        if (className.startsWith("org.apache.tomcat.jdbc.")) {
+            return "Tomcat JDBC";
+        }
+        return className;
+    }
+
+    private static Method findMethod(Class<?> clazz, String name) {
+        try {
+            Method method = clazz.getMethod(name);
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Method method, Object target) {
+        if (method == null || target == null) {
+            return null;
+        }
+        try {
+            return method.invoke(target);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the active and idle connections of a pool, with the getters looked up once.
+     */
+    static final class PoolGauges {
+        private final Object dataSource;
+        // HikariCP keeps the counts on the MXBean of its pool, the other pools on the data source
+        private final Method poolGetter;
+        private Method activeGetter;
+        private Method idleGetter;
+
+        PoolGauges(Object dataSource) {
+            this.dataSource = dataSource;
+            this.poolGetter = findMethod(dataSource.getClass(), "getHikariPoolMXBean");
+            if (poolGetter == null) {
+                activeGetter = findMethod(dataSource.getClass(), "getNumActive");
+                idleGetter = findMethod(dataSource.getClass(), "getNumIdle");
+            }
+        }
+
+        Number getActive() {
+            return read(true);
+        }
+
+        Number getIdle() {
+            return read(false);
+        }
+
+        private Number read(boolean active) {
+            Object target = dataSource;
+            if (poolGetter != null) {
+                // The MXBean only exists once the pool has started
+                target = invoke(poolGetter, dataSource);
+                if (target == null) {
+                    return null;
+                }
+                if (activeGetter == null) {
+                    activeGetter = findMethod(target.getClass(), "getActiveConnections");
+                    idleGetter = findMethod(target.getClass(), "getIdleConnections");
+                }
+            }
+            Object value = invoke(active ? activeGetter : idleGetter, target);
+            return value instanceof Number ? (Number) value : null;
+        }
+    }
+
+    /**
+     * The waits on a pool, with the timeouts as its flagged waits.
+     */
+    static final class PoolHistogram extends IntervalHistogram {
+        private final String poolName;
+        private final String poolType;
+        private final PoolGauges gauges;
+
+        PoolHistogram(Object dataSource) {
+            this.poolName = getPoolName(dataSource);
+            this.poolType = getPoolType(dataSource);
+            this.gauges = new PoolGauges(dataSource);
+        }
+
+        private MetricTelemetry createMetric(String name, double value) {
+            return addPoolProperties(new MetricTelemetry(name, value));
+        }
+
+        private MetricTelemetry addPoolProperties(MetricTelemetry telemetry) {
+            telemetry.getProperties().put("Pool", poolName);
+            telemetry.getProperties().put("PoolType", poolType);
+            return telemetry;
+        }
+    }
+}
@@ -26,13 +26,14 @@ import com.microsoft.applicationinsights.agent.internal.coresync.AgentNotificati
 import com.microsoft.applicationinsights.agent.internal.coresync.InstrumentedClassType;
 import com.microsoft.applicationinsights.agent.internal.coresync.impl.ImplementationsCoordinator;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.perfcounter.jvm.ThreadPoolTracker;
 import com.microsoft.applicationinsights.internal.schemav2.DependencyKind;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
 import com.microsoft.applicationinsights.internal.util.ThreadLocalCleaner;
+import com.microsoft.applicationinsights.internal.util.UrlParts;
 import com.microsoft.applicationinsights.telemetry.Duration;
 import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
 import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -42,6 +43,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Date;
 import java.util.LinkedList;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * The Core's implementation: the methods are called for instrumented methods.
@@ -52,6 +54,8 @@ import java.util.LinkedList;
 final class CoreAgentNotificationsHandler implements AgentNotificationsHandler {
 
     private final static String EXCEPTION_THROWN_ID = "__java_sdk__exceptionThrown__";
+    private final static String JEDIS_CLIENT_NAME = "Jedis";
+    private final static String LETTUCE_CLIENT_NAME = "Lettuce";
 
     /**
      * The class holds the data gathered on a method
@@ -91,12 +95,32 @@ final class CoreAgentNotificationsHandler implements AgentNotificationsHandler {
 
     private final String name;
 
+    // Null unless the agent configuration asks for outbound HTTP calls to be aggregated
+    private final HttpDependencyAggregator httpDependencyAggregator;
+
+    // Created with the first connection pool wait, so that applications without a pool do not schedule its flushes
+    private volatile ConnectionPoolAggregator connectionPoolAggregator;
+
+    // Created with the first Redis command, so that applications that do not use Redis do not schedule its flushes
+    private volatile RedisCommandAggregator redisCommandAggregator;
+
+    private final RedisCommands.CompletionListener lettuceCompletionListener = new RedisCommands.CompletionListener() {
+        @Override
+        public void onCompleted(String command, long durationInNS, Throwable throwable) {
+            sendRedisCommandTelemetry(LETTUCE_CLIENT_NAME, command, command, durationInNS, throwable, true);
+        }
+    };
+
     public ThreadLocalCleaner getCleaner() {
         return cleaner;
     }
 
     public CoreAgentNotificationsHandler(String name) {
         this.name = name;
+        ImplementationsCoordinator coordinator = ImplementationsCoordinator.INSTANCE;
+        this.httpDependencyAggregator = coordinator.isHttpAggregationEnabled()
+                ? new HttpDependencyAggregator(telemetryClient, coordinator.getHttpSlowThresholdInMS(), coordinator.getHttpAggregationIntervalInSeconds())
+                : null;
     }
 
     @Override
@@ -147,11 +171,14 @@ final class CoreAgentNotificationsHandler implements AgentNotificationsHandler {
         if (!LocalStringsUtils.isNullOrEmpty(uri) && (uri.startsWith("https://dc.services.visualstudio.com") || uri.startsWith("https://rt.services.visualstudio.com"))) {
             return;
         }
+        if (httpDependencyAggregator != null && !httpDependencyAggregator.record(method, uri, target, result, deltaInNS)) {
+            return;
+        }
         long deltaInMS = nanoToMilliseconds(deltaInNS);
-        URI uriObject = convertUriStringToUrl(uri);
-        String name = method + " " + getRelativePath(uriObject);
+        UrlParts uriParts = UrlParts.parse(uri);
+        String name = method + " " + getRelativePath(uriParts);
         if (target == null) {
-        	target = getTargetFromUri(uriObject);
+        	target = getTargetFromUri(uriParts);
 		}
 
         RemoteDependencyTelemetry telemetry = new RemoteDependencyTelemetry(name, uri, new Duration(deltaInMS), (result < 400));
@@ -187,6 +214,44 @@ final class CoreAgentNotificationsHandler implements AgentNotificationsHandler {
         startMethod(InstrumentedClassType.Redis.toString(), name, new String[]{});
     }
 
+    @Override
+    public void jedisPipelineMethodStarted(String name, Object pipeline) {
+        int index = name.lastIndexOf('#');
+        if (index != -1) {
+            name = name.substring(0, index);
+        }
+
+        // The queue is emptied by the round trip, so it is counted before
+        startSqlMethod(InstrumentedClassType.RedisPipeline.toString(), name, RedisCommands.getPipelinedCommandCount(pipeline));
+    }
+
+    @Override
+    public void lettuceCommandDispatched(String name, Object command) {
+        if (!RedisCommands.registerCompletion(command, lettuceCompletionListener)) {
+            InternalLogger.INSTANCE.trace("Lettuce command '%s' cannot be tracked", command == null ? "null" : command.getClass().getName());
+        }
+    }
+
+    @Override
+    public void connectionPoolMethodStarted(String name, Object dataSource) {
+        int index = name.lastIndexOf('#');
+        if (index != -1) {
+            name = name.substring(0, index);
+        }
+
+        startSqlMethod(InstrumentedClassType.ConnectionPool.toString(), name, dataSource);
+    }
+
+    @Override
+    public void threadPoolTaskSubmitted(ThreadPoolExecutor executor, Runnable task) {
+        ThreadPoolTracker.INSTANCE.onTaskSubmitted(executor, task);
+    }
+
+    @Override
+    public void threadPoolTaskStarted(ThreadPoolExecutor executor, Thread worker, Runnable task) {
+        ThreadPoolTracker.INSTANCE.onTaskStarted(executor, worker, task);
+    }
+
     @Override
     public void methodStarted(String name) {
         int index = name.lastIndexOf('#');
@@ -282,18 +347,14 @@ final class CoreAgentNotificationsHandler implements AgentNotificationsHandler {
         }
     }
 
-    private URI convertUriStringToUrl(String uri) throws URISyntaxException{
-    	return new URI(uri);
-	}
-
-	private String getRelativePath(URI uri) {
+	private String getRelativePath(UrlParts uri) {
     	if (uri == null) {
     		return null;
 		}
 		return uri.getPath();
 	}
 
-	private String getTargetFromUri(URI uri) {
+	private String getTargetFromUri(UrlParts uri) {
     	if (uri == null) {
     		return null;
 		}
@@ -398,6 +459,12 @@ final class CoreAgentNotificationsHandler implements AgentNotificationsHandler {
             sendSQLTelemetry(methodData, throwable);
         } else if ("HTTP".equalsIgnoreCase(methodData.type)) {
             sendHTTPTelemetry(methodData, throwable);
+        } else if ("Redis".equalsIgnoreCase(methodData.type)) {
+            sendRedisCommandTelemetry(JEDIS_CLIENT_NAME, getRedisCommand(methodData.name), methodData.name, methodData.interval, throwable, false);
+        } else if ("RedisPipeline".equalsIgnoreCase(methodData.type)) {
+            sendRedisPipelineTelemetry(methodData, throwable);
+        } else if ("ConnectionPool".equalsIgnoreCase(methodData.type)) {
+            sendConnectionPoolTelemetry(methodData, throwable);
         } else {
             sendInstrumentationTelemetry(methodData, throwable);
         }
@@ -418,6 +485,108 @@ final class CoreAgentNotificationsHandler implements AgentNotificationsHandler {
         }
     }
 
+    private void sendRedisCommandTelemetry(String client, String command, String dependencyName, long durationInNS, Throwable throwable, boolean async) {
+        if (!getRedisCommandAggregator().record(client, command, durationInNS, throwable == null)) {
+            return;
+        }
+
+        long durationInMilliSeconds = nanoToMilliseconds(durationInNS);
+        RemoteDependencyTelemetry telemetry = new RemoteDependencyTelemetry(dependencyName, command, new Duration(durationInMilliSeconds), throwable == null);
+        telemetry.setType(InstrumentedClassType.Redis.toString());
+        if (async) {
+            telemetry.setAsync(true);
+        }
+        telemetry.getProperties().put("Client", client);
+        telemetry.setTimestamp(new Date(System.currentTimeMillis() - durationInMilliSeconds));
+        InternalLogger.INSTANCE.trace("Sending Redis RDD event for '%s', duration=%s ms", dependencyName, durationInMilliSeconds);
+
+        telemetryClient.track(telemetry);
+        if (throwable != null) {
+            ExceptionTelemetry exceptionTelemetry = new ExceptionTelemetry(throwable);
+            telemetryClient.track(exceptionTelemetry);
+        }
+    }
+
+    private void sendRedisPipelineTelemetry(MethodData methodData, Throwable throwable) {
+        long durationInMilliSeconds = nanoToMilliseconds(methodData.interval);
+        RemoteDependencyTelemetry telemetry = new RemoteDependencyTelemetry(methodData.name, getRedisCommand(methodData.name), new Duration(durationInMilliSeconds), throwable == null);
+        telemetry.setType(InstrumentedClassType.Redis.toString());
+        telemetry.getProperties().put("Client", JEDIS_CLIENT_NAME);
+        if (methodData.arguments != null && methodData.arguments.length > 0 && methodData.arguments[0] instanceof Integer
+                && ((Integer) methodData.arguments[0]) >= 0) {
+            telemetry.getProperties().put("CommandCount", methodData.arguments[0].toString());
+        }
+        telemetry.setTimestamp(new Date(System.currentTimeMillis() - durationInMilliSeconds));
+        InternalLogger.INSTANCE.trace("Sending Redis pipeline RDD event for '%s', duration=%s ms", methodData.name, durationInMilliSeconds);
+
+        telemetryClient.track(telemetry);
+        if (throwable != null) {
+            ExceptionTelemetry exceptionTelemetry = new ExceptionTelemetry(throwable);
+            telemetryClient.track(exceptionTelemetry);
+        }
+    }
+
+    // Jedis names its methods after the commands they send
+    private static String getRedisCommand(String classAndMethodNames) {
+        return classAndMethodNames.substring(classAndMethodNames.lastIndexOf('.') + 1).toUpperCase();
+    }
+
+    private RedisCommandAggregator getRedisCommandAggregator() {
+        RedisCommandAggregator aggregator = redisCommandAggregator;
+        if (aggregator == null) {
+            synchronized (this) {
+                aggregator = redisCommandAggregator;
+                if (aggregator == null) {
+                    ImplementationsCoordinator coordinator = ImplementationsCoordinator.INSTANCE;
+                    aggregator = new RedisCommandAggregator(telemetryClient, coordinator.getRedisThresholdInNS(), coordinator.getRedisAggregationIntervalInSeconds());
+                    redisCommandAggregator = aggregator;
+                }
+            }
+        }
+        return aggregator;
+    }
+
+    private void sendConnectionPoolTelemetry(MethodData methodData, Throwable throwable) {
+        if (methodData.arguments == null || methodData.arguments.length != 1 || methodData.arguments[0] == null) {
+            return;
+        }
+
+        Object dataSource = methodData.arguments[0];
+        if (!getConnectionPoolAggregator().record(dataSource, methodData.interval, throwable)) {
+            return;
+        }
+
+        long durationInMilliSeconds = nanoToMilliseconds(methodData.interval);
+        String poolName = ConnectionPoolAggregator.getPoolName(dataSource);
+        RemoteDependencyTelemetry telemetry = new RemoteDependencyTelemetry(methodData.name, null, new Duration(durationInMilliSeconds), throwable == null);
+        telemetry.setType("Connection Pool");
+        telemetry.setTarget(poolName);
+        telemetry.getProperties().put("PoolType", ConnectionPoolAggregator.getPoolType(dataSource));
+        telemetry.setTimestamp(new Date(System.currentTimeMillis() - durationInMilliSeconds));
+        InternalLogger.INSTANCE.trace("Sending connection pool RDD event for '%s', duration=%s ms", poolName, durationInMilliSeconds);
+
+        telemetryClient.track(telemetry);
+        if (throwable != null) {
+            ExceptionTelemetry exceptionTelemetry = new ExceptionTelemetry(throwable);
+            telemetryClient.track(exceptionTelemetry);
+        }
+    }
+
+    private ConnectionPoolAggregator getConnectionPoolAggregator() {
+        ConnectionPoolAggregator aggregator = connectionPoolAggregator;
+        if (aggregator == null) {
+            synchronized (this) {
+                aggregator = connectionPoolAggregator;
+                if (aggregator == null) {
+                    ImplementationsCoordinator coordinator = ImplementationsCoordinator.INSTANCE;
+                    aggregator = new ConnectionPoolAggregator(telemetryClient, coordinator.getConnectionPoolSlowThresholdInMS(), coordinator.getConnectionPoolAggregationIntervalInSeconds());
+                    connectionPoolAggregator = aggregator;
+                }
+            }
+        }
+        return aggregator;
+    }
+
     private void sendHTTPTelemetry(MethodData methodData, Throwable throwable) {
         if (methodData.arguments != null && methodData.arguments.length == 1) {
             String url = methodData.arguments[0].toString();
@@ -0,0 +1,208 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.internal.util.UrlParts;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+
+import java.util.Map;
+
+/**
+ * Aggregates outbound HTTP calls per target host, method, status class and route into interval summaries.
+ *
+ * The route is the path of the call with numeric and GUID segments replaced by placeholders, so that
+ * '/orders/1234' and '/orders/5678' are summarized together as '/orders/{id}'.
+ * Every interval a {@link MetricTelemetry} is sent per route with the count, sum, min, max and standard deviation
+ * of the durations in milliseconds and, as properties, their 50th, 95th and 99th percentiles.
+ *
+ * Failed and slow calls are counted too, but the caller should still report them one by one.
+ */
+final class HttpDependencyAggregator extends IntervalAggregator<HttpDependencyAggregator.RouteKey, IntervalHistogram> {
+    static final String METRIC_NAME = "HTTP dependency duration";
+    static final String ID_PLACEHOLDER = "{id}";
+    static final String GUID_PLACEHOLDER = "{guid}";
+
+    // Bounds the memory used by aggregates; calls to routes beyond that are reported one by one
+    static final int MAX_NUMBER_OF_AGGREGATES = 1000;
+
+    private static final long NANOS_IN_MILLI = 1000000L;
+
+    private final long slowThresholdInNS;
+
+    HttpDependencyAggregator(TelemetryClient telemetryClient, long slowThresholdInMS, long intervalInSeconds) {
+        super(telemetryClient, "outbound HTTP routes", MAX_NUMBER_OF_AGGREGATES, intervalInSeconds);
+        this.slowThresholdInNS = slowThresholdInMS * NANOS_IN_MILLI;
+    }
+
+    /**
+     * Adds the call to the summary of its route.
+     *
+     * @return True if the call should also be reported on its own: it failed, was slow or could not be aggregated.
+     */
+    boolean record(String method, String uri, String target, int resultCode, long durationInNS) {
+        if (!record(createKey(method, uri, target, resultCode), durationInNS, false)) {
+            return true;
+        }
+        return resultCode >= 400 || durationInNS >= slowThresholdInNS;
+    }
+
+    @Override
+    IntervalHistogram createHistogram(RouteKey key) {
+        return new IntervalHistogram();
+    }
+
+    @Override
+    void send(RouteKey key, IntervalHistogram histogram, IntervalHistogram.Snapshot snapshot) {
+        MetricTelemetry telemetry = snapshot.createMetricTelemetry(METRIC_NAME);
+        Map<String, String> properties = telemetry.getProperties();
+        properties.put("DependencyType", "HTTP");
+        if (key.method != null) {
+            properties.put("Method", key.method);
+        }
+        properties.put("Target", key.host);
+        properties.put("ResultClass", key.statusClass);
+        properties.put("Route", key.route);
+        telemetryClient.track(telemetry);
+    }
+
+    static RouteKey createKey(String method, String uri, String target, int resultCode) {
+        String host = target;
+        String path = "/";
+        UrlParts parts = UrlParts.parse(uri);
+        if (parts != null) {
+            if (host == null || host.isEmpty()) {
+                host = parts.getHost();
+            }
+            if (parts.getPathEnd() > parts.getPathStart()) {
+                path = templatePath(uri, parts.getPathStart(), parts.getPathEnd());
+            }
+        }
+        return new RouteKey(method, host == null ? "" : host, getStatusClass(resultCode), path);
+    }
+
+    static String getStatusClass(int resultCode) {
+        if (resultCode < 100 || resultCode >= 600) {
+            return "other";
+        }
+        return (resultCode / 100) + "xx";
+    }
+
+    /**
+     * Replaces numeric and GUID path segments of {@code uri.substring(start, end)} with placeholders.
+     */
+    static String templatePath(String uri, int start, int end) {
+        if (uri.charAt(start) != '/') {
+            return uri.substring(start, end);
+        }
+        StringBuilder templated = null;
+        int segmentStart = start;
+        while (segmentStart < end) {
+            int segmentEnd = uri.indexOf('/', segmentStart + 1);
+            if (segmentEnd < 0 || segmentEnd > end) {
+                segmentEnd = end;
+            }
+            // The segment excludes its leading '/'
+            String placeholder = getPlaceholder(uri, segmentStart + 1, segmentEnd);
+            if (placeholder != null) {
+                if (templated == null) {
+                    templated = new StringBuilder(end - start);
+                    templated.append(uri, start, segmentStart + 1);
+                }
+                templated.append(placeholder);
+            } else if (templated != null) {
+                templated.append(uri, segmentStart + 1, segmentEnd);
+            }
+            if (templated != null && segmentEnd < end) {
+                templated.append('/');
+            }
+            segmentStart = segmentEnd;
+        }
+        return templated == null ? uri.substring(start, end) : templated.toString();
+    }
+
+    private static String getPlaceholder(String s, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return null;
+        }
+        boolean allDigits = true;
+        for (int i = start; i < end && allDigits; ++i) {
+            char c = s.charAt(i);
+            allDigits = c >= '0' && c <= '9';
+        }
+        if (allDigits) {
+            return ID_PLACEHOLDER;
+        }
+        if (length == 36 || length == 32) {
+            for (int i = 0; i < length; ++i) {
+                char c = s.charAt(start + i);
+                boolean dash = length == 36 && (i == 8 || i == 13 || i == 18 || i == 23);
+                if (dash ? c != '-' : Character.digit(c, 16) < 0) {
+                    return null;
+                }
+            }
+            return GUID_PLACEHOLDER;
+        }
+        return null;
+    }
+
+    static final class RouteKey {
+        final String method;
+        final String host;
+        final String statusClass;
+        final String route;
+        private final int hashCode;
+
+        RouteKey(String method, String host, String statusClass, String route) {
+            this.method = method;
+            this.host = host;
+            this.statusClass = statusClass;
+            this.route = route;
+            int hash = method == null ? 0 : method.hashCode();
+            hash = 31 * hash + host.hashCode();
+            hash = 31 * hash + statusClass.hashCode();
+            this.hashCode = 31 * hash + route.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RouteKey)) {
+                return false;
+            }
+            RouteKey other = (RouteKey) o;
+            return hashCode == other.hashCode
+                    && (method == null ? other.method == null : method.equals(other.method))
+                    && host.equals(other.host)
+                    && statusClass.equals(other.statusClass)
+                    && route.equals(other.route);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
+import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
+import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps an {@link IntervalHistogram} per key and sends their summaries every interval.
+ *
+ * Keys that had nothing recorded in an interval are forgotten, and the number of keys is bounded so that
+ * durations of keys beyond it are left to the caller to report one by one.
+ *
+ * @param <K> The key the durations are summarized by.
+ * @param <H> The histogram kept per key, which may also hold what is sent along with the summary of the key.
+ */
+abstract class IntervalAggregator<K, H extends IntervalHistogram> implements Stoppable {
+    protected final TelemetryClient telemetryClient;
+    private final String description;
+    private final int maxNumberOfKeys;
+    private final ConcurrentHashMap<K, H> histograms = new ConcurrentHashMap<K, H>();
+    private final AtomicBoolean reportedTooManyKeys = new AtomicBoolean(false);
+    private final TaskGroup tasks;
+
+    /**
+     * @param description What is summarized, in the plural, for the log.
+     */
+    IntervalAggregator(TelemetryClient telemetryClient, String description, int maxNumberOfKeys, long intervalInSeconds) {
+        this.telemetryClient = telemetryClient;
+        this.description = description;
+        this.maxNumberOfKeys = maxNumberOfKeys;
+        this.tasks = SdkScheduler.INSTANCE.createTaskGroup(getClass().getSimpleName());
+        tasks.scheduleAtFixedRate("flush", new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, intervalInSeconds, intervalInSeconds, TimeUnit.SECONDS);
+        SDKShutdownActivity.INSTANCE.register(this);
+    }
+
+    /**
+     * Creates the histogram of a key the first time it is seen in an interval.
+     */
+    abstract H createHistogram(K key);
+
+    /**
+     * Sends the summary of a key for the interval.
+     */
+    abstract void send(K key, H histogram, IntervalHistogram.Snapshot snapshot);
+
+    /**
+     * Adds the duration to the summary of its key.
+     *
+     * @return False if there were too many keys in the interval to add this one, in which case nothing is recorded.
+     */
+    boolean record(K key, long durationInNS, boolean flagged) {
+        while (true) {
+            H histogram = histograms.get(key);
+            if (histogram == null) {
+                if (histograms.size() >= maxNumberOfKeys) {
+                    if (reportedTooManyKeys.compareAndSet(false, true)) {
+                        InternalLogger.INSTANCE.warn("More than %d different %s were seen in one interval, the rest are reported one by one", maxNumberOfKeys, description);
+                    }
+                    return false;
+                }
+                H created = createHistogram(key);
+                histogram = histograms.putIfAbsent(key, created);
+                if (histogram == null) {
+                    histogram = created;
+                }
+            }
+            // A histogram that was retired by a concurrent flush is replaced on the next iteration
+            if (histogram.record(durationInNS, flagged)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sends a summary of every key that was seen since the previous flush, and forgets the keys that were not.
+     */
+    void flush() {
+        try {
+            for (Map.Entry<K, H> entry : histograms.entrySet()) {
+                H histogram = entry.getValue();
+                IntervalHistogram.Snapshot snapshot = histogram.drain();
+                if (snapshot != null) {
+                    send(entry.getKey(), histogram, snapshot);
+                } else if (histogram.retireIfEmpty()) {
+                    histograms.remove(entry.getKey(), histogram);
+                }
+            }
+            reportedTooManyKeys.set(false);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Failed to send the summaries of %s: '%s'", description, ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+    }
+
+    @Override
+    public void stop(long timeout, TimeUnit timeUnit) {
+        tasks.stop(timeout, timeUnit);
+        flush();
+    }
+}
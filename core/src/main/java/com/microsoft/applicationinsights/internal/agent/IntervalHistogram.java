@@ -0,0 +1,193 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+
+import java.util.Map;
+
+/**
+ * Summarizes the durations recorded over an interval: their count, sum, min, max and standard deviation in
+ * milliseconds, and a histogram with fixed buckets that the percentiles are taken from.
+ *
+ * A histogram that is kept per key can be retired once an interval went by without any duration, so that the key
+ * can be forgotten: a retired histogram records nothing and has to be replaced, see {@link IntervalAggregator}.
+ */
+public class IntervalHistogram {
+    // Upper bounds of the buckets, in milliseconds
+    static final long[] BUCKET_BOUNDS_IN_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+    private static final long NANOS_IN_MILLI = 1000000L;
+
+    private final long[] bucketCounts = new long[BUCKET_BOUNDS_IN_MS.length + 1];
+    private int count;
+    private int flaggedCount;
+    private double sum;
+    private double sumOfSquares;
+    private double min;
+    private double max;
+    private boolean retired;
+
+    /**
+     * @param flagged Whether the duration is also counted apart, such as the duration of a failure.
+     * @return False if the histogram was retired, in which case the duration is not recorded.
+     */
+    public synchronized boolean record(long durationInNS, boolean flagged) {
+        if (retired) {
+            return false;
+        }
+        double durationInMS = (double) durationInNS / NANOS_IN_MILLI;
+        if (count == 0 || durationInMS < min) {
+            min = durationInMS;
+        }
+        if (count == 0 || durationInMS > max) {
+            max = durationInMS;
+        }
+        ++count;
+        if (flagged) {
+            ++flaggedCount;
+        }
+        sum += durationInMS;
+        sumOfSquares += durationInMS * durationInMS;
+        ++bucketCounts[bucketOf(durationInNS / NANOS_IN_MILLI)];
+        return true;
+    }
+
+    /**
+     * Takes the durations recorded since the previous call and starts counting anew.
+     *
+     * @return The summary of the interval, or null if nothing was recorded.
+     */
+    public synchronized Snapshot drain() {
+        if (count == 0) {
+            return null;
+        }
+        Snapshot snapshot = new Snapshot(bucketCounts.clone(), count, flaggedCount, sum, sumOfSquares, min, max);
+        count = 0;
+        flaggedCount = 0;
+        sum = 0;
+        sumOfSquares = 0;
+        min = 0;
+        max = 0;
+        for (int i = 0; i < bucketCounts.length; ++i) {
+            bucketCounts[i] = 0;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Retires the histogram if nothing was recorded since it was last drained.
+     *
+     * @return True if the histogram is retired.
+     */
+    synchronized boolean retireIfEmpty() {
+        if (count == 0) {
+            retired = true;
+        }
+        return retired;
+    }
+
+    private static int bucketOf(long durationInMS) {
+        for (int i = 0; i < BUCKET_BOUNDS_IN_MS.length; ++i) {
+            if (durationInMS < BUCKET_BOUNDS_IN_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_IN_MS.length;
+    }
+
+    public static final class Snapshot {
+        private final long[] bucketCounts;
+        private final int count;
+        private final int flaggedCount;
+        private final double sum;
+        private final double sumOfSquares;
+        private final double min;
+        private final double max;
+
+        private Snapshot(long[] bucketCounts, int count, int flaggedCount, double sum, double sumOfSquares, double min, double max) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.flaggedCount = flaggedCount;
+            this.sum = sum;
+            this.sumOfSquares = sumOfSquares;
+            this.min = min;
+            this.max = max;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getFlaggedCount() {
+            return flaggedCount;
+        }
+
+        public double getSumInMS() {
+            return sum;
+        }
+
+        public double getMinInMS() {
+            return min;
+        }
+
+        public double getMaxInMS() {
+            return max;
+        }
+
+        public double getStandardDeviationInMS() {
+            double mean = sum / count;
+            return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+        }
+
+        /**
+         * @return The upper bound of the bucket that holds the percentile, the max when it is in the last bucket.
+         */
+        public double getPercentileInMS(int percentile) {
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_IN_MS.length; ++i) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return Math.min(BUCKET_BOUNDS_IN_MS[i], max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return A metric of the sum of the durations with their count, min, max and standard deviation, and their
+         *         50th, 95th and 99th percentiles as the P50, P95 and P99 properties.
+         */
+        public MetricTelemetry createMetricTelemetry(String name) {
+            MetricTelemetry telemetry = new MetricTelemetry(name, sum);
+            telemetry.setCount(count);
+            telemetry.setMin(min);
+            telemetry.setMax(max);
+            telemetry.setStandardDeviation(getStandardDeviationInMS());
+            Map<String, String> properties = telemetry.getProperties();
+            properties.put("P50", String.valueOf(getPercentileInMS(50)));
+            properties.put("P95", String.valueOf(getPercentileInMS(95)));
+            properties.put("P99", String.valueOf(getPercentileInMS(99)));
+            return telemetry;
+        }
+    }
+}
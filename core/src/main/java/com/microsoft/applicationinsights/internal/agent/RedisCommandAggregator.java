@@ -0,0 +1,93 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+
+import java.util.Map;
+
+/**
+ * Aggregates Redis commands per client and command into interval summaries, instead of reporting every command.
+ *
+ * Every interval a {@link MetricTelemetry} named {@link #METRIC_NAME} is sent per client and command with the count,
+ * sum, min, max and standard deviation of the durations in milliseconds and, as properties, the number of failed
+ * commands and the 50th, 95th and 99th percentiles taken from a fixed bucket histogram.
+ * Commands that were not issued in an interval are forgotten.
+ */
+final class RedisCommandAggregator extends IntervalAggregator<String, RedisCommandAggregator.CommandHistogram> {
+    static final String METRIC_NAME = "Redis command duration";
+
+    // Bounds the memory used by aggregates; commands beyond that are reported one by one
+    static final int MAX_NUMBER_OF_AGGREGATES = 200;
+
+    private final long slowThresholdInNS;
+
+    RedisCommandAggregator(TelemetryClient telemetryClient, long slowThresholdInNS, long intervalInSeconds) {
+        super(telemetryClient, "Redis commands", MAX_NUMBER_OF_AGGREGATES, intervalInSeconds);
+        this.slowThresholdInNS = slowThresholdInNS;
+    }
+
+    /**
+     * Adds the command to the summary of its client and command.
+     *
+     * @param client The Redis client library that issued the command.
+     * @param command The name of the command, in upper case.
+     * @return True if the command should also be reported on its own: it failed, was slow or could not be aggregated.
+     */
+    boolean record(String client, String command, long durationInNS, boolean success) {
+        if (!record(client + ' ' + command, durationInNS, !success)) {
+            return true;
+        }
+        return !success || durationInNS >= slowThresholdInNS;
+    }
+
+    @Override
+    CommandHistogram createHistogram(String key) {
+        int separator = key.indexOf(' ');
+        return new CommandHistogram(key.substring(0, separator), key.substring(separator + 1));
+    }
+
+    @Override
+    void send(String key, CommandHistogram histogram, IntervalHistogram.Snapshot snapshot) {
+        MetricTelemetry telemetry = snapshot.createMetricTelemetry(METRIC_NAME);
+        Map<String, String> properties = telemetry.getProperties();
+        properties.put("DependencyType", "Redis");
+        properties.put("Client", histogram.client);
+        properties.put("Command", histogram.command);
+        properties.put("FailedCount", String.valueOf(snapshot.getFlaggedCount()));
+        telemetryClient.track(telemetry);
+    }
+
+    /**
+     * The durations of a command, with the failed commands as its flagged durations.
+     */
+    static final class CommandHistogram extends IntervalHistogram {
+        private final String client;
+        private final String command;
+
+        CommandHistogram(String client, String command) {
+            this.client = client;
+            this.command = command;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the Redis client objects handed over by the agent, which the SDK cannot link against.
+ *
+ * Lettuce completes its commands on its own I/O threads, so their durations are measured by a completion callback
+ * registered on the command. The callback is a {@code java.util.function.BiConsumer} proxy, which keeps this class
+ * loadable on Java 7, where Lettuce does not run anyway.
+ */
+final class RedisCommands {
+    /**
+     * Receives the outcome of an asynchronous command.
+     */
+    interface CompletionListener {
+        void onCompleted(String command, long durationInNS, Throwable throwable);
+    }
+
+    private static final String UNKNOWN_COMMAND = "UNKNOWN";
+
+    private static final Class<?> BI_CONSUMER_CLASS = loadBiConsumerClass();
+
+    private static final ConcurrentHashMap<Class<?>, Hooks> hooksByClass = new ConcurrentHashMap<Class<?>, Hooks>();
+    private static final ConcurrentHashMap<Class<?>, Method> pipelineLengthGetters = new ConcurrentHashMap<Class<?>, Method>();
+
+    private RedisCommands() {
+    }
+
+    /**
+     * Registers the listener to be called when the Lettuce command completes, successfully or not.
+     *
+     * @return False if the command offers no way to be notified of its completion.
+     */
+    static boolean registerCompletion(Object command, CompletionListener listener) {
+        if (command == null || BI_CONSUMER_CLASS == null) {
+            return false;
+        }
+        Hooks hooks = getHooks(command.getClass());
+        if (hooks.register == null) {
+            return false;
+        }
+        String commandName = getCommandName(hooks, command);
+        Object callback = Proxy.newProxyInstance(BI_CONSUMER_CLASS.getClassLoader(), new Class<?>[] {BI_CONSUMER_CLASS},
+                new Completion(commandName, System.nanoTime(), listener));
+        try {
+            hooks.register.invoke(command, callback);
+            return true;
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            InternalLogger.INSTANCE.trace("Failed to register a completion callback on '%s': '%s'", command.getClass().getName(), t.toString());
+            return false;
+        }
+    }
+
+    /**
+     * @return The number of commands queued on the Jedis pipeline or transaction, or -1 if it cannot be read.
+     */
+    static int getPipelinedCommandCount(Object pipeline) {
+        if (pipeline == null) {
+            return -1;
+        }
+        Class<?> clazz = pipeline.getClass();
+        Method getter = pipelineLengthGetters.get(clazz);
+        if (getter == null) {
+            // Declared as protected by 'redis.clients.jedis.Queable', the base class of pipelines and transactions
+            getter = findDeclaredMethod(clazz, "getPipelinedResponseLength");
+            if (getter == null) {
+                return -1;
+            }
+            pipelineLengthGetters.putIfAbsent(clazz, getter);
+        }
+        try {
+            Object length = getter.invoke(pipeline);
+            return length instanceof Number ? ((Number) length).intValue() : -1;
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            return -1;
+        }
+    }
+
+    private static String getCommandName(Hooks hooks, Object command) {
+        if (hooks.getType == null) {
+            return UNKNOWN_COMMAND;
+        }
+        try {
+            Object type = hooks.getType.invoke(command);
+            return type == null ? UNKNOWN_COMMAND : type.toString();
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            return UNKNOWN_COMMAND;
+        }
+    }
+
+    private static Hooks getHooks(Class<?> clazz) {
+        Hooks hooks = hooksByClass.get(clazz);
+        if (hooks == null) {
+            // Lettuce 5.1 commands take a completion callback, the futures of Lettuce 5.0 complete as a CompletionStage
+            Method register = findMethod(clazz, "onComplete", BI_CONSUMER_CLASS);
+            if (register == null) {
+                register = findMethod(clazz, "whenComplete", BI_CONSUMER_CLASS);
+            }
+            hooks = new Hooks(register, findMethod(clazz, "getType"));
+            hooksByClass.putIfAbsent(clazz, hooks);
+        }
+        return hooks;
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = clazz.getMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Method findDeclaredMethod(Class<?> clazz, String name) {
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+            try {
+                Method method = current.getDeclaredMethod(name);
+                method.setAccessible(true);
+                return method;
+            } catch (NoSuchMethodException e) {
+                // Look in the super class
+            } catch (SecurityException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> loadBiConsumerClass() {
+        try {
+            return Class.forName("java.util.function.BiConsumer");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static final class Hooks {
+        final Method register;
+        final Method getType;
+
+        Hooks(Method register, Method getType) {
+            this.register = register;
+            this.getType = getType;
+        }
+    }
+
+    private static final class Completion implements InvocationHandler {
+        private final String command;
+        private final long startInNS;
+        private final CompletionListener listener;
+
+        Completion(String command, long startInNS, CompletionListener listener) {
+            this.command = command;
+            this.startInNS = startInNS;
+            this.listener = listener;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("accept".equals(name)) {
+                long durationInNS = System.nanoTime() - startInNS;
+                try {
+                    listener.onCompleted(command, durationInNS, (Throwable) args[1]);
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t) {
+                    // The callback runs on a thread of the client, which must not see our failures
+                }
+                return null;
+            }
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(name)) {
+                return "Completion of " + command;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+}
@@ -21,6 +21,8 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -37,7 +39,26 @@ import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
  *
  * Created by gupele on 12/22/2014.
  */
-public final class ActiveTransmissionFileSystemOutput implements TransmissionOutput {
+public final class ActiveTransmissionFileSystemOutput implements DrainableTransmissionOutput {
+    private final class PersistTask implements Runnable {
+        private final Transmission transmission;
+
+        private PersistTask(Transmission transmission) {
+            this.transmission = transmission;
+        }
+
+        @Override
+        public void run() {
+            try {
+                actualOutput.send(transmission);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable throwable) {
+                // Avoid un-expected exit of thread
+            }
+        }
+    }
+
     private static final AtomicInteger INSTANCE_ID_POOL = new AtomicInteger(1);
     private final ThreadPoolExecutor threadPool;
     private final TransmissionOutput actualOutput;
@@ -63,18 +84,7 @@ public final class ActiveTransmissionFileSystemOutput implements TransmissionOut
                 return false;
             }
 
-            threadPool.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        actualOutput.send(transmission);
-                    } catch (ThreadDeath td) {
-                        throw td;
-                    } catch (Throwable throwable) {
-                        // Avoid un-expected exit of thread
-                    }
-                }
-            });
+            threadPool.execute(new PersistTask(transmission));
             return true;
 
         } catch (RejectedExecutionException e) {
@@ -93,4 +103,33 @@ public final class ActiveTransmissionFileSystemOutput implements TransmissionOut
         actualOutput.stop(timeout, timeUnit);
         ThreadPoolUtils.stop(threadPool, timeout, timeUnit);
     }
+
+    /**
+     * Returns the transmissions that are still queued, so they can be persisted together,
+     * and waits for the ones that are being persisted.
+     */
+    @Override
+    public List<Transmission> drain(long timeout, TimeUnit timeUnit) {
+        threadPool.shutdown();
+
+        List<Runnable> queued = new ArrayList<Runnable>();
+        threadPool.getQueue().drainTo(queued);
+
+        List<Transmission> notPersisted = new ArrayList<Transmission>();
+        for (Runnable task : queued) {
+            if (task instanceof PersistTask) {
+                notPersisted.add(((PersistTask) task).transmission);
+            }
+        }
+
+        try {
+            threadPool.awaitTermination(timeout, timeUnit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        actualOutput.stop(0, timeUnit);
+
+        return notPersisted;
+    }
 }
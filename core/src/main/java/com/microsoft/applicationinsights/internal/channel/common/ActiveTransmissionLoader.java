@@ -21,8 +21,6 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -30,12 +28,17 @@ import com.google.common.base.Preconditions;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
 import com.microsoft.applicationinsights.internal.channel.TransmissionsLoader;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
 
 /**
  * The class is responsible for loading transmission files that were saved to the disk
  *
  * The class will ask for the oldest transmission file and will hand it to the dispatcher
  *
+ * Every loader is a task of the shared {@link SdkScheduler} that reschedules itself after each file,
+ * with a longer delay when there was nothing to load.
+ *
  * Created by gupele on 12/22/2014.
  */
 public final class ActiveTransmissionLoader implements TransmissionsLoader {
@@ -55,12 +58,14 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
     // The dispatcher is needed to process the fetched Transmissions
     private final TransmissionDispatcher dispatcher;
 
-    private CyclicBarrier barrier;
-
     private final TransmissionPolicyStateFetcher transmissionPolicyFetcher;
 
-    // The threads that do the work
-    private final Thread[] threads;
+    // The number of loaders that run at the same time
+    private final int numberOfLoaders;
+
+    private final TaskGroup tasks;
+
+    private boolean started;
 
     private final long sleepIntervalWhenNoTransmissionsFoundInMills;
 
@@ -85,104 +90,93 @@ public final class ActiveTransmissionLoader implements TransmissionsLoader {
 
         this.fileSystem = fileSystem;
         this.dispatcher = dispatcher;
-        threads = new Thread[numberOfThreads];
-        final String threadNameFmt = String.format("%s-worker-%%d", ActiveTransmissionLoader.class.getSimpleName());
-        for (int i = 0; i < numberOfThreads; ++i) {
-            threads[i] = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        barrier.await();
-                    } catch (InterruptedException e) {
-                        InternalLogger.INSTANCE.error("Interrupted during barrier wait, exception: %s", e.toString());
-                    } catch (BrokenBarrierException e) {
-                        InternalLogger.INSTANCE.error("Failed during barrier wait, exception: %s", e.toString());
-                    }
-
-                    // Avoid un-expected exit of threads
-                    while (!done.get()) {
-                        try {
-                            TransmissionPolicy currentTransmissionState = transmissionPolicyFetcher.getCurrentState();
-                            switch (currentTransmissionState) {
-                                case UNBLOCKED:
-                                    fetchNext(true);
-                                    break;
-                                case BACKOFF:
-                                case BLOCKED_BUT_CAN_BE_PERSISTED:
-                                    Thread.sleep(DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS);
-                                    break;
-
-                                case BLOCKED_AND_CANNOT_BE_PERSISTED:
-                                    // We fetch but don't do anything with the Transmission
-                                    // which means that we are cleaning the disk as needed by that policy
-                                    fetchNext(false);
-                                    break;
-
-                                default:
-                                    InternalLogger.INSTANCE.error("Could not find transmission policy '%s'", currentTransmissionState);
-                                    Thread.sleep(DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS);
-                                    break;
-                            }
-                        } catch (Exception e) {
-                        } catch (ThreadDeath td) {
-                        	throw td;
-                        } catch (Throwable t) {
-                        }
-                        // TODO: check whether we need to pause after exception
-                    }
-                }
-            }, String.format(threadNameFmt, i));
-            threads[i].setDaemon(true);
-        }}
+        this.numberOfLoaders = numberOfThreads;
+        this.tasks = SdkScheduler.INSTANCE.createIoTaskGroup(ActiveTransmissionLoader.class.getSimpleName(), false);
+    }
 
+    /**
+     * Schedules the loaders to start at once.
+     * @param waitForThreadsToStart Not used, there are no threads to wait for since the loaders are scheduled tasks.
+     * @return False if the loaders could not be scheduled since the loader was stopped.
+     */
     @Override
     public synchronized boolean load(boolean waitForThreadsToStart) {
-        if (barrier == null) {
-            int numberOfThreads = threads.length;
-            if (waitForThreadsToStart) {
-                ++numberOfThreads;
-            }
-            barrier = new CyclicBarrier(numberOfThreads);
-        }
-        for (Thread thread : threads) {
-            thread.start();
-        }
-        try {
-            barrier.await();
+        if (started) {
             return true;
-        } catch (InterruptedException e) {
-            InternalLogger.INSTANCE.error("Interrupted during barrier wait, exception: %s", e.toString());
-        } catch (BrokenBarrierException e) {
-            InternalLogger.INSTANCE.error("Failed during barrier wait, exception: %s", e.toString());
         }
-
-        return false;
+        for (int i = 0; i < numberOfLoaders; ++i) {
+            if (!scheduleLoad("loader-" + i, 0)) {
+                return false;
+            }
+        }
+        started = true;
+        return true;
     }
 
     @Override
     public void stop(long timeout, TimeUnit timeUnit) {
         done.set(true);
-        for (Thread thread : threads) {
-            try {
-                thread.interrupt();
-                thread.join();
-            } catch (InterruptedException e) {
-                InternalLogger.INSTANCE.error("Interrupted during join of active transmission loader, exception: %s", e.toString());
+        tasks.stop(timeout, timeUnit);
+    }
+
+    private boolean scheduleLoad(final String taskName, long delayInMills) {
+        return tasks.schedule(taskName, new Runnable() {
+            @Override
+            public void run() {
+                loadAndReschedule(taskName);
             }
+        }, delayInMills, TimeUnit.MILLISECONDS);
+    }
+
+    private void loadAndReschedule(String taskName) {
+        long delayInMills = DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS;
+        try {
+            delayInMills = loadNext();
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            // TODO: check whether we need to pause after exception
+        }
+        if (!done.get()) {
+            scheduleLoad(taskName, delayInMills);
         }
     }
 
-    private void fetchNext(boolean shouldDispatch) throws InterruptedException {
+    /**
+     * @return How long to wait before loading the next file.
+     */
+    private long loadNext() {
+        TransmissionPolicy currentTransmissionState = transmissionPolicyFetcher.getCurrentState();
+        switch (currentTransmissionState) {
+            case UNBLOCKED:
+                return fetchNext(true);
+
+            case BACKOFF:
+            case BLOCKED_BUT_CAN_BE_PERSISTED:
+                return DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS;
+
+            case BLOCKED_AND_CANNOT_BE_PERSISTED:
+                // We fetch but don't do anything with the Transmission
+                // which means that we are cleaning the disk as needed by that policy
+                return fetchNext(false);
+
+            default:
+                InternalLogger.INSTANCE.error("Could not find transmission policy '%s'", currentTransmissionState);
+                return DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS;
+        }
+    }
+
+    private long fetchNext(boolean shouldDispatch) {
         Transmission transmission = fileSystem.fetchOldestFile();
         if (transmission == null) {
-            Thread.sleep(sleepIntervalWhenNoTransmissionsFoundInMills);
-        } else {
-            if (shouldDispatch) {
-                dispatcher.dispatch(transmission);
-            }
+            return sleepIntervalWhenNoTransmissionsFoundInMills;
+        }
 
-            // TODO: check if we need this as configuration value
-            Thread.sleep(DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS);
+        if (shouldDispatch) {
+            dispatcher.dispatch(transmission);
         }
+
+        // TODO: check if we need this as configuration value
+        return DEFAULT_SLEEP_INTERVAL_AFTER_DISPATCHING_IN_MILLS;
     }
 }
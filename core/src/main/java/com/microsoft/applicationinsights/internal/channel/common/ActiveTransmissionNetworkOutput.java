@@ -21,6 +21,11 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -33,7 +38,30 @@ import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 /**
  * Created by gupele on 12/18/2014.
  */
-public final class ActiveTransmissionNetworkOutput implements TransmissionOutput {
+public final class ActiveTransmissionNetworkOutput implements DrainableTransmissionOutput {
+    private final class SendTask implements Runnable {
+        private final Transmission transmission;
+
+        private SendTask(Transmission transmission) {
+            this.transmission = transmission;
+        }
+
+        @Override
+        public void run() {
+            inFlight.add(transmission);
+            try {
+                actualOutput.send(transmission);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable throwable) {
+                // Avoid un-expected exit of thread
+            } finally {
+                inFlight.remove(transmission);
+            }
+        }
+    }
+
+
     private final static int DEFAULT_MAX_MESSAGES_IN_BUFFER = 128;
     private final static int DEFAULT_MIN_NUMBER_OF_THREADS = 7;
     private final static int DEFAULT_MAX_NUMBER_OF_THREADS = 7;
@@ -45,6 +73,7 @@ public final class ActiveTransmissionNetworkOutput implements TransmissionOutput
     private final TransmissionOutput actualOutput;
     private final TransmissionPolicyStateFetcher transmissionPolicy;
     private final int instanceId = INTSTANCE_ID_POOL.getAndIncrement();
+    private final Set<Transmission> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<Transmission, Boolean>());
 
     public ActiveTransmissionNetworkOutput(TransmissionOutput actualOutput, TransmissionPolicyStateFetcher transmissionPolicy) {
         this(actualOutput, transmissionPolicy, DEFAULT_MAX_MESSAGES_IN_BUFFER);
@@ -72,18 +101,7 @@ public final class ActiveTransmissionNetworkOutput implements TransmissionOutput
                 return false;
             }
 
-            outputThreads.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        actualOutput.send(transmission);
-                    } catch (ThreadDeath td) {
-                        throw td;
-                    } catch (Throwable throwable) {
-                        // Avoid un-expected exit of thread
-                    }
-                }
-            });
+            outputThreads.execute(new SendTask(transmission));
             return true;
 
         } catch (RejectedExecutionException e) {
@@ -100,6 +118,33 @@ public final class ActiveTransmissionNetworkOutput implements TransmissionOutput
         ThreadPoolUtils.stop(outputThreads, timeout, timeUnit);
     }
 
+    /**
+     * Waits for the queued transmissions to be sent. Transmissions that are still queued or being sent
+     * when the timeout expires are returned, a transmission that was being sent might still reach the server.
+     */
+    @Override
+    public List<Transmission> drain(long timeout, TimeUnit timeUnit) {
+        outputThreads.shutdown();
+        try {
+            outputThreads.awaitTermination(timeout, timeUnit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Transmission> notSent = new ArrayList<Transmission>();
+        for (Runnable task : outputThreads.shutdownNow()) {
+            if (task instanceof SendTask) {
+                notSent.add(((SendTask) task).transmission);
+            }
+        }
+        notSent.addAll(inFlight);
+
+        // Closes the connections, so sends that are still in progress are aborted
+        actualOutput.stop(0, timeUnit);
+
+        return notSent;
+    }
+
     public int getNumberOfMaxThreads() {
         return this.maxThreads;
     }
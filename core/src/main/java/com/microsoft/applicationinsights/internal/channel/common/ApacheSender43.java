@@ -22,17 +22,11 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 
-import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
-import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
@@ -49,25 +43,16 @@ final class ApacheSender43 implements ApacheSender {
 
     private final AtomicReference<CloseableHttpClient> httpClientRef = new AtomicReference<>();
     private volatile boolean isClientInitialized = false;
-    private final ExecutorService initializer = new ThreadPoolExecutor(0, 1, 2, TimeUnit.SECONDS, new LinkedBlockingDeque<Runnable>(),
-            ThreadPoolUtils.createNamedDaemonThreadFactory(ApacheSender43.class.getSimpleName()+"_initializer"));
 
     public ApacheSender43() {
-        initializer.execute(new Runnable() {
-
+        // The client is created in the background so the first send doesn't pay for it,
+        // getHttpClient() creates it on its own if that task didn't run yet
+        SdkScheduler.INSTANCE.createTaskGroup(ApacheSender43.class.getSimpleName()).execute("initializer", new Runnable() {
             @Override
             public void run() {
-                PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
-                cm.setMaxTotal(DEFAULT_MAX_TOTAL_CONNECTIONS);
-                cm.setDefaultMaxPerRoute(DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
-
-                httpClientRef.compareAndSet(null, HttpClients.custom()
-                        .setConnectionManager(cm)
-                        .useSystemProperties()
-                        .build());
+                createHttpClient();
             }
         });
-        SDKShutdownActivity.INSTANCE.register(initializer);
      }
 
     @Override
@@ -100,12 +85,7 @@ final class ApacheSender43 implements ApacheSender {
         if (!isClientInitialized) {
             synchronized (this) {
                 if (!isClientInitialized) {
-                    while (httpClientRef.get() == null) {
-                        try {
-                            TimeUnit.MILLISECONDS.sleep(3);
-                        } catch (InterruptedException e){
-                        }
-                    }
+                    createHttpClient();
                     isClientInitialized = true;
                 }
             }
@@ -114,6 +94,28 @@ final class ApacheSender43 implements ApacheSender {
         return httpClientRef.get();
     }
 
+    private void createHttpClient() {
+        if (httpClientRef.get() != null) {
+            return;
+        }
+
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+        cm.setMaxTotal(DEFAULT_MAX_TOTAL_CONNECTIONS);
+        cm.setDefaultMaxPerRoute(DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(cm)
+                .useSystemProperties()
+                .build();
+        if (!httpClientRef.compareAndSet(null, httpClient)) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                InternalLogger.INSTANCE.trace("Failed to close redundant http client, exception: %s", e.toString());
+            }
+        }
+    }
+
     @Override
     public void enhanceRequest(HttpPost request) {
         RequestConfig requestConfig = RequestConfig.custom()
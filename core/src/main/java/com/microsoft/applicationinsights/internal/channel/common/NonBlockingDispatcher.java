@@ -21,11 +21,14 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Preconditions;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 
 /**
  * The class implements {@link TransmissionDispatcher}
@@ -35,16 +38,29 @@ import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
  *
  * It is a non blocking behavior in the sense that if no one can accept it will drop the data
  *
+ * When stopped, the outputs are stopped in order within the timeout. Transmissions that a
+ * {@link DrainableTransmissionOutput} did not handle in time are written to the spill output, if there is one,
+ * in a single file.
+ *
  * Created by gupele on 12/18/2014.
  */
 public final class NonBlockingDispatcher implements TransmissionDispatcher {
+    // The part of the remaining stop timeout that an output may use for draining, the rest is kept for the spill
+    private final static double DRAIN_SHARE_OF_TIMEOUT = 2.0 / 3.0;
+
     private final TransmissionOutput[] transmissionOutputs;
+    private final TransmissionFileSystemOutput spillOutput;
 
     public NonBlockingDispatcher(TransmissionOutput[] transmissionOutputs) {
+        this(transmissionOutputs, null);
+    }
+
+    public NonBlockingDispatcher(TransmissionOutput[] transmissionOutputs, TransmissionFileSystemOutput spillOutput) {
         Preconditions.checkNotNull(transmissionOutputs, "transmissionOutputs should be non-null value");
         Preconditions.checkArgument(transmissionOutputs.length > 0, "There should be at least one TransmissionOutput");
 
         this.transmissionOutputs = transmissionOutputs;
+        this.spillOutput = spillOutput;
     }
 
     @Override
@@ -60,8 +76,25 @@ public final class NonBlockingDispatcher implements TransmissionDispatcher {
 
     @Override
     public void stop(long timeout, TimeUnit timeUnit) {
+        long deadlineInNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+
+        List<Transmission> notHandled = new ArrayList<Transmission>();
         for (TransmissionOutput output : transmissionOutputs) {
-            output.stop(timeout, timeUnit);
+            long remainingInNanos = Math.max(0, deadlineInNanos - System.nanoTime());
+            if (output instanceof DrainableTransmissionOutput) {
+                long drainTimeoutInNanos = spillOutput == null ? remainingInNanos : (long) (remainingInNanos * DRAIN_SHARE_OF_TIMEOUT);
+                notHandled.addAll(((DrainableTransmissionOutput) output).drain(drainTimeoutInNanos, TimeUnit.NANOSECONDS));
+            } else {
+                output.stop(remainingInNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        if (notHandled.isEmpty()) {
+            return;
+        }
+
+        if (spillOutput == null || !spillOutput.sendAll(notHandled)) {
+            InternalLogger.INSTANCE.error("%d transmissions were lost while stopping", notHandled.size());
         }
     }
 }
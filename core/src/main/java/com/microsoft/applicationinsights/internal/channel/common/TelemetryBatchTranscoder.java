@@ -0,0 +1,910 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.protobuf.BoolValue;
+import com.google.protobuf.DoubleValue;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Int32Value;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import com.microsoft.applicationinsights.telemetry.PageViewTelemetry;
+import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import com.microsoft.localforwarder.library.inputs.contracts.DataPoint;
+import com.microsoft.localforwarder.library.inputs.contracts.DataPointType;
+import com.microsoft.localforwarder.library.inputs.contracts.Dependency;
+import com.microsoft.localforwarder.library.inputs.contracts.Event;
+import com.microsoft.localforwarder.library.inputs.contracts.Exception;
+import com.microsoft.localforwarder.library.inputs.contracts.ExceptionDetails;
+import com.microsoft.localforwarder.library.inputs.contracts.Message;
+import com.microsoft.localforwarder.library.inputs.contracts.Metric;
+import com.microsoft.localforwarder.library.inputs.contracts.PageView;
+import com.microsoft.localforwarder.library.inputs.contracts.Request;
+import com.microsoft.localforwarder.library.inputs.contracts.SeverityLevel;
+import com.microsoft.localforwarder.library.inputs.contracts.StackFrame;
+import com.microsoft.localforwarder.library.inputs.contracts.Telemetry;
+import com.microsoft.localforwarder.library.inputs.contracts.TelemetryBatch;
+
+/**
+ * Transcodes the content of the in-process channel's {@link Transmission}s, gzipped JSON with one envelope per line,
+ * to a protobuf {@link TelemetryBatch} of the LocalForwarder contracts and back.
+ *
+ * The envelope name is kept as the data type name, durations, severity levels and data point kinds are stored in their
+ * protobuf types and the JSON written back holds the same fields in the order the SDK serializes them.
+ * Content that the contracts cannot hold without a loss, like performance counters, fields the SDK does not write or
+ * values that would not be written back the same way, is not transcoded.
+ */
+public final class TelemetryBatchTranscoder {
+    private final static Pattern DURATION_PATTERN = Pattern.compile("(?:(\\d+)\\.)?(\\d{2}):(\\d{2}):(\\d{2})(?:\\.(\\d{3})0000)?");
+    private final static int NANOS_IN_MILLISECOND = 1000000;
+
+    private TelemetryBatchTranscoder() {
+    }
+
+    /**
+     * Reads the JSON envelopes of the content into a batch.
+     * @param content The gzipped JSON lines, as written by {@link GzipTelemetrySerializer}.
+     * @return The batch, or null if the content cannot be transcoded without a loss.
+     */
+    public static TelemetryBatch fromGzippedJson(byte[] content) {
+        TelemetryBatch.Builder batch = TelemetryBatch.newBuilder();
+        try {
+            BufferedReader lines = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(content))));
+            try {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    JsonReader reader = new JsonReader(new StringReader(line));
+                    batch.addItems(readEnvelope(reader));
+                    if (reader.peek() != JsonToken.END_DOCUMENT) {
+                        throw new IOException("More than one envelope in a line");
+                    }
+                }
+            } finally {
+                lines.close();
+            }
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.trace("Transmission is not transcoded: %s", e.toString());
+            return null;
+        } catch (IllegalArgumentException e) {
+            // Includes the NumberFormatException of numbers that do not fit their field
+            InternalLogger.INSTANCE.trace("Transmission is not transcoded: %s", e.toString());
+            return null;
+        } catch (IllegalStateException e) {
+            InternalLogger.INSTANCE.trace("Transmission is not transcoded: %s", e.toString());
+            return null;
+        }
+
+        return batch.getItemsCount() == 0 ? null : batch.build();
+    }
+
+    /**
+     * Writes the items of the batch as JSON envelopes.
+     * @param batch The batch, as returned by {@link #fromGzippedJson(byte[])}.
+     * @return The gzipped JSON lines.
+     * @throws IOException If the batch could not be written.
+     */
+    public static byte[] toGzippedJson(TelemetryBatch batch) throws IOException {
+        String newline = System.getProperty("line.separator");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer out = new OutputStreamWriter(new GZIPOutputStream(bytes));
+        try {
+            for (int i = 0; i < batch.getItemsCount(); ++i) {
+                if (i != 0) {
+                    out.write(newline);
+                }
+                writeEnvelope(new JsonWriter(out), batch.getItems(i));
+            }
+        } finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Telemetry readEnvelope(JsonReader reader) throws IOException {
+        Telemetry.Builder telemetry = Telemetry.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "ver":
+                    telemetry.setVer(readInt(reader));
+                    break;
+                case "name":
+                    telemetry.setDataTypeName(readString(reader));
+                    break;
+                case "time":
+                    telemetry.setDateTime(readString(reader));
+                    break;
+                case "sampleRate":
+                    telemetry.setSamplingRate(DoubleValue.of(readDouble(reader)));
+                    break;
+                case "seq":
+                    telemetry.setSequenceNumber(readString(reader));
+                    break;
+                case "iKey":
+                    telemetry.setInstrumentationKey(readString(reader));
+                    break;
+                case "tags":
+                    telemetry.putAllTags(readStringMap(reader));
+                    break;
+                case "data":
+                    readData(reader, telemetry);
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        if (telemetry.getDataCase() == Telemetry.DataCase.DATA_NOT_SET) {
+            throw new IOException("Envelope without data");
+        }
+        return telemetry.build();
+    }
+
+    private static void readData(JsonReader reader, Telemetry.Builder telemetry) throws IOException {
+        String baseType = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("baseType".equals(name)) {
+                baseType = readString(reader);
+            } else if ("baseData".equals(name) && baseType != null) {
+                readBaseData(reader, baseType, telemetry);
+            } else {
+                throw unknownField(name);
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readBaseData(JsonReader reader, String baseType, Telemetry.Builder telemetry) throws IOException {
+        switch (baseType) {
+            case RequestTelemetry.BASE_TYPE:
+                telemetry.setRequest(readRequest(reader));
+                break;
+            case RemoteDependencyTelemetry.BASE_TYPE:
+                telemetry.setDependency(readDependency(reader));
+                break;
+            case EventTelemetry.BASE_TYPE:
+                telemetry.setEvent(readEvent(reader, null));
+                break;
+            case TraceTelemetry.BASE_TYPE:
+                telemetry.setMessage(readMessage(reader));
+                break;
+            case MetricTelemetry.BASE_TYPE:
+                telemetry.setMetric(readMetric(reader));
+                break;
+            case ExceptionTelemetry.BASE_TYPE:
+                telemetry.setException(readException(reader));
+                break;
+            case PageViewTelemetry.BASE_TYPE:
+                PageView.Builder pageView = PageView.newBuilder();
+                pageView.setEvent(readEvent(reader, pageView));
+                telemetry.setPageView(pageView);
+                break;
+            default:
+                throw new IOException("Base type " + baseType + " has no contract");
+        }
+    }
+
+    private static Request readRequest(JsonReader reader) throws IOException {
+        Request.Builder request = Request.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "ver":
+                    request.setVer(readInt(reader));
+                    break;
+                case "id":
+                    request.setId(readString(reader));
+                    break;
+                case "duration":
+                    request.setDuration(readDuration(reader));
+                    break;
+                case "responseCode":
+                    request.setResponseCode(readString(reader));
+                    break;
+                case "success":
+                    request.setSuccess(BoolValue.of(readBoolean(reader)));
+                    break;
+                case "source":
+                    request.setSource(readString(reader));
+                    break;
+                case "name":
+                    request.setName(readString(reader));
+                    break;
+                case "url":
+                    request.setUrl(readString(reader));
+                    break;
+                case "properties":
+                    request.putAllProperties(readStringMap(reader));
+                    break;
+                case "measurements":
+                    request.putAllMeasurements(readDoubleMap(reader));
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        return request.build();
+    }
+
+    private static Dependency readDependency(JsonReader reader) throws IOException {
+        Dependency.Builder dependency = Dependency.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "ver":
+                    dependency.setVer(readInt(reader));
+                    break;
+                case "name":
+                    dependency.setName(readString(reader));
+                    break;
+                case "id":
+                    dependency.setId(readString(reader));
+                    break;
+                case "resultCode":
+                    dependency.setResultCode(readString(reader));
+                    break;
+                case "duration":
+                    dependency.setDuration(readDuration(reader));
+                    break;
+                case "success":
+                    dependency.setSuccess(BoolValue.of(readBoolean(reader)));
+                    break;
+                case "data":
+                    dependency.setData(readString(reader));
+                    break;
+                case "type":
+                    dependency.setType(readString(reader));
+                    break;
+                case "target":
+                    dependency.setTarget(readString(reader));
+                    break;
+                case "properties":
+                    dependency.putAllProperties(readStringMap(reader));
+                    break;
+                case "measurements":
+                    dependency.putAllMeasurements(readDoubleMap(reader));
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        return dependency.build();
+    }
+
+    /**
+     * Reads an event, or the event of a page view along with the page view's own fields when it is given.
+     */
+    private static Event readEvent(JsonReader reader, PageView.Builder pageView) throws IOException {
+        Event.Builder event = Event.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "ver":
+                    event.setVer(readInt(reader));
+                    break;
+                case "name":
+                    event.setName(readString(reader));
+                    break;
+                case "properties":
+                    event.putAllProperties(readStringMap(reader));
+                    break;
+                case "measurements":
+                    event.putAllMeasurements(readDoubleMap(reader));
+                    break;
+                case "url":
+                    if (pageView == null) {
+                        throw unknownField(name);
+                    }
+                    pageView.setUrl(readString(reader));
+                    break;
+                case "duration":
+                    if (pageView == null) {
+                        throw unknownField(name);
+                    }
+                    pageView.setDuration(readDuration(reader));
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        return event.build();
+    }
+
+    private static Message readMessage(JsonReader reader) throws IOException {
+        Message.Builder message = Message.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "ver":
+                    message.setVer(readInt(reader));
+                    break;
+                case "message":
+                    message.setMessage(readString(reader));
+                    break;
+                case "severityLevel":
+                    message.setSeverityLevel(readSeverityLevel(reader));
+                    break;
+                case "properties":
+                    message.putAllProperties(readStringMap(reader));
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        return message.build();
+    }
+
+    private static Metric readMetric(JsonReader reader) throws IOException {
+        Metric.Builder metric = Metric.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "ver":
+                    metric.setVer(readInt(reader));
+                    break;
+                case "metrics":
+                    if (!readNull(reader)) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            metric.addMetrics(readDataPoint(reader));
+                        }
+                        reader.endArray();
+                    }
+                    break;
+                case "properties":
+                    metric.putAllProperties(readStringMap(reader));
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        return metric.build();
+    }
+
+    private static DataPoint readDataPoint(JsonReader reader) throws IOException {
+        DataPoint.Builder dataPoint = DataPoint.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "name":
+                    dataPoint.setName(readString(reader));
+                    break;
+                case "kind":
+                    DataPointType kind = DataPointType.forNumber(readInt(reader));
+                    if (kind == null) {
+                        throw new IOException("Unknown data point kind");
+                    }
+                    dataPoint.setKind(kind);
+                    break;
+                case "value":
+                    dataPoint.setValue(readDouble(reader));
+                    break;
+                case "count":
+                    dataPoint.setCount(Int32Value.of(readInt(reader)));
+                    break;
+                case "min":
+                    dataPoint.setMin(DoubleValue.of(readDouble(reader)));
+                    break;
+                case "max":
+                    dataPoint.setMax(DoubleValue.of(readDouble(reader)));
+                    break;
+                case "stdDev":
+                    dataPoint.setStdDev(DoubleValue.of(readDouble(reader)));
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        return dataPoint.build();
+    }
+
+    private static Exception readException(JsonReader reader) throws IOException {
+        Exception.Builder exception = Exception.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "ver":
+                    exception.setVer(readInt(reader));
+                    break;
+                case "exceptions":
+                    if (!readNull(reader)) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            exception.addExceptions(readExceptionDetails(reader));
+                        }
+                        reader.endArray();
+                    }
+                    break;
+                case "severityLevel":
+                    exception.setSeverityLevel(readSeverityLevel(reader));
+                    break;
+                case "problemId":
+                    exception.setProblemId(readString(reader));
+                    break;
+                case "properties":
+                    exception.putAllProperties(readStringMap(reader));
+                    break;
+                case "measurements":
+                    exception.putAllMeasurements(readDoubleMap(reader));
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        return exception.build();
+    }
+
+    private static ExceptionDetails readExceptionDetails(JsonReader reader) throws IOException {
+        ExceptionDetails.Builder details = ExceptionDetails.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "id":
+                    details.setId(readInt(reader));
+                    break;
+                case "outerId":
+                    details.setOuterId(readInt(reader));
+                    break;
+                case "typeName":
+                    details.setTypeName(readString(reader));
+                    break;
+                case "message":
+                    details.setMessage(readString(reader));
+                    break;
+                case "hasFullStack":
+                    details.setHasFullStack(BoolValue.of(readBoolean(reader)));
+                    break;
+                case "stack":
+                    details.setStack(readString(reader));
+                    break;
+                case "parsedStack":
+                    if (!readNull(reader)) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            details.addParsedStack(readStackFrame(reader));
+                        }
+                        reader.endArray();
+                    }
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        return details.build();
+    }
+
+    private static StackFrame readStackFrame(JsonReader reader) throws IOException {
+        StackFrame.Builder frame = StackFrame.newBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "level":
+                    frame.setLevel(readInt(reader));
+                    break;
+                case "method":
+                    frame.setMethod(readString(reader));
+                    break;
+                case "assembly":
+                    frame.setAssembly(readString(reader));
+                    break;
+                case "fileName":
+                    frame.setFileName(readString(reader));
+                    break;
+                case "line":
+                    frame.setLine(readInt(reader));
+                    break;
+                default:
+                    throw unknownField(name);
+            }
+        }
+        reader.endObject();
+        return frame.build();
+    }
+
+    private static SeverityLevel readSeverityLevel(JsonReader reader) throws IOException {
+        String severityLevel = readString(reader);
+        switch (severityLevel) {
+            case "Verbose":
+                return SeverityLevel.Verbose;
+            case "Information":
+                return SeverityLevel.Information;
+            case "Warning":
+                return SeverityLevel.Warning;
+            case "Error":
+                return SeverityLevel.Error;
+            case "Critical":
+                return SeverityLevel.Critical;
+            default:
+                throw new IOException("Unknown severity level " + severityLevel);
+        }
+    }
+
+    private static Duration readDuration(JsonReader reader) throws IOException {
+        String value = readString(reader);
+        Matcher matcher = DURATION_PATTERN.matcher(value);
+        if (!matcher.matches()) {
+            throw new IOException("Unknown duration format " + value);
+        }
+        long days = matcher.group(1) == null ? 0 : Long.parseLong(matcher.group(1));
+        long seconds = ((days * 24 + Integer.parseInt(matcher.group(2))) * 60 + Integer.parseInt(matcher.group(3))) * 60 + Integer.parseInt(matcher.group(4));
+        int milliseconds = matcher.group(5) == null ? 0 : Integer.parseInt(matcher.group(5));
+
+        // Leading zeros or out of range parts would not be written back the same way
+        Duration duration = Duration.newBuilder().setSeconds(seconds).setNanos(milliseconds * NANOS_IN_MILLISECOND).build();
+        if (!value.equals(formatDuration(duration))) {
+            throw new IOException("Duration " + value + " is not in the SDK's format");
+        }
+        return duration;
+    }
+
+    private static Map<String, String> readStringMap(JsonReader reader) throws IOException {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        if (!readNull(reader)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                expect(reader, JsonToken.STRING);
+                map.put(name, reader.nextString());
+            }
+            reader.endObject();
+        }
+        return map;
+    }
+
+    private static Map<String, Double> readDoubleMap(JsonReader reader) throws IOException {
+        Map<String, Double> map = new LinkedHashMap<String, Double>();
+        if (!readNull(reader)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                map.put(reader.nextName(), readDouble(reader));
+            }
+            reader.endObject();
+        }
+        return map;
+    }
+
+    /**
+     * Reads a string field, the SDK does not write empty ones.
+     */
+    private static String readString(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.STRING);
+        String value = reader.nextString();
+        if (value.isEmpty()) {
+            throw new IOException("Empty string field");
+        }
+        return value;
+    }
+
+    private static int readInt(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.NUMBER);
+        return reader.nextInt();
+    }
+
+    private static double readDouble(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.NUMBER);
+        return reader.nextDouble();
+    }
+
+    private static boolean readBoolean(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.BOOLEAN);
+        return reader.nextBoolean();
+    }
+
+    /**
+     * Reads the null that the SDK writes for empty maps and lists.
+     * @return True if the value was null.
+     */
+    private static boolean readNull(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.NULL) {
+            return false;
+        }
+        reader.nextNull();
+        return true;
+    }
+
+    private static void expect(JsonReader reader, JsonToken token) throws IOException {
+        JsonToken actual = reader.peek();
+        if (actual != token) {
+            throw new IOException("Expected " + token + " but was " + actual);
+        }
+    }
+
+    private static IOException unknownField(String name) {
+        return new IOException("Unknown field " + name);
+    }
+
+    private static void writeEnvelope(JsonWriter writer, Telemetry telemetry) throws IOException {
+        writer.beginObject();
+        writer.name("ver").value(telemetry.getVer());
+        writeString(writer, "name", telemetry.getDataTypeName());
+        writeString(writer, "time", telemetry.getDateTime());
+        if (telemetry.hasSamplingRate()) {
+            writer.name("sampleRate").value(telemetry.getSamplingRate().getValue());
+        }
+        writeString(writer, "seq", telemetry.getSequenceNumber());
+        writeString(writer, "iKey", telemetry.getInstrumentationKey());
+        writeStringMap(writer, "tags", telemetry.getTagsMap());
+
+        writer.name("data").beginObject();
+        switch (telemetry.getDataCase()) {
+            case REQUEST:
+                writer.name("baseType").value(RequestTelemetry.BASE_TYPE);
+                writeRequest(writer.name("baseData"), telemetry.getRequest());
+                break;
+            case DEPENDENCY:
+                writer.name("baseType").value(RemoteDependencyTelemetry.BASE_TYPE);
+                writeDependency(writer.name("baseData"), telemetry.getDependency());
+                break;
+            case EVENT:
+                writer.name("baseType").value(EventTelemetry.BASE_TYPE);
+                writeEvent(writer.name("baseData"), telemetry.getEvent(), null);
+                break;
+            case MESSAGE:
+                writer.name("baseType").value(TraceTelemetry.BASE_TYPE);
+                writeMessage(writer.name("baseData"), telemetry.getMessage());
+                break;
+            case METRIC:
+                writer.name("baseType").value(MetricTelemetry.BASE_TYPE);
+                writeMetric(writer.name("baseData"), telemetry.getMetric());
+                break;
+            case EXCEPTION:
+                writer.name("baseType").value(ExceptionTelemetry.BASE_TYPE);
+                writeException(writer.name("baseData"), telemetry.getException());
+                break;
+            case PAGEVIEW:
+                writer.name("baseType").value(PageViewTelemetry.BASE_TYPE);
+                writeEvent(writer.name("baseData"), telemetry.getPageView().getEvent(), telemetry.getPageView());
+                break;
+            default:
+                // Only written by the LocalForwarder channel, which does not persist through this format
+                throw new IOException("Data " + telemetry.getDataCase() + " cannot be written as JSON");
+        }
+        writer.endObject();
+
+        writer.endObject();
+        writer.flush();
+    }
+
+    private static void writeRequest(JsonWriter writer, Request request) throws IOException {
+        writer.beginObject();
+        writer.name("ver").value(request.getVer());
+        writeString(writer, "id", request.getId());
+        writeDuration(writer, "duration", request.getDuration());
+        writeString(writer, "responseCode", request.getResponseCode());
+        if (request.hasSuccess()) {
+            writer.name("success").value(request.getSuccess().getValue());
+        }
+        writeString(writer, "source", request.getSource());
+        writeString(writer, "name", request.getName());
+        writeString(writer, "url", request.getUrl());
+        writeStringMap(writer, "properties", request.getPropertiesMap());
+        writeDoubleMap(writer, "measurements", request.getMeasurementsMap());
+        writer.endObject();
+    }
+
+    private static void writeDependency(JsonWriter writer, Dependency dependency) throws IOException {
+        writer.beginObject();
+        writer.name("ver").value(dependency.getVer());
+        writeString(writer, "name", dependency.getName());
+        writeString(writer, "id", dependency.getId());
+        writeString(writer, "resultCode", dependency.getResultCode());
+        writeDuration(writer, "duration", dependency.getDuration());
+        if (dependency.hasSuccess()) {
+            writer.name("success").value(dependency.getSuccess().getValue());
+        }
+        writeString(writer, "data", dependency.getData());
+        writeString(writer, "type", dependency.getType());
+        writeString(writer, "target", dependency.getTarget());
+        writeStringMap(writer, "properties", dependency.getPropertiesMap());
+        writeDoubleMap(writer, "measurements", dependency.getMeasurementsMap());
+        writer.endObject();
+    }
+
+    private static void writeEvent(JsonWriter writer, Event event, PageView pageView) throws IOException {
+        writer.beginObject();
+        writer.name("ver").value(event.getVer());
+        writeString(writer, "name", event.getName());
+        writeStringMap(writer, "properties", event.getPropertiesMap());
+        writeDoubleMap(writer, "measurements", event.getMeasurementsMap());
+        if (pageView != null) {
+            writeString(writer, "url", pageView.getUrl());
+            writeDuration(writer, "duration", pageView.getDuration());
+        }
+        writer.endObject();
+    }
+
+    private static void writeMessage(JsonWriter writer, Message message) throws IOException {
+        writer.beginObject();
+        writer.name("ver").value(message.getVer());
+        writeString(writer, "message", message.getMessage());
+        writeSeverityLevel(writer, message.getSeverityLevel());
+        writeStringMap(writer, "properties", message.getPropertiesMap());
+        writer.endObject();
+    }
+
+    private static void writeMetric(JsonWriter writer, Metric metric) throws IOException {
+        writer.beginObject();
+        writer.name("ver").value(metric.getVer());
+        if (metric.getMetricsCount() > 0) {
+            writer.name("metrics").beginArray();
+            for (DataPoint dataPoint : metric.getMetricsList()) {
+                writer.beginObject();
+                writeString(writer, "name", dataPoint.getName());
+                writer.name("kind").value(dataPoint.getKindValue());
+                writer.name("value").value(dataPoint.getValue());
+                if (dataPoint.hasCount()) {
+                    writer.name("count").value(dataPoint.getCount().getValue());
+                }
+                if (dataPoint.hasMin()) {
+                    writer.name("min").value(dataPoint.getMin().getValue());
+                }
+                if (dataPoint.hasMax()) {
+                    writer.name("max").value(dataPoint.getMax().getValue());
+                }
+                if (dataPoint.hasStdDev()) {
+                    writer.name("stdDev").value(dataPoint.getStdDev().getValue());
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+        writeStringMap(writer, "properties", metric.getPropertiesMap());
+        writer.endObject();
+    }
+
+    private static void writeException(JsonWriter writer, Exception exception) throws IOException {
+        writer.beginObject();
+        writer.name("ver").value(exception.getVer());
+        if (exception.getExceptionsCount() > 0) {
+            writer.name("exceptions").beginArray();
+            for (ExceptionDetails details : exception.getExceptionsList()) {
+                writeExceptionDetails(writer, details);
+            }
+            writer.endArray();
+        }
+        writeSeverityLevel(writer, exception.getSeverityLevel());
+        writeString(writer, "problemId", exception.getProblemId());
+        writeStringMap(writer, "properties", exception.getPropertiesMap());
+        writeDoubleMap(writer, "measurements", exception.getMeasurementsMap());
+        writer.endObject();
+    }
+
+    private static void writeExceptionDetails(JsonWriter writer, ExceptionDetails details) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(details.getId());
+        writer.name("outerId").value(details.getOuterId());
+        writeString(writer, "typeName", details.getTypeName());
+        writeString(writer, "message", details.getMessage());
+        if (details.hasHasFullStack()) {
+            writer.name("hasFullStack").value(details.getHasFullStack().getValue());
+        }
+        writeString(writer, "stack", details.getStack());
+        if (details.getParsedStackCount() > 0) {
+            writer.name("parsedStack").beginArray();
+            for (StackFrame frame : details.getParsedStackList()) {
+                writer.beginObject();
+                writer.name("level").value(frame.getLevel());
+                writeString(writer, "method", frame.getMethod());
+                writeString(writer, "assembly", frame.getAssembly());
+                writeString(writer, "fileName", frame.getFileName());
+                writer.name("line").value(frame.getLine());
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    private static void writeSeverityLevel(JsonWriter writer, SeverityLevel severityLevel) throws IOException {
+        switch (severityLevel) {
+            case Verbose:
+            case Information:
+            case Warning:
+            case Error:
+            case Critical:
+                writer.name("severityLevel").value(severityLevel.name());
+                break;
+            default:
+                // Unknown, the SDK did not write a severity level
+                break;
+        }
+    }
+
+    private static void writeDuration(JsonWriter writer, String name, Duration duration) throws IOException {
+        writer.name(name).value(formatDuration(duration));
+    }
+
+    private static String formatDuration(Duration duration) {
+        long milliseconds = duration.getSeconds() * 1000 + duration.getNanos() / NANOS_IN_MILLISECOND;
+        return new com.microsoft.applicationinsights.telemetry.Duration(milliseconds).toString();
+    }
+
+    private static void writeString(JsonWriter writer, String name, String value) throws IOException {
+        if (!value.isEmpty()) {
+            writer.name(name).value(value);
+        }
+    }
+
+    private static void writeStringMap(JsonWriter writer, String name, Map<String, String> map) throws IOException {
+        if (map.isEmpty()) {
+            return;
+        }
+        writer.name(name).beginObject();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writer.name(entry.getKey()).value(entry.getValue());
+        }
+        writer.endObject();
+    }
+
+    private static void writeDoubleMap(JsonWriter writer, String name, Map<String, Double> map) throws IOException {
+        if (map.isEmpty()) {
+            return;
+        }
+        writer.name(name).beginObject();
+        for (Map.Entry<String, Double> entry : map.entrySet()) {
+            writer.name(entry.getKey()).value(entry.getValue().doubleValue());
+        }
+        writer.endObject();
+    }
+}
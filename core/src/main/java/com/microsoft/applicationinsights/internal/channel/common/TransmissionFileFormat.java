@@ -0,0 +1,190 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.microsoft.localforwarder.library.inputs.contracts.TelemetryBatch;
+
+/**
+ * The binary layout of the files that hold persisted {@link Transmission}s.
+ *
+ * A file starts with a magic number and a format version, followed by the number of transmissions and
+ * then by each transmission as its metadata, the format of its content and its length prefixed content.
+ * The gzipped JSON of the in-process channel is stored as a gzipped protobuf {@link TelemetryBatch},
+ * see {@link TelemetryBatchTranscoder}, and is only transcoded back to JSON when the file is read to be sent.
+ * Other content, like the batches of the LocalForwarder channel or JSON that the batch cannot hold, is stored as is.
+ *
+ * Files that were written with Java serialization by earlier versions of the SDK are still read.
+ */
+public final class TransmissionFileFormat {
+    // 'AITF', which cannot be confused with the 0xACED stream header of Java serialization
+    static final int MAGIC = 0x41495446;
+    static final int FORMAT_VERSION = 2;
+
+    // How the content of a transmission is stored
+    static final int CONTENT_AS_IS = 0;
+    static final int CONTENT_GZIPPED_TELEMETRY_BATCH = 1;
+
+    private TransmissionFileFormat() {
+    }
+
+    /**
+     * Writes the transmissions, the stream is flushed but not closed.
+     * @param transmissions The transmissions to write.
+     * @param outputStream The stream to write to.
+     * @throws IOException If writing to the stream failed.
+     */
+    public static void write(Collection<Transmission> transmissions, OutputStream outputStream) throws IOException {
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeShort(FORMAT_VERSION);
+        output.writeInt(transmissions.size());
+        for (Transmission transmission : transmissions) {
+            output.writeInt(transmission.getVersion());
+            output.writeInt(transmission.getNumberOfSends());
+            output.writeInt(transmission.getNumberOfPersistence());
+            output.writeUTF(transmission.getWebContentType());
+            output.writeUTF(transmission.getWebContentEncodingType());
+            byte[] content = transmission.getContent();
+            TelemetryBatch batch = isGzippedJson(transmission) ? TelemetryBatchTranscoder.fromGzippedJson(content) : null;
+            if (batch != null) {
+                content = compress(batch);
+                output.writeByte(CONTENT_GZIPPED_TELEMETRY_BATCH);
+            } else {
+                output.writeByte(CONTENT_AS_IS);
+            }
+            output.writeInt(content.length);
+            output.write(content);
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads the transmissions of a file in either this format or the Java serialization of earlier versions.
+     * @param inputStream The stream to read from, it is not closed.
+     * @return The transmissions, never null.
+     * @throws IOException If the stream could not be read or does not hold transmissions.
+     */
+    public static List<Transmission> read(InputStream inputStream) throws IOException {
+        InputStream buffered = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        buffered.mark(4);
+        DataInputStream input = new DataInputStream(buffered);
+        if (input.readInt() != MAGIC) {
+            buffered.reset();
+            return readSerialized(buffered);
+        }
+
+        int formatVersion = input.readUnsignedShort();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unknown transmission file format version " + formatVersion);
+        }
+
+        int count = input.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupted transmission file, negative count " + count);
+        }
+        List<Transmission> transmissions = new ArrayList<Transmission>(count);
+        for (int i = 0; i < count; ++i) {
+            int version = input.readInt();
+            int numberOfSends = input.readInt();
+            int numberOfPersistence = input.readInt();
+            String webContentType = input.readUTF();
+            String webContentEncodingType = input.readUTF();
+            int contentFormat = input.readUnsignedByte();
+            int length = input.readInt();
+            if (length < 0) {
+                throw new IOException("Corrupted transmission file, negative length " + length);
+            }
+            byte[] content = new byte[length];
+            input.readFully(content);
+            if (contentFormat == CONTENT_GZIPPED_TELEMETRY_BATCH) {
+                content = TelemetryBatchTranscoder.toGzippedJson(decompress(content));
+            } else if (contentFormat != CONTENT_AS_IS) {
+                throw new IOException("Corrupted transmission file, unknown content format " + contentFormat);
+            }
+
+            Transmission transmission = new Transmission(content, webContentType, webContentEncodingType, version);
+            transmission.setNumberOfSends(numberOfSends);
+            transmission.setNumberOfPersistence(numberOfPersistence);
+            transmissions.add(transmission);
+        }
+        return transmissions;
+    }
+
+    private static boolean isGzippedJson(Transmission transmission) {
+        return GzipTelemetrySerializer.GZIP_WEB_CONTENT_TYPE.equals(transmission.getWebContentType()) &&
+                GzipTelemetrySerializer.GZIP_WEB_ENCODING_TYPE.equals(transmission.getWebContentEncodingType());
+    }
+
+    private static byte[] compress(TelemetryBatch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream zipStream = new GZIPOutputStream(bytes);
+        try {
+            batch.writeTo(zipStream);
+        } finally {
+            zipStream.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TelemetryBatch decompress(byte[] content) throws IOException {
+        InputStream zipStream = new GZIPInputStream(new ByteArrayInputStream(content));
+        try {
+            return TelemetryBatch.parseFrom(zipStream);
+        } finally {
+            zipStream.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Transmission> readSerialized(InputStream inputStream) throws IOException {
+        ObjectInputStream input = new ObjectInputStream(inputStream);
+        try {
+            Object content = input.readObject();
+            if (content instanceof Transmission) {
+                return Collections.singletonList((Transmission) content);
+            }
+            if (content instanceof List) {
+                return (List<Transmission>) content;
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Non transmission content: " + e.toString());
+        }
+
+        return Collections.emptyList();
+    }
+}
@@ -23,17 +23,13 @@ package com.microsoft.applicationinsights.internal.channel.common;
 
 import java.io.File;
 import java.io.InputStream;
-import java.io.ObjectInput;
 import java.io.FileInputStream;
 import java.io.BufferedInputStream;
-import java.io.ObjectInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.BufferedOutputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -64,13 +60,18 @@ import com.google.common.collect.Lists;
  * With that data it knows how to store incoming Transmissions and store them into files that can be later
  * be read back into Transmissions.
  *
+ * A file holds either a single Transmission or, when the channel is stopped, all the
+ * Transmissions that were not sent. When such a file is loaded, its first Transmission is returned and
+ * the others are written back to files of their own, so they stay on disk until they are fetched.
+ * See {@link TransmissionFileFormat} for the layout of the files.
+ *
  * Created by gupele on 12/18/2014.
  */
 public final class TransmissionFileSystemOutput implements TransmissionOutput {
     private final static String TRANSMISSION_FILE_PREFIX = "Transmission";
-    private final static String TRANSMISSION_DEFAULT_FOLDER = "transmissions";
+    public final static String TRANSMISSION_DEFAULT_FOLDER = "transmissions";
     private final static String TEMP_FILE_EXTENSION = ".tmp";
-    private final static String TRANSMISSION_FILE_EXTENSION = ".trn";
+    public final static String TRANSMISSION_FILE_EXTENSION = ".trn";
     private final static String TRANSMISSION_FILE_EXTENSION_FOR_SEARCH = "trn";
     private final static int NUMBER_OF_FILES_TO_CACHE = 128;
 
@@ -134,7 +135,41 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
 
     @Override
     public boolean send(Transmission transmission) {
+        if (!hasCapacity()) {
+            return false;
+        }
+
+        if (!persist(Collections.singletonList(transmission))) {
+            return false;
+        }
+
+        InternalLogger.INSTANCE.info("Data persisted to file. To be sent when the network is available.");
+        return true;
+    }
 
+    /**
+     * Persists all the transmissions in a single file, which is written sequentially with one stream.
+     * @param transmissions The transmissions to persist.
+     * @return True if the transmissions were persisted.
+     */
+    public boolean sendAll(Collection<Transmission> transmissions) {
+        if (transmissions.isEmpty()) {
+            return true;
+        }
+
+        if (!hasCapacity()) {
+            return false;
+        }
+
+        if (!persist(transmissions)) {
+            return false;
+        }
+
+        InternalLogger.INSTANCE.info("%d transmissions persisted to file. To be sent when the network is available.", transmissions.size());
+        return true;
+    }
+
+    private boolean hasCapacity() {
         long currentSizeInBytes = size.get();
         if (currentSizeInBytes >= capacityInBytes) {
         	InternalLogger.INSTANCE.logAlways(InternalLogger.LoggingLevel.WARN, "Persistent storage max capacity has been reached; "
@@ -144,21 +179,46 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
             return false;
         }
 
+        return true;
+    }
+
+    private boolean persist(Collection<Transmission> content) {
         Optional<File> tempTransmissionFile = createTemporaryFile();
         if (!tempTransmissionFile.isPresent()) {
             return false;
         }
 
-        if (!saveTransmission(tempTransmissionFile.get(), transmission)) {
+        if (!saveTransmission(tempTransmissionFile.get(), content)) {
             return false;
         }
 
-        if (!renameToPermanentName(tempTransmissionFile.get())) {
-            return false;
+        return renameToPermanentName(tempTransmissionFile.get());
+    }
+
+    /**
+     * Writes every transmission to a file of its own. The transmissions were already on disk,
+     * so the capacity is not checked again.
+     * @param lastModified The modification time of the file the transmissions were loaded from.
+     */
+    private void persistEach(Collection<Transmission> transmissions, long lastModified) {
+        int lost = 0;
+        for (Transmission transmission : transmissions) {
+            Optional<File> tempTransmissionFile = createTemporaryFile();
+            if (!tempTransmissionFile.isPresent() || !saveTransmission(tempTransmissionFile.get(), Collections.singletonList(transmission))) {
+                ++lost;
+                continue;
+            }
+
+            // The oldest file is fetched first, so the transmissions keep the order they had in the loaded file
+            tempTransmissionFile.get().setLastModified(++lastModified);
+            if (!renameToPermanentName(tempTransmissionFile.get())) {
+                ++lost;
+            }
         }
 
-        InternalLogger.INSTANCE.info("Data persisted to file. To be sent when the network is available.");
-        return true;
+        if (lost > 0) {
+            InternalLogger.INSTANCE.error("Failed to write back %d of the %d transmissions loaded from a file, they are lost", lost, transmissions.size());
+        }
     }
 
     @Override
@@ -180,7 +240,10 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
                 }
 
                 File tempFile = oldestFileAsTemp.get();
-                Optional<Transmission> transmission = loadTransmission(tempFile);
+                List<Transmission> transmissions = loadTransmissions(tempFile);
+                if (transmissions.size() > 1) {
+                    persistEach(transmissions.subList(1, transmissions.size()), tempFile.lastModified());
+                }
 
                 // On the vast majority of times this should work
                 // but there might be some timing issues, that's why we try twice
@@ -196,7 +259,10 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
                     }
                 }
 
-                return transmission.get();
+                if (transmissions.isEmpty()) {
+                    return null;
+                }
+                return transmissions.get(0);
             } finally {
                 synchronized (this) {
                     filesThatAreBeingLoaded.remove(fileName);
@@ -242,24 +308,19 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
         return asList;
     }
 
-    private Optional<Transmission> loadTransmission(File file) {
-        Transmission transmission = null;
+    private List<Transmission> loadTransmissions(File file) {
+        List<Transmission> transmissions = Collections.emptyList();
 
-        InputStream fileInput = null;
-        ObjectInput input = null;
+        InputStream input = null;
         try {
             if (file == null) {
-                return Optional.absent();
+                return transmissions;
             }
 
-            fileInput = new FileInputStream(file);
-            InputStream buffer = new BufferedInputStream(fileInput);
-            input = new ObjectInputStream (buffer);
-            transmission = (Transmission)input.readObject();
+            input = new BufferedInputStream(new FileInputStream(file));
+            transmissions = TransmissionFileFormat.read(input);
         } catch (FileNotFoundException e) {
             InternalLogger.INSTANCE.error("Failed to load transmission, file not found, exception: %s", e.toString());
-        } catch (ClassNotFoundException e) {
-            InternalLogger.INSTANCE.error("Failed to load transmission, non transmission, exception: %s", e.toString());
         } catch (IOException e) {
             InternalLogger.INSTANCE.error("Failed to load transmission, io exception: %s", e.toString());
         } finally{
@@ -271,7 +332,7 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
             }
         }
 
-        return Optional.fromNullable(transmission);
+        return transmissions;
     }
 
     private boolean renameToPermanentName(File tempTransmissionFile) {
@@ -303,20 +364,17 @@ public final class TransmissionFileSystemOutput implements TransmissionOutput {
         return Optional.fromNullable(transmissionFile);
     }
 
-    private boolean saveTransmission(File transmissionFile, Transmission transmission) {
+    private boolean saveTransmission(File transmissionFile, Collection<Transmission> transmissions) {
         try {
-            OutputStream fileOutput = new FileOutputStream(transmissionFile);
-            OutputStream buffer = new BufferedOutputStream(fileOutput);
-            ObjectOutput output = new ObjectOutputStream(buffer);
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(transmissionFile));
             try{
-                output.writeObject(transmission);
+                TransmissionFileFormat.write(transmissions, output);
             } catch (IOException e) {
                 InternalLogger.INSTANCE.error("Failed to save transmission, exception: %s", e.toString());
+                return false;
             } finally{
                 try {
                     output.close();
-                    buffer.close();
-                    fileOutput.close();
                 } catch (Exception e) {
                     return false;
                 }
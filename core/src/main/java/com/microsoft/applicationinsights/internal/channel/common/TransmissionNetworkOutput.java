@@ -134,12 +134,12 @@ public final class TransmissionNetworkOutput implements TransmissionOutput {
     }
 
     /**
-     * Stops all threads from sending data.
+     * Stops all threads from sending data, and then the transmission policy manager.
 	 *
 	 * @param timeout
-	 *            The timeout to wait, which is not relevant here.
+	 *            The timeout to wait for the transmission policy manager.
 	 * @param timeUnit
-	 *            The time unit, which is not relevant in this method.
+	 *            The time unit of the timeout.
      */
     @Override
     public synchronized void stop(long timeout, TimeUnit timeUnit) {
@@ -149,6 +149,9 @@ public final class TransmissionNetworkOutput implements TransmissionOutput {
 
         httpClient.close();
         stopped = true;
+
+        // Nothing is sent anymore, so the throttling state is no longer needed
+        transmissionPolicyManager.stop(timeout, timeUnit);
     }
 
     /**
@@ -25,7 +25,6 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -35,9 +34,9 @@ import com.microsoft.applicationinsights.internal.channel.TransmissionHandler;
 import com.microsoft.applicationinsights.internal.channel.TransmissionHandlerArgs;
 import com.microsoft.applicationinsights.internal.channel.TransmissionHandlerObserver;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
-import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
 import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
-import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 
 /**
  * This class is responsible for managing the transmission state.
@@ -68,8 +67,8 @@ public final class TransmissionPolicyManager implements Stoppable, TransmissionH
     // Make sure that we don't double block, we do that by keeping un up-to-date generation id
     private AtomicLong generation = new AtomicLong(0);
 
-    // A thread that will callback when the timeout expires
-    private ScheduledThreadPoolExecutor threads;
+    // Calls back when the timeout expires
+    private TaskGroup tasks;
 
     // Keeps the current policy state of the transmission
     private final TransmissionPolicyState policyState = new TransmissionPolicyState();
@@ -154,7 +153,9 @@ public final class TransmissionPolicyManager implements Stoppable, TransmissionH
      */
     @Override
     public synchronized void stop(long timeout, TimeUnit timeUnit) {
-        ThreadPoolUtils.stop(threads, timeout, timeUnit);
+        if (tasks != null) {
+            tasks.stop(timeout, timeUnit);
+        }
     }
 
     /**
@@ -182,7 +183,7 @@ public final class TransmissionPolicyManager implements Stoppable, TransmissionH
 
             long currentGeneration = generation.incrementAndGet();
 
-            threads.schedule(new UnSuspender(currentGeneration), suspendInSeconds, TimeUnit.SECONDS);
+            tasks.schedule("unSuspender", new UnSuspender(currentGeneration), suspendInSeconds, TimeUnit.SECONDS);
             policyState.setCurrentState(policy);
             suspensionDate = date;
 
@@ -210,14 +211,12 @@ public final class TransmissionPolicyManager implements Stoppable, TransmissionH
     }
 
     private synchronized void createScheduler() {
-        if (threads != null) {
+        if (tasks != null) {
             return;
         }
 
-        threads = new ScheduledThreadPoolExecutor(1);
-        threads.setThreadFactory(ThreadPoolUtils.createDaemonThreadFactory(TransmissionPolicyManager.class, instanceId));
-
-        SDKShutdownActivity.INSTANCE.register(this);
+        // Stopped by the network output that uses this instance, once its channel is done sending
+        tasks = SdkScheduler.INSTANCE.createTaskGroup(String.format("%s_%d", TransmissionPolicyManager.class.getSimpleName(), instanceId));
     }
 
     @Override
@@ -22,8 +22,6 @@
 package com.microsoft.applicationinsights.internal.channel.common;
 
 import java.util.Collection;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -33,7 +31,8 @@ import com.microsoft.applicationinsights.internal.channel.TelemetrySerializer;
 import com.microsoft.applicationinsights.internal.channel.TransmissionDispatcher;
 import com.microsoft.applicationinsights.internal.channel.TransmissionsLoader;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
-import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
@@ -45,8 +44,8 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
  * The class is responsible holds the classes that do the actual sending to the server
  * Telemetry instances buffered in a collection are sent through this class.
  *
- * The class makes sure that the container of telemetries is sent using internal threads
- * and not the 'application' threads
+ * The class makes sure that the container of telemetries is sent using the {@link SdkScheduler}
+ * I/O threads and not the 'application' threads
  *
  * Created by gupele on 12/18/2014.
  */
@@ -121,7 +120,7 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
 
     private final TelemetrySerializer serializer;
 
-    private final ScheduledExecutorService threadPool;
+    private final TaskGroup tasks;
 
     private final TransmissionsLoader transmissionsLoader;
 
@@ -139,7 +138,7 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
 
         semaphore = new Semaphore(MAX_PENDING_SCHEDULE_REQUESTS);
 
-        threadPool = Executors.newScheduledThreadPool(2, ThreadPoolUtils.createDaemonThreadFactory(TransmitterImpl.class, instanceId));
+        tasks = SdkScheduler.INSTANCE.createIoTaskGroup(String.format("%s_%d", TransmitterImpl.class.getSimpleName(), instanceId), true);
 
         this.transmissionsLoader = transmissionsLoader;
         this.transmissionsLoader.load(false);
@@ -155,7 +154,7 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
 
         try {
             final Runnable command = new ScheduledSendHandler(transmissionDispatcher, telemetriesFetcher, serializer);
-            threadPool.schedule(new Runnable() {
+            boolean scheduled = tasks.schedule("scheduledSend", new Runnable() {
                 public void run() {
                     try {
                         semaphore.release();
@@ -175,7 +174,10 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
                 }
             }, value, timeUnit);
 
-            return true;
+            if (!scheduled) {
+                semaphore.release();
+            }
+            return scheduled;
         } catch (ThreadDeath td) {
         	throw td;
         } catch (Throwable t) {
@@ -203,7 +205,7 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
 
         final Runnable command = new SendNowHandler(transmissionDispatcher, serializer, telemetries);
         try {
-            threadPool.execute(new Runnable() {
+            boolean executed = tasks.execute("sendNow", new Runnable() {
                 public void run() {
                     try {
                         semaphore.release();
@@ -224,7 +226,10 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
                 }
             });
 
-            return true;
+            if (!executed) {
+                semaphore.release();
+            }
+            return executed;
         } catch (ThreadDeath td) {
         	throw td;
         } catch (Throwable t) {
@@ -242,10 +247,20 @@ public final class TransmitterImpl implements TelemetriesTransmitter<String> {
         return false;
     }
 
+    /**
+     * Stops within the timeout: the pending sends are dispatched first, using up to half of the timeout,
+     * and the rest of it is left for the dispatcher to send or persist what it holds.
+     */
     @Override
     public void stop(long timeout, TimeUnit timeUnit) {
-        transmissionsLoader.stop(timeout, timeUnit);
-        ThreadPoolUtils.stop(threadPool, timeout, timeUnit);
-        transmissionDispatcher.stop(timeout, timeUnit);
+        long deadlineInNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+
+        transmissionsLoader.stop(timeout / 2, timeUnit);
+
+        long remainingInNanos = Math.max(0, deadlineInNanos - System.nanoTime());
+        tasks.stop(remainingInNanos / 2, TimeUnit.NANOSECONDS);
+
+        remainingInNanos = Math.max(0, deadlineInNanos - System.nanoTime());
+        transmissionDispatcher.stop(remainingInNanos, TimeUnit.NANOSECONDS);
     }
 }
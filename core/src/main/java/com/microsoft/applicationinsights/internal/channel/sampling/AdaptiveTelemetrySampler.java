@@ -23,15 +23,15 @@ package com.microsoft.applicationinsights.internal.channel.sampling;
 
 import java.util.Date;
 import java.util.Set;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.microsoft.applicationinsights.channel.TelemetrySampler;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
 import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
 import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
-import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
 
 /**
@@ -142,14 +142,16 @@ public final class AdaptiveTelemetrySampler implements Stoppable, TelemetrySampl
 
     private final AtomicLong counter = new AtomicLong(0);
 
-    private ScheduledThreadPoolExecutor threads;
+    private TaskGroup tasks;
 
     // We use the 'FixedRateTelemetrySampler' to do the actual sampling
     private final FixedRateTelemetrySampler sampler = new FixedRateTelemetrySampler();
 
     @Override
     public synchronized void stop(long timeout, TimeUnit timeUnit) {
-        ThreadPoolUtils.stop(threads, timeout, timeUnit);
+        if (tasks != null) {
+            tasks.stop(timeout, timeUnit);
+        }
     }
 
     /**
@@ -181,11 +183,11 @@ public final class AdaptiveTelemetrySampler implements Stoppable, TelemetrySampl
         this.currentSamplingPercentage = getDoubleValueOrDefault("initialSamplingPercentage", initialSamplingPercentage, DEFAULT_INITIAL_SAMPLING_PERCENTAGE, 0.0, 100.0);
         this.movingAverageRatio = getDoubleValueOrDefault("movingAverageRatio", movingAverageRatio, DEFAULT_MOVING_AVERAGE_RATIO, 0.0, 100.0);
 
-        createTimerThread();
+        tasks = SdkScheduler.INSTANCE.createTaskGroup(AdaptiveTelemetrySampler.class.getSimpleName());
 
         lastChangedDate = new Date();
         sampler.setSamplingPercentage(this.currentSamplingPercentage);
-        threads.scheduleAtFixedRate(new SamplingRangeEvaluator(), this.evaluationIntervalInSec, this.evaluationIntervalInSec, TimeUnit.SECONDS);
+        tasks.scheduleAtFixedRate("samplingRangeEvaluator", new SamplingRangeEvaluator(), this.evaluationIntervalInSec, this.evaluationIntervalInSec, TimeUnit.SECONDS);
         SDKShutdownActivity.INSTANCE.register(this);
     }
 
@@ -229,11 +231,6 @@ public final class AdaptiveTelemetrySampler implements Stoppable, TelemetrySampl
         return false;
     }
 
-    private void createTimerThread() {
-        threads = new ScheduledThreadPoolExecutor(1);
-        threads.setThreadFactory(ThreadPoolUtils.createDaemonThreadFactory(AdaptiveTelemetrySampler.class));
-    }
-
     private int getIntValueOrDefault(String name, String valueAsString, int defaultValue, int minValue, int maxValue) {
         int result = defaultValue;
         try {
@@ -75,6 +75,8 @@ public final class FixedRateSamplingTelemetryProcessor implements TelemetryProce
      */
     private double samplingPercentage;
 
+    private boolean earlySampling;
+
     /**
      * constructor is responsible of initializing this processor
      * to default settings
@@ -82,6 +84,7 @@ public final class FixedRateSamplingTelemetryProcessor implements TelemetryProce
     public FixedRateSamplingTelemetryProcessor() {
 
         this.samplingPercentage = DEFAULT_SAMPLING_PERCENTAGE;
+        this.earlySampling = false;
         this.includedTypes = new HashSet<>();
         this.excludedTypes = new HashSet<>();
     }
@@ -143,6 +146,47 @@ public final class FixedRateSamplingTelemetryProcessor implements TelemetryProce
         }
     }
 
+    /**
+     * Whether telemetry whose operation id is known when it is tracked is sampled before the telemetry
+     * initializers and processors run, rather than when this processor is reached. The default is false.
+     *
+     * Items sampled out early are not seen by any initializer or processor, including the ones configured
+     * before this processor, so turn it on only if none of them must see every item.
+     *
+     * @param earlySampling 'true' or 'false'
+     */
+    public void setEarlySampling(String earlySampling) {
+        this.earlySampling = Boolean.parseBoolean(earlySampling == null ? null : earlySampling.trim());
+        InternalLogger.INSTANCE.trace("Early sampling set to %s", this.earlySampling);
+    }
+
+    public boolean isEarlySampling() {
+        return earlySampling;
+    }
+
+    /**
+     * Decides whether the telemetry would be sampled out by {@link #process(Telemetry)}, without changing it.
+     * The decision can be made only once the telemetry has an operation id, since the score of telemetry
+     * without one is random and it might still be correlated with an operation by an initializer.
+     *
+     * @param telemetry The telemetry to check.
+     * @return True if the telemetry has an operation id and will be sampled out, false otherwise.
+     */
+    public boolean isSampledOutByOperation(Telemetry telemetry) {
+        if (!(telemetry instanceof SupportSampling) || !isSamplingApplicable(telemetry.getClass())) {
+            return false;
+        }
+
+        if (StringUtils.isEmpty(telemetry.getContext().getOperation().getId())) {
+            return false;
+        }
+
+        Double itemSamplingPercentage = ((SupportSampling) telemetry).getSamplingPercentage();
+        double samplingPercentage = itemSamplingPercentage == null ? this.samplingPercentage : itemSamplingPercentage;
+
+        return SamplingScoreGeneratorV2.getSamplingScore(telemetry) >= samplingPercentage;
+    }
+
     /**
      * This method determines if the telemetry needs to be sampled or not.
      *
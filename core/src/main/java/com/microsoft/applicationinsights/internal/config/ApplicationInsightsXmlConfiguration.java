@@ -34,6 +34,8 @@ public class ApplicationInsightsXmlConfiguration {
 
     private boolean disableTelemetry = false;
 
+    private boolean watchConfiguration = false;
+
     private TelemetryInitializersXmlElement telemetryInitializers;
     private TelemetryProcessorsXmlElement telemetryProcessors;
     private ContextInitializersXmlElement contextInitializers;
@@ -139,6 +141,15 @@ public class ApplicationInsightsXmlConfiguration {
         this.disableTelemetry = disableTelemetry;
     }
 
+    public boolean isWatchConfiguration() {
+        return watchConfiguration;
+    }
+
+    @XmlElement(name="WatchConfiguration")
+    public void setWatchConfiguration(boolean watchConfiguration) {
+        this.watchConfiguration = watchConfiguration;
+    }
+
     public TelemetryModulesXmlElement getModules() {
         return modules;
     }
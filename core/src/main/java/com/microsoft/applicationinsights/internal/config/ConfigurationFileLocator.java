@@ -57,35 +57,17 @@ public final class ConfigurationFileLocator {
 
     public InputStream getConfigurationFile() {
 
-        String configurationFile;
-        InputStream inputStream;
-
-        // first try to get from dir defined explicitly in system property insights.configurationFile
-        String configDirFromProperty = System.getProperty(CONFIG_DIR_PROPERTY);
-        if (configDirFromProperty != null) {
-            configurationFile = getConfigurationAbsolutePath(configDirFromProperty);
-        } else {
-
-            inputStream = ConfigurationFileLocator.class.getClassLoader().getResourceAsStream(configurationFileName);
+        // first try to get from dir defined explicitly in system property insights.configurationFile,
+        // otherwise as a resource stream, which may be packaged in an archive
+        if (System.getProperty(CONFIG_DIR_PROPERTY) == null) {
+            InputStream inputStream = ConfigurationFileLocator.class.getClassLoader().getResourceAsStream(configurationFileName);
             if (inputStream != null) {
                 InternalLogger.INSTANCE.info("Configuration file has been successfully found as resource");
                 return inputStream;
             }
-
-            // Trying to load configuration as a resource.
-            configurationFile = getConfigurationFromCurrentClassLoader();
-
-            // If not found as a resource, trying to load from the executing jar directory
-            if (configurationFile == null) {
-                configurationFile = getConfigurationFromLibraryLocation();
-
-                // If still not found try to get it from the class path
-                if (configurationFile == null) {
-                    configurationFile = getConfFromClassPath();
-                }
-            }
         }
 
+        String configurationFile = findConfigurationFilePath();
         if (configurationFile != null) {
             InternalLogger.INSTANCE.info("Configuration file has been successfully found in: '%s'", configurationFile);
             try {
@@ -101,6 +83,40 @@ public final class ConfigurationFileLocator {
         return null;
     }
 
+    /**
+     * Finds the configuration file the same way as {@link #getConfigurationFile()}, when it is a file on disk.
+     * @return The configuration file, or null if it was not found or is packaged in an archive.
+     */
+    public File getConfigurationFileOnDisk() {
+        String configurationFile = findConfigurationFilePath();
+        if (configurationFile == null) {
+            return null;
+        }
+        File file = new File(configurationFile);
+        return file.isFile() ? file : null;
+    }
+
+    private String findConfigurationFilePath() {
+        String configDirFromProperty = System.getProperty(CONFIG_DIR_PROPERTY);
+        if (configDirFromProperty != null) {
+            return getConfigurationAbsolutePath(configDirFromProperty);
+        }
+
+        // Trying to load configuration as a resource.
+        String configurationFile = getConfigurationFromCurrentClassLoader();
+
+        // If not found as a resource, trying to load from the executing jar directory
+        if (configurationFile == null) {
+            configurationFile = getConfigurationFromLibraryLocation();
+
+            // If still not found try to get it from the class path
+            if (configurationFile == null) {
+                configurationFile = getConfFromClassPath();
+            }
+        }
+        return configurationFile;
+    }
+
     private static void logException(Throwable t, String message) {
         if (t.getCause() != null) {
             InternalLogger.INSTANCE.warn("Failed to find configuration file, exception while fetching from %s: " +
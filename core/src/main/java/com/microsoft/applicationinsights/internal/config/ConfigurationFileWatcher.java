@@ -0,0 +1,520 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.google.common.base.Objects;
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.channel.TelemetryChannel;
+import com.microsoft.applicationinsights.channel.concrete.TelemetryChannelBase;
+import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
+import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
+import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
+import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Watches the configuration file and applies its changes while the application runs.
+ *
+ * The file's directory is registered with a {@link WatchService} which is polled every second. Once the file
+ * was changed and then left alone for a poll, the top level elements of the new file are compared with the
+ * previous ones and only the elements that changed are applied:
+ * <ul>
+ *     <li>TelemetryInitializers and TelemetryProcessors are created anew and swapped in at once, the ones that
+ *     were added by code rather than by the file are kept</li>
+ *     <li>Channel: MaxTelemetryBufferCapacity and FlushIntervalInSeconds</li>
+ *     <li>Sampling</li>
+ *     <li>DisableTelemetry</li>
+ *     <li>PerformanceCounters: the Jmx counters, changes to its other settings take effect after a restart</li>
+ * </ul>
+ * Changes to any other element are logged and take effect after a restart.
+ *
+ * The watch is turned on by {@code <WatchConfiguration>true</WatchConfiguration>} in the configuration file.
+ */
+final class ConfigurationFileWatcher implements Stoppable {
+    private final static long POLL_INTERVAL_IN_SECONDS = 1;
+
+    private final static String TELEMETRY_INITIALIZERS_SECTION = "TelemetryInitializers";
+    private final static String TELEMETRY_PROCESSORS_SECTION = "TelemetryProcessors";
+    private final static String CHANNEL_SECTION = "Channel";
+    private final static String SAMPLING_SECTION = "Sampling";
+    private final static String DISABLE_TELEMETRY_SECTION = "DisableTelemetry";
+    private final static String PERFORMANCE_COUNTERS_SECTION = "PerformanceCounters";
+    private final static String JMX_SETTING = "Jmx";
+
+    private final Path file;
+    private final TelemetryConfiguration configuration;
+    private final AppInsightsConfigurationBuilder builder;
+
+    // The state below is only used by the single polling task, or before it is scheduled
+    private Document document;
+    private ApplicationInsightsXmlConfiguration xmlConfiguration;
+    private List<TelemetryInitializer> telemetryInitializers;
+    private List<TelemetryProcessor> telemetryProcessors;
+    private boolean changePending;
+
+    private WatchService watchService;
+    private TaskGroup tasks;
+
+    /**
+     * @param file The configuration file.
+     * @param configuration The configuration that was created from the file.
+     * @param builder The builder of configuration data.
+     * @param xmlConfiguration The configuration data the configuration was created from.
+     * @param telemetryInitializers The Telemetry Initializers that were created from the file.
+     * @param telemetryProcessors The Telemetry Processors that were created from the file.
+     */
+    ConfigurationFileWatcher(File file,
+                             TelemetryConfiguration configuration,
+                             AppInsightsConfigurationBuilder builder,
+                             ApplicationInsightsXmlConfiguration xmlConfiguration,
+                             List<TelemetryInitializer> telemetryInitializers,
+                             List<TelemetryProcessor> telemetryProcessors) {
+        this.file = file.toPath().toAbsolutePath();
+        this.configuration = configuration;
+        this.builder = builder;
+        this.xmlConfiguration = xmlConfiguration;
+        this.telemetryInitializers = new ArrayList<TelemetryInitializer>(telemetryInitializers);
+        this.telemetryProcessors = new ArrayList<TelemetryProcessor>(telemetryProcessors);
+        this.document = parse(readFile());
+    }
+
+    synchronized void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        tasks = SdkScheduler.INSTANCE.createIoTaskGroup(ConfigurationFileWatcher.class.getSimpleName(), false);
+        tasks.scheduleAtFixedRate("poll", new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, POLL_INTERVAL_IN_SECONDS, POLL_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+        SDKShutdownActivity.INSTANCE.register(this);
+
+        InternalLogger.INSTANCE.info("Watching configuration file '%s' for changes", file);
+    }
+
+    @Override
+    public synchronized void stop(long timeout, TimeUnit timeUnit) {
+        if (tasks != null) {
+            tasks.stop(timeout, timeUnit);
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // chomp
+            }
+        }
+    }
+
+    private void poll() {
+        try {
+            boolean changed = false;
+            WatchKey key;
+            while ((key = watchService.poll()) != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (!key.reset()) {
+                    InternalLogger.INSTANCE.warn("The folder of configuration file '%s' can no longer be watched, changes to it will not be applied", file);
+                    tasks.stop(0, TimeUnit.SECONDS);
+                    return;
+                }
+            }
+
+            // Editors often write a file in several steps, so the file is read once it stopped changing
+            if (changed) {
+                changePending = true;
+            } else if (changePending) {
+                changePending = false;
+                reload();
+            }
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Failed to watch configuration file '%s': '%s'", file, ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+    }
+
+    /**
+     * Reads the configuration file and applies the elements that changed since it was last read.
+     */
+    void reload() {
+        byte[] content = readFile();
+        Document newDocument = parse(content);
+        if (newDocument == null) {
+            InternalLogger.INSTANCE.error("Configuration file '%s' is not valid XML, its changes are ignored", file);
+            return;
+        }
+        ApplicationInsightsXmlConfiguration newXmlConfiguration = builder.build(new ByteArrayInputStream(content));
+        if (newXmlConfiguration == null) {
+            InternalLogger.INSTANCE.error("Failed to read configuration file '%s', its changes are ignored", file);
+            return;
+        }
+
+        Set<String> changedSections = findChangedSections(document, newDocument);
+        if (changedSections.isEmpty()) {
+            return;
+        }
+
+        // Remembered only once applied, so that a failed change is applied again with the next one
+        apply(changedSections, newDocument, newXmlConfiguration);
+        document = newDocument;
+        xmlConfiguration = newXmlConfiguration;
+    }
+
+    private void apply(Set<String> changedSections, Document newDocument, ApplicationInsightsXmlConfiguration newXmlConfiguration) {
+        TelemetryConfigurationFactory factory = TelemetryConfigurationFactory.INSTANCE;
+        List<String> applied = new ArrayList<String>();
+        List<String> notApplied = new ArrayList<String>();
+
+        List<TelemetryInitializer> newTelemetryInitializers = null;
+        List<TelemetryProcessor> newTelemetryProcessors = null;
+        for (String section : changedSections) {
+            switch (section) {
+                case TELEMETRY_INITIALIZERS_SECTION:
+                    newTelemetryInitializers = factory.createTelemetryInitializers(newXmlConfiguration.getTelemetryInitializers());
+                    applied.add(section);
+                    break;
+
+                case TELEMETRY_PROCESSORS_SECTION:
+                    newTelemetryProcessors = factory.createTelemetryProcessors(newXmlConfiguration);
+                    applied.add(section);
+                    break;
+
+                case CHANNEL_SECTION:
+                    applyChannel(xmlConfiguration.getChannel(), newXmlConfiguration.getChannel(), applied, notApplied);
+                    break;
+
+                case SAMPLING_SECTION:
+                    configuration.getChannel().setSampler(factory.getSampler(newXmlConfiguration.getSampler()));
+                    applied.add(section);
+                    break;
+
+                case DISABLE_TELEMETRY_SECTION:
+                    configuration.setTrackingIsDisabled(newXmlConfiguration.isDisableTelemetry());
+                    applied.add(section);
+                    break;
+
+                case PERFORMANCE_COUNTERS_SECTION:
+                    applyPerformanceCounters(newDocument, newXmlConfiguration, applied, notApplied);
+                    break;
+
+                default:
+                    notApplied.add(section);
+                    break;
+            }
+        }
+
+        if (newTelemetryInitializers != null || newTelemetryProcessors != null) {
+            List<TelemetryInitializer> mergedTelemetryInitializers = new ArrayList<TelemetryInitializer>(configuration.getTelemetryInitializers());
+            if (newTelemetryInitializers != null) {
+                mergedTelemetryInitializers = replaceFileComponents(mergedTelemetryInitializers, telemetryInitializers, newTelemetryInitializers);
+                telemetryInitializers = newTelemetryInitializers;
+            }
+            List<TelemetryProcessor> mergedTelemetryProcessors = new ArrayList<TelemetryProcessor>(configuration.getTelemetryProcessors());
+            if (newTelemetryProcessors != null) {
+                mergedTelemetryProcessors = replaceFileComponents(mergedTelemetryProcessors, telemetryProcessors, newTelemetryProcessors);
+                telemetryProcessors = newTelemetryProcessors;
+            }
+            configuration.replaceTelemetryComponents(mergedTelemetryInitializers, mergedTelemetryProcessors);
+        }
+
+        if (!applied.isEmpty()) {
+            InternalLogger.INSTANCE.info("Applied configuration changes to %s", applied);
+        }
+        if (!notApplied.isEmpty()) {
+            InternalLogger.INSTANCE.warn("Configuration changes to %s take effect after a restart", notApplied);
+        }
+    }
+
+    private void applyChannel(ChannelXmlElement previous, ChannelXmlElement current, List<String> applied, List<String> notApplied) {
+        if (!Objects.equal(previous.getType(), current.getType())) {
+            notApplied.add(CHANNEL_SECTION + "/Type");
+            return;
+        }
+
+        Map<String, String> previousData = previous.getData();
+        Map<String, String> currentData = current.getData();
+        Set<String> names = new TreeSet<String>(previousData.keySet());
+        names.addAll(currentData.keySet());
+
+        TelemetryChannel channel = configuration.getChannel();
+        for (String name : names) {
+            String value = currentData.get(name);
+            if (Objects.equal(previousData.get(name), value)) {
+                continue;
+            }
+
+            String changed = CHANNEL_SECTION + "/" + name;
+            if (!(channel instanceof TelemetryChannelBase)) {
+                notApplied.add(changed);
+                continue;
+            }
+            TelemetryChannelBase<?> channelBase = (TelemetryChannelBase<?>) channel;
+            try {
+                if (TelemetryChannelBase.MAX_TELEMETRY_BUFFER_CAPACITY_NAME.equals(name)) {
+                    channelBase.setMaxTelemetriesInBatch(value == null ? TelemetryChannelBase.DEFAULT_MAX_TELEMETRY_BUFFER_CAPACITY : Integer.parseInt(value.trim()));
+                    applied.add(changed);
+                } else if (TelemetryChannelBase.FLUSH_BUFFER_TIMEOUT_IN_SECONDS_NAME.equals(name)) {
+                    channelBase.setTransmitBufferTimeoutInSeconds(value == null ? TelemetryChannelBase.DEFAULT_FLUSH_BUFFER_TIMEOUT_IN_SECONDS : Integer.parseInt(value.trim()));
+                    applied.add(changed);
+                } else {
+                    notApplied.add(changed);
+                }
+            } catch (NumberFormatException e) {
+                InternalLogger.INSTANCE.error("Configuration value '%s' of '%s' is not a number, ignored", value, changed);
+            }
+        }
+    }
+
+    private void applyPerformanceCounters(Document newDocument, ApplicationInsightsXmlConfiguration newXmlConfiguration, List<String> applied, List<String> notApplied) {
+        Element previous = getSection(document, PERFORMANCE_COUNTERS_SECTION);
+        Element current = getSection(newDocument, PERFORMANCE_COUNTERS_SECTION);
+        for (String name : findChangedSettings(previous, current)) {
+            String changed = PERFORMANCE_COUNTERS_SECTION + "/" + name;
+            if (JMX_SETTING.equals(name)) {
+                TelemetryConfigurationFactory.INSTANCE.reloadCustomJmxPCs(xmlConfiguration.getPerformance(), newXmlConfiguration.getPerformance());
+                applied.add(changed);
+            } else {
+                notApplied.add(changed);
+            }
+        }
+    }
+
+    /**
+     * Replaces the components that were created from the previous file with the ones created from the new file,
+     * which go first as they did when the configuration was created, followed by the components added by code.
+     */
+    private static <T> List<T> replaceFileComponents(List<T> current, List<T> previousFromFile, List<T> newFromFile) {
+        List<T> replaced = new ArrayList<T>(newFromFile);
+        for (T component : current) {
+            if (!containsInstance(previousFromFile, component)) {
+                replaced.add(component);
+            }
+        }
+        return replaced;
+    }
+
+    private static boolean containsInstance(List<?> list, Object instance) {
+        for (Object element : list) {
+            if (element == instance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the top level elements of the documents by name, ignoring comments and white space.
+     * @return The names of the elements that were added, removed or changed, all of them if there is no previous document.
+     */
+    static Set<String> findChangedSections(Document previous, Document current) {
+        Map<String, List<Node>> previousSections = getChildElements(previous == null ? null : previous.getDocumentElement());
+        Map<String, List<Node>> currentSections = getChildElements(current.getDocumentElement());
+
+        Set<String> names = new LinkedHashSet<String>(currentSections.keySet());
+        names.addAll(previousSections.keySet());
+        Set<String> changed = new LinkedHashSet<String>();
+        for (String name : names) {
+            if (previous == null || !areEqual(previousSections.get(name), currentSections.get(name))) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Compares the attributes and the child elements of a section by name, ignoring comments and white space.
+     * @return The names of the attributes and elements that were added, removed or changed.
+     */
+    static Set<String> findChangedSettings(Element previous, Element current) {
+        Set<String> changed = new LinkedHashSet<String>();
+
+        Map<String, String> previousAttributes = getAttributes(previous);
+        Map<String, String> currentAttributes = getAttributes(current);
+        Set<String> names = new TreeSet<String>(previousAttributes.keySet());
+        names.addAll(currentAttributes.keySet());
+        for (String name : names) {
+            if (!Objects.equal(previousAttributes.get(name), currentAttributes.get(name))) {
+                changed.add(name);
+            }
+        }
+
+        Map<String, List<Node>> previousElements = getChildElements(previous);
+        Map<String, List<Node>> currentElements = getChildElements(current);
+        names = new LinkedHashSet<String>(currentElements.keySet());
+        names.addAll(previousElements.keySet());
+        for (String name : names) {
+            if (!areEqual(previousElements.get(name), currentElements.get(name))) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    private static Element getSection(Document document, String name) {
+        if (document == null) {
+            return null;
+        }
+        List<Node> nodes = getChildElements(document.getDocumentElement()).get(name);
+        return nodes == null ? null : (Element) nodes.get(0);
+    }
+
+    private static Map<String, List<Node>> getChildElements(Element parent) {
+        Map<String, List<Node>> elements = new HashMap<String, List<Node>>();
+        if (parent == null) {
+            return elements;
+        }
+
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                String name = getName(child);
+                List<Node> nodes = elements.get(name);
+                if (nodes == null) {
+                    nodes = new ArrayList<Node>();
+                    elements.put(name, nodes);
+                }
+                nodes.add(child);
+            }
+        }
+        return elements;
+    }
+
+    private static Map<String, String> getAttributes(Element element) {
+        Map<String, String> attributes = new HashMap<String, String>();
+        if (element == null) {
+            return attributes;
+        }
+
+        NamedNodeMap nodes = element.getAttributes();
+        for (int i = 0; i < nodes.getLength(); ++i) {
+            Node attribute = nodes.item(i);
+            attributes.put(getName(attribute), attribute.getNodeValue());
+        }
+        return attributes;
+    }
+
+    private static String getName(Node node) {
+        return node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+    }
+
+    private static boolean areEqual(List<Node> previous, List<Node> current) {
+        if (previous == null || current == null || previous.size() != current.size()) {
+            return previous == current;
+        }
+        for (int i = 0; i < previous.size(); ++i) {
+            if (!previous.get(i).isEqualNode(current.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] readFile() {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.error("Failed to read configuration file '%s': '%s'", file, e.toString());
+            return null;
+        }
+    }
+
+    static Document parse(byte[] content) {
+        if (content == null) {
+            return null;
+        }
+
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setIgnoringComments(true);
+            factory.setExpandEntityReferences(false);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder documentBuilder = factory.newDocumentBuilder();
+            Document document = documentBuilder.parse(new ByteArrayInputStream(content));
+            removeWhiteSpace(document.getDocumentElement());
+            return document;
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.trace("Failed to parse configuration file: '%s'", e.toString());
+            return null;
+        }
+    }
+
+    private static void removeWhiteSpace(Node node) {
+        Node child = node.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            if (child.getNodeType() == Node.TEXT_NODE) {
+                String text = child.getNodeValue();
+                if (text.trim().isEmpty()) {
+                    node.removeChild(child);
+                } else {
+                    child.setNodeValue(text.trim());
+                }
+            } else {
+                removeWhiteSpace(child);
+            }
+            child = next;
+        }
+    }
+}
@@ -24,6 +24,8 @@ package com.microsoft.applicationinsights.internal.config;
 import com.microsoft.applicationinsights.channel.concrete.localforwarder.LocalForwarderTelemetryChannel;
 import com.microsoft.applicationinsights.internal.channel.samplingV2.FixedRateSamplingTelemetryProcessor;
 import com.microsoft.applicationinsights.internal.heartbeat.HeartBeatModule;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashSet;
 import java.util.Map;
@@ -141,9 +143,11 @@ public enum TelemetryConfigurationFactory {
             configuration.setTrackingIsDisabled(applicationInsightsConfig.isDisableTelemetry());
 
             setContextInitializers(applicationInsightsConfig.getContextInitializers(), configuration);
-            setTelemetryInitializers(applicationInsightsConfig.getTelemetryInitializers(), configuration);
+            List<TelemetryInitializer> telemetryInitializers = createTelemetryInitializers(applicationInsightsConfig.getTelemetryInitializers());
+            configuration.getTelemetryInitializers().addAll(telemetryInitializers);
             setTelemetryModules(applicationInsightsConfig, configuration);
-            setTelemetryProcessors(applicationInsightsConfig, configuration);
+            List<TelemetryProcessor> telemetryProcessors = createTelemetryProcessors(applicationInsightsConfig);
+            configuration.getTelemetryProcessors().addAll(telemetryProcessors);
 
             TelemetryChannel channel = configuration.getChannel();
             if (channel instanceof LocalForwarderTelemetryChannel) {
@@ -155,11 +159,30 @@ public enum TelemetryConfigurationFactory {
             setQuickPulse(applicationInsightsConfig);
 
             initializeComponents(configuration);
+
+            if (applicationInsightsConfig.isWatchConfiguration()) {
+                watchConfiguration(configuration, applicationInsightsConfig, telemetryInitializers, telemetryProcessors);
+            }
         } catch (Exception e) {
             InternalLogger.INSTANCE.error("Failed to initialize configuration, exception: %s", ExceptionUtils.getStackTrace(e));
         }
     }
 
+    private void watchConfiguration(TelemetryConfiguration configuration, ApplicationInsightsXmlConfiguration applicationInsightsConfig,
+                                    List<TelemetryInitializer> telemetryInitializers, List<TelemetryProcessor> telemetryProcessors) {
+        File configurationFile = new ConfigurationFileLocator(CONFIG_FILE_NAME).getConfigurationFileOnDisk();
+        if (configurationFile == null) {
+            InternalLogger.INSTANCE.warn("WatchConfiguration is set but '%s' is not a file on disk, changes to it will not be applied", CONFIG_FILE_NAME);
+            return;
+        }
+
+        try {
+            new ConfigurationFileWatcher(configurationFile, configuration, builder, applicationInsightsConfig, telemetryInitializers, telemetryProcessors).start();
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.error("Failed to watch configuration file '%s': '%s'", configurationFile, e.toString());
+        }
+    }
+
     private void setMinimumConfiguration(ApplicationInsightsXmlConfiguration userConfiguration, TelemetryConfiguration configuration) {
         setInstrumentationKey(userConfiguration, configuration);
         configuration.setChannel(new InProcessTelemetryChannel());
@@ -177,17 +200,18 @@ public enum TelemetryConfigurationFactory {
     }
 
     /**
-     * Sets the configuration data of Telemetry Initializers in configuration class.
+     * Creates the Telemetry Initializers of the configuration data.
      * @param telemetryInitializers The configuration data.
-     * @param configuration The configuration class.
+     * @return The Telemetry Initializers, empty if there is no configuration data.
      */
-    private void setTelemetryInitializers(TelemetryInitializersXmlElement telemetryInitializers, TelemetryConfiguration configuration) {
+    List<TelemetryInitializer> createTelemetryInitializers(TelemetryInitializersXmlElement telemetryInitializers) {
+        List<TelemetryInitializer> initializerList = new ArrayList<TelemetryInitializer>();
         if (telemetryInitializers == null) {
-            return;
+            return initializerList;
         }
 
-        List<TelemetryInitializer> initializerList = configuration.getTelemetryInitializers();
         ReflectionUtils.loadComponents(TelemetryInitializer.class, initializerList, telemetryInitializers.getAdds());
+        return initializerList;
     }
 
     /**
@@ -234,9 +258,14 @@ public enum TelemetryConfigurationFactory {
         modules.addAll(pcModules);
     }
 
-    private void setTelemetryProcessors(ApplicationInsightsXmlConfiguration appConfiguration, TelemetryConfiguration configuration) {
+    /**
+     * Creates the built in and custom Telemetry Processors of the configuration data.
+     * @param appConfiguration The configuration data.
+     * @return The Telemetry Processors, empty if there are none in the configuration data.
+     */
+    List<TelemetryProcessor> createTelemetryProcessors(ApplicationInsightsXmlConfiguration appConfiguration) {
         TelemetryProcessorsXmlElement configurationProcessors = appConfiguration.getTelemetryProcessors();
-        List<TelemetryProcessor> processors = configuration.getTelemetryProcessors();
+        List<TelemetryProcessor> processors = new ArrayList<TelemetryProcessor>();
 
         if (configurationProcessors != null) {
             ArrayList<TelemetryProcessorXmlElement> b = configurationProcessors.getBuiltInTelemetryProcessors();
@@ -266,6 +295,8 @@ public enum TelemetryConfigurationFactory {
             ArrayList<TelemetryProcessorXmlElement> customs = configurationProcessors.getCustomTelemetryProcessors();
             loadProcessorComponents(processors, customs);
         }
+
+        return processors;
     }
 
     private void addDefaultBuiltInProcessors(List<String> p) {
@@ -390,6 +421,25 @@ public enum TelemetryConfigurationFactory {
         return defaultPerformaceModuleClassNames;
     }
 
+    /**
+     * Replaces the Jmx performance counters of the previous configuration data with the ones of the new one.
+     * @param previous The previous configuration data.
+     * @param current The new configuration data.
+     */
+    void reloadCustomJmxPCs(PerformanceCountersXmlElement previous, PerformanceCountersXmlElement current) {
+        if (previous != null && previous.getJmxXmlElements() != null) {
+            for (JmxXmlElement jmxElement : previous.getJmxXmlElements()) {
+                if (!Strings.isNullOrEmpty(jmxElement.getObjectName())) {
+                    PerformanceCounterContainer.INSTANCE.unregister(jmxElement.getObjectName());
+                }
+            }
+        }
+
+        if (current != null) {
+            loadCustomJmxPCs(current.getJmxXmlElements());
+        }
+    }
+
     /**
      * The method will load the Jmx performance counters requested by the user to the system:
      * 1. Build a map where the key is the Jmx object name and the value is a list of requested attributes.
@@ -455,7 +505,7 @@ public enum TelemetryConfigurationFactory {
         }
     }
 
-    private TelemetrySampler getSampler(SamplerXmlElement sampler) {
+    TelemetrySampler getSampler(SamplerXmlElement sampler) {
         return new TelemetrySamplerInitializer().getSampler(sampler);
     }
 
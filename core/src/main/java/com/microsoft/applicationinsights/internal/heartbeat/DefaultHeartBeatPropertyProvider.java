@@ -33,7 +33,7 @@ public class DefaultHeartBeatPropertyProvider implements HeartBeatPayloadProvide
    * have a new GUID. If the application is unstable and goes through frequent restarts this will help
    * us identify instability in the analytics backend.
    */
-  private static UUID uniqueProcessId;
+  private static final UUID uniqueProcessId = UUID.randomUUID();
 
   /**
    * Name of this provider.
@@ -161,9 +161,6 @@ public class DefaultHeartBeatPropertyProvider implements HeartBeatPayloadProvide
    * @return String representing GUID for each running session
    */
   private String getProcessSessionId() {
-    if (uniqueProcessId == null) {
-      uniqueProcessId = UUID.randomUUID();
-    }
     return uniqueProcessId.toString();
   }
 }
@@ -3,21 +3,22 @@ package com.microsoft.applicationinsights.internal.heartbeat;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
 import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
 import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
-import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
@@ -55,6 +56,16 @@ public class HeartBeatProvider implements HeartBeatProviderInterface, Stoppable
    */
   private ConcurrentMap<String, HeartBeatPropertyPayload> heartbeatProperties;
 
+  /**
+   * Incremented on every change of the heartbeat properties
+   */
+  private final AtomicLong propertiesVersion = new AtomicLong();
+
+  /**
+   * The heartbeat properties and value as of the last heartbeat, rebuilt only when the properties changed
+   */
+  private volatile Payload payload;
+
   /**
    * Interval at which heartbeat would be sent
    */
@@ -66,14 +77,9 @@ public class HeartBeatProvider implements HeartBeatProviderInterface, Stoppable
   private TelemetryClient telemetryClient;
 
   /**
-   * ThreadPool used for adding properties to concurrent dictionary
-   */
-  private ExecutorService propertyUpdateService;
-
-  /**
-   * Threadpool used to send data heartbeat telemetry
+   * Tasks used for adding properties to concurrent dictionary and for sending the heartbeat telemetry
    */
-  private ScheduledExecutorService heartBeatSenderService;
+  private TaskGroup tasks;
 
   /**
    * Heartbeat enabled state
@@ -85,8 +91,7 @@ public class HeartBeatProvider implements HeartBeatProviderInterface, Stoppable
     this.heartbeatProperties = new ConcurrentHashMap<>();
     this.isEnabled = true;
     this.heartbeatsSent = 0;
-    this.propertyUpdateService = Executors.newCachedThreadPool(ThreadPoolUtils.createDaemonThreadFactory(HeartBeatProvider.class, "propertyUpdateService"));
-    this.heartBeatSenderService = Executors.newSingleThreadScheduledExecutor( ThreadPoolUtils.createDaemonThreadFactory(HeartBeatProvider.class, "heartBeatSenderService"));
+    this.tasks = SdkScheduler.INSTANCE.createIoTaskGroup(HeartBeatProvider.class.getSimpleName(), false);
     SDKShutdownActivity.INSTANCE.register(this);
   }
 
@@ -111,10 +116,20 @@ public class HeartBeatProvider implements HeartBeatProviderInterface, Stoppable
 
       //Submit task to set properties to dictionary using separate thread. we do not wait for the
       //results to come out as some I/O bound properties may take time.
-      propertyUpdateService.submit(HeartbeatDefaultPayload.populateDefaultPayload(getExcludedHeartBeatProperties(),
-          getExcludedHeartBeatPropertyProviders(), this));
+      final Callable<Boolean> populateDefaultPayload = HeartbeatDefaultPayload.populateDefaultPayload(
+          getExcludedHeartBeatProperties(), getExcludedHeartBeatPropertyProviders(), this);
+      tasks.execute("populateDefaultPayload", new Runnable() {
+        @Override
+        public void run() {
+          try {
+            populateDefaultPayload.call();
+          } catch (Exception e) {
+            InternalLogger.INSTANCE.warn("Error occured while populating default heartbeat properties: %s", e.toString());
+          }
+        }
+      });
 
-      heartBeatSenderService.scheduleAtFixedRate(heartBeatPulse(), interval, interval, TimeUnit.SECONDS);
+      tasks.scheduleAtFixedRate("heartBeatPulse", heartBeatPulse(), interval, interval, TimeUnit.SECONDS);
     }
   }
 
@@ -124,11 +139,11 @@ public class HeartBeatProvider implements HeartBeatProviderInterface, Stoppable
 
     boolean isAdded= false;
     if (!StringUtils.isEmpty(propertyName)) {
-      if (!heartbeatProperties.containsKey(propertyName)) {
-           HeartBeatPropertyPayload payload = new HeartBeatPropertyPayload();
-           payload.setHealthy(isHealthy);
-           payload.setPayloadValue(propertyValue);
-           heartbeatProperties.put(propertyName, payload);
+      HeartBeatPropertyPayload payload = new HeartBeatPropertyPayload();
+      payload.setHealthy(isHealthy);
+      payload.setPayloadValue(propertyValue);
+      if (heartbeatProperties.putIfAbsent(propertyName, payload) == null) {
+           propertiesVersion.incrementAndGet();
            isAdded = true;
            InternalLogger.INSTANCE.trace("added heartbeat property %s - %s", propertyName, propertyValue);
       }
@@ -162,6 +177,7 @@ public class HeartBeatProvider implements HeartBeatProviderInterface, Stoppable
       payload.setHealthy(isHealthy);
       payload.setPayloadValue(propertyValue);
       heartbeatProperties.put(propertyName, payload);
+      propertiesVersion.incrementAndGet();
       setResult = true;
 
     }
@@ -225,8 +241,7 @@ public class HeartBeatProvider implements HeartBeatProviderInterface, Stoppable
 
   @Override
   public void stop(long timeout, TimeUnit timeUnit) {
-    ThreadPoolUtils.stop(propertyUpdateService, timeout, timeUnit);
-    ThreadPoolUtils.stop(heartBeatSenderService, timeout, timeUnit);
+    tasks.stop(timeout, timeUnit);
   }
 
   /**
@@ -247,17 +262,34 @@ public class HeartBeatProvider implements HeartBeatProviderInterface, Stoppable
    */
   private MetricTelemetry gatherData() {
 
-    MetricTelemetry heartbeat = new MetricTelemetry(HEARTBEAT_SYNTHETIC_METRIC_NAME, 0.0);
-    Map<String, String> property = heartbeat.getProperties();
-    for (Map.Entry<String, HeartBeatPropertyPayload> entry : heartbeatProperties.entrySet()) {
-      property.put(entry.getKey(), entry.getValue().getPayloadValue());
-      double currentValue = heartbeat.getValue();
-      currentValue += entry.getValue().isHealthy() ? 0 : 1;
-      heartbeat.setValue(currentValue);
-    }
+    Payload current = getPayload();
+    MetricTelemetry heartbeat = new MetricTelemetry(HEARTBEAT_SYNTHETIC_METRIC_NAME, current.unhealthyCount);
+    heartbeat.getProperties().putAll(current.properties);
     return heartbeat;
   }
 
+  /**
+   * Returns the payload of the current heartbeat properties, which is only rebuilt after they changed.
+   * @return The payload.
+   */
+  private Payload getPayload() {
+    long version = propertiesVersion.get();
+    Payload current = payload;
+    if (current == null || current.version != version) {
+      Map<String, String> properties = new HashMap<>();
+      int unhealthyCount = 0;
+      for (Map.Entry<String, HeartBeatPropertyPayload> entry : heartbeatProperties.entrySet()) {
+        properties.put(entry.getKey(), entry.getValue().getPayloadValue());
+        if (!entry.getValue().isHealthy()) {
+          ++unhealthyCount;
+        }
+      }
+      current = new Payload(version, properties, unhealthyCount);
+      payload = current;
+    }
+    return current;
+  }
+
   /**
    * Runnable which is responsible for calling the send method to transmit telemetry
    * @return Runnable which has logic to send heartbeat.
@@ -276,4 +308,19 @@ public class HeartBeatProvider implements HeartBeatProviderInterface, Stoppable
     };
   }
 
+  /**
+   * The heartbeat properties and value built from a given version of the heartbeat properties.
+   */
+  private static final class Payload {
+    private final long version;
+    private final Map<String, String> properties;
+    private final double unhealthyCount;
+
+    private Payload(long version, Map<String, String> properties, double unhealthyCount) {
+      this.version = version;
+      this.properties = properties;
+      this.unhealthyCount = unhealthyCount;
+    }
+  }
+
 }
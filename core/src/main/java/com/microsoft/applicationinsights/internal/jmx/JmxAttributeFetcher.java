@@ -0,0 +1,222 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Fetches the attributes of a JMX object name, which may be a pattern, and sums their values over all the matching objects.
+ *
+ * The object name is parsed once and the objects it matches are cached and resolved
+ * again only periodically or when one of them is unregistered. All the attributes of an object are read
+ * with a single {@link MBeanServer#getAttributes(ObjectName, String[])} call and numeric values are
+ * summed without converting them to strings.
+ *
+ * The class is not thread safe, it is expected to be used by a single performance counter.
+ */
+public final class JmxAttributeFetcher {
+    private final static long DEFAULT_NAMES_REFRESH_INTERVAL_IN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final MBeanServer server;
+    private final ObjectName objectName;
+    private final List<JmxAttributeData> attributes;
+    private final String[] topLevelNames;
+    private final int[] topLevelIndexes;
+    private final String[][] innerPaths;
+    private final long namesRefreshIntervalInMillis;
+
+    private Set<ObjectName> objects = Collections.emptySet();
+    private long namesResolvedAtMillis;
+
+    public JmxAttributeFetcher(String objectName, Collection<JmxAttributeData> attributes) throws MalformedObjectNameException {
+        this(ManagementFactory.getPlatformMBeanServer(), objectName, attributes, DEFAULT_NAMES_REFRESH_INTERVAL_IN_MILLIS);
+    }
+
+    JmxAttributeFetcher(MBeanServer server, String objectName, Collection<JmxAttributeData> attributes, long namesRefreshIntervalInMillis) throws MalformedObjectNameException {
+        Preconditions.checkNotNull(server, "server must be a non-null value");
+        Preconditions.checkNotNull(attributes, "attributes must be a non-null value");
+
+        this.server = server;
+        this.objectName = new ObjectName(objectName);
+        this.attributes = new ArrayList<JmxAttributeData>(attributes);
+        this.namesRefreshIntervalInMillis = namesRefreshIntervalInMillis;
+
+        // Composite and tabular attributes are read through their top level attribute, several of them may share it
+        LinkedHashSet<String> names = new LinkedHashSet<String>();
+        innerPaths = new String[this.attributes.size()][];
+        for (int i = 0; i < this.attributes.size(); ++i) {
+            JmxAttributeData attribute = this.attributes.get(i);
+            JmxDataFetcher.AttributeType type = JmxDataFetcher.getAttributeType(attribute.type);
+            innerPaths[i] = type == JmxDataFetcher.AttributeType.REGULAR ? new String[] { attribute.name } : attribute.name.split("\\.");
+            names.add(innerPaths[i][0]);
+        }
+        topLevelNames = names.toArray(new String[names.size()]);
+
+        List<String> namesList = new ArrayList<String>(names);
+        topLevelIndexes = new int[innerPaths.length];
+        for (int i = 0; i < innerPaths.length; ++i) {
+            topLevelIndexes[i] = namesList.indexOf(innerPaths[i][0]);
+        }
+    }
+
+    public String getObjectName() {
+        return objectName.toString();
+    }
+
+    /**
+     * Fetches the current values.
+     * @return A map from the display name of every attribute to the sum of its values over all the matching objects.
+     * Attributes whose values are not numeric are not part of the result.
+     * @throws IllegalArgumentException If no object matches the object name.
+     * @throws Exception If an attribute cannot be read.
+     */
+    public Map<String, Double> fetch() throws Exception {
+        resolveObjectNames(false);
+
+        double[] sums = new double[attributes.size()];
+        boolean[] numeric = new boolean[attributes.size()];
+        Arrays.fill(numeric, true);
+
+        for (ObjectName object : objects) {
+            Object[] values;
+            try {
+                values = getAttributes(object);
+            } catch (InstanceNotFoundException e) {
+                // The object was unregistered, resolve the names on the next fetch
+                namesResolvedAtMillis = 0;
+                continue;
+            }
+
+            for (int i = 0; i < innerPaths.length; ++i) {
+                if (!numeric[i]) {
+                    continue;
+                }
+                Object value = navigate(values[topLevelIndexes[i]], innerPaths[i], attributes.get(i).type);
+                if (value == null) {
+                    continue;
+                }
+                if (value instanceof Number) {
+                    sums[i] += ((Number) value).doubleValue();
+                } else {
+                    try {
+                        sums[i] += Double.parseDouble(value.toString());
+                    } catch (NumberFormatException e) {
+                        numeric[i] = false;
+                        InternalLogger.INSTANCE.trace("JMX attribute '%s' of '%s' is not numeric", attributes.get(i).name, object);
+                    }
+                }
+            }
+        }
+
+        Map<String, Double> result = new LinkedHashMap<String, Double>();
+        for (int i = 0; i < attributes.size(); ++i) {
+            if (numeric[i]) {
+                result.put(attributes.get(i).displayName, sums[i]);
+            }
+        }
+        return result;
+    }
+
+    private void resolveObjectNames(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && !objects.isEmpty() && now - namesResolvedAtMillis < namesRefreshIntervalInMillis) {
+            return;
+        }
+
+        if (objectName.isPattern()) {
+            objects = server.queryNames(objectName, null);
+        } else {
+            objects = server.isRegistered(objectName) ? Collections.singleton(objectName) : Collections.<ObjectName>emptySet();
+        }
+        namesResolvedAtMillis = now;
+
+        if (objects.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Cannot find object name '%s'", objectName));
+        }
+    }
+
+    private Object[] getAttributes(ObjectName object) throws Exception {
+        AttributeList list = server.getAttributes(object, topLevelNames);
+
+        // getAttributes silently skips attributes it cannot read, the values are matched back by name
+        Object[] values = new Object[topLevelNames.length];
+        int found = 0;
+        for (Attribute attribute : list.asList()) {
+            for (int i = 0; i < topLevelNames.length; ++i) {
+                if (topLevelNames[i].equals(attribute.getName())) {
+                    values[i] = attribute.getValue();
+                    ++found;
+                    break;
+                }
+            }
+        }
+
+        if (found != topLevelNames.length) {
+            for (int i = 0; i < topLevelNames.length; ++i) {
+                if (values[i] == null) {
+                    // Read it on its own to surface the reason, as a regular getAttribute call would
+                    values[i] = server.getAttribute(object, topLevelNames[i]);
+                }
+            }
+        }
+        return values;
+    }
+
+    private static Object navigate(Object value, String[] path, String type) throws AttributeNotFoundException {
+        if (path.length == 1 || value == null) {
+            return value;
+        }
+
+        CompositeData compositeData;
+        if (JmxDataFetcher.getAttributeType(type) == JmxDataFetcher.AttributeType.TABULAR) {
+            compositeData = ((TabularData) value).get(new Object[] { path[1] });
+            return compositeData == null ? null : compositeData.get(path[2]);
+        }
+
+        compositeData = (CompositeData) value;
+        return compositeData.get(path[1]);
+    }
+}
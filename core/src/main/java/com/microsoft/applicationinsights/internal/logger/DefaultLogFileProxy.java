@@ -22,21 +22,38 @@
 package com.microsoft.applicationinsights.internal.logger;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
 
 /**
  * The class is responsible for doing the work with the log files.
+ *
+ * Lines are encoded into a reusable buffer that is written to the file's {@link FileChannel} when it fills up
+ * or when {@link #flush()} is called. The size of the file is tracked while writing, so checking whether
+ * the file is full doesn't need to query the file system.
  */
 public final class DefaultLogFileProxy implements LogFileProxy {
     private static String NEW_LINE = System.getProperty("line.separator");
     private final static String LOG_FILE_PREFIX = "-JavaSDKLog";
     private final static String LOG_FILE_SUFFIX = ".jsl";
     private final static int SIZE_OF_MB = 1048576;
+    private final static int BUFFER_SIZE_IN_BYTES = 64 * 1024;
 
-    private FileWriter out;
+    private FileChannel out;
     private File file;
     private int maxSizePerFileInMB;
+    private long sizeInBytes;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE_IN_BYTES);
+    private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
 
     public static DefaultLogFileProxy createNew(File baseFolder, String uniquePrefix, int maxSizePerFileInMB) throws IOException {
         return new DefaultLogFileProxy(baseFolder, uniquePrefix, maxSizePerFileInMB);
@@ -55,27 +72,54 @@ public final class DefaultLogFileProxy implements LogFileProxy {
         file.delete();
     }
 
+    /**
+     * Writes the line into the buffer, the caller should call {@link #flush()} once it is done
+     * with the current batch of lines so they become visible in the file.
+     */
     public void writeLine(String line) throws IOException {
-        out.write(line + NEW_LINE);
-
-        //flush every time for real time streaming of logs on file.
-        //Please use logger with caution. Using File logger with TRACE level logging
-        //can significantly increase the load
-        flush();
+        encode(CharBuffer.wrap(line));
+        encode(CharBuffer.wrap(NEW_LINE));
     }
 
     public boolean isFull() {
-        long fileSizeInMB = file.length() / SIZE_OF_MB;
+        // Lines still in the buffer count, so the file is rolled at its limit and not up to a buffer later
+        long fileSizeInMB = (sizeInBytes + buffer.position()) / SIZE_OF_MB;
         return maxSizePerFileInMB < fileSizeInMB;
     }
 
     public void flush() {
         try {
-            out.flush();
+            writeBuffer();
         } catch (IOException e) {
         }
     }
 
+    private void encode(CharBuffer chars) throws IOException {
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                writeBuffer();
+                continue;
+            }
+            break;
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            writeBuffer();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                sizeInBytes += out.write(buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
     private DefaultLogFileProxy(File baseFolder, String uniquePrefix, int maxSizePerFileInMB) throws IOException {
         initialize(File.createTempFile(uniquePrefix + LOG_FILE_PREFIX, LOG_FILE_SUFFIX, baseFolder), maxSizePerFileInMB);
     }
@@ -87,6 +131,7 @@ public final class DefaultLogFileProxy implements LogFileProxy {
     private void initialize(File file, int maxSizePerFileInMB) throws IOException {
         this.maxSizePerFileInMB = maxSizePerFileInMB;
         this.file = file;
-        out = new FileWriter(file);
+        out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        sizeInBytes = 0;
     }
 }
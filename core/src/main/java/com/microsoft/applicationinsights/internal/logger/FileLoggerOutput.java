@@ -32,6 +32,10 @@ import java.util.Collection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.microsoft.applicationinsights.internal.util.LocalFileSystemUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -51,6 +55,12 @@ import com.google.common.base.Strings;
  * The class does a 'best effort' to work with files, if there is a problem, the class will
  * try to write into a {@link com.microsoft.applicationinsights.internal.logger.ConsoleLoggerOutput}
  * but will not fail the process under any scenario.
+ *
+ * Logging threads put the message in a bounded, preallocated {@link MessageRingBuffer} without locking.
+ * The thread that finds the files free writes what is pending, up to one batch; a thread that finds another
+ * thread writing returns at once and leaves its message to that thread. Messages still pending when a batch
+ * is done are handed to a background writer thread, so a logging thread never writes more than one batch.
+ * When the ring is full messages are dropped and the number of dropped messages is written once there is room.
  */
 public final class FileLoggerOutput implements LoggerOutput {
     private final static int MIN_SIZE_PER_LOG_FILE_IN_MB = 5;
@@ -63,6 +73,10 @@ public final class FileLoggerOutput implements LoggerOutput {
     private final static String LOG_FILES_BASE_FOLDER_ATTRIBUTE = "BaseFolder";
     private final static String UNIQUE_LOG_FILE_PREFIX_ATTRIBUTE = "UniquePrefix";
     private static final String DATE_FORMAT_NOW = "yyyy-MM-dd-HH-mm-ss";
+    final static int MAX_PENDING_MESSAGES = 8192;
+    final static String DROPPED_MESSAGES_FORMAT = "%d messages were dropped since the internal logger queue was full";
+    private final static int MAX_MESSAGES_PER_BATCH = 512;
+    private final static long WRITER_STOP_TIMEOUT_IN_MILLIS = 5000;
 
     private static class FileAndDate {
         public final File file;
@@ -84,6 +98,13 @@ public final class FileLoggerOutput implements LoggerOutput {
 
     private ConsoleLoggerOutput fallbackLoggerOutput = new ConsoleLoggerOutput();
 
+    private final MessageRingBuffer pendingMessages = new MessageRingBuffer(MAX_PENDING_MESSAGES);
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicBoolean handOffRequested = new AtomicBoolean();
+    private volatile boolean closed;
+    private Thread writer;
+
     public FileLoggerOutput(Map<String, String> loggerData) {
         uniquePrefix = loggerData.get(UNIQUE_LOG_FILE_PREFIX_ATTRIBUTE);
         if (Strings.isNullOrEmpty(uniquePrefix)) {
@@ -100,6 +121,8 @@ public final class FileLoggerOutput implements LoggerOutput {
         factory = new DefaultLogFileProxyFactory();
 
         initialize(baseFolderName, numberOfFiles, numberOfTotalMB);
+
+        startWriter();
     }
 
     private int getRequest(Map<String, String> loggerData, String requestName, int defaultValue) {
@@ -146,32 +169,155 @@ public final class FileLoggerOutput implements LoggerOutput {
     }
 
     @Override
-    public synchronized void log(String message) {
-        try {
-            LogFileProxy logFileProxy = getCurrentLogFileProxy();
-            if (logFileProxy != null) {
-                logFileProxy.writeLine(message);
+    public void log(String message) {
+        if (!pendingMessages.offer(message)) {
+            droppedMessages.incrementAndGet();
+        }
+
+        if (closed) {
+            // The writer is gone, which only happens at shutdown, so write on the calling thread
+            writeLock.lock();
+            try {
+                writePendingMessages(Integer.MAX_VALUE);
+            } finally {
+                writeLock.unlock();
             }
-        } catch (IOException e) {
-            fallbackLoggerOutput.log(String.format("Failed to write to log to file exception: %s. Message '%s'", e.toString(), message));
+            return;
+        }
+
+        if (writeLock.tryLock()) {
+            try {
+                writePendingMessages(MAX_MESSAGES_PER_BATCH);
+            } finally {
+                writeLock.unlock();
+            }
+            handOffPendingMessages();
         }
+        // Otherwise the thread that is writing takes this message too
     }
 
     /**
-     * After this method is called the instance should not be called again for logging messages
+     * After this method is called the instance should not be called again for logging messages.
+     * Messages that are still pending are written before the file is closed.
      */
     @Override
     public void close() {
-        LogFileProxy currentLogger = files[currentLogFileIndex];
-        if (currentLogger != null) {
+        closed = true;
+        if (writer != null) {
+            LockSupport.unpark(writer);
             try {
-                files[currentLogFileIndex] = null;
-                currentLogger.close();
-            } catch (IOException e) {
+                writer.join(WRITER_STOP_TIMEOUT_IN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        writeLock.lock();
+        try {
+            writePendingMessages(Integer.MAX_VALUE);
+
+            LogFileProxy currentLogger = files[currentLogFileIndex];
+            if (currentLogger != null) {
+                try {
+                    files[currentLogFileIndex] = null;
+                    currentLogger.close();
+                } catch (IOException e) {
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void startWriter() {
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!closed) {
+                    LockSupport.park(this);
+                    if (!handOffRequested.getAndSet(false)) {
+                        continue;
+                    }
+
+                    try {
+                        writeHandedOffMessages();
+                    } catch (ThreadDeath td) {
+                        throw td;
+                    } catch (Throwable t) {
+                        // The writer must survive any failure
+                    }
+                }
+            }
+        }, FileLoggerOutput.class.getSimpleName() + "-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Called after releasing the write lock, wakes the writer thread if messages were left in the ring.
+     */
+    private void handOffPendingMessages() {
+        if (!pendingMessages.isEmpty() && writer != null) {
+            handOffRequested.set(true);
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void writeHandedOffMessages() {
+        // If a logging thread holds the lock it hands the rest over again once it is done
+        while (!pendingMessages.isEmpty() && writeLock.tryLock()) {
+            try {
+                while (writePendingMessages(MAX_MESSAGES_PER_BATCH) == MAX_MESSAGES_PER_BATCH) {
+                }
+            } finally {
+                writeLock.unlock();
             }
         }
     }
 
+    /**
+     * Writes up to maxMessages pending messages, the caller must hold the write lock.
+     * @return The number of messages taken out of the ring.
+     */
+    private int writePendingMessages(int maxMessages) {
+        int taken = 0;
+        LogFileProxy logFileProxy = null;
+        try {
+            while (true) {
+                if (droppedMessages.get() > 0) {
+                    logFileProxy = writeLine(String.format(DROPPED_MESSAGES_FORMAT, droppedMessages.getAndSet(0)));
+                }
+                if (taken == maxMessages) {
+                    break;
+                }
+
+                String message = pendingMessages.poll();
+                if (message == null) {
+                    break;
+                }
+                ++taken;
+                logFileProxy = writeLine(message);
+            }
+        } catch (IOException e) {
+            fallbackLoggerOutput.log(String.format("Failed to write to log to file exception: %s", e.toString()));
+        } finally {
+            if (logFileProxy != null) {
+                logFileProxy.flush();
+            }
+        }
+
+        return taken;
+    }
+
+    private LogFileProxy writeLine(String line) throws IOException {
+        LogFileProxy logFileProxy = getCurrentLogFileProxy();
+        if (logFileProxy != null) {
+            logFileProxy.writeLine(line);
+        }
+
+        return logFileProxy;
+    }
+
     void setLogProxyFactory(LogFileProxyFactory factory) {
         this.factory = factory;
     }
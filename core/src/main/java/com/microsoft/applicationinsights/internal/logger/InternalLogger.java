@@ -42,7 +42,19 @@ public enum InternalLogger {
     INSTANCE;
 
     private final static String LOGGER_LEVEL = "Level";
-    private final static SimpleDateFormat dateFormatter = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss.SSSZ");
+    private final static String DATE_FORMAT = "dd-MM-yyyy HH:mm:ss.SSSZ";
+    private final static String UTC_ID = "UTC";
+    private final static int MESSAGE_PREFIX_CAPACITY = 96;
+
+    // SimpleDateFormat is not thread safe, each thread gets its own instance instead of sharing one under a lock
+    private final static ThreadLocal<SimpleDateFormat> dateFormatter = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat formatter = new SimpleDateFormat(DATE_FORMAT);
+            formatter.setTimeZone(TimeZone.getTimeZone(UTC_ID));
+            return formatter;
+        }
+    };
 
     public enum LoggingLevel {
         ALL(Integer.MIN_VALUE),
@@ -102,13 +114,6 @@ public enum InternalLogger {
                         onInitializationError(String.format("Error: Illegal value '%s' for the SDK internal logger. Logging level is therefore set to 'OFF'", loggerLevel));
                     }
                 }
-
-                final String utcId = "UTC";
-                try {
-                    dateFormatter.setTimeZone(TimeZone.getTimeZone(utcId));
-                } catch (Exception e) {
-                    new ConsoleLoggerOutput().log(String.format("Failed to find timezone with id='%s'. Using default '%s'", utcId, dateFormatter.getTimeZone().getDisplayName()));
-                }
             } finally {
                 initialized = true;
             }
@@ -223,20 +228,23 @@ public enum InternalLogger {
     }
     /**
      * Creates the message that contains the prefix, thread id and the message.
+     * The message is only run through {@link String#format} when it has placeholders,
+     * the rest is appended as is.
      * @param prefix The prefix to attach to the message.
      * @param message The message to write with possible place holders.
      * @param args T The args that are part of the message.
      * @return The formatted message with all the needed data.
      */
     private static String createMessage(String prefix, String message, Object... args) {
-        String currentDateAsString;
-        synchronized (INSTANCE) {
-            currentDateAsString = dateFormatter.format(new Date());
-        }
-        String formattedMessage = String.format(message, args);
         final Thread thisThread = Thread.currentThread();
-        String theMessage = String.format("%s %s, %d(%s): %s", prefix, currentDateAsString, thisThread.getId(), thisThread.getName(), formattedMessage);
-        return theMessage;
+        String formattedMessage = message.indexOf('%') == -1 ? message : String.format(message, args);
+
+        StringBuilder sb = new StringBuilder(MESSAGE_PREFIX_CAPACITY + formattedMessage.length());
+        sb.append(prefix).append(' ')
+          .append(dateFormatter.get().format(new Date())).append(", ")
+          .append(thisThread.getId()).append('(').append(thisThread.getName()).append("): ")
+          .append(formattedMessage);
+        return sb.toString();
     }
 
     /**
@@ -292,8 +300,13 @@ public enum InternalLogger {
     }
 
     private void log(LoggingLevel requestLevel, String message, Object... args) {
-        if (requestLevel.getValue() >= loggingLevel.getValue()) {
-            loggerOutput.log(createMessage(requestLevel.toString(), message, args));
+        if (requestLevel.getValue() < loggingLevel.getValue()) {
+            return;
+        }
+
+        LoggerOutput output = loggerOutput;
+        if (output != null) {
+            output.log(createMessage(requestLevel.toString(), message, args));
         }
     }
 }
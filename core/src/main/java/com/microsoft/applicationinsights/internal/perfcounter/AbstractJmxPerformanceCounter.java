@@ -26,7 +26,7 @@ import java.util.Map;
 
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.internal.jmx.JmxAttributeData;
-import com.microsoft.applicationinsights.internal.jmx.JmxDataFetcher;
+import com.microsoft.applicationinsights.internal.jmx.JmxAttributeFetcher;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
@@ -34,12 +34,15 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
  * The class is a base class for JMX performance counters.
  * It knows how to fetch the needed information from JMX and then relies on its derived classes to send the data.
  *
+ * The JMX objects are resolved once and cached by a {@link JmxAttributeFetcher}.
+ *
  * Created by gupele on 3/15/2015.
  */
 public abstract class AbstractJmxPerformanceCounter implements PerformanceCounter {
     private final String id;
     private final String objectName;
     private final Collection<JmxAttributeData> attributes;
+    private JmxAttributeFetcher fetcher;
     private boolean relevant = true;
     private boolean firstTime = true;
 
@@ -60,28 +63,17 @@ public abstract class AbstractJmxPerformanceCounter implements PerformanceCounte
         }
 
         try {
-            Map<String, Collection<Object>> result =
-                    JmxDataFetcher.fetch(objectName, attributes);
-
-            for (Map.Entry<String, Collection<Object>> displayAndValues : result.entrySet()) {
-                boolean ok = true;
-                double value = 0.0;
-                for (Object obj : displayAndValues.getValue()) {
-                    try {
-                        value += Double.parseDouble(String.valueOf(obj));
-                    } catch (Exception e) {
-                        ok = false;
-                        break;
-                    }
-                }
+            if (fetcher == null) {
+                fetcher = new JmxAttributeFetcher(objectName, attributes);
+            }
 
-                if (ok) {
-                    try {
-                        send(telemetryClient, displayAndValues.getKey(), value);
-                    } catch (Exception e) {
-                        InternalLogger.INSTANCE.error("Error while sending JMX data: '%s'", e.toString());
-                        InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
-                    }
+            Map<String, Double> result = fetcher.fetch();
+            for (Map.Entry<String, Double> displayAndValue : result.entrySet()) {
+                try {
+                    send(telemetryClient, displayAndValue.getKey(), displayAndValue.getValue());
+                } catch (Exception e) {
+                    InternalLogger.INSTANCE.error("Error while sending JMX data: '%s'", e.toString());
+                    InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
                 }
             }
         } catch (Exception e) {
@@ -21,21 +21,22 @@
 
 package com.microsoft.applicationinsights.internal.perfcounter;
 
-import java.io.File;
-
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.system.SystemInformation;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 
 /**
  * A base class for Unix performance counters who uses the '/proc/' filesystem for their work.
  *
+ * The file is kept open between collections, see {@link ProcfsFile}.
+ *
  * Created by gupele on 3/8/2015.
  */
 abstract class AbstractUnixPerformanceCounter extends AbstractPerformanceCounter {
-    private final File processFile;
+    private final ProcfsFile processFile;
     private final String path;
 
     protected AbstractUnixPerformanceCounter(String path) {
@@ -43,7 +44,7 @@ abstract class AbstractUnixPerformanceCounter extends AbstractPerformanceCounter
         Preconditions.checkArgument(!Strings.isNullOrEmpty(path), "path should be non null, non empty value.");
 
         this.path = path;
-        processFile = new File(path);
+        processFile = new ProcfsFile(path);
         if (!processFile.canRead()) {
             logPerfCounterErrorError("Can not read");
         }
@@ -54,7 +55,24 @@ abstract class AbstractUnixPerformanceCounter extends AbstractPerformanceCounter
         InternalLogger.INSTANCE.error(format, args);
     }
 
-    protected File getProcessFile() {
+    protected ProcfsFile getProcessFile() {
         return processFile;
     }
+
+    /**
+     * Reads the current content of the file.
+     * @return True if the file was read and can be parsed.
+     */
+    protected boolean refreshProcessFile() {
+        try {
+            processFile.refresh();
+            return true;
+        } catch (Exception e) {
+            // The channel might be stale, it is opened again on the next collection
+            processFile.close();
+            logPerfCounterErrorError("Error while reading file: '%s'", e.toString());
+            InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
+            return false;
+        }
+    }
 }
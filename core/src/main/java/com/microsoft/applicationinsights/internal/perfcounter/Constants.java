@@ -47,6 +47,17 @@ public final class Constants {
     public final static String PROCESS_IO_PC_ID = PERFORMANCE_COUNTER_PREFIX + "ProcessIOPerformanceCounter";
     public final static String PROCESS_IO_PC_COUNTER_NAME = "IO Data Bytes/sec";
 
+    public final static String CONTEXT_SWITCHES_PC_CATEGORY_NAME = "System";
+    public final static String CONTEXT_SWITCHES_PC_COUNTER_NAME = "Context Switches/sec";
+
+
+    public final static String CONTAINER_PC_ID = PERFORMANCE_COUNTER_PREFIX + "ContainerPerformanceCounter";
+    public final static String CONTAINER_PC_CATEGORY_NAME = "Container";
+    public final static String CONTAINER_THROTTLED_PERIODS_PC_COUNTER_NAME = "% CPU Throttled Periods";
+    public final static String CONTAINER_THROTTLED_TIME_PC_COUNTER_NAME = "CPU Throttled Time/sec";
+    public final static String CONTAINER_MEMORY_LIMIT_PC_COUNTER_NAME = "Memory Limit Bytes";
+    public final static String CONTAINER_MEMORY_USAGE_PC_COUNTER_NAME = "Memory Usage Bytes";
+
     public final static String INSTANCE_NAME_TOTAL = "_Total";
 
     public final static String PROCESS_CATEGORY = "Process";
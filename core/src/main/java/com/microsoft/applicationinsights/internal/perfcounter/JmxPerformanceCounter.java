@@ -25,7 +25,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.internal.jmx.JmxAttributeData;
-import com.microsoft.applicationinsights.internal.jmx.JmxDataFetcher;
+import com.microsoft.applicationinsights.internal.jmx.JmxAttributeFetcher;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.system.SystemInformation;
 import com.microsoft.applicationinsights.telemetry.PerformanceCounterTelemetry;
@@ -42,7 +42,8 @@ import java.util.Map;
 public final class JmxPerformanceCounter implements PerformanceCounter {
     private final PerformanceCounterTelemetry telemetry;
     private final Map<String, Collection<JmxAttributeData>> objectToAttributes;
-    private Map.Entry<String, Collection<JmxAttributeData>> entry;
+    private JmxAttributeFetcher fetcher;
+    private int numberOfAttributes;
     private final String id;
     private boolean relevant = true;
 
@@ -78,56 +79,47 @@ public final class JmxPerformanceCounter implements PerformanceCounter {
             return;
         }
 
-        Map<String, Collection<Object>> data = null;
-        if (entry == null) {
+        Map<String, Double> data;
+        if (fetcher == null) {
+            // Use the first object name that can be found
+            data = null;
             for (Map.Entry<String, Collection<JmxAttributeData>> entry : objectToAttributes.entrySet()) {
                 try {
-                    data = JmxDataFetcher.fetch(entry.getKey(), entry.getValue());
-                    this.entry = entry;
+                    JmxAttributeFetcher candidate = new JmxAttributeFetcher(entry.getKey(), entry.getValue());
+                    data = candidate.fetch();
+                    fetcher = candidate;
+                    numberOfAttributes = entry.getValue().size();
                     break;
                 } catch (Exception e) {
                 }
             }
 
-            if (entry == null) {
+            if (fetcher == null) {
                 relevant = false;
                 InternalLogger.INSTANCE.error("Could not find JMX data for '%s'. Performance Counter will be ignored.", getId());
                 return;
             }
         } else {
             try {
-                data = JmxDataFetcher.fetch(entry.getKey(), entry.getValue());
+                data = fetcher.fetch();
             } catch (Exception e) {
                 InternalLogger.INSTANCE.error("Failed to fetch JMX data for '%s'..", getId());
                 return;
             }
         }
 
-        if (data == null) {
-            return;
+        if (data.size() != numberOfAttributes) {
+            InternalLogger.INSTANCE.error("Error while parsing JMX value for '%s': some of the values are not numeric", getId());
         }
 
-        for (Map.Entry<String, Collection<Object>> displayAndValues : data.entrySet()) {
-            boolean ok = true;
-            double value = 0.0;
-            for (Object obj : displayAndValues.getValue()) {
-                try {
-                    value += Double.parseDouble(String.valueOf(obj));
-                } catch (Exception e) {
-                    ok = false;
-                    InternalLogger.INSTANCE.error("Error while parsing JMX value for '%s:%s': '%s'", getId(), displayAndValues.getKey(), e.toString());
-                    break;
-                }
-            }
-
-            if (ok) {
-                try {
-                    telemetry.setValue(value);
-                    InternalLogger.INSTANCE.trace("JMX Metric: %s:%s: %s", telemetry.getCategoryName(), telemetry.getCounterName(), value);
-                    telemetryClient.track(telemetry);
-                } catch (Exception e) {
-                    InternalLogger.INSTANCE.error("Error while sending JMX data for '%s': '%s'", getId(), e.toString());
-                }
+        for (Map.Entry<String, Double> displayAndValue : data.entrySet()) {
+            double value = displayAndValue.getValue();
+            try {
+                telemetry.setValue(value);
+                InternalLogger.INSTANCE.trace("JMX Metric: %s:%s: %s", telemetry.getCategoryName(), telemetry.getCounterName(), value);
+                telemetryClient.track(telemetry);
+            } catch (Exception e) {
+                InternalLogger.INSTANCE.error("Error while sending JMX data for '%s': '%s'", getId(), e.toString());
             }
         }
     }
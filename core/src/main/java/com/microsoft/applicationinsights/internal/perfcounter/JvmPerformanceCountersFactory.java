@@ -27,7 +27,9 @@ import java.util.HashSet;
 
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.perfcounter.jvm.DeadLockDetectorPerformanceCounter;
+import com.microsoft.applicationinsights.internal.perfcounter.jvm.GCNotificationPerformanceCounter;
 import com.microsoft.applicationinsights.internal.perfcounter.jvm.JvmHeapMemoryUsedPerformanceCounter;
+import com.microsoft.applicationinsights.internal.perfcounter.jvm.ThreadPoolPerformanceCounter;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 /**
@@ -45,6 +47,8 @@ public class JvmPerformanceCountersFactory implements PerformanceCountersFactory
         if (isEnabled) {
             addDeadLockDetector(pcs);
             addJvmMemoryPerformanceCounter(pcs);
+            addGCNotificationPerformanceCounter(pcs);
+            addThreadPoolPerformanceCounter(pcs);
         } else {
             InternalLogger.INSTANCE.trace("JvmPerformanceCountersFactory is disabled");
         }
@@ -103,6 +107,57 @@ public class JvmPerformanceCountersFactory implements PerformanceCountersFactory
         }
     }
 
+    private void addGCNotificationPerformanceCounter(ArrayList<PerformanceCounter> pcs) {
+        try {
+            if (disabledJvmPCs.contains(GCNotificationPerformanceCounter.NAME)) {
+                InternalLogger.INSTANCE.trace("GCNotificationPerformanceCounter is disabled");
+                return;
+            }
+
+            if (!GCNotificationPerformanceCounter.isSupported()) {
+                InternalLogger.INSTANCE.trace("GCNotificationPerformanceCounter is not supported");
+                return;
+            }
+
+            GCNotificationPerformanceCounter gcpc = new GCNotificationPerformanceCounter();
+            gcpc.start();
+            pcs.add(gcpc);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Failed to create GCNotificationPerformanceCounter, exception: %s",
+                        ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+    }
+
+    private void addThreadPoolPerformanceCounter(ArrayList<PerformanceCounter> pcs) {
+        try {
+            if (disabledJvmPCs.contains(ThreadPoolPerformanceCounter.NAME)) {
+                InternalLogger.INSTANCE.trace("ThreadPoolPerformanceCounter is disabled");
+                return;
+            }
+
+            pcs.add(new ThreadPoolPerformanceCounter());
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Failed to create ThreadPoolPerformanceCounter, exception: %s",
+                        ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+    }
+
     public void setIsEnabled(boolean isEnabled) {
         this.isEnabled = isEnabled;
     }
@@ -21,10 +21,17 @@
 
 package com.microsoft.applicationinsights.internal.perfcounter;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
@@ -32,9 +39,10 @@ import com.google.common.base.Strings;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.extensibility.PerformanceCountersCollectionPlugin;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
 import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
 import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
-import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 /**
@@ -47,6 +55,10 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
  * That means that setting the timeouts is only relevant if done before the first registration of a Performance Counter.
  * <p>
  * The container will go through all the registered Performance Counters and will trigger their 'report' method.
+ * JMX Performance Counters are reported in parallel on at most {@link #MAX_JMX_REPORTING_THREADS} of the
+ * scheduler's I/O threads, so MBeans that block can't take the threads that send transmissions.
+ * JMX counters that did not start by the end of the collection's wait are abandoned for that collection,
+ * and a JMX counter that is still reporting when the next collection starts is skipped in that collection.
  * By default the container will start reporting after 5 minutes and will continue doing so every 1 minute.
  * <p>
  * The user of this class can add (register), remove (unregister) a performance counter while the container is working.
@@ -66,6 +78,22 @@ public enum PerformanceCounterContainer implements Stoppable {
     public final static long DEFAULT_COLLECTION_FREQUENCY_IN_SEC = 60;
     private final static long MIN_COLLECTION_FREQUENCY_IN_SEC = 1;
 
+    // The longest time a collection waits for the JMX performance counters
+    private final static long JMX_REPORT_TIMEOUT_IN_MILLIS = 10000;
+
+    // The most I/O threads that report JMX performance counters at the same time
+    final static int MAX_JMX_REPORTING_THREADS = 2;
+
+    private static final class JmxReport {
+        private final PerformanceCounter performanceCounter;
+        private final CountDownLatch collectionDone;
+
+        private JmxReport(PerformanceCounter performanceCounter, CountDownLatch collectionDone) {
+            this.performanceCounter = performanceCounter;
+            this.collectionDone = collectionDone;
+        }
+    }
+
     private final ConcurrentMap<String, PerformanceCounter> performanceCounters = new ConcurrentHashMap<String, PerformanceCounter>();
 
     private volatile boolean initialized = false;
@@ -77,7 +105,29 @@ public enum PerformanceCounterContainer implements Stoppable {
 
     private TelemetryClient telemetryClient;
 
-    private ScheduledThreadPoolExecutor threads;
+    private TaskGroup tasks;
+
+    private TaskGroup jmxTasks;
+
+    private final Set<String> jmxReportsInProgress = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final Queue<JmxReport> pendingJmxReports = new ConcurrentLinkedQueue<JmxReport>();
+
+    private final AtomicInteger jmxReportingThreads = new AtomicInteger();
+
+    private final Runnable jmxReporter = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                reportPendingJmxCounters();
+            } finally {
+                jmxReportingThreads.decrementAndGet();
+            }
+
+            // A report that was queued after the last poll is left to a new reporter
+            startJmxReporters();
+        }
+    };
 
     /**
      * /**
@@ -152,7 +202,8 @@ public enum PerformanceCounterContainer implements Stoppable {
             return;
         }
 
-        ThreadPoolUtils.stop(threads, timeout, timeUnit);
+        tasks.stop(timeout, timeUnit);
+        jmxTasks.stop(timeout, timeUnit);
         initialized = false;
     }
 
@@ -210,7 +261,8 @@ public enum PerformanceCounterContainer implements Stoppable {
         if (!initialized) {
             synchronized (INSTANCE) {
                 if (!initialized) {
-                    createThreadToCollect();
+                    tasks = SdkScheduler.INSTANCE.createTaskGroup(PerformanceCounterContainer.class.getSimpleName());
+                    jmxTasks = SdkScheduler.INSTANCE.createIoTaskGroup(PerformanceCounterContainer.class.getSimpleName() + "-jmx", false);
 
                     scheduleWork();
 
@@ -221,7 +273,7 @@ public enum PerformanceCounterContainer implements Stoppable {
     }
 
     private void scheduleWork() {
-        threads.scheduleAtFixedRate(
+        tasks.scheduleAtFixedRate("collect",
                 new Runnable() {
                     @Override
                     public void run() {
@@ -246,22 +298,7 @@ public enum PerformanceCounterContainer implements Stoppable {
                             }
                         }
 
-                        for (PerformanceCounter performanceCounter : performanceCounters.values()) {
-                            try {
-                                performanceCounter.report(telemetryClient);
-                            } catch (ThreadDeath td) {
-                                throw td;
-                            } catch (Throwable t) {
-                                try {
-                                    InternalLogger.INSTANCE.error("Exception while reporting performance counter '%s': " +
-                                            " Exception : '%s'", performanceCounter.getId(), ExceptionUtils.getStackTrace(t));
-                                } catch (ThreadDeath td) {
-                                    throw td;
-                                } catch (Throwable t2) {
-                                    // chomp
-                                }
-                            }
-                        }
+                        reportAll();
 
                         if (plugin != null) {
                             try {
@@ -289,9 +326,112 @@ public enum PerformanceCounterContainer implements Stoppable {
         SDKShutdownActivity.INSTANCE.register(INSTANCE);
     }
 
-    private void createThreadToCollect() {
-        threads = new ScheduledThreadPoolExecutor(1);
-        threads.setThreadFactory(ThreadPoolUtils.createDaemonThreadFactory(PerformanceCounterContainer.class));
+    private void reportAll() {
+        List<PerformanceCounter> jmxPerformanceCounters = new ArrayList<PerformanceCounter>();
+        List<PerformanceCounter> otherPerformanceCounters = new ArrayList<PerformanceCounter>();
+        for (PerformanceCounter performanceCounter : performanceCounters.values()) {
+            if (performanceCounter instanceof AbstractJmxPerformanceCounter || performanceCounter instanceof JmxPerformanceCounter) {
+                jmxPerformanceCounters.add(performanceCounter);
+            } else {
+                otherPerformanceCounters.add(performanceCounter);
+            }
+        }
+
+        // Start the JMX counters first so they run while the others are reported on this thread
+        CountDownLatch jmxDone = new CountDownLatch(jmxPerformanceCounters.size());
+        for (PerformanceCounter performanceCounter : jmxPerformanceCounters) {
+            String id = performanceCounter.getId();
+            if (!jmxReportsInProgress.add(id)) {
+                InternalLogger.INSTANCE.warn("Performance counter '%s' is still reporting, it is skipped in this collection", id);
+                jmxDone.countDown();
+                continue;
+            }
+
+            pendingJmxReports.add(new JmxReport(performanceCounter, jmxDone));
+        }
+        startJmxReporters();
+
+        for (PerformanceCounter performanceCounter : otherPerformanceCounters) {
+            report(performanceCounter);
+        }
+
+        try {
+            long timeoutInMillis = Math.min(JMX_REPORT_TIMEOUT_IN_MILLIS, collectionFrequencyInMS);
+            if (!jmxDone.await(timeoutInMillis, TimeUnit.MILLISECONDS)) {
+                int abandoned = abandonPendingJmxReports();
+                InternalLogger.INSTANCE.warn("JMX performance counters %s did not finish reporting within %d ms, %d counters that did not start were abandoned",
+                        jmxReportsInProgress, timeoutInMillis, abandoned);
+            }
+        } catch (InterruptedException e) {
+            abandonPendingJmxReports();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts reporters for the pending JMX counters on the I/O threads, up to {@link #MAX_JMX_REPORTING_THREADS}.
+     */
+    private void startJmxReporters() {
+        while (!pendingJmxReports.isEmpty()) {
+            int threads = jmxReportingThreads.get();
+            if (threads >= MAX_JMX_REPORTING_THREADS) {
+                return;
+            }
+            if (!jmxReportingThreads.compareAndSet(threads, threads + 1)) {
+                continue;
+            }
+
+            if (!jmxTasks.execute("report", jmxReporter)) {
+                jmxReportingThreads.decrementAndGet();
+
+                // The I/O threads are saturated or stopped, report on the calling thread
+                reportPendingJmxCounters();
+                return;
+            }
+        }
+    }
+
+    private void reportPendingJmxCounters() {
+        JmxReport jmxReport;
+        while ((jmxReport = pendingJmxReports.poll()) != null) {
+            try {
+                report(jmxReport.performanceCounter);
+            } finally {
+                jmxReportsInProgress.remove(jmxReport.performanceCounter.getId());
+                jmxReport.collectionDone.countDown();
+            }
+        }
+    }
+
+    /**
+     * Takes the JMX counters that did not start reporting out of the queue, they are reported in the next collection.
+     * @return The number of abandoned counters.
+     */
+    private int abandonPendingJmxReports() {
+        int abandoned = 0;
+        JmxReport jmxReport;
+        while ((jmxReport = pendingJmxReports.poll()) != null) {
+            jmxReportsInProgress.remove(jmxReport.performanceCounter.getId());
+            ++abandoned;
+        }
+        return abandoned;
+    }
+
+    private void report(PerformanceCounter performanceCounter) {
+        try {
+            performanceCounter.report(telemetryClient);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Exception while reporting performance counter '%s': " +
+                        " Exception : '%s'", performanceCounter.getId(), ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
     }
 
     public void setPlugin(PerformanceCountersCollectionPlugin plugin) {
@@ -90,6 +90,11 @@ final class ProcessBuiltInPerformanceCountersFactory implements PerformanceCount
         performanceCounters.add(new UnixTotalCpuPerformanceCounter());
         performanceCounters.add(new UnixTotalMemoryPerformanceCounter());
 
+        UnixContainerPerformanceCounter containerPerformanceCounter = UnixContainerPerformanceCounter.createIfSupported();
+        if (containerPerformanceCounter != null) {
+            performanceCounters.add(containerPerformanceCounter);
+        }
+
         return performanceCounters;
     }
 
@@ -0,0 +1,234 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file under '/proc' (or any other pseudo file system like '/sys/fs/cgroup') and
+ * lets the caller parse it in place.
+ *
+ * The channel to the file is opened once and kept open, every {@link #refresh()} re-reads
+ * the file from its start into the same buffer, and the parsing methods work on the raw bytes,
+ * so a collection does not allocate.
+ *
+ * The parsing is done with a cursor: {@link #seekLine(byte[])} or {@link #nextLine()} move it to a line,
+ * and {@link #nextLong()} returns the next number on the current line.
+ *
+ * The class is not thread safe.
+ */
+final class ProcfsFile {
+    private final static int INITIAL_BUFFER_SIZE = 4096;
+    private final static int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    private final File file;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private int length;
+    private int position;
+
+    ProcfsFile(String path) {
+        this(new File(path));
+    }
+
+    ProcfsFile(File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean canRead() {
+        return file.canRead();
+    }
+
+    /**
+     * Reads the current content of the file, the cursor is set to the start of the content.
+     * @throws IOException when the file cannot be read.
+     */
+    void refresh() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        buffer.clear();
+        long offset = 0;
+        while (true) {
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            offset += read;
+            if (!buffer.hasRemaining()) {
+                if (buffer.capacity() >= MAX_BUFFER_SIZE) {
+                    break;
+                }
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        length = buffer.position();
+        position = 0;
+    }
+
+    /**
+     * Sets the content directly instead of reading it from the file.
+     * @param content The content to parse.
+     */
+    void setContent(byte[] content) {
+        if (buffer.capacity() < content.length) {
+            buffer = ByteBuffer.allocate(content.length);
+        }
+        buffer.clear();
+        buffer.put(content);
+        length = content.length;
+        position = 0;
+    }
+
+    void rewind() {
+        position = 0;
+    }
+
+    /**
+     * Moves the cursor to the start of the next line.
+     * @return False if there are no more lines.
+     */
+    boolean nextLine() {
+        byte[] data = buffer.array();
+        while (position < length && data[position] != '\n') {
+            ++position;
+        }
+        if (position >= length) {
+            return false;
+        }
+        ++position;
+        return position < length;
+    }
+
+    /**
+     * Checks whether the line under the cursor starts with the prefix, if so the cursor is moved past the prefix.
+     * The cursor is expected to be at the start of a line.
+     */
+    boolean lineStartsWith(byte[] prefix) {
+        if (position + prefix.length > length) {
+            return false;
+        }
+        byte[] data = buffer.array();
+        for (int i = 0; i < prefix.length; ++i) {
+            if (data[position + i] != prefix[i]) {
+                return false;
+            }
+        }
+        position += prefix.length;
+        return true;
+    }
+
+    /**
+     * Moves the cursor past the prefix of the first line, starting at the cursor, that starts with that prefix.
+     * @return False if no such line was found, the cursor is then at the end of the content.
+     */
+    boolean seekLine(byte[] prefix) {
+        do {
+            if (lineStartsWith(prefix)) {
+                return true;
+            }
+        } while (nextLine());
+
+        position = length;
+        return false;
+    }
+
+    /**
+     * @return The byte under the cursor or -1 at the end of the content.
+     */
+    int peek() {
+        return position < length ? buffer.array()[position] : -1;
+    }
+
+    /**
+     * Parses the next non negative number in the current line, skipping any non digit bytes before it.
+     * @return The number or -1 if there is no number until the end of the line.
+     */
+    long nextLong() {
+        byte[] data = buffer.array();
+        while (position < length && data[position] != '\n' && (data[position] < '0' || data[position] > '9')) {
+            ++position;
+        }
+        if (position >= length || data[position] == '\n') {
+            return -1;
+        }
+
+        long value = 0;
+        while (position < length && data[position] >= '0' && data[position] <= '9') {
+            value = value * 10 + (data[position] - '0');
+            ++position;
+        }
+        return value;
+    }
+
+    /**
+     * Finds the lines that start with the keys and parses the first number in each of them.
+     * The keys should be in the order they appear in the file, the search for every key continues from the previous one.
+     * @param keys The line prefixes to look for.
+     * @param values The parsed values, -1 for keys that were not found.
+     * @return The number of keys that were found.
+     */
+    int readKeyedValues(byte[][] keys, long[] values) {
+        int found = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            int start = position;
+            if (seekLine(keys[i])) {
+                values[i] = nextLong();
+                ++found;
+                nextLine();
+            } else {
+                values[i] = -1;
+                position = start;
+            }
+        }
+        return found;
+    }
+
+    void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // chomp
+            }
+            channel = null;
+        }
+    }
+
+    static byte[] key(String key) {
+        return key.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter;
+
+import java.io.File;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.telemetry.PerformanceCounterTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * The class supplies the cgroup limits of the process, which are the limits of the container when running in one.
+ *
+ * It reports how much the cpu was throttled since the last collection, the memory limit and the memory usage.
+ * Both cgroup v1 ('/sys/fs/cgroup/cpu' and '/sys/fs/cgroup/memory') and cgroup v2 (unified '/sys/fs/cgroup') are supported.
+ */
+final class UnixContainerPerformanceCounter extends AbstractPerformanceCounter {
+    private final static String CGROUP_ROOT = "/sys/fs/cgroup";
+    private final static String CGROUP_V2_MARKER = CGROUP_ROOT + "/cgroup.controllers";
+
+    private final static double NANOS_IN_SECOND = 1000000000.0;
+    private final static double MICROS_IN_SECOND = 1000000.0;
+
+    // cgroup v1 reports a huge page aligned number when there is no limit
+    private final static long UNLIMITED_THRESHOLD = Long.MAX_VALUE / 2;
+
+    private final ProcfsFile cpuStat;
+    private final ProcfsFile memoryLimit;
+    private final ProcfsFile memoryUsage;
+    private final byte[][] cpuStatKeys;
+    private final double throttledTimeUnitsInSecond;
+
+    private final long[] cpuStatValues = new long[3];
+    private long prevPeriods = -1;
+    private long prevThrottledPeriods;
+    private long prevThrottledTime;
+    private long lastCollectionInNanos;
+
+    /**
+     * Creates the counter for the cgroup files that exist.
+     * @return The counter or null if there are no readable cgroup files.
+     */
+    static UnixContainerPerformanceCounter createIfSupported() {
+        UnixContainerPerformanceCounter counter;
+        if (new File(CGROUP_V2_MARKER).exists()) {
+            counter = new UnixContainerPerformanceCounter(
+                    CGROUP_ROOT + "/cpu.stat",
+                    CGROUP_ROOT + "/memory.max",
+                    CGROUP_ROOT + "/memory.current",
+                    "throttled_usec",
+                    MICROS_IN_SECOND);
+        } else {
+            counter = new UnixContainerPerformanceCounter(
+                    CGROUP_ROOT + "/cpu/cpu.stat",
+                    CGROUP_ROOT + "/memory/memory.limit_in_bytes",
+                    CGROUP_ROOT + "/memory/memory.usage_in_bytes",
+                    "throttled_time",
+                    NANOS_IN_SECOND);
+        }
+
+        return counter.cpuStat != null || counter.memoryUsage != null ? counter : null;
+    }
+
+    UnixContainerPerformanceCounter(String cpuStatPath, String memoryLimitPath, String memoryUsagePath, String throttledTimeKey, double throttledTimeUnitsInSecond) {
+        cpuStat = readableOrNull(cpuStatPath);
+        memoryLimit = readableOrNull(memoryLimitPath);
+        memoryUsage = readableOrNull(memoryUsagePath);
+        cpuStatKeys = new byte[][] {
+                ProcfsFile.key("nr_periods"),
+                ProcfsFile.key("nr_throttled"),
+                ProcfsFile.key(throttledTimeKey)
+        };
+        this.throttledTimeUnitsInSecond = throttledTimeUnitsInSecond;
+    }
+
+    @Override
+    public String getId() {
+        return Constants.CONTAINER_PC_ID;
+    }
+
+    @Override
+    public void report(TelemetryClient telemetryClient) {
+        long currentCollectionInNanos = System.nanoTime();
+
+        if (refresh(cpuStat) && cpuStat.readKeyedValues(cpuStatKeys, cpuStatValues) == cpuStatKeys.length) {
+            long periods = cpuStatValues[0];
+            long throttledPeriods = cpuStatValues[1];
+            long throttledTime = cpuStatValues[2];
+
+            if (prevPeriods != -1) {
+                long periodsDiff = periods - prevPeriods;
+                if (periodsDiff > 0) {
+                    send(telemetryClient, Constants.CONTAINER_THROTTLED_PERIODS_PC_COUNTER_NAME, 100.0 * (throttledPeriods - prevThrottledPeriods) / periodsDiff);
+                }
+
+                double timeElapsedInSeconds = ((double)(currentCollectionInNanos - lastCollectionInNanos)) / NANOS_IN_SECOND;
+                double throttledSeconds = (throttledTime - prevThrottledTime) / throttledTimeUnitsInSecond;
+                send(telemetryClient, Constants.CONTAINER_THROTTLED_TIME_PC_COUNTER_NAME, throttledSeconds / timeElapsedInSeconds);
+            }
+
+            prevPeriods = periods;
+            prevThrottledPeriods = throttledPeriods;
+            prevThrottledTime = throttledTime;
+            lastCollectionInNanos = currentCollectionInNanos;
+        }
+
+        if (refresh(memoryLimit)) {
+            // cgroup v2 writes 'max' when there is no limit, which is parsed as -1
+            long limit = memoryLimit.nextLong();
+            if (limit >= 0 && limit < UNLIMITED_THRESHOLD) {
+                send(telemetryClient, Constants.CONTAINER_MEMORY_LIMIT_PC_COUNTER_NAME, limit);
+            }
+        }
+
+        if (refresh(memoryUsage)) {
+            long usage = memoryUsage.nextLong();
+            if (usage >= 0) {
+                send(telemetryClient, Constants.CONTAINER_MEMORY_USAGE_PC_COUNTER_NAME, usage);
+            }
+        }
+    }
+
+    private void send(TelemetryClient telemetryClient, String counterName, double value) {
+        InternalLogger.INSTANCE.trace("Sending Performance Counter: %s %s: %s", Constants.CONTAINER_PC_CATEGORY_NAME, counterName, value);
+        Telemetry telemetry = new PerformanceCounterTelemetry(
+                Constants.CONTAINER_PC_CATEGORY_NAME,
+                counterName,
+                "",
+                value);
+
+        telemetryClient.track(telemetry);
+    }
+
+    private boolean refresh(ProcfsFile file) {
+        if (file == null) {
+            return false;
+        }
+
+        try {
+            file.refresh();
+            return true;
+        } catch (Exception e) {
+            file.close();
+            InternalLogger.INSTANCE.error("Performance Counter %s: Error while reading file '%s': '%s'", getId(), file.getFile().getPath(), e.toString());
+            InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
+            return false;
+        }
+    }
+
+    private static ProcfsFile readableOrNull(String path) {
+        ProcfsFile file = new ProcfsFile(path);
+        return file.canRead() ? file : null;
+    }
+}
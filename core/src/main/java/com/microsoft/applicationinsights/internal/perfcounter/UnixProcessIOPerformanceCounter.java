@@ -21,15 +21,11 @@
 
 package com.microsoft.applicationinsights.internal.perfcounter;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.system.SystemInformation;
 import com.microsoft.applicationinsights.telemetry.PerformanceCounterTelemetry;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 
 /**
  * The class knows how to supply the io usage of the current process under the Unix OS.
@@ -43,6 +39,13 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 final class UnixProcessIOPerformanceCounter extends AbstractUnixPerformanceCounter {
     private final static double NANOS_IN_SECOND = 1000000000.0;
 
+    private final static byte[][] IO_KEYS = {
+            ProcfsFile.key("read_bytes:"),
+            ProcfsFile.key("write_bytes:")
+    };
+
+    private final long[] values = new long[IO_KEYS.length];
+
     private double prevProcessIO;
 
     private long lastCollectionInNanos = -1;
@@ -91,33 +94,28 @@ final class UnixProcessIOPerformanceCounter extends AbstractUnixPerformanceCount
      * @return the current IO for current process, or null if the datum could not be measured.
      */
     public Double getCurrentIOForCurrentProcess() {
-        BufferedReader bufferedReader = null;
-
-        Double result = null;
-        UnixProcessIOtParser parser = new UnixProcessIOtParser();
-        try {
-            bufferedReader = new BufferedReader(new FileReader(getProcessFile()));
-            String line;
-            while (!parser.done() && (line = bufferedReader.readLine()) != null) {
-                parser.process(line);
-            }
-
-            result = parser.getValue();
-        } catch (Exception e) {
-            result = null;
+        if (!refreshProcessFile()) {
+            return null;
+        }
+
+        double result = getProcessIO(getProcessFile(), values);
+        if (result < 0) {
             logPerfCounterErrorError("Error while parsing file: '%s'", getId());
-            InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
-        } finally {
-            if (bufferedReader != null ) {
-                try {
-                    bufferedReader.close();
-                } catch (Exception e) {
-                    logPerfCounterErrorError("Error while closing file : '%s'", e.toString());
-                    InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
-                }
-            }
+            return null;
         }
 
         return result;
     }
+
+    /**
+     * Parses the content of '/proc/[pid]/io'.
+     * @return The sum of read and written bytes or -1 if one of the values is missing.
+     */
+    static double getProcessIO(ProcfsFile processIO, long[] values) {
+        if (processIO.readKeyedValues(IO_KEYS, values) != IO_KEYS.length) {
+            return -1;
+        }
+
+        return (double)(values[0] + values[1]);
+    }
 }
@@ -21,32 +21,42 @@
 
 package com.microsoft.applicationinsights.internal.perfcounter;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.util.ArrayList;
-
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.telemetry.PerformanceCounterTelemetry;
 import com.microsoft.applicationinsights.telemetry.Telemetry;
 
-import com.google.common.base.Strings;
-import org.apache.commons.lang3.exception.ExceptionUtils;
-
 /**
- * The class supplies the overall cpu usage of the machine.
+ * The class supplies the overall cpu usage of the machine, the usage of every core
+ * and the number of context switches per second.
  *
  * Created by gupele on 3/8/2015.
  */
 final class UnixTotalCpuPerformanceCounter extends AbstractUnixPerformanceCounter {
     private final static String STAT_FILE = "/proc/stat";
-
-    private long[] prevCpuCounters;
-    private long prevTotalCpuValue;
+    private final static double NANOS_IN_SECOND = 1000000000.0;
+    private final static byte[] CPU_KEY = ProcfsFile.key("cpu");
+    private final static byte[] CONTEXT_SWITCHES_KEY = ProcfsFile.key("ctxt");
+    private final static int IDLE_INDEX = 3;
+
+    private final static int TOTAL_CORE_ID = -1;
+
+    // Index 0 holds the overall values, the next indexes hold the values of the cores in the order of the file.
+    // Cores that are offline have no line, so the core of an index is the one of its 'cpuN' label.
+    private long[] prevTotals;
+    private long[] prevIdles;
+    private int[] prevCoreIds;
+    private long[] totals = new long[0];
+    private long[] idles = new long[0];
+    private int[] coreIds = new int[0];
+    private String[] instanceNames = new String[0];
+    private int numberOfCpuLines;
+
+    private long prevContextSwitches = -1;
+    private long lastCollectionInNanos = -1;
 
     public UnixTotalCpuPerformanceCounter() {
         super(STAT_FILE);
-        prevCpuCounters = null;
     }
 
     @Override
@@ -56,97 +66,131 @@ final class UnixTotalCpuPerformanceCounter extends AbstractUnixPerformanceCounte
 
     @Override
     public void report(TelemetryClient telemetryClient) {
-        String line = getLineOfData();
+        long currentCollectionInNanos = System.nanoTime();
+        if (!refreshProcessFile()) {
+            return;
+        }
 
-        if (!Strings.isNullOrEmpty(line)) {
-            String[] rawStringValues = line.split(" ");
+        ProcfsFile stat = getProcessFile();
+        int cpuLines = readCpuTicks(stat, totals, idles, coreIds);
+        if (cpuLines > totals.length) {
+            // First collection or cores were added, size the arrays and start over
+            resize(cpuLines);
+            stat.rewind();
+            readCpuTicks(stat, totals, idles, coreIds);
+        }
+        long contextSwitches = stat.seekLine(CONTEXT_SWITCHES_KEY) ? stat.nextLong() : -1;
 
-            ArrayList<String> stringValues = new ArrayList<String>(rawStringValues.length - 1);
-            for (int i = 1; i < rawStringValues.length; ++i) {
-                String stringValue = rawStringValues[i];
-                if (Strings.isNullOrEmpty(stringValue)) {
+        if (cpuLines == 0) {
+            logPerfCounterErrorError("Error while parsing file: '%s'", getId());
+            return;
+        }
+
+        if (prevTotals != null && cpuLines == numberOfCpuLines) {
+            reportCpuUsage(telemetryClient, Constants.INSTANCE_NAME_TOTAL, 0);
+            for (int i = 1; i < cpuLines; ++i) {
+                // A core that went offline shifts the ones after it, which are compared only with themselves
+                if (coreIds[i] != prevCoreIds[i]) {
+                    instanceNames[i] = null;
                     continue;
                 }
-
-                stringValues.add(stringValue);
+                if (instanceNames[i] == null) {
+                    instanceNames[i] = String.valueOf(coreIds[i]);
+                }
+                reportCpuUsage(telemetryClient, instanceNames[i], i);
             }
 
-            String[] array = stringValues.toArray(new String[stringValues.size()]);
-
-            if (prevCpuCounters == null) {
-                getCountersForTheFirstTime(array);
-                return;
+            if (contextSwitches >= 0 && prevContextSwitches >= 0) {
+                double timeElapsedInSeconds = ((double)(currentCollectionInNanos - lastCollectionInNanos)) / NANOS_IN_SECOND;
+                double value = (contextSwitches - prevContextSwitches) / timeElapsedInSeconds;
+
+                InternalLogger.INSTANCE.trace("Sending Performance Counter: %s %s: %s", Constants.CONTEXT_SWITCHES_PC_CATEGORY_NAME, Constants.CONTEXT_SWITCHES_PC_COUNTER_NAME, value);
+                Telemetry telemetry = new PerformanceCounterTelemetry(
+                        Constants.CONTEXT_SWITCHES_PC_CATEGORY_NAME,
+                        Constants.CONTEXT_SWITCHES_PC_COUNTER_NAME,
+                        "",
+                        value);
+                telemetryClient.track(telemetry);
             }
+        }
 
-            double totalCpuUsage = calculateTotalCpuUsage(array);
-
-            InternalLogger.INSTANCE.trace("Sending Performance Counter: %s %s %s: %s", Constants.TOTAL_CPU_PC_CATEGORY_NAME, Constants.CPU_PC_COUNTER_NAME, Constants.INSTANCE_NAME_TOTAL, totalCpuUsage);
-            Telemetry telemetry = new PerformanceCounterTelemetry(
-                    Constants.TOTAL_CPU_PC_CATEGORY_NAME,
-                    Constants.CPU_PC_COUNTER_NAME,
-                    Constants.INSTANCE_NAME_TOTAL,
-                    totalCpuUsage);
-
-            telemetryClient.track(telemetry);
+        if (prevTotals == null || prevTotals.length != totals.length) {
+            prevTotals = new long[totals.length];
+            prevIdles = new long[idles.length];
+            prevCoreIds = new int[coreIds.length];
         }
+        System.arraycopy(totals, 0, prevTotals, 0, cpuLines);
+        System.arraycopy(idles, 0, prevIdles, 0, cpuLines);
+        System.arraycopy(coreIds, 0, prevCoreIds, 0, cpuLines);
+        numberOfCpuLines = cpuLines;
+        prevContextSwitches = contextSwitches;
+        lastCollectionInNanos = currentCollectionInNanos;
     }
 
-    private String getLineOfData() {
-        BufferedReader bufferedReader = null;
-
-        String line = null;
-        try {
-            bufferedReader = new BufferedReader(new FileReader(getProcessFile()));
-            line = bufferedReader.readLine();
-        } catch (Exception e) {
-            logPerfCounterErrorError("Error while parsing file: '%s'", e.toString());
-            InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
-        } finally {
-            if (bufferedReader != null ) {
-                try {
-                    bufferedReader.close();
-                } catch (Exception e) {
-                    logPerfCounterErrorError("Error while closing file : '%s'", e.toString());
-                    InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
+    /**
+     * Parses the 'cpu' lines of '/proc/stat', the overall line followed by a line per core.
+     * @param stat The file, the cursor is expected to be at the start.
+     * @param totals The sum of all the ticks of every line, filled up to its length.
+     * @param idles The idle ticks of every line, filled up to its length.
+     * @param coreIds The N of the 'cpuN' label of every line, -1 for the overall line, filled up to its length.
+     * @return The number of 'cpu' lines, might be larger than the arrays.
+     */
+    static int readCpuTicks(ProcfsFile stat, long[] totals, long[] idles, int[] coreIds) {
+        if (!stat.seekLine(CPU_KEY)) {
+            return 0;
+        }
+
+        // The 'cpu' lines are consecutive, the cursor is left at the start of the line that follows them
+        int cpuLines = 0;
+        do {
+            int coreId = TOTAL_CORE_ID;
+            if (stat.peek() != ' ') {
+                // The core number of 'cpuN' lines
+                coreId = (int) stat.nextLong();
+            }
+
+            if (cpuLines < totals.length) {
+                coreIds[cpuLines] = coreId;
+                long total = 0;
+                long idle = 0;
+                long value;
+                for (int i = 0; (value = stat.nextLong()) != -1; ++i) {
+                    total += value;
+                    if (i == IDLE_INDEX) {
+                        idle = value;
+                    }
                 }
+                totals[cpuLines] = total;
+                idles[cpuLines] = idle;
             }
-        }
+            ++cpuLines;
+        } while (stat.nextLine() && stat.lineStartsWith(CPU_KEY));
 
-        return line;
+        return cpuLines;
     }
 
-    private void getCountersForTheFirstTime(String[] stringValues) {
-        prevCpuCounters = new long[stringValues.length];
-        prevTotalCpuValue = 0;
-        for (int i = 0; i < stringValues.length; ++i) {
-            String stringValue = stringValues[i];
-            long value = Long.parseLong(stringValue);
-            prevCpuCounters[i] = value;
-            prevTotalCpuValue += value;
-        }
+    private void resize(int cpuLines) {
+        totals = new long[cpuLines];
+        idles = new long[cpuLines];
+        coreIds = new int[cpuLines];
+        instanceNames = new String[cpuLines];
     }
 
-    private double calculateTotalCpuUsage(String[] stringValues) {
-        long[] cpuCounters = new long[stringValues.length];
-        long totalCpuValue = 0;
-        double diffIdle = 0.0;
-        for (int i = 0; i < stringValues.length; ++i) {
-            String stringValue = stringValues[i];
-            long value = Long.parseLong(stringValue);
-            cpuCounters[i] = value - prevCpuCounters[i];
-            prevCpuCounters[i] = value;
-
-            totalCpuValue += value;
-            if (i == 3) {
-                diffIdle = cpuCounters[i];
-            }
+    private void reportCpuUsage(TelemetryClient telemetryClient, String instanceName, int index) {
+        double totalDiff = totals[index] - prevTotals[index];
+        if (totalDiff <= 0) {
+            return;
         }
+        double idleDiff = idles[index] - prevIdles[index];
+        double cpuUsage = 100 * ((totalDiff - idleDiff) / totalDiff);
 
-        double totalDiff = totalCpuValue - prevTotalCpuValue;
-        double result = 100 * ((totalDiff - diffIdle) / (totalDiff));
-
-        prevTotalCpuValue = totalCpuValue;
+        InternalLogger.INSTANCE.trace("Sending Performance Counter: %s %s %s: %s", Constants.TOTAL_CPU_PC_CATEGORY_NAME, Constants.CPU_PC_COUNTER_NAME, instanceName, cpuUsage);
+        Telemetry telemetry = new PerformanceCounterTelemetry(
+                Constants.TOTAL_CPU_PC_CATEGORY_NAME,
+                Constants.CPU_PC_COUNTER_NAME,
+                instanceName,
+                cpuUsage);
 
-        return result;
+        telemetryClient.track(telemetry);
     }
 }
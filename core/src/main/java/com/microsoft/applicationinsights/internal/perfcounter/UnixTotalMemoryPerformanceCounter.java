@@ -21,9 +21,6 @@
 
 package com.microsoft.applicationinsights.internal.perfcounter;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.telemetry.PerformanceCounterTelemetry;
@@ -38,6 +35,15 @@ final class UnixTotalMemoryPerformanceCounter extends AbstractUnixPerformanceCou
     private final static String MEM_FILE = "/proc/meminfo";
     private final static double KB = 1024.0;
 
+    // The lines that are summed up as the available memory, in the order they appear in the file
+    private final static byte[][] AVAILABLE_MEMORY_KEYS = {
+            ProcfsFile.key("MemFree:"),
+            ProcfsFile.key("Buffers:"),
+            ProcfsFile.key("Cached:")
+    };
+
+    private final long[] values = new long[AVAILABLE_MEMORY_KEYS.length];
+
     public UnixTotalMemoryPerformanceCounter() {
         super(MEM_FILE);
     }
@@ -49,8 +55,13 @@ final class UnixTotalMemoryPerformanceCounter extends AbstractUnixPerformanceCou
 
     @Override
     public void report(TelemetryClient telemetryClient) {
-        Double totalAvailableMemory = getTotalAvailableMemory();
-        if (totalAvailableMemory == null) {
+        if (!refreshProcessFile()) {
+            return;
+        }
+
+        double totalAvailableMemory = getTotalAvailableMemory(getProcessFile(), values);
+        if (totalAvailableMemory < 0) {
+            logPerfCounterErrorError("Error while parsing file: '%s'", getId());
             return;
         }
 
@@ -64,33 +75,21 @@ final class UnixTotalMemoryPerformanceCounter extends AbstractUnixPerformanceCou
         telemetryClient.track(telemetry);
     }
 
-    private Double getTotalAvailableMemory() {
-        BufferedReader bufferedReader = null;
-
-        Double result = null;
-        UnixTotalMemInfoParser reader = new UnixTotalMemInfoParser();
-        try {
-            bufferedReader = new BufferedReader(new FileReader(getProcessFile()));
-            String line;
-            while (!reader.done() && (line = bufferedReader.readLine()) != null) {
-                reader.process(line);
-            }
+    /**
+     * Parses the content of '/proc/meminfo'.
+     * @return The available memory in bytes or -1 if one of the values is missing.
+     */
+    static double getTotalAvailableMemory(ProcfsFile memInfo, long[] values) {
+        if (memInfo.readKeyedValues(AVAILABLE_MEMORY_KEYS, values) != AVAILABLE_MEMORY_KEYS.length) {
+            return -1;
+        }
 
-            // The value we get is in KB so we need to translate that to bytes.
-            result = reader.getValue() * KB;
-        } catch (Exception e) {
-            result = null;
-            logPerfCounterErrorError("Error while parsing file: '%s'", e.toString());
-        } finally {
-            if (bufferedReader != null ) {
-                try {
-                    bufferedReader.close();
-                } catch (Exception e) {
-                    logPerfCounterErrorError("Error while closing file : '%s'", e.toString());
-                }
-            }
+        long totalInKB = 0;
+        for (long value : values) {
+            totalInKB += value;
         }
 
-        return result;
+        // The value we get is in KB so we need to translate that to bytes.
+        return totalInKB * KB;
     }
 }
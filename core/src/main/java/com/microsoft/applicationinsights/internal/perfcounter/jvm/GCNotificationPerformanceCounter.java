@@ -0,0 +1,282 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter.jvm;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.perfcounter.PerformanceCounter;
+import com.microsoft.applicationinsights.internal.util.DurationHistogram;
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Reports every GC as it ends, from the notifications of the garbage collector MXBeans, instead of polling their
+ * cumulative counts.
+ *
+ * Every interval it sends the pause time as an aggregated metric with its 50th, 95th and 99th percentiles, and the
+ * allocation and promotion rates in bytes per second. The allocation is the growth of the heap between the end of
+ * a GC and the start of the next one, and the promotion is the growth of the old generation during a GC.
+ * A pause longer than the threshold is also sent on its own as a {@link #SLOW_PAUSE_EVENT_NAME} event with its
+ * cause and the usage of every memory pool before and after it.
+ *
+ * Needs the HotSpot {@code com.sun.management} GC notifications, see {@link #isSupported()}.
+ */
+public final class GCNotificationPerformanceCounter implements PerformanceCounter, NotificationListener {
+    public final static String NAME = "GCNotifications";
+
+    public static final String SLOW_PAUSE_THRESHOLD_PROPERTY = "applicationinsights.gc.slowPauseThresholdMs";
+    static final long DEFAULT_SLOW_PAUSE_THRESHOLD_IN_MS = 500;
+
+    static final String PAUSE_TIME_METRIC_NAME = "GC Pause Time";
+    static final String ALLOCATION_RATE_METRIC_NAME = "GC Allocation Rate";
+    static final String PROMOTION_RATE_METRIC_NAME = "GC Promotion Rate";
+    static final String SLOW_PAUSE_EVENT_NAME = "GC Pause";
+
+    // Bounds the events sent per interval when the JVM keeps pausing
+    static final int MAX_SLOW_PAUSES_PER_INTERVAL = 100;
+
+    private static final double BYTES_IN_MB = 1024.0 * 1024.0;
+
+    private final DurationHistogram pauses = new DurationHistogram();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong promotedBytes = new AtomicLong();
+    private final AtomicLong heapUsedAfterLastGC = new AtomicLong(-1);
+    private final Queue<EventTelemetry> slowPauses = new ConcurrentLinkedQueue<EventTelemetry>();
+    private final AtomicInteger slowPauseCount = new AtomicInteger();
+    private final Set<String> heapPoolNames = new HashSet<String>();
+    private final long slowPauseThresholdInMS;
+    private final long jvmStartTime;
+    private long lastReportTime = System.nanoTime();
+
+    public GCNotificationPerformanceCounter() {
+        this(Long.getLong(SLOW_PAUSE_THRESHOLD_PROPERTY, DEFAULT_SLOW_PAUSE_THRESHOLD_IN_MS));
+    }
+
+    GCNotificationPerformanceCounter(long slowPauseThresholdInMS) {
+        this.slowPauseThresholdInMS = slowPauseThresholdInMS;
+        this.jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPoolNames.add(pool.getName());
+            }
+        }
+    }
+
+    /**
+     * @return True if the JVM sends GC notifications that this counter can read.
+     */
+    public static boolean isSupported() {
+        try {
+            Class.forName("com.sun.management.GarbageCollectionNotificationInfo");
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter) {
+                    return true;
+                }
+            }
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            // Not a HotSpot based JVM, or one that is too old
+        }
+        return false;
+    }
+
+    /**
+     * Starts listening to the notifications of every garbage collector.
+     */
+    public void start() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    @Override
+    public String getId() {
+        return "GCNotificationPerformanceCounter";
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        try {
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            GcInfo gcInfo = info.getGcInfo();
+            onCollection(info.getGcName(), info.getGcAction(), info.getGcCause(), gcInfo.getStartTime(), gcInfo.getDuration(),
+                    gcInfo.getMemoryUsageBeforeGc(), gcInfo.getMemoryUsageAfterGc());
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Failed to read GC notification, exception: %s", ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+    }
+
+    /**
+     * Accounts for a GC.
+     * @param startTime The start of the GC in milliseconds since the JVM started.
+     */
+    void onCollection(String gcName, String gcAction, String gcCause, long startTime, long durationInMS,
+                      Map<String, MemoryUsage> usageBefore, Map<String, MemoryUsage> usageAfter) {
+        long heapUsedBefore = 0;
+        long heapUsedAfter = 0;
+        for (String pool : heapPoolNames) {
+            MemoryUsage before = usageBefore.get(pool);
+            MemoryUsage after = usageAfter.get(pool);
+            if (before == null || after == null) {
+                continue;
+            }
+            heapUsedBefore += before.getUsed();
+            heapUsedAfter += after.getUsed();
+            if (isOldGeneration(pool) && after.getUsed() > before.getUsed()) {
+                promotedBytes.addAndGet(after.getUsed() - before.getUsed());
+            }
+        }
+        long heapUsedAfterPrevious = heapUsedAfterLastGC.getAndSet(heapUsedAfter);
+        if (heapUsedAfterPrevious >= 0 && heapUsedBefore > heapUsedAfterPrevious) {
+            allocatedBytes.addAndGet(heapUsedBefore - heapUsedAfterPrevious);
+        }
+
+        // The collectors of ZGC and Shenandoah named '... Cycles' report concurrent cycles, not pauses
+        if (gcName.endsWith(" Cycles")) {
+            return;
+        }
+        pauses.record(TimeUnit.MILLISECONDS.toNanos(durationInMS));
+        if (durationInMS >= slowPauseThresholdInMS && slowPauseCount.incrementAndGet() <= MAX_SLOW_PAUSES_PER_INTERVAL) {
+            slowPauses.add(createSlowPauseTelemetry(gcName, gcAction, gcCause, startTime, durationInMS, usageBefore, usageAfter));
+        }
+    }
+
+    @Override
+    public void report(TelemetryClient telemetryClient) {
+        long now = System.nanoTime();
+        double elapsedInSeconds;
+        synchronized (this) {
+            elapsedInSeconds = (double) (now - lastReportTime) / TimeUnit.SECONDS.toNanos(1);
+            lastReportTime = now;
+        }
+
+        List<EventTelemetry> events = new ArrayList<EventTelemetry>();
+        EventTelemetry event;
+        while ((event = slowPauses.poll()) != null) {
+            events.add(event);
+        }
+        slowPauseCount.set(0);
+        for (EventTelemetry slowPause : events) {
+            telemetryClient.track(slowPause);
+        }
+
+        DurationHistogram.Snapshot snapshot = pauses.drain();
+        if (snapshot.getCount() > 0) {
+            MetricTelemetry pauseTime = new MetricTelemetry(PAUSE_TIME_METRIC_NAME, snapshot.getSumInMS());
+            pauseTime.setCount((int) Math.min(snapshot.getCount(), Integer.MAX_VALUE));
+            pauseTime.setMax(snapshot.getMaxInMS());
+            pauseTime.getProperties().put("P50", String.valueOf(snapshot.getPercentileInMS(50)));
+            pauseTime.getProperties().put("P95", String.valueOf(snapshot.getPercentileInMS(95)));
+            pauseTime.getProperties().put("P99", String.valueOf(snapshot.getPercentileInMS(99)));
+            pauseTime.markAsCustomPerfCounter();
+            telemetryClient.track(pauseTime);
+        }
+
+        if (elapsedInSeconds > 0) {
+            MetricTelemetry allocationRate = new MetricTelemetry(ALLOCATION_RATE_METRIC_NAME, allocatedBytes.getAndSet(0) / elapsedInSeconds);
+            MetricTelemetry promotionRate = new MetricTelemetry(PROMOTION_RATE_METRIC_NAME, promotedBytes.getAndSet(0) / elapsedInSeconds);
+            allocationRate.markAsCustomPerfCounter();
+            promotionRate.markAsCustomPerfCounter();
+            telemetryClient.track(allocationRate);
+            telemetryClient.track(promotionRate);
+        }
+    }
+
+    long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    long getPromotedBytes() {
+        return promotedBytes.get();
+    }
+
+    Queue<EventTelemetry> getSlowPauses() {
+        return slowPauses;
+    }
+
+    DurationHistogram getPauses() {
+        return pauses;
+    }
+
+    void addHeapPoolName(String pool) {
+        heapPoolNames.add(pool);
+    }
+
+    private EventTelemetry createSlowPauseTelemetry(String gcName, String gcAction, String gcCause, long startTime, long durationInMS,
+                                                    Map<String, MemoryUsage> usageBefore, Map<String, MemoryUsage> usageAfter) {
+        EventTelemetry telemetry = new EventTelemetry(SLOW_PAUSE_EVENT_NAME);
+        telemetry.setTimestamp(new Date(jvmStartTime + startTime));
+        telemetry.getProperties().put("GcName", gcName);
+        telemetry.getProperties().put("GcAction", gcAction);
+        telemetry.getProperties().put("GcCause", gcCause);
+        telemetry.getMetrics().put("DurationMs", (double) durationInMS);
+        for (Map.Entry<String, MemoryUsage> entry : usageBefore.entrySet()) {
+            telemetry.getMetrics().put(entry.getKey() + " Before MB", entry.getValue().getUsed() / BYTES_IN_MB);
+        }
+        for (Map.Entry<String, MemoryUsage> entry : usageAfter.entrySet()) {
+            telemetry.getMetrics().put(entry.getKey() + " After MB", entry.getValue().getUsed() / BYTES_IN_MB);
+        }
+        return telemetry;
+    }
+
+    private static boolean isOldGeneration(String pool) {
+        return pool.contains("Old Gen") || pool.contains("Tenured Gen");
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter.jvm;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.perfcounter.PerformanceCounter;
+import com.microsoft.applicationinsights.internal.util.DurationHistogram;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Reports how saturated the thread pools of the application are, so that latency that is really time spent
+ * waiting for a thread can be told apart.
+ *
+ * The worker pools of Tomcat, Jetty and Undertow are discovered through their JMX beans. The
+ * {@link ThreadPoolExecutor}s of the application are known when the agent instruments them, see
+ * {@link ThreadPoolTracker}, which also measures how long their tasks wait in the queue.
+ *
+ * Every interval it sends, per pool, the busy threads, the threads, the queue depth, and the busy threads as
+ * a percentage of the maximum pool size. For executors it also sends the queue wait time as an aggregated
+ * metric with its 50th, 95th and 99th percentiles.
+ */
+public final class ThreadPoolPerformanceCounter implements PerformanceCounter {
+    public final static String NAME = "ThreadPools";
+
+    static final String ACTIVE_THREADS_METRIC_NAME = "Thread Pool Active Threads";
+    static final String THREADS_METRIC_NAME = "Thread Pool Threads";
+    static final String QUEUE_DEPTH_METRIC_NAME = "Thread Pool Queue Depth";
+    static final String SATURATION_METRIC_NAME = "Thread Pool Saturation";
+    static final String QUEUE_WAIT_TIME_METRIC_NAME = "Thread Pool Queue Wait Time";
+
+    private static final String EXECUTOR_POOL_TYPE = "Executor";
+
+    // The JMX beans of the worker pools of the known servlet containers
+    private static final ContainerPool[] CONTAINER_POOLS = {
+            new ContainerPool("Catalina:type=ThreadPool,name=*", "Tomcat", "name", "currentThreadsBusy", "currentThreadCount", "maxThreads", null),
+            new ContainerPool("Tomcat:type=ThreadPool,name=*", "Tomcat", "name", "currentThreadsBusy", "currentThreadCount", "maxThreads", null),
+            new ContainerPool("Catalina:type=Executor,name=*", "Tomcat", "name", "activeCount", "poolSize", "maxThreads", "queueSize"),
+            new ContainerPool("Tomcat:type=Executor,name=*", "Tomcat", "name", "activeCount", "poolSize", "maxThreads", "queueSize"),
+            new ContainerPool("org.eclipse.jetty.util.thread:type=queuedthreadpool,*", "Jetty", "id", "busyThreads", "threads", "maxThreads", "queueSize"),
+            new ContainerPool("org.xnio:type=Xnio,*", "Undertow", "worker", "BusyWorkerThreadCount", "WorkerPoolSize", "MaxWorkerPoolSize", "WorkerQueueSize")
+    };
+
+    private final MBeanServer server;
+
+    public ThreadPoolPerformanceCounter() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    ThreadPoolPerformanceCounter(MBeanServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public String getId() {
+        return "ThreadPoolPerformanceCounter";
+    }
+
+    @Override
+    public void report(TelemetryClient telemetryClient) {
+        for (PoolSample sample : sampleContainerPools()) {
+            send(telemetryClient, sample);
+        }
+
+        ThreadPoolTracker.INSTANCE.recountPendingTasks();
+        for (Map.Entry<ThreadPoolExecutor, ThreadPoolTracker.ExecutorStats> entry : ThreadPoolTracker.INSTANCE.getExecutors().entrySet()) {
+            ThreadPoolExecutor executor = entry.getKey();
+            ThreadPoolTracker.ExecutorStats stats = entry.getValue();
+            if (executor.isTerminated()) {
+                continue;
+            }
+            PoolSample sample = new PoolSample(stats.getName(), EXECUTOR_POOL_TYPE, executor.getActiveCount(),
+                    executor.getPoolSize(), executor.getMaximumPoolSize(), executor.getQueue().size());
+            send(telemetryClient, sample);
+
+            DurationHistogram.Snapshot queueWaits = stats.drainQueueWaits();
+            if (queueWaits.getCount() > 0) {
+                MetricTelemetry queueWaitTime = createMetric(QUEUE_WAIT_TIME_METRIC_NAME, queueWaits.getSumInMS(), sample);
+                queueWaitTime.setCount((int) Math.min(queueWaits.getCount(), Integer.MAX_VALUE));
+                queueWaitTime.setMax(queueWaits.getMaxInMS());
+                queueWaitTime.getProperties().put("P50", String.valueOf(queueWaits.getPercentileInMS(50)));
+                queueWaitTime.getProperties().put("P95", String.valueOf(queueWaits.getPercentileInMS(95)));
+                queueWaitTime.getProperties().put("P99", String.valueOf(queueWaits.getPercentileInMS(99)));
+                telemetryClient.track(queueWaitTime);
+            }
+        }
+    }
+
+    List<PoolSample> sampleContainerPools() {
+        List<PoolSample> samples = new ArrayList<PoolSample>();
+        for (ContainerPool pool : CONTAINER_POOLS) {
+            try {
+                for (ObjectName objectName : server.queryNames(new ObjectName(pool.objectNamePattern), null)) {
+                    PoolSample sample = pool.sample(server, objectName);
+                    if (sample != null) {
+                        samples.add(sample);
+                    }
+                }
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                try {
+                    InternalLogger.INSTANCE.error("Failed to read the thread pools of '%s': '%s'", pool.objectNamePattern, ExceptionUtils.getStackTrace(t));
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t2) {
+                    // chomp
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static void send(TelemetryClient telemetryClient, PoolSample sample) {
+        telemetryClient.track(createMetric(ACTIVE_THREADS_METRIC_NAME, sample.activeThreads, sample));
+        if (sample.threads >= 0) {
+            telemetryClient.track(createMetric(THREADS_METRIC_NAME, sample.threads, sample));
+        }
+        if (sample.queueDepth >= 0) {
+            telemetryClient.track(createMetric(QUEUE_DEPTH_METRIC_NAME, sample.queueDepth, sample));
+        }
+        // Pools that grow without bound, like cached thread pools, cannot be saturated
+        if (sample.maxThreads > 0 && sample.maxThreads < Integer.MAX_VALUE) {
+            telemetryClient.track(createMetric(SATURATION_METRIC_NAME, 100.0 * sample.activeThreads / sample.maxThreads, sample));
+        }
+    }
+
+    private static MetricTelemetry createMetric(String name, double value, PoolSample sample) {
+        MetricTelemetry telemetry = new MetricTelemetry(name, value);
+        telemetry.getProperties().put("Pool", sample.name);
+        telemetry.getProperties().put("PoolType", sample.poolType);
+        telemetry.markAsCustomPerfCounter();
+        return telemetry;
+    }
+
+    static final class PoolSample {
+        final String name;
+        final String poolType;
+        final long activeThreads;
+        final long threads;
+        final long maxThreads;
+        final long queueDepth;
+
+        PoolSample(String name, String poolType, long activeThreads, long threads, long maxThreads, long queueDepth) {
+            this.name = name;
+            this.poolType = poolType;
+            this.activeThreads = activeThreads;
+            this.threads = threads;
+            this.maxThreads = maxThreads;
+            this.queueDepth = queueDepth;
+        }
+    }
+
+    private static final class ContainerPool {
+        final String objectNamePattern;
+        final String poolType;
+        final String nameKey;
+        final String[] attributes;
+
+        ContainerPool(String objectNamePattern, String poolType, String nameKey,
+                      String activeAttribute, String threadsAttribute, String maxAttribute, String queueAttribute) {
+            this.objectNamePattern = objectNamePattern;
+            this.poolType = poolType;
+            this.nameKey = nameKey;
+            this.attributes = queueAttribute == null
+                    ? new String[] {activeAttribute, threadsAttribute, maxAttribute}
+                    : new String[] {activeAttribute, threadsAttribute, maxAttribute, queueAttribute};
+        }
+
+        /**
+         * @return The sample, or null if the bean does not have the busy threads.
+         */
+        PoolSample sample(MBeanServer server, ObjectName objectName) throws Exception {
+            AttributeList values = server.getAttributes(objectName, attributes);
+            long[] numbers = new long[] {-1, -1, -1, -1};
+            for (Attribute value : values.asList()) {
+                for (int i = 0; i < attributes.length; ++i) {
+                    if (attributes[i].equals(value.getName()) && value.getValue() instanceof Number) {
+                        numbers[i] = ((Number) value.getValue()).longValue();
+                    }
+                }
+            }
+            if (numbers[0] < 0) {
+                return null;
+            }
+            return new PoolSample(getName(objectName), poolType, numbers[0], numbers[1], numbers[2], numbers[3]);
+        }
+
+        private String getName(ObjectName objectName) {
+            String name = objectName.getKeyProperty(nameKey);
+            if (name == null) {
+                return objectName.getCanonicalName();
+            }
+            return name.startsWith("\"") ? ObjectName.unquote(name) : name;
+        }
+    }
+}
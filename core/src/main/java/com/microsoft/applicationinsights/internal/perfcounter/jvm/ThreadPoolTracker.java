@@ -0,0 +1,160 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter.jvm;
+
+import com.google.common.collect.MapMaker;
+import com.microsoft.applicationinsights.internal.util.DurationHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the {@link ThreadPoolExecutor}s of the application and how long their tasks wait in the queue,
+ * as reported by the agent when it instruments 'ThreadPoolExecutor.execute' and 'ThreadPoolExecutor.beforeExecute'.
+ *
+ * A task is stamped with {@link System#nanoTime()} when it is submitted and the stamp is consumed when a worker
+ * starts it. Executors and tasks are held weakly and compared by identity, so that tasks that are rejected,
+ * removed or run by the caller are forgotten with them. Tasks of subclasses that override 'beforeExecute'
+ * without calling the super method are not measured.
+ */
+public enum ThreadPoolTracker {
+    INSTANCE;
+
+    // Bound the memory used when tasks pile up, or when the application creates executors on the fly
+    static final int MAX_PENDING_TASKS = 100000;
+    static final int MAX_EXECUTORS = 50;
+
+    private final ConcurrentMap<Runnable, Long> submitTimes = new MapMaker().weakKeys().makeMap();
+    // Counting the map would visit all of its segments on every submit. The count drifts up when stamped tasks are
+    // collected without being started, and is set back to the size of the map with every report
+    private final AtomicInteger pendingTaskCount = new AtomicInteger();
+    private final ConcurrentMap<ThreadPoolExecutor, ExecutorStats> executors = new MapMaker().weakKeys().makeMap();
+
+    public void onTaskSubmitted(ThreadPoolExecutor executor, Runnable task) {
+        if (executor == null || task == null || getStats(executor) == null) {
+            return;
+        }
+        if (pendingTaskCount.get() < MAX_PENDING_TASKS && submitTimes.put(task, System.nanoTime()) == null) {
+            pendingTaskCount.incrementAndGet();
+        }
+    }
+
+    public void onTaskStarted(ThreadPoolExecutor executor, Thread worker, Runnable task) {
+        if (task == null) {
+            return;
+        }
+        Long submitTime = submitTimes.remove(task);
+        if (submitTime == null) {
+            return;
+        }
+        pendingTaskCount.decrementAndGet();
+        ExecutorStats stats = executors.get(executor);
+        if (stats != null) {
+            stats.onTaskStarted(worker, System.nanoTime() - submitTime);
+        }
+    }
+
+    /**
+     * @return The executors that are still referenced by the application, with their statistics.
+     */
+    Map<ThreadPoolExecutor, ExecutorStats> getExecutors() {
+        return executors;
+    }
+
+    int getPendingTaskCount() {
+        return pendingTaskCount.get();
+    }
+
+    /**
+     * Sets the pending task count back to the number of stamped tasks that were not collected.
+     */
+    void recountPendingTasks() {
+        pendingTaskCount.set(submitTimes.size());
+    }
+
+    void clear() {
+        submitTimes.clear();
+        pendingTaskCount.set(0);
+        executors.clear();
+    }
+
+    private ExecutorStats getStats(ThreadPoolExecutor executor) {
+        ExecutorStats stats = executors.get(executor);
+        if (stats == null) {
+            if (executors.size() >= MAX_EXECUTORS) {
+                return null;
+            }
+            ExecutorStats created = new ExecutorStats(executor);
+            stats = executors.putIfAbsent(executor, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    static final class ExecutorStats {
+        private final String defaultName;
+        private volatile String name;
+        private final DurationHistogram queueWaits = new DurationHistogram();
+
+        private ExecutorStats(ThreadPoolExecutor executor) {
+            this.defaultName = executor.getClass().getSimpleName() + '@' + Integer.toHexString(System.identityHashCode(executor));
+        }
+
+        void onTaskStarted(Thread worker, long waitInNS) {
+            if (name == null && worker != null) {
+                name = getPoolName(worker.getName());
+            }
+            queueWaits.record(waitInNS);
+        }
+
+        /**
+         * @return The name shared by the workers of the executor, or one made of its class name if none ran yet.
+         */
+        String getName() {
+            String workerName = name;
+            return workerName == null ? defaultName : workerName;
+        }
+
+        DurationHistogram.Snapshot drainQueueWaits() {
+            return queueWaits.drain();
+        }
+    }
+
+    /**
+     * Drops the number workers usually end with, so that 'pool-1-thread-3' and 'http-nio-8080-exec-10'
+     * become 'pool-1-thread' and 'http-nio-8080-exec'.
+     */
+    static String getPoolName(String workerName) {
+        int end = workerName.length();
+        while (end > 0 && Character.isDigit(workerName.charAt(end - 1))) {
+            --end;
+        }
+        while (end > 0 && "-_# .".indexOf(workerName.charAt(end - 1)) != -1) {
+            --end;
+        }
+        return end == 0 ? workerName : workerName.substring(0, end);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.pipeline;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
+import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * The statistics of all the {@link TelemetryPipeline}s, kept per initializer and processor class so they
+ * carry over when a pipeline is rebuilt, and exposed through the {@link PipelineStatisticsMXBean}.
+ */
+public enum PipelineStatistics implements PipelineStatisticsMXBean, Stoppable {
+    INSTANCE;
+
+    private final static String MBEAN_NAME_FORMAT = "com.microsoft.applicationinsights:type=TelemetryPipeline,id=%d";
+
+    private final ConcurrentMap<String, StageStatistics> statistics = new ConcurrentHashMap<String, StageStatistics>();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampledOutEarly = new AtomicLong();
+    private final AtomicLong savedByEarlySamplingNanos = new AtomicLong();
+    private ObjectName mbeanName;
+
+    @Override
+    public long getProcessedTelemetryCount() {
+        return processed.get();
+    }
+
+    @Override
+    public long getDroppedTelemetryCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public long getSampledOutEarlyTelemetryCount() {
+        return sampledOutEarly.get();
+    }
+
+    @Override
+    public long getEstimatedTimeSavedByEarlySamplingInNanos() {
+        return savedByEarlySamplingNanos.get();
+    }
+
+    @Override
+    public String[] getStageStatistics() {
+        List<String> lines = new ArrayList<String>();
+        for (StageStatistics stageStatistics : statistics.values()) {
+            lines.add(stageStatistics.toString());
+        }
+        Collections.sort(lines);
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    /**
+     * @param name The name of an initializer or processor class.
+     * @return Its statistics, or null if it was never part of a pipeline.
+     */
+    public StageStatistics getStatistics(String name) {
+        return statistics.get(name);
+    }
+
+    @Override
+    public synchronized void stop(long timeout, TimeUnit timeUnit) {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(mbeanName)) {
+                server.unregisterMBean(mbeanName);
+            }
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.trace("Failed to unregister TelemetryPipeline MBean: %s", e.toString());
+        }
+        mbeanName = null;
+    }
+
+    StageStatistics getOrCreateStatistics(String name) {
+        StageStatistics stageStatistics = statistics.get(name);
+        if (stageStatistics == null) {
+            StageStatistics newStatistics = new StageStatistics(name);
+            stageStatistics = statistics.putIfAbsent(name, newStatistics);
+            if (stageStatistics == null) {
+                stageStatistics = newStatistics;
+                registerMBean();
+            }
+        }
+        return stageStatistics;
+    }
+
+    void onProcessed(boolean wasDropped) {
+        processed.incrementAndGet();
+        if (wasDropped) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param savedNanos The average time the initializers and processors would have spent on the telemetry.
+     */
+    void onSampledOutEarly(long savedNanos) {
+        sampledOutEarly.incrementAndGet();
+        savedByEarlySamplingNanos.addAndGet(savedNanos);
+    }
+
+    private synchronized void registerMBean() {
+        if (mbeanName != null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(String.format(MBEAN_NAME_FORMAT, System.identityHashCode(this)));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+            mbeanName = name;
+            SDKShutdownActivity.INSTANCE.register(this);
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.trace("Failed to register TelemetryPipeline MBean: %s", ExceptionUtils.getStackTrace(e));
+        }
+    }
+}
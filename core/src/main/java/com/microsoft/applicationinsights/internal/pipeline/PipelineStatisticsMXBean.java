@@ -0,0 +1,55 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.pipeline;
+
+/**
+ * Management interface of the {@link PipelineStatistics}, registered with the platform MBean server
+ * so the cost of the telemetry initializers and processors can be inspected with any JMX console.
+ */
+public interface PipelineStatisticsMXBean {
+    /**
+     * @return The number of telemetry items that went through the telemetry processors.
+     */
+    long getProcessedTelemetryCount();
+
+    /**
+     * @return The number of telemetry items that a telemetry processor dropped.
+     */
+    long getDroppedTelemetryCount();
+
+    /**
+     * @return The number of telemetry items that were sampled out before the telemetry initializers ran.
+     * They are included in the processed and dropped counts.
+     */
+    long getSampledOutEarlyTelemetryCount();
+
+    /**
+     * @return The time the telemetry initializers and processors would have spent on the items that were
+     * sampled out early, estimated from their average time per item.
+     */
+    long getEstimatedTimeSavedByEarlySamplingInNanos();
+
+    /**
+     * @return One line per initializer or processor class with its calls, drops, failures, skips and timings.
+     */
+    String[] getStageStatistics();
+}
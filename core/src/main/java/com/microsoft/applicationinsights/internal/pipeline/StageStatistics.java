@@ -0,0 +1,102 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing and outcome counters of a single telemetry initializer or processor class in the {@link TelemetryPipeline}.
+ */
+public final class StageStatistics {
+    private final String name;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    StageStatistics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return The number of telemetry items the processor dropped.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return The number of telemetry items the processor was not called for, since it would not have sampled them.
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getTotalTimeInNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxTimeInNanos() {
+        return maxNanos.get();
+    }
+
+    void onCall(long durationInNanos, boolean dropped, boolean failed) {
+        calls.incrementAndGet();
+        if (dropped) {
+            this.dropped.incrementAndGet();
+        }
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        totalNanos.addAndGet(durationInNanos);
+        long currentMax = maxNanos.get();
+        while (durationInNanos > currentMax && !maxNanos.compareAndSet(currentMax, durationInNanos)) {
+            currentMax = maxNanos.get();
+        }
+    }
+
+    void onSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        long currentCalls = calls.get();
+        long averageNanos = currentCalls == 0 ? 0 : totalNanos.get() / currentCalls;
+        return String.format("%s: calls=%d, dropped=%d, failures=%d, skipped=%d, avgNanos=%d, maxNanos=%d",
+                name, currentCalls, dropped.get(), failures.get(), skipped.get(), averageNanos, maxNanos.get());
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
+import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
+import com.microsoft.applicationinsights.internal.channel.samplingV2.FixedRateSamplingTelemetryProcessor;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.processor.TypedTelemetryProcessor;
+import com.microsoft.applicationinsights.telemetry.SupportSampling;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+
+/**
+ * An immutable, compiled form of the telemetry initializers and processors of a configuration.
+ *
+ * The components are copied into arrays when the pipeline is compiled, so running it is a flat loop that
+ * never takes a lock or iterates a list that is being modified. A configuration compiles a new pipeline
+ * whenever its components change, and a telemetry item is run through a single pipeline, so it sees either
+ * all or none of a change made while the application runs.
+ *
+ * The processors are dispatched on the class of the telemetry: the first time a telemetry class goes through the
+ * pipeline, the processors that act on it are looked up and kept in a table, and later telemetry of the class
+ * is passed to those processors only. A {@link TypedTelemetryProcessor} acts on its own type and a
+ * {@link FixedRateSamplingTelemetryProcessor} on the types it samples, any other processor acts on all telemetry.
+ *
+ * The included and excluded types of a {@link FixedRateSamplingTelemetryProcessor} are read for every item, so
+ * types added to the processor after the pipeline was compiled are sampled too.
+ *
+ * The first such processor whose early sampling is turned on also decides, through {@link #isSampledOut(Telemetry)},
+ * on the telemetry whose operation id is already known before any initializer runs, so the work of the initializers
+ * and processors is not spent on telemetry that would be sampled out.
+ *
+ * The time spent in each component and the items it dropped are counted in {@link PipelineStatistics}.
+ */
+public final class TelemetryPipeline {
+    /**
+     * The name the statistics of the early sampling are kept under.
+     */
+    public static final String EARLY_SAMPLING_STAGE_NAME = FixedRateSamplingTelemetryProcessor.class.getName() + "(early)";
+
+    public static final TelemetryPipeline EMPTY = new TelemetryPipeline(new TelemetryInitializer[0], new TelemetryProcessor[0]);
+
+    private final TelemetryInitializer[] telemetryInitializers;
+    private final StageStatistics[] initializerStatistics;
+    private final TelemetryProcessor[] telemetryProcessors;
+    private final StageStatistics[] processorStatistics;
+
+    // Per processor, the telemetry classes it acts on
+    private final ProcessedTypes[] processedTypes;
+
+    // Per telemetry class, the processors to call, filled as telemetry classes are seen
+    private final ConcurrentMap<Class<?>, Dispatch> dispatchByType = new ConcurrentHashMap<Class<?>, Dispatch>();
+
+    private final FixedRateSamplingTelemetryProcessor earlySampler;
+    private final SamplingTypes earlySamplingTypes;
+    private final StageStatistics earlySamplingStatistics;
+
+    // The stages whose work is saved when the early sampler drops a telemetry item
+    private final StageStatistics[] earlySamplingSkippedStages;
+
+    private TelemetryPipeline(TelemetryInitializer[] telemetryInitializers, TelemetryProcessor[] telemetryProcessors) {
+        this.telemetryInitializers = telemetryInitializers;
+        this.telemetryProcessors = telemetryProcessors;
+
+        initializerStatistics = new StageStatistics[telemetryInitializers.length];
+        for (int i = 0; i < telemetryInitializers.length; ++i) {
+            initializerStatistics[i] = PipelineStatistics.INSTANCE.getOrCreateStatistics(telemetryInitializers[i].getClass().getName());
+        }
+
+        processorStatistics = new StageStatistics[telemetryProcessors.length];
+        processedTypes = new ProcessedTypes[telemetryProcessors.length];
+        int earlySamplerIndex = -1;
+        for (int i = 0; i < telemetryProcessors.length; ++i) {
+            TelemetryProcessor processor = telemetryProcessors[i];
+            processorStatistics[i] = PipelineStatistics.INSTANCE.getOrCreateStatistics(processor.getClass().getName());
+            if (processor instanceof FixedRateSamplingTelemetryProcessor) {
+                FixedRateSamplingTelemetryProcessor sampler = (FixedRateSamplingTelemetryProcessor) processor;
+                processedTypes[i] = new SamplingTypes(sampler);
+                if (earlySamplerIndex == -1 && sampler.isEarlySampling()) {
+                    earlySamplerIndex = i;
+                }
+            } else if (processor instanceof TypedTelemetryProcessor) {
+                processedTypes[i] = new SubTypes(((TypedTelemetryProcessor) processor).getProcessedType());
+            } else {
+                processedTypes[i] = ProcessedTypes.ALL;
+            }
+        }
+
+        if (earlySamplerIndex == -1) {
+            earlySampler = null;
+            earlySamplingTypes = null;
+            earlySamplingStatistics = null;
+            earlySamplingSkippedStages = new StageStatistics[0];
+        } else {
+            earlySampler = (FixedRateSamplingTelemetryProcessor) telemetryProcessors[earlySamplerIndex];
+            earlySamplingTypes = (SamplingTypes) processedTypes[earlySamplerIndex];
+            earlySamplingStatistics = PipelineStatistics.INSTANCE.getOrCreateStatistics(EARLY_SAMPLING_STAGE_NAME);
+            earlySamplingSkippedStages = new StageStatistics[initializerStatistics.length + earlySamplerIndex + 1];
+            System.arraycopy(initializerStatistics, 0, earlySamplingSkippedStages, 0, initializerStatistics.length);
+            System.arraycopy(processorStatistics, 0, earlySamplingSkippedStages, initializerStatistics.length, earlySamplerIndex + 1);
+        }
+    }
+
+    /**
+     * @param telemetryInitializers The telemetry initializers, in the order they are called.
+     * @param telemetryProcessors The telemetry processors, in the order they are called.
+     * @return The pipeline that runs them.
+     */
+    public static TelemetryPipeline compile(List<TelemetryInitializer> telemetryInitializers, List<TelemetryProcessor> telemetryProcessors) {
+        if (telemetryInitializers.isEmpty() && telemetryProcessors.isEmpty()) {
+            return EMPTY;
+        }
+        return new TelemetryPipeline(
+                telemetryInitializers.toArray(new TelemetryInitializer[telemetryInitializers.size()]),
+                telemetryProcessors.toArray(new TelemetryProcessor[telemetryProcessors.size()]));
+    }
+
+    /**
+     * Decides, before the telemetry initializers run, whether the telemetry will be sampled out by the
+     * sampling processor. Only telemetry whose operation id is already known can be decided on.
+     * @return True if the telemetry was sampled out and should not be initialized, processed or sent.
+     */
+    public boolean isSampledOut(Telemetry telemetry) {
+        if (earlySampler == null || !earlySamplingTypes.appliesTo(telemetry.getClass())) {
+            return false;
+        }
+
+        boolean sampledOut = false;
+        boolean failed = false;
+        long start = System.nanoTime();
+        try {
+            sampledOut = earlySampler.isSampledOutByOperation(telemetry);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            failed = true;
+            try {
+                InternalLogger.INSTANCE.error("Exception while sampling telemetry: '%s'", t.toString());
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+        earlySamplingStatistics.onCall(System.nanoTime() - start, sampledOut, failed);
+
+        if (sampledOut) {
+            PipelineStatistics.INSTANCE.onProcessed(true);
+            PipelineStatistics.INSTANCE.onSampledOutEarly(getAverageTimeInNanos(earlySamplingSkippedStages));
+        }
+        return sampledOut;
+    }
+
+    /**
+     * Calls all the telemetry initializers. A failing initializer is logged and does not stop the others.
+     */
+    public void initialize(Telemetry telemetry) {
+        for (int i = 0; i < telemetryInitializers.length; ++i) {
+            TelemetryInitializer initializer = telemetryInitializers[i];
+            boolean failed = false;
+            long start = System.nanoTime();
+            try {
+                initializer.initialize(telemetry);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable e) {
+                failed = true;
+                try {
+                    InternalLogger.INSTANCE.error("Failed during telemetry initialization class '%s', exception: %s", initializer.getClass().getName(), e.toString());
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t2) {
+                    // chomp
+                }
+            }
+            initializerStatistics[i].onCall(System.nanoTime() - start, false, failed);
+        }
+    }
+
+    /**
+     * Calls the telemetry processors until one of them drops the telemetry.
+     * A failing processor is logged and does not drop the telemetry.
+     * @return False if the telemetry was dropped and should not be sent.
+     */
+    public boolean process(Telemetry telemetry) {
+        if (telemetryProcessors.length == 0) {
+            return true;
+        }
+
+        Dispatch dispatch = getDispatch(telemetry.getClass());
+        for (StageStatistics skippedStatistics : dispatch.skippedSamplers) {
+            skippedStatistics.onSkipped();
+        }
+
+        for (int k = 0; k < dispatch.processors.length; ++k) {
+            int i = dispatch.processors[k];
+            SamplingTypes samplingTypes = dispatch.samplingTypes[k];
+            if (samplingTypes != null && !samplingTypes.appliesTo(telemetry.getClass())) {
+                processorStatistics[i].onSkipped();
+                continue;
+            }
+
+            boolean keep = true;
+            boolean failed = false;
+            long start = System.nanoTime();
+            try {
+                keep = telemetryProcessors[i].process(telemetry);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                failed = true;
+                try {
+                    InternalLogger.INSTANCE.error("Exception while processing telemetry: '%s'", t.toString());
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t2) {
+                    // chomp
+                }
+            }
+            processorStatistics[i].onCall(System.nanoTime() - start, !keep, failed);
+
+            if (!keep) {
+                PipelineStatistics.INSTANCE.onProcessed(true);
+                return false;
+            }
+        }
+
+        PipelineStatistics.INSTANCE.onProcessed(false);
+        return true;
+    }
+
+    private Dispatch getDispatch(Class<?> type) {
+        Dispatch dispatch = dispatchByType.get(type);
+        if (dispatch == null) {
+            dispatch = new Dispatch(type);
+            dispatchByType.put(type, dispatch);
+        }
+        return dispatch;
+    }
+
+    private static long getAverageTimeInNanos(StageStatistics[] stages) {
+        long nanos = 0;
+        for (StageStatistics stage : stages) {
+            long calls = stage.getCalls();
+            if (calls != 0) {
+                nanos += stage.getTotalTimeInNanos() / calls;
+            }
+        }
+        return nanos;
+    }
+
+    TelemetryInitializer[] getTelemetryInitializers() {
+        return telemetryInitializers;
+    }
+
+    TelemetryProcessor[] getTelemetryProcessors() {
+        return telemetryProcessors;
+    }
+
+    /**
+     * The processors to call for a telemetry class, in order, and the sampling processors that are skipped.
+     * A sampling processor that may sample the class is kept with its types, which are checked on every call.
+     */
+    private final class Dispatch {
+        private final int[] processors;
+        private final SamplingTypes[] samplingTypes;
+        private final StageStatistics[] skippedSamplers;
+
+        private Dispatch(Class<?> type) {
+            List<Integer> called = new ArrayList<Integer>();
+            List<SamplingTypes> calledSamplingTypes = new ArrayList<SamplingTypes>();
+            List<StageStatistics> skipped = new ArrayList<StageStatistics>();
+            for (int i = 0; i < telemetryProcessors.length; ++i) {
+                if (processedTypes[i] instanceof SamplingTypes) {
+                    if (SupportSampling.class.isAssignableFrom(type)) {
+                        called.add(i);
+                        calledSamplingTypes.add((SamplingTypes) processedTypes[i]);
+                    } else {
+                        skipped.add(processorStatistics[i]);
+                    }
+                } else if (processedTypes[i].appliesTo(type)) {
+                    called.add(i);
+                    calledSamplingTypes.add(null);
+                }
+            }
+
+            processors = new int[called.size()];
+            for (int i = 0; i < processors.length; ++i) {
+                processors[i] = called.get(i);
+            }
+            samplingTypes = calledSamplingTypes.toArray(new SamplingTypes[calledSamplingTypes.size()]);
+            skippedSamplers = skipped.toArray(new StageStatistics[skipped.size()]);
+        }
+    }
+
+    /**
+     * The telemetry classes a processor acts on.
+     */
+    private static abstract class ProcessedTypes {
+        static final ProcessedTypes ALL = new ProcessedTypes() {
+            @Override
+            boolean appliesTo(Class<?> type) {
+                return true;
+            }
+        };
+
+        abstract boolean appliesTo(Class<?> type);
+    }
+
+    /**
+     * The telemetry classes of a {@link TypedTelemetryProcessor}, its type and the classes that extend it.
+     */
+    private static final class SubTypes extends ProcessedTypes {
+        private final Class<?> processedType;
+
+        private SubTypes(Class<?> processedType) {
+            this.processedType = processedType;
+        }
+
+        @Override
+        boolean appliesTo(Class<?> type) {
+            return processedType == null || processedType.isAssignableFrom(type);
+        }
+    }
+
+    /**
+     * The telemetry types a {@link FixedRateSamplingTelemetryProcessor} samples, which are the only ones it does
+     * anything with. The types are read from the processor, which may still be given new ones.
+     */
+    private static final class SamplingTypes extends ProcessedTypes {
+        private final FixedRateSamplingTelemetryProcessor processor;
+
+        private SamplingTypes(FixedRateSamplingTelemetryProcessor processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        boolean appliesTo(Class<?> type) {
+            if (!SupportSampling.class.isAssignableFrom(type)) {
+                return false;
+            }
+            Set<Class> excludedTypes = processor.getExcludedTypes();
+            Set<Class> includedTypes = processor.getIncludedTypes();
+            return !excludedTypes.contains(type) && (includedTypes.isEmpty() || includedTypes.contains(type));
+        }
+    }
+}
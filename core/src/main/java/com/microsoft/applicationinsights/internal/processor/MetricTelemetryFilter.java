@@ -25,7 +25,6 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 
-import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
 import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
@@ -39,7 +38,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
  * <p>
  * Created by gupele on 8/7/2016.
  */
-public final class MetricTelemetryFilter implements TelemetryProcessor {
+public final class MetricTelemetryFilter implements TypedTelemetryProcessor {
     private HashSet<String> notNeeded = new HashSet<String>();
 
     public void setNotNeeded(String allNotNeeded) throws Throwable {
@@ -71,6 +70,11 @@ public final class MetricTelemetryFilter implements TelemetryProcessor {
         }
     }
 
+    @Override
+    public Class<? extends Telemetry> getProcessedType() {
+        return MetricTelemetry.class;
+    }
+
     @Override
     public boolean process(Telemetry telemetry) {
         if (telemetry == null) {
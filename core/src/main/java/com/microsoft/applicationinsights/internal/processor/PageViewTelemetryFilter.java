@@ -27,7 +27,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.internal.annotation.BuiltInProcessor;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
@@ -46,7 +45,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
  * Created by gupele on 7/26/2016.
  */
 @BuiltInProcessor("PageViewTelemetryFilter")
-public final class PageViewTelemetryFilter implements TelemetryProcessor {
+public final class PageViewTelemetryFilter implements TypedTelemetryProcessor {
 
     private long durationThresholdInMS = 0l;
     private final Set<String> notNeededUrls = new HashSet<String>();
@@ -55,6 +54,11 @@ public final class PageViewTelemetryFilter implements TelemetryProcessor {
     public PageViewTelemetryFilter() {
     }
 
+    @Override
+    public Class<? extends Telemetry> getProcessedType() {
+        return PageViewTelemetry.class;
+    }
+
     @Override
     public boolean process(Telemetry telemetry) {
         if (telemetry == null) {
@@ -21,13 +21,13 @@
 
 package com.microsoft.applicationinsights.internal.processor;
 
+import java.util.BitSet;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
 
-import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.internal.annotation.BuiltInProcessor;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
@@ -41,12 +41,15 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
  * have a duration which is less than a predefined value
  * have http codes that are not needed based on configuration
  * <p>
+ * Response codes up to 599, given one by one or as ranges, are kept in a bitmap so a request is checked
+ * with a single look up however many codes are configured.
+ * <p>
  * Illegal value will prevent from the filter from being used.
  * <p>
  * Created by gupele on 7/26/2016.
  */
 @BuiltInProcessor("RequestTelemetryFilter")
-public final class RequestTelemetryFilter implements TelemetryProcessor {
+public final class RequestTelemetryFilter implements TypedTelemetryProcessor {
     private final class FromTo {
         public final int from;
         public final int to;
@@ -57,14 +60,25 @@ public final class RequestTelemetryFilter implements TelemetryProcessor {
         }
     }
 
+    private final static int MAX_BITMAP_RESPONSE_CODE = 599;
+
     private long minimumDurationInMS = 0;
     private boolean hasBlocked;
+    private final BitSet badResponseCodes = new BitSet(MAX_BITMAP_RESPONSE_CODE + 1);
+
+    // Checked for the codes that are not in the bitmap, since they are above its range or are not plain numbers,
+    // so the ranges are kept whole: a code such as "0595" is in the range 590-610 but not in the bitmap
     private final Set<String> exactBadResponseCodes = new HashSet<String>();
     private final List<FromTo> ignoredResponseCodeRange = new ArrayList<FromTo>();
 
     public RequestTelemetryFilter() {
     }
 
+    @Override
+    public Class<? extends Telemetry> getProcessedType() {
+        return RequestTelemetry.class;
+    }
+
     @Override
     public boolean process(Telemetry telemetry) {
         if (telemetry == null) {
@@ -79,17 +93,10 @@ public final class RequestTelemetryFilter implements TelemetryProcessor {
             RequestTelemetry requestTelemetry = (RequestTelemetry) telemetry;
             String responseCode = requestTelemetry.getResponseCode();
 
-            if (exactBadResponseCodes.contains(requestTelemetry.getResponseCode())) {
+            if (hasBlocked && isBadResponseCode(responseCode)) {
                 return false;
             }
 
-            int asInt = Integer.valueOf(responseCode);
-            for (FromTo fromTo : ignoredResponseCodeRange) {
-                if (fromTo.from <= asInt && fromTo.to >= asInt) {
-                    return false;
-                }
-            }
-
             Duration requestDuration = requestTelemetry.getDuration();
             if (requestDuration != null && requestDuration.getTotalMilliseconds() < minimumDurationInMS) {
                 return false;
@@ -103,6 +110,60 @@ public final class RequestTelemetryFilter implements TelemetryProcessor {
         return true;
     }
 
+    private boolean isBadResponseCode(String responseCode) {
+        int code = parseBitmapResponseCode(responseCode);
+        if (code != -1) {
+            return badResponseCodes.get(code);
+        }
+
+        if (responseCode == null) {
+            return false;
+        }
+
+        if (exactBadResponseCodes.contains(responseCode)) {
+            return true;
+        }
+
+        if (ignoredResponseCodeRange.isEmpty()) {
+            return false;
+        }
+
+        int asInt;
+        try {
+            asInt = Integer.parseInt(responseCode);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        for (FromTo fromTo : ignoredResponseCodeRange) {
+            if (fromTo.from <= asInt && fromTo.to >= asInt) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The code if it is written as a plain number up to {@link #MAX_BITMAP_RESPONSE_CODE}, without leading zeros, otherwise -1.
+     */
+    private static int parseBitmapResponseCode(String responseCode) {
+        if (responseCode == null || responseCode.isEmpty() || responseCode.length() > 3) {
+            return -1;
+        }
+        if (responseCode.length() > 1 && responseCode.charAt(0) == '0') {
+            return -1;
+        }
+
+        int code = 0;
+        for (int i = 0; i < responseCode.length(); ++i) {
+            char c = responseCode.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code <= MAX_BITMAP_RESPONSE_CODE ? code : -1;
+    }
+
     public void setMinimumDurationInMS(String minimumDurationInMS) throws Throwable {
         try {
             this.minimumDurationInMS = Long.valueOf(minimumDurationInMS);
@@ -137,7 +198,12 @@ public final class RequestTelemetryFilter implements TelemetryProcessor {
 
                     List<String> fromTo = Arrays.asList(ex.split("-"));
                     if (fromTo.size() == 1) {
-                        exactBadResponseCodes.add(ex);
+                        int code = parseBitmapResponseCode(ex);
+                        if (code != -1) {
+                            badResponseCodes.set(code);
+                        } else {
+                            exactBadResponseCodes.add(ex);
+                        }
                         continue;
                     }
                     if (fromTo.size() != 2) {
@@ -146,11 +212,14 @@ public final class RequestTelemetryFilter implements TelemetryProcessor {
                     if (LocalStringsUtils.isNullOrEmpty(fromTo.get(0)) || LocalStringsUtils.isNullOrEmpty(fromTo.get(1))) {
                         continue;
                     }
-                    int f = Integer.valueOf(fromTo.get(0));
-                    int t = Integer.valueOf(fromTo.get(1));
+                    int f = Integer.valueOf(fromTo.get(0).trim());
+                    int t = Integer.valueOf(fromTo.get(1).trim());
+                    if (f <= MAX_BITMAP_RESPONSE_CODE && t >= f) {
+                        badResponseCodes.set(Math.max(f, 0), Math.min(t, MAX_BITMAP_RESPONSE_CODE) + 1);
+                    }
                     ignoredResponseCodeRange.add(new FromTo(f, t));
                 }
-                hasBlocked = !exactBadResponseCodes.isEmpty() || !ignoredResponseCodeRange.isEmpty();
+                hasBlocked = !badResponseCodes.isEmpty() || !exactBadResponseCodes.isEmpty() || !ignoredResponseCodeRange.isEmpty();
             }
 
             InternalLogger.INSTANCE.trace(String.format("ResponseCodeFilter: successfully set non needed response codes: %s", notNeededResponseCodes));
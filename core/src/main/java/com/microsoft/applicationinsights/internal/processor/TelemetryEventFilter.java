@@ -26,7 +26,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.internal.annotation.BuiltInProcessor;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
@@ -42,12 +41,17 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
  * Created by gupele on 7/26/2016.
  */
 @BuiltInProcessor("TelemetryEventFilter")
-public final class TelemetryEventFilter implements TelemetryProcessor {
+public final class TelemetryEventFilter implements TypedTelemetryProcessor {
     private final Set<String> notNeededNames = new HashSet<String>();
 
     public TelemetryEventFilter() {
     }
 
+    @Override
+    public Class<? extends Telemetry> getProcessedType() {
+        return EventTelemetry.class;
+    }
+
     @Override
     public boolean process(Telemetry telemetry) {
         if (telemetry == null) {
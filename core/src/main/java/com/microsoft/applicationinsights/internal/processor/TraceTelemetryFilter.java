@@ -21,7 +21,6 @@
 
 package com.microsoft.applicationinsights.internal.processor;
 
-import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.internal.annotation.BuiltInProcessor;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
@@ -48,12 +47,17 @@ import java.util.Map;
  * Created by gupele on 7/26/2016.
  */
 @BuiltInProcessor("TraceTelemetryFilter")
-public final class TraceTelemetryFilter implements TelemetryProcessor {
+public final class TraceTelemetryFilter implements TypedTelemetryProcessor {
     private SeverityLevel fromSeverityLevel = null;
 
     public TraceTelemetryFilter() {
     }
 
+    @Override
+    public Class<? extends Telemetry> getProcessedType() {
+        return TraceTelemetry.class;
+    }
+
     @Override
     public boolean process(Telemetry telemetry) {
         if (telemetry == null) {
@@ -19,33 +19,20 @@
  * DEALINGS IN THE SOFTWARE.
  */
 
-package com.microsoft.applicationinsights.internal.perfcounter;
+package com.microsoft.applicationinsights.internal.processor;
 
-import org.junit.Test;
+import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
 
-import static org.junit.Assert.*;
-
-public final class UnixTotalMemInfoReaderTest {
-    @Test
-    public void testProcess() {
-        UnixTotalMemInfoParser reader = new UnixTotalMemInfoParser();
-        reader.process("MemTotal:        3973736 kB");
-        assertTrue(!reader.done());
-
-        reader.process("MemFree:          431064 kB");
-        assertTrue(!reader.done());
-
-        reader.process("Buffers:           46604 kB");
-        assertTrue(!reader.done());
-
-        reader.process("Cached:           494648 kB");
-        assertTrue(reader.done());
-
-        assertEquals(972316, reader.getValue(), 0.0);
-
-        reader.process("Cached:           494648 kB");
-        assertTrue(reader.done());
-
-        assertEquals(972316, reader.getValue(), 0.0);
-    }
-}
\ No newline at end of file
+/**
+ * A telemetry processor that only acts on a single telemetry type and keeps every other telemetry.
+ *
+ * The {@link com.microsoft.applicationinsights.internal.pipeline.TelemetryPipeline} dispatches on the type of
+ * the telemetry, so the processor is called only with telemetry of its type.
+ */
+public interface TypedTelemetryProcessor extends TelemetryProcessor {
+    /**
+     * @return The telemetry type the processor acts on, telemetry that is not an instance of it is kept.
+     */
+    Class<? extends Telemetry> getProcessedType();
+}
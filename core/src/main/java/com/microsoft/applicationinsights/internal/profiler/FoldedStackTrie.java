@@ -0,0 +1,273 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.profiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Counts sampled stacks in a trie whose first level is the operation the thread was serving, so that stacks
+ * sharing callers share nodes. Frames are interned once per trie and compared by id.
+ *
+ * The number of nodes is bounded: once it is reached, a sample that needs a new node is counted at the deepest
+ * node that already exists, as if its stack ended there. Not thread safe.
+ */
+final class FoldedStackTrie {
+    static final String TRUNCATED_FRAME = "[truncated]";
+
+    private final int maxNodes;
+    private final Map<StackTraceElement, Integer> frameIds = new HashMap<StackTraceElement, Integer>();
+    private final Map<String, Integer> nameIds = new HashMap<String, Integer>();
+    private final List<String> names = new ArrayList<String>();
+    private final Node root = new Node(-1);
+    private int nodeCount;
+    private long sampleCount;
+    private long truncatedSampleCount;
+
+    FoldedStackTrie(int maxNodes) {
+        Preconditions.checkArgument(maxNodes > 0, "maxNodes must be positive");
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Counts one sample.
+     * @param operationName The name of the operation the thread was serving.
+     * @param stack The stack of the thread, innermost frame first, as returned by {@link Thread#getStackTrace()}.
+     * @param leafName An extra innermost frame, such as the state of the thread, or null for none.
+     */
+    void add(String operationName, StackTraceElement[] stack, String leafName) {
+        ++sampleCount;
+        Node node = root;
+        Node next = getOrAddChild(node, internName(operationName));
+        if (next == null) {
+            countTruncated(node);
+            return;
+        }
+        node = next;
+        for (int i = stack.length - 1; i >= 0; --i) {
+            next = getOrAddChild(node, internFrame(stack[i]));
+            if (next == null) {
+                countTruncated(node);
+                return;
+            }
+            node = next;
+        }
+        if (leafName != null) {
+            next = getOrAddChild(node, internName(leafName));
+            if (next == null) {
+                countTruncated(node);
+                return;
+            }
+            node = next;
+        }
+        ++node.selfCount;
+    }
+
+    long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return The number of samples that were counted at a caller of their innermost frame because the trie was full.
+     */
+    long getTruncatedSampleCount() {
+        return truncatedSampleCount;
+    }
+
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return The number of samples per operation, most sampled first.
+     */
+    Map<String, Long> getOperationSampleCounts() {
+        List<Node> operations = new ArrayList<Node>(root.childCount);
+        for (int i = 0; i < root.childCount; ++i) {
+            operations.add(root.children[i]);
+        }
+        Collections.sort(operations, new Comparator<Node>() {
+            @Override
+            public int compare(Node left, Node right) {
+                return Long.compare(right.totalCount, left.totalCount);
+            }
+        });
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (Node operation : operations) {
+            counts.put(names.get(operation.nameId), operation.totalCount);
+        }
+        return counts;
+    }
+
+    /**
+     * Lists the counted stacks in the folded format read by flame graph tools: the frames from the operation down to
+     * the innermost one joined by ';', a space and the number of samples.
+     * @return The lines, most sampled first.
+     */
+    List<String> toFoldedLines() {
+        List<FoldedStack> stacks = new ArrayList<FoldedStack>();
+        collect(root, new StringBuilder(), stacks);
+        Collections.sort(stacks, new Comparator<FoldedStack>() {
+            @Override
+            public int compare(FoldedStack left, FoldedStack right) {
+                return Long.compare(right.count, left.count);
+            }
+        });
+        List<String> lines = new ArrayList<String>(stacks.size());
+        for (FoldedStack stack : stacks) {
+            lines.add(stack.frames + ' ' + stack.count);
+        }
+        return lines;
+    }
+
+    private void collect(Node node, StringBuilder path, List<FoldedStack> stacks) {
+        int length = path.length();
+        if (node != root) {
+            if (length > 0) {
+                path.append(';');
+            }
+            path.append(names.get(node.nameId));
+            if (node.selfCount > 0) {
+                stacks.add(new FoldedStack(path.toString(), node.selfCount));
+            }
+        } else if (node.selfCount > 0) {
+            stacks.add(new FoldedStack(TRUNCATED_FRAME, node.selfCount));
+        }
+        for (int i = 0; i < node.childCount; ++i) {
+            collect(node.children[i], path, stacks);
+        }
+        path.setLength(length);
+    }
+
+    private void countTruncated(Node node) {
+        ++truncatedSampleCount;
+        ++node.selfCount;
+        // The counts of the ancestors were already updated while descending
+    }
+
+    private Node getOrAddChild(Node parent, int nameId) {
+        if (nameId < 0) {
+            return null;
+        }
+        Node child = parent.getChild(nameId);
+        if (child == null) {
+            if (nodeCount >= maxNodes) {
+                return null;
+            }
+            child = parent.addChild(nameId);
+            ++nodeCount;
+        }
+        ++child.totalCount;
+        return child;
+    }
+
+    private int internFrame(StackTraceElement frame) {
+        Integer id = frameIds.get(frame);
+        if (id == null) {
+            // Frames of the same method on different lines are folded together
+            id = internName(frame.getClassName() + '.' + frame.getMethodName());
+            if (id < 0) {
+                return id;
+            }
+            frameIds.put(frame, id);
+        }
+        return id;
+    }
+
+    private int internName(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            // Every name is used by at least one node, so there cannot be more names than nodes
+            if (names.size() >= maxNodes) {
+                return -1;
+            }
+            id = names.size();
+            names.add(sanitize(name));
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    private static String sanitize(String name) {
+        // ';' separates frames and a line break separates stacks in the folded format
+        return name.replace(';', ':').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static final class Node {
+        final int nameId;
+        long totalCount;
+        long selfCount;
+        int[] childNameIds;
+        Node[] children;
+        int childCount;
+
+        Node(int nameId) {
+            this.nameId = nameId;
+        }
+
+        Node getChild(int nameId) {
+            // Stacks fan out little, so a scan beats hashing the boxed id
+            for (int i = 0; i < childCount; ++i) {
+                if (childNameIds[i] == nameId) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(int nameId) {
+            if (children == null) {
+                childNameIds = new int[2];
+                children = new Node[2];
+            } else if (childCount == children.length) {
+                int[] largerIds = new int[childCount * 2];
+                Node[] larger = new Node[childCount * 2];
+                System.arraycopy(childNameIds, 0, largerIds, 0, childCount);
+                System.arraycopy(children, 0, larger, 0, childCount);
+                childNameIds = largerIds;
+                children = larger;
+            }
+            Node child = new Node(nameId);
+            childNameIds[childCount] = nameId;
+            children[childCount] = child;
+            ++childCount;
+            return child;
+        }
+    }
+
+    private static final class FoldedStack {
+        final String frames;
+        final long count;
+
+        FoldedStack(String frames, long count) {
+            this.frames = frames;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.profiler;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+
+/**
+ * Keeps track of the threads that are serving a request, so that {@link StackSamplingTelemetryModule} knows whose
+ * stacks to sample and which operation to attribute them to.
+ *
+ * The thread local request context can only be read by the thread it belongs to, so the web filter announces
+ * the request of the current thread here when it starts and ends. Nothing is kept while no profiler is running.
+ */
+public enum RequestThreads {
+    INSTANCE;
+
+    private final ConcurrentHashMap<Long, RequestTelemetry> requests = new ConcurrentHashMap<Long, RequestTelemetry>();
+    private volatile boolean enabled;
+
+    /**
+     * Marks the current thread as serving the request.
+     * @param request The telemetry of the request, whose name is read each time the thread is sampled.
+     */
+    public void onRequestStarted(RequestTelemetry request) {
+        if (enabled && request != null) {
+            requests.put(Thread.currentThread().getId(), request);
+        }
+    }
+
+    /**
+     * Marks the current thread as no longer serving a request.
+     */
+    public void onRequestEnded() {
+        if (enabled) {
+            requests.remove(Thread.currentThread().getId());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            requests.clear();
+        }
+    }
+
+    /**
+     * @return The ids of the threads that are serving a request, at the time of the call.
+     */
+    long[] getThreadIds() {
+        // The map may change while it is copied, so the array is sized afterwards
+        long[] ids = new long[requests.size()];
+        int count = 0;
+        for (Long id : requests.keySet()) {
+            if (count == ids.length) {
+                long[] larger = new long[ids.length * 2 + 1];
+                System.arraycopy(ids, 0, larger, 0, count);
+                ids = larger;
+            }
+            ids[count++] = id;
+        }
+        if (count == ids.length) {
+            return ids;
+        }
+        long[] trimmed = new long[count];
+        System.arraycopy(ids, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    /**
+     * @return The name of the request the thread is serving, or null if it is not serving one.
+     */
+    String getOperationName(long threadId) {
+        RequestTelemetry request = requests.get(threadId);
+        if (request == null) {
+            return null;
+        }
+        String name = request.getName();
+        return name == null ? "" : name;
+    }
+}
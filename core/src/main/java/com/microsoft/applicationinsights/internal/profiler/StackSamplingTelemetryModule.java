@@ -0,0 +1,395 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.profiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.extensibility.TelemetryModule;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
+import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
+import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import com.microsoft.applicationinsights.internal.util.Sanitizer;
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Samples the stacks of the threads that are serving a request at a low rate and sends, every interval, an
+ * {@link EventTelemetry} named {@link #EVENT_NAME} that holds them as a flame graph.
+ *
+ * The {@link #FOLDED_STACKS_PROPERTY} property holds the stacks in the folded format ('operation;frame;frame count'
+ * per line), gzipped and base64 encoded; the least sampled stacks are left out when it would not fit in a property.
+ * The first frame of every stack is the name of the request the thread was serving, and
+ * {@link #HOT_OPERATIONS_PROPERTY} lists the most sampled requests. Threads that were not running when sampled
+ * end with a frame naming their state, such as '[BLOCKED]'.
+ *
+ * All the stacks are taken with one call to {@link ThreadMXBean}. When a round of sampling takes more than 1% of
+ * the sampling period, the period is stretched until it does not.
+ * Request threads are known through {@link RequestThreads}, which the web filter keeps up to date.
+ * <p>
+ * {@code
+ *  <Add type="com.microsoft.applicationinsights.internal.profiler.StackSamplingTelemetryModule">
+ *      <Param name="SamplingRateInHz" value="20"/>
+ *      <Param name="ReportIntervalInSeconds" value="60"/>
+ *  </Add>
+ * }
+ */
+public class StackSamplingTelemetryModule implements TelemetryModule, Stoppable {
+    public static final String SAMPLING_RATE_PARAMETER = "SamplingRateInHz";
+    public static final String REPORT_INTERVAL_PARAMETER = "ReportIntervalInSeconds";
+    public static final String MAX_STACK_DEPTH_PARAMETER = "MaxStackDepth";
+    public static final String MAX_STACK_NODES_PARAMETER = "MaxStackNodes";
+
+    public static final String EVENT_NAME = "StackSamples";
+    public static final String FOLDED_STACKS_PROPERTY = "FoldedStacks";
+    public static final String FOLDED_STACKS_ENCODING_PROPERTY = "FoldedStacksEncoding";
+    public static final String FOLDED_STACKS_ENCODING = "gzip+base64";
+    public static final String HOT_OPERATIONS_PROPERTY = "HotOperations";
+    public static final String SAMPLE_COUNT_METRIC = "SampleCount";
+    public static final String OMITTED_SAMPLE_COUNT_METRIC = "OmittedSampleCount";
+    public static final String SAMPLING_TIME_METRIC = "SamplingTimeMs";
+    public static final String INTERVAL_METRIC = "IntervalInSeconds";
+
+    static final int MIN_SAMPLING_RATE_IN_HZ = 1;
+    static final int MAX_SAMPLING_RATE_IN_HZ = 50;
+    static final int MAX_STACK_DEPTH = 1024;
+    static final int MAX_HOT_OPERATIONS = 10;
+
+    // A round of sampling may take up to 1/100 of the sampling period
+    private static final long MAX_OVERHEAD_RATIO = 100;
+    private static final long NANOS_IN_MILLI = 1000000L;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private int samplingRateInHz = 10;
+    private long samplingPeriodInNS = TimeUnit.SECONDS.toNanos(1) / 10;
+    private long reportIntervalInSeconds = 60;
+    private int maxStackDepth = 64;
+    private int maxStackNodes = 10000;
+
+    private final Object lock = new Object();
+    private FoldedStackTrie trie;
+    private long samplingTimeInNS;
+
+    private TelemetryClient telemetryClient;
+    private ThreadMXBean threadMXBean;
+    private TaskGroup tasks;
+
+    public StackSamplingTelemetryModule() {
+    }
+
+    /**
+     * Creates the module with the parameters of its element in ApplicationInsights.xml.
+     * @param properties The parameters.
+     */
+    public StackSamplingTelemetryModule(Map<String, String> properties) {
+        if (properties == null) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            try {
+                int value = Integer.parseInt(entry.getValue().trim());
+                switch (entry.getKey()) {
+                    case SAMPLING_RATE_PARAMETER:
+                        setSamplingRateInHz(value);
+                        break;
+                    case REPORT_INTERVAL_PARAMETER:
+                        setReportIntervalInSeconds(value);
+                        break;
+                    case MAX_STACK_DEPTH_PARAMETER:
+                        setMaxStackDepth(value);
+                        break;
+                    case MAX_STACK_NODES_PARAMETER:
+                        setMaxStackNodes(value);
+                        break;
+                    default:
+                        InternalLogger.INSTANCE.trace("Stack sampling module: unknown parameter '%s' is ignored", entry.getKey());
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                InternalLogger.INSTANCE.error("Stack sampling module: parameter '%s' is not a number: '%s'", entry.getKey(), entry.getValue());
+            } catch (IllegalArgumentException e) {
+                InternalLogger.INSTANCE.error("Stack sampling module: %s", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sets how many times a second the threads are sampled, which is kept between 1 and 50.
+     */
+    public void setSamplingRateInHz(int samplingRateInHz) {
+        synchronized (lock) {
+            this.samplingRateInHz = Math.max(MIN_SAMPLING_RATE_IN_HZ, Math.min(MAX_SAMPLING_RATE_IN_HZ, samplingRateInHz));
+            samplingPeriodInNS = TimeUnit.SECONDS.toNanos(1) / this.samplingRateInHz;
+        }
+    }
+
+    public int getSamplingRateInHz() {
+        return samplingRateInHz;
+    }
+
+    public void setReportIntervalInSeconds(long reportIntervalInSeconds) {
+        if (reportIntervalInSeconds <= 0) {
+            throw new IllegalArgumentException("The report interval must be positive, got " + reportIntervalInSeconds);
+        }
+        this.reportIntervalInSeconds = reportIntervalInSeconds;
+    }
+
+    public long getReportIntervalInSeconds() {
+        return reportIntervalInSeconds;
+    }
+
+    /**
+     * Sets how many of the innermost frames of a stack are kept, at most 1024.
+     */
+    public void setMaxStackDepth(int maxStackDepth) {
+        if (maxStackDepth <= 0) {
+            throw new IllegalArgumentException("The maximum stack depth must be positive, got " + maxStackDepth);
+        }
+        this.maxStackDepth = Math.min(maxStackDepth, MAX_STACK_DEPTH);
+    }
+
+    public int getMaxStackDepth() {
+        return maxStackDepth;
+    }
+
+    /**
+     * Sets how many distinct frames, counted per calling path, are kept in an interval.
+     */
+    public void setMaxStackNodes(int maxStackNodes) {
+        if (maxStackNodes <= 0) {
+            throw new IllegalArgumentException("The maximum number of stack nodes must be positive, got " + maxStackNodes);
+        }
+        this.maxStackNodes = maxStackNodes;
+    }
+
+    public int getMaxStackNodes() {
+        return maxStackNodes;
+    }
+
+    @Override
+    public void initialize(TelemetryConfiguration configuration) {
+        synchronized (lock) {
+            if (tasks != null) {
+                return;
+            }
+            telemetryClient = new TelemetryClient(configuration);
+            threadMXBean = ManagementFactory.getThreadMXBean();
+            trie = new FoldedStackTrie(maxStackNodes);
+            tasks = SdkScheduler.INSTANCE.createTaskGroup(StackSamplingTelemetryModule.class.getSimpleName());
+        }
+        RequestThreads.INSTANCE.setEnabled(true);
+        tasks.schedule("sample", new Runnable() {
+            @Override
+            public void run() {
+                sampleAndReschedule();
+            }
+        }, samplingPeriodInNS, TimeUnit.NANOSECONDS);
+        tasks.scheduleAtFixedRate("report", new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, reportIntervalInSeconds, reportIntervalInSeconds, TimeUnit.SECONDS);
+        SDKShutdownActivity.INSTANCE.register(this);
+    }
+
+    @Override
+    public void stop(long timeout, TimeUnit timeUnit) {
+        RequestThreads.INSTANCE.setEnabled(false);
+        if (tasks != null) {
+            tasks.stop(timeout, timeUnit);
+        }
+    }
+
+    private void sampleAndReschedule() {
+        long start = System.nanoTime();
+        try {
+            sample();
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Failed to sample request threads: '%s'", ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+        long delay = getNextSamplingDelay(System.nanoTime() - start);
+        tasks.schedule("sample", new Runnable() {
+            @Override
+            public void run() {
+                sampleAndReschedule();
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stretches the sampling period while sampling takes more than its share of it, and shrinks it back when it
+     * no longer does.
+     */
+    long getNextSamplingDelay(long elapsedInNS) {
+        long basePeriodInNS = TimeUnit.SECONDS.toNanos(1) / samplingRateInHz;
+        synchronized (lock) {
+            samplingTimeInNS += elapsedInNS;
+            if (elapsedInNS * MAX_OVERHEAD_RATIO > samplingPeriodInNS) {
+                samplingPeriodInNS = Math.min(samplingPeriodInNS * 2, TimeUnit.SECONDS.toNanos(reportIntervalInSeconds));
+            } else if (elapsedInNS * MAX_OVERHEAD_RATIO * 2 < samplingPeriodInNS && samplingPeriodInNS > basePeriodInNS) {
+                samplingPeriodInNS = Math.max(samplingPeriodInNS / 2, basePeriodInNS);
+            }
+            return Math.max(samplingPeriodInNS - elapsedInNS, 0);
+        }
+    }
+
+    void sample() {
+        long[] threadIds = RequestThreads.INSTANCE.getThreadIds();
+        if (threadIds.length == 0) {
+            return;
+        }
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(threadIds, maxStackDepth);
+        synchronized (lock) {
+            for (ThreadInfo info : infos) {
+                // Threads that ended since their ids were read have no info
+                if (info == null) {
+                    continue;
+                }
+                // Read after the stack was taken, so a thread that ended its request meanwhile is skipped
+                String operationName = RequestThreads.INSTANCE.getOperationName(info.getThreadId());
+                if (operationName == null) {
+                    continue;
+                }
+                trie.add(operationName, info.getStackTrace(), getStateFrame(info.getThreadState()));
+            }
+        }
+    }
+
+    void report() {
+        FoldedStackTrie reported;
+        long reportedSamplingTimeInNS;
+        synchronized (lock) {
+            if (trie.getSampleCount() == 0) {
+                return;
+            }
+            reported = trie;
+            reportedSamplingTimeInNS = samplingTimeInNS;
+            trie = new FoldedStackTrie(maxStackNodes);
+            samplingTimeInNS = 0;
+        }
+        try {
+            telemetryClient.track(createTelemetry(reported, reportedSamplingTimeInNS));
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            try {
+                InternalLogger.INSTANCE.error("Failed to send stack samples: '%s'", ExceptionUtils.getStackTrace(t));
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t2) {
+                // chomp
+            }
+        }
+    }
+
+    EventTelemetry createTelemetry(FoldedStackTrie trie, long samplingTimeInNS) throws IOException {
+        EventTelemetry telemetry = new EventTelemetry(EVENT_NAME);
+        List<String> lines = trie.toFoldedLines();
+        int lineCount = lines.size();
+        String encoded = encode(lines, lineCount);
+        // Leave out the least sampled half of the stacks until the rest fits
+        while (encoded.length() > Sanitizer.MAX_VALUE_LENGTH && lineCount > 1) {
+            lineCount /= 2;
+            encoded = encode(lines, lineCount);
+        }
+        long omittedSamples = trie.getTruncatedSampleCount();
+        for (int i = lineCount; i < lines.size(); ++i) {
+            String line = lines.get(i);
+            omittedSamples += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+        }
+        if (encoded.length() <= Sanitizer.MAX_VALUE_LENGTH) {
+            telemetry.getProperties().put(FOLDED_STACKS_PROPERTY, encoded);
+            telemetry.getProperties().put(FOLDED_STACKS_ENCODING_PROPERTY, FOLDED_STACKS_ENCODING);
+        }
+
+        StringBuilder hotOperations = new StringBuilder();
+        int operationCount = 0;
+        for (Map.Entry<String, Long> entry : trie.getOperationSampleCounts().entrySet()) {
+            if (operationCount++ == MAX_HOT_OPERATIONS) {
+                break;
+            }
+            if (hotOperations.length() > 0) {
+                hotOperations.append('\n');
+            }
+            hotOperations.append(entry.getKey()).append(' ').append(entry.getValue());
+        }
+        telemetry.getProperties().put(HOT_OPERATIONS_PROPERTY, hotOperations.toString());
+
+        telemetry.getMetrics().put(SAMPLE_COUNT_METRIC, (double) trie.getSampleCount());
+        telemetry.getMetrics().put(OMITTED_SAMPLE_COUNT_METRIC, (double) omittedSamples);
+        telemetry.getMetrics().put(SAMPLING_TIME_METRIC, (double) samplingTimeInNS / NANOS_IN_MILLI);
+        telemetry.getMetrics().put(INTERVAL_METRIC, (double) reportIntervalInSeconds);
+        return telemetry;
+    }
+
+    /**
+     * Gzips and base64 encodes the first {@code count} lines.
+     */
+    static String encode(List<String> lines, int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        try {
+            for (int i = 0; i < count; ++i) {
+                gzip.write(lines.get(i).getBytes(UTF_8));
+                gzip.write('\n');
+            }
+        } finally {
+            gzip.close();
+        }
+        return Base64.encodeBase64String(bytes.toByteArray());
+    }
+
+    private static String getStateFrame(Thread.State state) {
+        switch (state) {
+            case BLOCKED:
+                return "[BLOCKED]";
+            case WAITING:
+                return "[WAITING]";
+            case TIMED_WAITING:
+                return "[TIMED_WAITING]";
+            default:
+                return null;
+        }
+    }
+}
@@ -26,7 +26,7 @@ import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 /**
  * Created by gupele on 12/14/2016.
  */
-final class DefaultQuickPulseCoordinator implements QuickPulseCoordinator, Runnable {
+final class DefaultQuickPulseCoordinator implements QuickPulseCoordinator {
     private volatile boolean stopped = false;
     private volatile boolean pingMode = true;
 
@@ -48,25 +48,19 @@ final class DefaultQuickPulseCoordinator implements QuickPulseCoordinator, Runna
         waitOnErrorInMS = initData.waitBetweenPingsInMS;
     }
 
-    @Override
-    public void run() {
-        try {
-            while (!stopped) {
-                long sleepInMS;
-                if (pingMode) {
-                    sleepInMS = ping();
-                } else {
-                    sleepInMS = sendData();
-                }
-                try {
-                    Thread.sleep(sleepInMS);
-                } catch (InterruptedException e) {
-                }
-            }
-        } catch (ThreadDeath td) {
-        	throw td;
-        } catch (Throwable t) {
+    /**
+     * Pings, or sends the collected data while Live Metrics is on, once.
+     * @return How long to wait before the next call, in milliseconds.
+     */
+    public long runOnce() {
+        if (pingMode) {
+            return ping();
         }
+        return sendData();
+    }
+
+    public boolean isStopped() {
+        return stopped;
     }
 
     private long sendData() {
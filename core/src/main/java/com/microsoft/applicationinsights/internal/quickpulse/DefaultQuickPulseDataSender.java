@@ -23,6 +23,7 @@ package com.microsoft.applicationinsights.internal.quickpulse;
 
 import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpPost;
@@ -38,6 +39,7 @@ final class DefaultQuickPulseDataSender implements QuickPulseDataSender {
     private final ApacheSender apacheSender;
     private volatile QuickPulseStatus quickPulseStatus;
     private volatile boolean stopped = false;
+    private final AtomicBoolean sending = new AtomicBoolean(false);
     private long lastValidTransmission = 0;
 
     private final ArrayBlockingQueue<HttpPost> sendQueue;
@@ -47,42 +49,25 @@ final class DefaultQuickPulseDataSender implements QuickPulseDataSender {
         this.sendQueue = sendQueue;
     }
 
+    /**
+     * Sends the posts that are queued, and returns once the queue is empty.
+     * Runs that overlap leave the sending to the one that is already running, so the posts are sent in order.
+     */
     @Override
     public void run() {
         try {
-            while (!stopped) {
-                HttpPost post = sendQueue.take();
-                if (quickPulseStatus != QuickPulseStatus.QP_IS_ON) {
-                    continue;
-                }
-
-                final long sendTime = System.nanoTime();
-                HttpResponse response = null;
+            while (!stopped && sending.compareAndSet(false, true)) {
                 try {
-                    response = apacheSender.sendPostRequest(post);
-                    if (networkHelper.isSuccess(response)) {
-                        final QuickPulseStatus quickPulseResultStatus = networkHelper.getQuickPulseStatus(response);
-                        switch (quickPulseResultStatus) {
-                            case QP_IS_OFF:
-                            case QP_IS_ON:
-                                lastValidTransmission = sendTime;
-                                quickPulseStatus = quickPulseResultStatus;
-                                break;
-
-                            case ERROR:
-                                onPostError(sendTime);
-                                break;
-
-                            default:
-                                break;
-                        }
+                    HttpPost post;
+                    while (!stopped && (post = sendQueue.poll()) != null) {
+                        send(post);
                     }
-                } catch (IOException e) {
-                    onPostError(sendTime);
                 } finally {
-                	if (response != null) {
-                		apacheSender.dispose(response);
-                	}
+                    sending.set(false);
+                }
+                // A post that was queued after the queue was found empty is picked up here
+                if (sendQueue.isEmpty()) {
+                    return;
                 }
             }
         } catch (ThreadDeath td) {
@@ -117,6 +102,41 @@ final class DefaultQuickPulseDataSender implements QuickPulseDataSender {
         quickPulseStatus = QuickPulseStatus.ERROR;
     }
 
+    private void send(HttpPost post) {
+        if (quickPulseStatus != QuickPulseStatus.QP_IS_ON) {
+            return;
+        }
+
+        final long sendTime = System.nanoTime();
+        HttpResponse response = null;
+        try {
+            response = apacheSender.sendPostRequest(post);
+            if (networkHelper.isSuccess(response)) {
+                final QuickPulseStatus quickPulseResultStatus = networkHelper.getQuickPulseStatus(response);
+                switch (quickPulseResultStatus) {
+                    case QP_IS_OFF:
+                    case QP_IS_ON:
+                        lastValidTransmission = sendTime;
+                        quickPulseStatus = quickPulseResultStatus;
+                        break;
+
+                    case ERROR:
+                        onPostError(sendTime);
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            onPostError(sendTime);
+        } finally {
+        	if (response != null) {
+        		apacheSender.dispose(response);
+        	}
+        }
+    }
+
     private void onPostError(long sendTime) {
         if (stopped) {
             return;
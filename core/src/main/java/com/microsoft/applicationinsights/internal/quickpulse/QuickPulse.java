@@ -26,6 +26,8 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
+import com.microsoft.applicationinsights.internal.scheduler.TaskGroup;
 import com.microsoft.applicationinsights.internal.util.DeviceInfo;
 import com.microsoft.applicationinsights.internal.util.LocalStringsUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -44,8 +46,9 @@ public enum QuickPulse implements Stoppable {
     INSTANCE;
 
     private volatile boolean initialized = false;
-    private Thread thread;
-    private Thread senderThread;
+    // Runs the coordinator, which reschedules itself after every step, and the sender whenever posts are queued
+    private TaskGroup tasks;
+    private ArrayBlockingQueue<HttpPost> sendQueue;
     private DefaultQuickPulseCoordinator coordinator;
     private ApacheSender apacheSender;
     private QuickPulseDataSender quickPulseDataSender;
@@ -57,7 +60,7 @@ public enum QuickPulse implements Stoppable {
                     initialized = true;
                     final String quickPulseId = UUID.randomUUID().toString().replace("-", "");
                     apacheSender = ApacheSenderFactory.INSTANCE.create();
-                    ArrayBlockingQueue<HttpPost> sendQueue = new ArrayBlockingQueue<HttpPost>(256, true);
+                    sendQueue = new ArrayBlockingQueue<HttpPost>(256, true);
 
                     quickPulseDataSender = new DefaultQuickPulseDataSender(apacheSender, sendQueue);
 
@@ -80,13 +83,8 @@ public enum QuickPulse implements Stoppable {
 
                     coordinator = new DefaultQuickPulseCoordinator(coordinatorInitData);
 
-                    senderThread = new Thread(quickPulseDataSender, QuickPulseDataSender.class.getSimpleName());
-                    senderThread.setDaemon(true);
-                    senderThread.start();
-
-                    thread = new Thread(coordinator, DefaultQuickPulseCoordinator.class.getSimpleName());
-                    thread.setDaemon(true);
-                    thread.start();
+                    tasks = SdkScheduler.INSTANCE.createIoTaskGroup(QuickPulse.class.getSimpleName(), false);
+                    scheduleCoordinator(0);
 
                     SDKShutdownActivity.INSTANCE.register(this);
 
@@ -122,19 +120,27 @@ public enum QuickPulse implements Stoppable {
             }
         }
 
-        thread.interrupt();
-        try {
-            thread.join();
-        } catch (InterruptedException e) {
-            InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
-        }
-        senderThread.interrupt();
-        try {
-            senderThread.join();
-        } catch (InterruptedException e) {
-            InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(e));
-        }
+        tasks.stop(timeout, timeUnit);
 
         initialized = false;
     }
+
+    private void scheduleCoordinator(long delayInMS) {
+        tasks.schedule(DefaultQuickPulseCoordinator.class.getSimpleName(), new Runnable() {
+            @Override
+            public void run() {
+                coordinateAndReschedule();
+            }
+        }, delayInMS, TimeUnit.MILLISECONDS);
+    }
+
+    private void coordinateAndReschedule() {
+        long delayInMS = coordinator.runOnce();
+        if (!sendQueue.isEmpty()) {
+            tasks.execute(QuickPulseDataSender.class.getSimpleName(), quickPulseDataSender);
+        }
+        if (!coordinator.isStopped()) {
+            scheduleCoordinator(delayInMS);
+        }
+    }
 }
@@ -0,0 +1,271 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.scheduler;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * The single place where the SDK runs its periodic and background work.
+ *
+ * Components don't own threads. They create a {@link TaskGroup} and schedule their work through it.
+ * A single timer thread only keeps track of due times and hands the due tasks to one of two small, bounded
+ * work pools: a general pool for short bookkeeping tasks and an I/O pool for tasks that may block on the network
+ * or the disk. Idle work pool threads are released, so an idle SDK holds a single timer thread.
+ *
+ * Per task timing statistics are kept and exposed through the {@link SdkSchedulerMXBean}.
+ */
+public enum SdkScheduler implements SdkSchedulerMXBean, Stoppable {
+    INSTANCE;
+
+    private final static int MAX_GENERAL_THREADS = 2;
+    private final static int MAX_IO_THREADS = 4;
+    private final static int MAX_QUEUED_TASKS_PER_POOL = 32768;
+    private final static long IDLE_THREAD_TIMEOUT_IN_SECONDS = 60;
+
+    private final static String MBEAN_NAME_FORMAT = "com.microsoft.applicationinsights:type=SdkScheduler,id=%d";
+
+    private final ConcurrentMap<String, TaskStatistics> statistics = new ConcurrentHashMap<String, TaskStatistics>();
+    private final AtomicLong rejectedTasks = new AtomicLong();
+
+    private volatile ScheduledThreadPoolExecutor timer;
+    private volatile ThreadPoolExecutor generalPool;
+    private volatile ThreadPoolExecutor ioPool;
+    private ObjectName mbeanName;
+
+    /**
+     * Creates a group for short, non blocking tasks.
+     * @param name The name of the group, used as the prefix of the group's task names.
+     * @return The new group.
+     */
+    public TaskGroup createTaskGroup(String name) {
+        return new TaskGroup(this, name, false, false);
+    }
+
+    /**
+     * Creates a group for tasks that might block on I/O, like sending transmissions.
+     * @param name The name of the group, used as the prefix of the group's task names.
+     * @param runDelayedTasksOnStop When true, delayed tasks that are still pending when the group is stopped
+     *                              are executed immediately instead of being cancelled.
+     * @return The new group.
+     */
+    public TaskGroup createIoTaskGroup(String name, boolean runDelayedTasksOnStop) {
+        return new TaskGroup(this, name, true, runDelayedTasksOnStop);
+    }
+
+    /**
+     * @return A snapshot of the statistics of all the tasks that were scheduled so far.
+     */
+    public List<TaskStatistics> getStatistics() {
+        return new ArrayList<TaskStatistics>(statistics.values());
+    }
+
+    @Override
+    public int getTimerThreadCount() {
+        ScheduledThreadPoolExecutor currentTimer = timer;
+        return currentTimer == null ? 0 : currentTimer.getPoolSize();
+    }
+
+    @Override
+    public int getWorkerThreadCount() {
+        int count = 0;
+        ThreadPoolExecutor pool = generalPool;
+        if (pool != null) {
+            count += pool.getPoolSize();
+        }
+        pool = ioPool;
+        if (pool != null) {
+            count += pool.getPoolSize();
+        }
+        return count;
+    }
+
+    @Override
+    public int getQueuedTaskCount() {
+        int count = 0;
+        ThreadPoolExecutor pool = generalPool;
+        if (pool != null) {
+            count += pool.getQueue().size();
+        }
+        pool = ioPool;
+        if (pool != null) {
+            count += pool.getQueue().size();
+        }
+        return count;
+    }
+
+    @Override
+    public long getRejectedTaskCount() {
+        return rejectedTasks.get();
+    }
+
+    @Override
+    public String[] getTaskStatistics() {
+        List<String> result = new ArrayList<String>();
+        for (TaskStatistics taskStatistics : statistics.values()) {
+            result.add(taskStatistics.toString());
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Stops the timer and the work pools. Called by the SDK shutdown once all the components were stopped.
+     * A later use of the scheduler starts it again.
+     */
+    @Override
+    public synchronized void stop(long timeout, TimeUnit timeUnit) {
+        if (timer == null) {
+            return;
+        }
+
+        ThreadPoolUtils.stop(timer, timeout, timeUnit);
+        ThreadPoolUtils.stop(generalPool, timeout, timeUnit);
+        ThreadPoolUtils.stop(ioPool, timeout, timeUnit);
+        timer = null;
+        generalPool = null;
+        ioPool = null;
+
+        unregisterMBean();
+    }
+
+    TaskStatistics getOrCreateStatistics(String taskName) {
+        TaskStatistics taskStatistics = statistics.get(taskName);
+        if (taskStatistics == null) {
+            TaskStatistics newStatistics = new TaskStatistics(taskName);
+            taskStatistics = statistics.putIfAbsent(taskName, newStatistics);
+            if (taskStatistics == null) {
+                taskStatistics = newStatistics;
+            }
+        }
+        return taskStatistics;
+    }
+
+    ScheduledFuture<?> schedule(Runnable dispatcher, long delay, TimeUnit timeUnit) {
+        return getTimer().schedule(dispatcher, delay, timeUnit);
+    }
+
+    ScheduledFuture<?> scheduleAtFixedRate(Runnable dispatcher, long initialDelay, long period, TimeUnit timeUnit) {
+        return getTimer().scheduleAtFixedRate(dispatcher, initialDelay, period, timeUnit);
+    }
+
+    /**
+     * Hands a task to one of the work pools.
+     * @return False if the pool is full or stopped, in which case the task will not run.
+     */
+    boolean execute(Runnable task, boolean io) {
+        getTimer();
+        ThreadPoolExecutor pool = io ? ioPool : generalPool;
+        if (pool == null) {
+            rejectedTasks.incrementAndGet();
+            return false;
+        }
+        try {
+            pool.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejectedTasks.incrementAndGet();
+            return false;
+        }
+    }
+
+    private ScheduledThreadPoolExecutor getTimer() {
+        ScheduledThreadPoolExecutor currentTimer = timer;
+        if (currentTimer == null) {
+            synchronized (this) {
+                currentTimer = timer;
+                if (currentTimer == null) {
+                    currentTimer = start();
+                }
+            }
+        }
+        return currentTimer;
+    }
+
+    private ScheduledThreadPoolExecutor start() {
+        ScheduledThreadPoolExecutor newTimer = new ScheduledThreadPoolExecutor(1, ThreadPoolUtils.createDaemonThreadFactory(SdkScheduler.class, "timer"));
+        newTimer.setRemoveOnCancelPolicy(true);
+        newTimer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        newTimer.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+
+        generalPool = createWorkPool(MAX_GENERAL_THREADS, "worker");
+        ioPool = createWorkPool(MAX_IO_THREADS, "io");
+        timer = newTimer;
+
+        registerMBean();
+        InternalLogger.INSTANCE.trace("SdkScheduler started");
+
+        return newTimer;
+    }
+
+    private static ThreadPoolExecutor createWorkPool(int maxThreads, String poolName) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, IDLE_THREAD_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED_TASKS_PER_POOL),
+                ThreadPoolUtils.createDaemonThreadFactory(SdkScheduler.class, poolName));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(String.format(MBEAN_NAME_FORMAT, System.identityHashCode(this)));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+            mbeanName = name;
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.trace("Failed to register SdkScheduler MBean: %s", ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    private void unregisterMBean() {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(mbeanName)) {
+                server.unregisterMBean(mbeanName);
+            }
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.trace("Failed to unregister SdkScheduler MBean: %s", e.toString());
+        }
+        mbeanName = null;
+    }
+}
@@ -19,16 +19,23 @@
  * DEALINGS IN THE SOFTWARE.
  */
 
-package com.microsoft.applicationinsights.internal.perfcounter;
+package com.microsoft.applicationinsights.internal.scheduler;
 
 /**
- * Created by gupele on 3/16/2015.
+ * Management interface of the {@link SdkScheduler}, registered with the platform MBean server
+ * so the SDK background work can be inspected with any JMX console.
  */
-public class UnixParsingState {
-    public int doneCounter;
-    public double returnValue;
+public interface SdkSchedulerMXBean {
+    int getTimerThreadCount();
 
-    public UnixParsingState(int doneCounter) {
-        this.doneCounter = doneCounter;
-    }
+    int getWorkerThreadCount();
+
+    int getQueuedTaskCount();
+
+    long getRejectedTaskCount();
+
+    /**
+     * @return One line per registered task with its run count, failures, skipped runs and timings.
+     */
+    String[] getTaskStatistics();
 }
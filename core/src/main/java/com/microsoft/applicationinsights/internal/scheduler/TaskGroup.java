@@ -0,0 +1,240 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.scheduler;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * The tasks of a single SDK component that run on the shared {@link SdkScheduler}.
+ *
+ * The group replaces the executor a component used to own: stopping the group cancels its periodic tasks
+ * and waits for its running tasks, without affecting the tasks of other components.
+ * A periodic task never overlaps itself, a run that is due while the previous one is still executing is skipped.
+ */
+public final class TaskGroup implements Stoppable {
+    private final SdkScheduler scheduler;
+    private final String name;
+    private final boolean io;
+    private final boolean runDelayedTasksOnStop;
+
+    private final Set<GroupTask> tasks = Collections.newSetFromMap(new ConcurrentHashMap<GroupTask, Boolean>());
+    private volatile boolean stopped;
+
+    TaskGroup(SdkScheduler scheduler, String name, boolean io, boolean runDelayedTasksOnStop) {
+        this.scheduler = scheduler;
+        this.name = name;
+        this.io = io;
+        this.runDelayedTasksOnStop = runDelayedTasksOnStop;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Runs the task as soon as a work pool thread is available.
+     * @return False if the task was not accepted, i.e. the group is stopped or the work pool is full.
+     */
+    public boolean execute(String taskName, Runnable runnable) {
+        if (stopped) {
+            return false;
+        }
+        GroupTask task = new GroupTask(taskName, runnable, false);
+        tasks.add(task);
+        if (!task.dispatch()) {
+            tasks.remove(task);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the task once, after the delay.
+     * @return False if the task was not accepted since the group is stopped.
+     */
+    public boolean schedule(String taskName, Runnable runnable, long delay, TimeUnit timeUnit) {
+        if (stopped) {
+            return false;
+        }
+        GroupTask task = new GroupTask(taskName, runnable, false);
+        tasks.add(task);
+        task.future = scheduler.schedule(task.dispatcher, delay, timeUnit);
+        return true;
+    }
+
+    /**
+     * Runs the task periodically, see {@link java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate}.
+     * @return False if the task was not accepted since the group is stopped.
+     */
+    public boolean scheduleAtFixedRate(String taskName, Runnable runnable, long initialDelay, long period, TimeUnit timeUnit) {
+        if (stopped) {
+            return false;
+        }
+        GroupTask task = new GroupTask(taskName, runnable, true);
+        tasks.add(task);
+        task.future = scheduler.scheduleAtFixedRate(task.dispatcher, initialDelay, period, timeUnit);
+        return true;
+    }
+
+    /**
+     * Cancels the periodic tasks, and the delayed ones unless the group was created to run them on stop,
+     * then waits up to the timeout for the tasks that are already running or queued.
+     */
+    @Override
+    public void stop(long timeout, TimeUnit timeUnit) {
+        stopped = true;
+
+        for (GroupTask task : tasks) {
+            ScheduledFuture<?> future = task.future;
+            if (future == null) {
+                continue;
+            }
+            boolean cancelled = future.cancel(false);
+            if (task.periodic) {
+                task.finishIfIdle();
+            } else if (cancelled) {
+                if (!runDelayedTasksOnStop || !task.dispatch()) {
+                    task.finish();
+                }
+            }
+        }
+
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        synchronized (this) {
+            while (!tasks.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    InternalLogger.INSTANCE.trace("%d tasks of '%s' did not finish before the stop timeout", tasks.size(), name);
+                    break;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private synchronized void onTaskFinished(GroupTask task) {
+        tasks.remove(task);
+        notifyAll();
+    }
+
+    private final class GroupTask implements Runnable {
+        private final Runnable runnable;
+        private final boolean periodic;
+        private final TaskStatistics statistics;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> future;
+
+        // Runs on the timer thread and only hands the task over to a work pool
+        private final Runnable dispatcher = new Runnable() {
+            @Override
+            public void run() {
+                if (stopped && periodic) {
+                    return;
+                }
+                if (!dispatch() && !periodic) {
+                    finish();
+                }
+            }
+        };
+
+        private GroupTask(String taskName, Runnable runnable, boolean periodic) {
+            this.runnable = runnable;
+            this.periodic = periodic;
+            this.statistics = scheduler.getOrCreateStatistics(name + "/" + taskName);
+        }
+
+        private boolean dispatch() {
+            if (periodic && running.get()) {
+                statistics.onSkipped();
+                return true;
+            }
+            if (!scheduler.execute(this, io)) {
+                statistics.onRejected();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (periodic && stopped) {
+                return;
+            }
+            if (!running.compareAndSet(false, true)) {
+                statistics.onSkipped();
+                return;
+            }
+
+            boolean failed = false;
+            long start = System.nanoTime();
+            try {
+                runnable.run();
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
+                failed = true;
+                try {
+                    InternalLogger.INSTANCE.error("Task '%s' failed: '%s'", statistics.getName(), t.toString());
+                    InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
+                } catch (ThreadDeath td) {
+                    throw td;
+                } catch (Throwable t2) {
+                    // chomp
+                }
+            } finally {
+                statistics.onRun(System.nanoTime() - start, failed);
+                running.set(false);
+                if (!periodic || stopped) {
+                    finish();
+                }
+            }
+        }
+
+        private void finishIfIdle() {
+            if (!running.get()) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            onTaskFinished(this);
+        }
+    }
+}
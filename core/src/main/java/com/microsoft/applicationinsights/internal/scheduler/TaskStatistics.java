@@ -0,0 +1,105 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.scheduler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing and outcome counters of a single task that runs on the {@link SdkScheduler}.
+ */
+public final class TaskStatistics {
+    private final String name;
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    TaskStatistics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRuns() {
+        return runs.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return The number of periodic runs that were skipped since the previous run had not finished yet.
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * @return The number of runs that were dropped since the work pool was full or stopped.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getTotalTimeInNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxTimeInNanos() {
+        return maxNanos.get();
+    }
+
+    void onRun(long durationInNanos, boolean failed) {
+        runs.incrementAndGet();
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        totalNanos.addAndGet(durationInNanos);
+        long currentMax = maxNanos.get();
+        while (durationInNanos > currentMax && !maxNanos.compareAndSet(currentMax, durationInNanos)) {
+            currentMax = maxNanos.get();
+        }
+    }
+
+    void onSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    void onRejected() {
+        rejected.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        long currentRuns = runs.get();
+        long averageMicros = currentRuns == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / currentRuns);
+        return String.format("%s: runs=%d, failures=%d, skipped=%d, rejected=%d, avgMicros=%d, maxMicros=%d",
+                name, currentRuns, failures.get(), skipped.get(), rejected.get(), averageMicros,
+                TimeUnit.NANOSECONDS.toMicros(maxNanos.get()));
+    }
+}
@@ -30,6 +30,7 @@ import java.util.concurrent.TimeUnit;
 
 import com.microsoft.applicationinsights.channel.TelemetryChannel;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.scheduler.SdkScheduler;
 import com.microsoft.applicationinsights.internal.util.ChannelFetcher;
 import com.microsoft.applicationinsights.internal.util.ThreadPoolUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -37,11 +38,24 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 /**
  * The class is responsible for all shutdown activities done in the SDK.
  *
+ * The shutdown is bounded by a single deadline and done in phases, in dependency order:
+ * first the components that produce telemetry are stopped, then the channels, which flush their buffers,
+ * send what they can and persist the rest, and last the closeables and the SDK scheduler.
+ * The components of a phase are stopped in parallel and every phase gets what is left of the deadline,
+ * minus a reserve for the phases after it.
+ *
  * Created by gupele on 2/2/2015.
  */
 public enum SDKShutdownActivity {
     INSTANCE;
 
+    // Leaves room within the 30 seconds that container orchestrators usually give before killing the process
+    private final static long DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLIS = 20000;
+
+    // The part of the timeout given to the producers, and the part kept for the closeables and the scheduler
+    private final static double PRODUCERS_SHARE_OF_TIMEOUT = 0.25;
+    private final static double RESERVE_SHARE_OF_TIMEOUT = 0.1;
+
     /**
      * An helper class that does the cleanup
      *
@@ -77,18 +91,36 @@ public enum SDKShutdownActivity {
             });
         }
 
-        private volatile long perThreadTimeout = 10L;
-        private volatile TimeUnit perThreadTimeUnit = TimeUnit.SECONDS;
+        private volatile long shutdownTimeoutInMillis = DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLIS;
 
+        public void setShutdownTimeout(long timeout, TimeUnit unit) {
+            this.shutdownTimeoutInMillis = unit.toMillis(timeout);
+        }
+
+        /**
+         * @deprecated The shutdown is bounded by a single deadline, use {@link #setShutdownTimeout(long, TimeUnit)}.
+         * @return The timeout of the whole shutdown, in {@link #getPerThreadTimeUnit()}.
+         */
+        @Deprecated
         public long getPerThreadTimeout() {
-            return perThreadTimeout;
+            return shutdownTimeoutInMillis;
         }
+
+        /**
+         * @deprecated The shutdown is bounded by a single deadline, use {@link #setShutdownTimeout(long, TimeUnit)}.
+         */
+        @Deprecated
         public TimeUnit getPerThreadTimeUnit() {
-            return perThreadTimeUnit;
+            return TimeUnit.MILLISECONDS;
         }
+
+        /**
+         * @deprecated The shutdown is bounded by a single deadline, the timeout is used as that deadline.
+         * Use {@link #setShutdownTimeout(long, TimeUnit)}.
+         */
+        @Deprecated
         public void setPerThreadTimeout(long timeout, TimeUnit unit) {
-            this.perThreadTimeout = timeout;
-            this.perThreadTimeUnit = unit;
+            setShutdownTimeout(timeout, unit);
         }
 
         @Override
@@ -98,10 +130,15 @@ public enum SDKShutdownActivity {
                 return;
             }
 
+            long startInMillis = System.currentTimeMillis();
+            long timeoutInMillis = shutdownTimeoutInMillis;
+            long deadlineInMillis = startInMillis + timeoutInMillis;
             try {
-                stopChannels();
-                stopStoppables();
-                closeClosables();
+                // The producers are stopped first so they do not add telemetry while the channels are stopped
+                stopStoppables(Math.min(deadlineInMillis, startInMillis + (long) (timeoutInMillis * PRODUCERS_SHARE_OF_TIMEOUT)));
+                stopChannels(deadlineInMillis - (long) (timeoutInMillis * RESERVE_SHARE_OF_TIMEOUT));
+                closeClosables(deadlineInMillis);
+                stopScheduler(deadlineInMillis);
             } finally {
                 // As the last step, the SDK gracefully closes the Internal Logger
                 stopInternalLogger();
@@ -124,26 +161,21 @@ public enum SDKShutdownActivity {
         }
 
         /**
+         * The components registered their tasks with the scheduler, so it is stopped only after all of them.
          * Make sure no exception is thrown!
          */
-        private void stopChannels() {
-            for (ChannelFetcher fetcher : fetchers) {
+        private void stopScheduler(long deadlineInMillis) {
+            try {
+                SdkScheduler.INSTANCE.stop(remainingMillis(deadlineInMillis), TimeUnit.MILLISECONDS);
+            } catch (ThreadDeath td) {
+                throw td;
+            } catch (Throwable t) {
                 try {
-                    TelemetryChannel channelToStop = fetcher.fetch();
-                    if (channelToStop != null) {
-                        channelToStop.stop(getPerThreadTimeout(), getPerThreadTimeUnit());
-                    }
+                    InternalLogger.INSTANCE.error("Failed to stop the SDK scheduler: '%s'", t.toString());
                 } catch (ThreadDeath td) {
-                	throw td;
-                } catch (Throwable t) {
-                    try {
-                        InternalLogger.INSTANCE.error("Failed to stop channel: '%s'", t.toString());
-                        InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
-                    } catch (ThreadDeath td) {
-                        throw td;
-                    } catch (Throwable t2) {
-                        // chomp
-                    }
+                    throw td;
+                } catch (Throwable t2) {
+                    // chomp
                 }
             }
         }
@@ -151,42 +183,132 @@ public enum SDKShutdownActivity {
         /**
          * Make sure no exception is thrown!
          */
-        private void stopStoppables() {
-            for (Stoppable stoppable : stoppables) {
+        private void stopChannels(final long deadlineInMillis) {
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            for (final ChannelFetcher fetcher : fetchers) {
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            TelemetryChannel channelToStop = fetcher.fetch();
+                            if (channelToStop != null) {
+                                channelToStop.stop(remainingMillis(deadlineInMillis), TimeUnit.MILLISECONDS);
+                            }
+                        } catch (ThreadDeath td) {
+                            throw td;
+                        } catch (Throwable t) {
+                            try {
+                                InternalLogger.INSTANCE.error("Failed to stop channel: '%s'", t.toString());
+                                InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
+                            } catch (ThreadDeath td) {
+                                throw td;
+                            } catch (Throwable t2) {
+                                // chomp
+                            }
+                        }
+                    }
+                });
+            }
+            runInParallel("channels", tasks, deadlineInMillis);
+        }
+
+        /**
+         * Make sure no exception is thrown!
+         */
+        private void stopStoppables(final long deadlineInMillis) {
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            for (final Stoppable stoppable : stoppables) {
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            stoppable.stop(remainingMillis(deadlineInMillis), TimeUnit.MILLISECONDS);
+                        } catch (ThreadDeath td) {
+                            throw td;
+                        } catch (Throwable t) {
+                            try {
+                                InternalLogger.INSTANCE.error("Failed to stop stoppable class '%s': '%s'", stoppable.getClass().getName(), t.toString());
+                                InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
+                            } catch (ThreadDeath td) {
+                                throw td;
+                            } catch (Throwable t2) {
+                                // chomp
+                            }
+                        }
+                    }
+                });
+            }
+            runInParallel("stoppables", tasks, deadlineInMillis);
+        }
+
+        private void closeClosables(long deadlineInMillis) {
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            for (final Closeable c : closeables) {
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            c.close();
+                        } catch (ThreadDeath td) {
+                            throw td;
+                        } catch (Throwable t) {
+                            try {
+                                InternalLogger.INSTANCE.error("Failed to close closeable class '%s': %s", c.getClass().getName(), t.toString());
+                                InternalLogger.INSTANCE.trace("Stack trace: %s", ExceptionUtils.getStackTrace(t));
+                            } catch (ThreadDeath td2) {
+                                throw td2;
+                            } catch (Throwable t2) {
+                                // chomp
+                            }
+                        }
+                    }
+                });
+            }
+            runInParallel("closeables", tasks, deadlineInMillis);
+        }
+
+        /**
+         * Runs every task on its own daemon thread and waits for all of them until the deadline.
+         * Tasks that did not finish by then are left running, so a stuck component cannot hold the shutdown.
+         */
+        private static void runInParallel(String phase, List<Runnable> tasks, long deadlineInMillis) {
+            List<Thread> threads = new ArrayList<Thread>(tasks.size());
+            for (Runnable task : tasks) {
+                Thread thread = new Thread(task, SDKShutdownActivity.class.getSimpleName() + "-" + phase);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+
+            int notDone = 0;
+            for (Thread thread : threads) {
                 try {
-                    stoppable.stop(getPerThreadTimeout(), getPerThreadTimeUnit());
-                } catch (ThreadDeath td) {
-                	throw td;
-                } catch (Throwable t) {
-                    try {
-                        InternalLogger.INSTANCE.error("Failed to stop stoppable class '%s': '%s'", stoppable.getClass().getName(), t.toString());
-                        InternalLogger.INSTANCE.trace("Stack trace generated is %s", ExceptionUtils.getStackTrace(t));
-                    } catch (ThreadDeath td) {
-                        throw td;
-                    } catch (Throwable t2) {
-                        // chomp
+                    long remaining = remainingMillis(deadlineInMillis);
+                    if (remaining > 0) {
+                        thread.join(remaining);
                     }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (thread.isAlive()) {
+                    ++notDone;
                 }
             }
-        }
-        private void closeClosables() {
-            for (Closeable c : closeables) {
+
+            if (notDone > 0) {
                 try {
-                    c.close();
+                    InternalLogger.INSTANCE.error("%d of the %s did not stop before the shutdown deadline", notDone, phase);
                 } catch (ThreadDeath td) {
                     throw td;
                 } catch (Throwable t) {
-                    try {
-                        InternalLogger.INSTANCE.error("Failed to close closeable class '%s': %s", c.getClass().getName(), t.toString());
-                        InternalLogger.INSTANCE.trace("Stack trace: %s", ExceptionUtils.getStackTrace(t));
-                    } catch (ThreadDeath td2) {
-                        throw td2;
-                    } catch (Throwable t2) {
-                        // chomp
-                    }
+                    // chomp
                 }
             }
         }
+
+        private static long remainingMillis(long deadlineInMillis) {
+            return Math.max(0, deadlineInMillis - System.currentTimeMillis());
+        }
     }
 
     private static volatile SDKShutdownAction shutdownAction;
@@ -207,6 +329,15 @@ public enum SDKShutdownActivity {
         getShutdownAction().register(service);
     }
 
+    /**
+     * Sets the time the whole SDK shutdown may take.
+     * @param timeout The timeout.
+     * @param unit The unit of the timeout.
+     */
+    public void setShutdownTimeout(long timeout, TimeUnit unit) {
+        getShutdownAction().setShutdownTimeout(timeout, unit);
+    }
+
     public void stopAll() {
         getShutdownAction().run();
         InternalLogger.INSTANCE.info("SDK shutdown complete.");
@@ -0,0 +1,121 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations over an interval in fixed buckets without locking, so that recording one from a hot path
+ * never waits for a report in progress. The buckets start at 50 microseconds, so that short durations such as
+ * the pauses of concurrent collectors or the queue waits of idle executors are told apart.
+ *
+ * A duration recorded while the histogram is drained may be counted in either interval, and its count and sum
+ * may land in different ones.
+ */
+public final class DurationHistogram {
+    // Upper bounds of the buckets, in microseconds
+    static final long[] BUCKET_BOUNDS_IN_MICROS = {
+            50, 100, 200, 500,
+            1000, 2000, 5000, 10000, 20000, 50000, 100000, 200000, 500000,
+            1000000, 2000000, 5000000, 10000000, 30000000, 60000000
+    };
+    private static final long NANOS_IN_MICRO = 1000L;
+    private static final double NANOS_IN_MILLI = 1000000.0;
+    private static final double MICROS_IN_MILLI = 1000.0;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_BOUNDS_IN_MICROS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumInNS = new AtomicLong();
+    private final AtomicLong maxInNS = new AtomicLong();
+
+    public void record(long durationInNS) {
+        bucketCounts.incrementAndGet(bucketOf(durationInNS / NANOS_IN_MICRO));
+        count.incrementAndGet();
+        sumInNS.addAndGet(durationInNS);
+        long max = maxInNS.get();
+        while (durationInNS > max && !maxInNS.compareAndSet(max, durationInNS)) {
+            max = maxInNS.get();
+        }
+    }
+
+    /**
+     * Takes the durations recorded since the previous call and starts counting anew.
+     */
+    public Snapshot drain() {
+        long[] counts = new long[bucketCounts.length()];
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = bucketCounts.getAndSet(i, 0);
+        }
+        return new Snapshot(counts, count.getAndSet(0), sumInNS.getAndSet(0), maxInNS.getAndSet(0));
+    }
+
+    private static int bucketOf(long durationInMicros) {
+        for (int i = 0; i < BUCKET_BOUNDS_IN_MICROS.length; ++i) {
+            if (durationInMicros < BUCKET_BOUNDS_IN_MICROS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_IN_MICROS.length;
+    }
+
+    public static final class Snapshot {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sumInNS;
+        private final long maxInNS;
+
+        private Snapshot(long[] bucketCounts, long count, long sumInNS, long maxInNS) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sumInNS = sumInNS;
+            this.maxInNS = maxInNS;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSumInMS() {
+            return sumInNS / NANOS_IN_MILLI;
+        }
+
+        public double getMaxInMS() {
+            return maxInNS / NANOS_IN_MILLI;
+        }
+
+        /**
+         * @return The upper bound of the bucket that holds the percentile, the max when it is in the last bucket.
+         */
+        public double getPercentileInMS(int percentile) {
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_IN_MICROS.length; ++i) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return Math.min(BUCKET_BOUNDS_IN_MICROS[i] / MICROS_IN_MILLI, getMaxInMS());
+                }
+            }
+            return getMaxInMS();
+        }
+    }
+}
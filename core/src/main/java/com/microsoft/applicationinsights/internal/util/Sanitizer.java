@@ -26,6 +26,7 @@ import java.text.StringCharacterIterator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.base.Strings;
 import org.apache.http.annotation.Obsolete;
@@ -46,6 +47,9 @@ public final class Sanitizer {
     public final static int MAX_MESSAGE_LENGTH = 32768;
     public final static int MAX_URL_LENGTH = 2048;
 
+    private final static int MAX_RECENT_URIS = 256;
+    private final static ConcurrentHashMap<String, URI> recentUris = new ConcurrentHashMap<String, URI>();
+
     private final static String INVALID_NAME_CHARACTERS = "[^0-9a-zA-Z-._()\\/ ]";
 
     @Obsolete
@@ -88,13 +92,7 @@ public final class Sanitizer {
 
             // In case that the truncated string is invalid
             // URI we will not do nothing and let the Endpoint to drop the property
-            URI temp = null;
-            try {
-                temp = new URI(urlAsString);
-                return temp;
-            } catch (Exception e) {
-                // Swallow the exception
-            }
+            return toUri(urlAsString);
         }
 
         return null;
@@ -133,12 +131,26 @@ public final class Sanitizer {
             return null;
         }
 
-        URI result = null;
+        return toUri(url);
+    }
+
+    // URIs are immutable, so the same instance is handed out for a url that was recently converted
+    private static URI toUri(String url) {
+        URI result = recentUris.get(url);
+        if (result != null) {
+            return result;
+        }
+
         try {
             result = new URI(url);
         } catch (Exception e) {
+            return null;
         }
 
+        if (recentUris.size() >= MAX_RECENT_URIS) {
+            recentUris.clear();
+        }
+        recentUris.put(url, result);
         return result;
     }
 
@@ -0,0 +1,225 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The host, port, path and query of a URL, found in a single pass over the string without building a {@link java.net.URI}.
+ *
+ * The path and query are kept as offsets into the original string and only copied when asked for.
+ * Hosts and ports are cached per 'scheme://authority' prefix, so URLs to a recently seen target do not
+ * allocate anything besides this object. Unlike {@link java.net.URI} the parts are not validated or decoded,
+ * and a URL that is not absolute has no host and is all path.
+ */
+public final class UrlParts {
+    // A power of two, so that a hash is mapped to a slot with a mask
+    private static final int AUTHORITY_CACHE_SIZE = 64;
+
+    private static final AtomicReferenceArray<Authority> authorityCache = new AtomicReferenceArray<Authority>(AUTHORITY_CACHE_SIZE);
+
+    private final String url;
+    private final String host;
+    private final int port;
+    private final int pathStart;
+    private final int pathEnd;
+    private final int queryStart;
+    private final int queryEnd;
+
+    private UrlParts(String url, Authority authority, int pathStart, int pathEnd, int queryStart, int queryEnd) {
+        this.url = url;
+        this.host = authority == null ? null : authority.host;
+        this.port = authority == null ? -1 : authority.port;
+        this.pathStart = pathStart;
+        this.pathEnd = pathEnd;
+        this.queryStart = queryStart;
+        this.queryEnd = queryEnd;
+    }
+
+    /**
+     * Splits the url into its parts.
+     * @param url The url, might be null.
+     * @return The parts of the url, or null if the url is null.
+     */
+    public static UrlParts parse(String url) {
+        if (url == null) {
+            return null;
+        }
+
+        int length = url.length();
+        int authorityEnd = 0;
+        Authority authority = null;
+        int schemeEnd = findSchemeEnd(url);
+        if (schemeEnd > 0 && url.startsWith("//", schemeEnd + 1)) {
+            // Hash the 'scheme://authority' prefix while looking for its end, so that a cached authority is found without copying it
+            int hash = 0;
+            int i = 0;
+            for (; i < length; ++i) {
+                char c = url.charAt(i);
+                if (i > schemeEnd + 2 && (c == '/' || c == '?' || c == '#')) {
+                    break;
+                }
+                hash = 31 * hash + c;
+            }
+            authorityEnd = i;
+            authority = getAuthority(url, schemeEnd + 3, authorityEnd, hash);
+        }
+
+        int pathEnd = authorityEnd;
+        while (pathEnd < length) {
+            char c = url.charAt(pathEnd);
+            if (c == '?' || c == '#') {
+                break;
+            }
+            ++pathEnd;
+        }
+        int queryStart = -1;
+        int queryEnd = -1;
+        if (pathEnd < length && url.charAt(pathEnd) == '?') {
+            queryStart = pathEnd + 1;
+            int fragmentStart = url.indexOf('#', queryStart);
+            queryEnd = fragmentStart < 0 ? length : fragmentStart;
+        }
+
+        return new UrlParts(url, authority, authorityEnd, pathEnd, queryStart, queryEnd);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return The host without user info and port, or null if the url is not absolute.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return The port, or -1 if the url does not state one.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return The path, empty if the url has none.
+     */
+    public String getPath() {
+        return url.substring(pathStart, pathEnd);
+    }
+
+    /**
+     * @return The offset in the url of the first character of the path.
+     */
+    public int getPathStart() {
+        return pathStart;
+    }
+
+    /**
+     * @return The offset in the url after the last character of the path.
+     */
+    public int getPathEnd() {
+        return pathEnd;
+    }
+
+    /**
+     * @return The query without its '?', or null if the url has none.
+     */
+    public String getQuery() {
+        return queryStart < 0 ? null : url.substring(queryStart, queryEnd);
+    }
+
+    // The offset of the ':' that ends a scheme, or -1 if the url does not start with one
+    private static int findSchemeEnd(String url) {
+        for (int i = 0; i < url.length(); ++i) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                return i;
+            }
+            boolean schemeChar = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (i > 0 && ((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.'));
+            if (!schemeChar) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static Authority getAuthority(String url, int start, int end, int hash) {
+        int slot = (hash ^ (hash >>> 16)) & (AUTHORITY_CACHE_SIZE - 1);
+        Authority cached = authorityCache.get(slot);
+        if (cached != null && cached.prefix.length() == end && url.startsWith(cached.prefix)) {
+            return cached;
+        }
+
+        // A colliding prefix simply replaces the previous one
+        Authority authority = parseAuthority(url, start, end);
+        authorityCache.set(slot, authority);
+        return authority;
+    }
+
+    private static Authority parseAuthority(String url, int start, int end) {
+        int userInfoEnd = url.lastIndexOf('@', end - 1);
+        if (userInfoEnd >= start) {
+            start = userInfoEnd + 1;
+        }
+
+        // IPv6 literals are bracketed and contain colons of their own
+        int hostEnd = end;
+        int colon = start < end && url.charAt(start) == '[' ? url.indexOf("]:", start) + 1 : url.indexOf(':', start);
+        int port = -1;
+        if (colon > start && colon < end) {
+            hostEnd = colon;
+            port = parsePort(url, colon + 1, end);
+        }
+
+        return new Authority(url.substring(0, end), url.substring(start, hostEnd), port);
+    }
+
+    private static int parsePort(String url, int start, int end) {
+        if (start == end || end - start > 5) {
+            return -1;
+        }
+        int port = 0;
+        for (int i = start; i < end; ++i) {
+            int digit = Character.digit(url.charAt(i), 10);
+            if (digit < 0) {
+                return -1;
+            }
+            port = port * 10 + digit;
+        }
+        return port;
+    }
+
+    private static final class Authority {
+        final String prefix;
+        final String host;
+        final int port;
+
+        Authority(String prefix, String host, int port) {
+            this.prefix = prefix;
+            this.host = host;
+            this.port = port;
+        }
+    }
+}
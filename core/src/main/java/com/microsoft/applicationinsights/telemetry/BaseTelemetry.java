@@ -31,7 +31,6 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.util.Date;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
@@ -55,7 +54,7 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
      * @param properties The context properties
      */
     protected void initialize(ConcurrentMap<String, String> properties) {
-        this.context = new TelemetryContext(properties, new ConcurrentHashMap<String, String>());
+        this.context = new TelemetryContext(properties);
     }
 
     public abstract int getVer();
@@ -147,6 +146,8 @@ public abstract class BaseTelemetry<T extends Domain> implements Telemetry {
     @Override
     public void serialize(JsonTelemetryDataSerializer writer) throws IOException {
     	
+    	context.mergeDefaultProperties();
+
     	String telemetryName = this.getTelemetryName(
     			this.normalizeInstrumentationKey(context.getInstrumentationKey()), this.getEnvelopName());
     	
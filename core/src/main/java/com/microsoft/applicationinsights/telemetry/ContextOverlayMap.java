@@ -0,0 +1,356 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A map of context values that layers per-item overrides on top of a shared, read-only map of defaults.
+ *
+ * Reads fall through to the defaults, writes only ever touch the overrides, and removing a key that exists
+ * in the defaults hides it for this map only. The overrides map is allocated on first write so items that
+ * only carry the client-level values don't pay for a map of their own.
+ */
+final class ContextOverlayMap extends AbstractMap<String, String> implements ConcurrentMap<String, String> {
+    private final static int INITIAL_OVERRIDES_CAPACITY = 4;
+
+    private volatile ConcurrentMap<String, String> overrides;
+    private volatile Map<String, String> defaults;
+    private volatile Set<String> hiddenDefaults;
+    private EntrySet entrySet;
+
+    ContextOverlayMap() {
+        this(null);
+    }
+
+    /**
+     * @param overrides The map to write to, may be null in which case it is allocated on the first write.
+     */
+    ContextOverlayMap(ConcurrentMap<String, String> overrides) {
+        this.overrides = overrides;
+    }
+
+    /**
+     * Makes the entries of {@code defaults} visible through this map, as long as they are not overridden.
+     * The defaults are never modified through this map.
+     * If another map of defaults is already attached, its entries are first copied into the overrides.
+     *
+     * @param defaults The shared map of default values.
+     */
+    synchronized void setDefaults(Map<String, String> defaults) {
+        if (defaults == this.defaults || defaults == this) {
+            return;
+        }
+        if (this.defaults != null) {
+            mergeDefaults();
+        }
+        this.defaults = defaults;
+    }
+
+    /**
+     * Copies the visible default values into the overrides map and detaches the defaults.
+     * Used when the overrides map is the one that is eventually serialized.
+     */
+    synchronized void mergeDefaults() {
+        Map<String, String> currentDefaults = defaults;
+        if (currentDefaults == null) {
+            return;
+        }
+        ConcurrentMap<String, String> target = null;
+        for (Map.Entry<String, String> entry : currentDefaults.entrySet()) {
+            String key = entry.getKey();
+            String value = entry.getValue();
+            if (!isVisibleDefault(key, value)) {
+                continue;
+            }
+            if (target == null) {
+                target = overridesForWrite();
+            }
+            target.putIfAbsent(key, value);
+        }
+        defaults = null;
+        hiddenDefaults = null;
+    }
+
+    @Override
+    public String get(Object key) {
+        ConcurrentMap<String, String> currentOverrides = overrides;
+        if (currentOverrides != null) {
+            String value = currentOverrides.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return getDefault(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        String previous = get(key);
+        overridesForWrite().put(key, value);
+        unhide(key);
+        return previous;
+    }
+
+    @Override
+    public String remove(Object key) {
+        String previous = get(key);
+        ConcurrentMap<String, String> currentOverrides = overrides;
+        if (currentOverrides != null) {
+            currentOverrides.remove(key);
+        }
+        if (getDefault(key) != null) {
+            hide((String) key);
+        }
+        return previous;
+    }
+
+    @Override
+    public String putIfAbsent(String key, String value) {
+        String existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        return put(key, value);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (value == null || !value.equals(get(key))) {
+            return false;
+        }
+        remove(key);
+        return true;
+    }
+
+    @Override
+    public boolean replace(String key, String oldValue, String newValue) {
+        if (oldValue == null || !oldValue.equals(get(key))) {
+            return false;
+        }
+        put(key, newValue);
+        return true;
+    }
+
+    @Override
+    public String replace(String key, String value) {
+        return containsKey(key) ? put(key, value) : null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        ConcurrentMap<String, String> currentOverrides = overrides;
+        if (currentOverrides != null) {
+            currentOverrides.clear();
+        }
+        defaults = null;
+        hiddenDefaults = null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        ConcurrentMap<String, String> currentOverrides = overrides;
+        if (currentOverrides != null) {
+            size = currentOverrides.size();
+        }
+        Map<String, String> currentDefaults = defaults;
+        if (currentDefaults != null) {
+            for (Map.Entry<String, String> entry : currentDefaults.entrySet()) {
+                if (isVisibleDefault(entry.getKey(), entry.getValue())) {
+                    ++size;
+                }
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private String getDefault(Object key) {
+        Map<String, String> currentDefaults = defaults;
+        if (currentDefaults == null || key == null || "".equals(key)) {
+            return null;
+        }
+        Set<String> hidden = hiddenDefaults;
+        if (hidden != null && hidden.contains(key)) {
+            return null;
+        }
+        return currentDefaults.get(key);
+    }
+
+    // A default entry is visible if it is not overridden, not hidden and would have been copied by MapUtil.copy
+    private boolean isVisibleDefault(String key, String value) {
+        if (key == null || key.length() == 0 || value == null) {
+            return false;
+        }
+        ConcurrentMap<String, String> currentOverrides = overrides;
+        if (currentOverrides != null && currentOverrides.containsKey(key)) {
+            return false;
+        }
+        Set<String> hidden = hiddenDefaults;
+        return hidden == null || !hidden.contains(key);
+    }
+
+    private ConcurrentMap<String, String> overridesForWrite() {
+        ConcurrentMap<String, String> currentOverrides = overrides;
+        if (currentOverrides == null) {
+            synchronized (this) {
+                currentOverrides = overrides;
+                if (currentOverrides == null) {
+                    currentOverrides = new ConcurrentHashMap<String, String>(INITIAL_OVERRIDES_CAPACITY, 0.75f, 1);
+                    overrides = currentOverrides;
+                }
+            }
+        }
+        return currentOverrides;
+    }
+
+    private synchronized void hide(String key) {
+        if (hiddenDefaults == null) {
+            hiddenDefaults = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(INITIAL_OVERRIDES_CAPACITY, 0.75f, 1));
+        }
+        hiddenDefaults.add(key);
+    }
+
+    private void unhide(String key) {
+        Set<String> hidden = hiddenDefaults;
+        if (hidden != null) {
+            hidden.remove(key);
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, String>> {
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return ContextOverlayMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ContextOverlayMap.this.clear();
+        }
+    }
+
+    /**
+     * Iterates the overrides first and then the visible defaults, without building a merged copy.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+        private final Iterator<Map.Entry<String, String>> overridesIterator;
+        private final Iterator<Map.Entry<String, String>> defaultsIterator;
+        private Map.Entry<String, String> next;
+        private String lastKey;
+
+        EntryIterator() {
+            ConcurrentMap<String, String> currentOverrides = overrides;
+            Map<String, String> currentDefaults = defaults;
+            Map<String, String> empty = Collections.emptyMap();
+            overridesIterator = (currentOverrides == null ? empty : currentOverrides).entrySet().iterator();
+            defaultsIterator = (currentDefaults == null ? empty : currentDefaults).entrySet().iterator();
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, String> current = next;
+            lastKey = current.getKey();
+            advance();
+            return new OverlayEntry(current.getKey(), current.getValue());
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            ContextOverlayMap.this.remove(lastKey);
+            lastKey = null;
+        }
+
+        private void advance() {
+            next = null;
+            if (overridesIterator.hasNext()) {
+                next = overridesIterator.next();
+                return;
+            }
+            while (defaultsIterator.hasNext()) {
+                Map.Entry<String, String> candidate = defaultsIterator.next();
+                if (isVisibleDefault(candidate.getKey(), candidate.getValue())) {
+                    next = candidate;
+                    return;
+                }
+            }
+        }
+    }
+
+    private final class OverlayEntry extends AbstractMap.SimpleEntry<String, String> {
+        OverlayEntry(String key, String value) {
+            super(key, value);
+        }
+
+        @Override
+        public String setValue(String value) {
+            ContextOverlayMap.this.put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package com.microsoft.applicationinsights.telemetry;
 
 import com.google.common.base.Strings;
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.internal.schemav2.ExceptionData;
 import com.microsoft.applicationinsights.internal.schemav2.ExceptionDetails;
 import com.microsoft.applicationinsights.internal.schemav2.StackFrame;
@@ -35,9 +36,20 @@ import java.util.concurrent.ConcurrentMap;
  * Telemetry type used to track exceptions sent to Azure Application Insights.
  */
 public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<ExceptionData> {
+    /**
+     * The system property that sets the number of frames reported per exception, the default is {@link #DEFAULT_MAX_STACK_FRAMES}.
+     */
+    public static final String MAX_STACK_FRAMES_PROPERTY = "applicationinsights.exception.maxStackFrames";
+
+    private static final int DEFAULT_MAX_STACK_FRAMES = 256;
+
+    private static volatile int maxStackFrames = readMaxStackFrames();
+
     private Double samplingPercentage;
     private final ExceptionData data;
     private Throwable throwable;
+    private int stackSize;
+    private boolean exceptionsConverted;
 
     /**
      * Envelope Name for this telemetry.
@@ -92,9 +104,15 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
         setException(throwable, Integer.MAX_VALUE);
     }
 
-    public void setException(Throwable throwable, int stackSize) {
+    /**
+     * Sets the exception to track, its cause chain and stack frames are converted when the telemetry is sent.
+     * @param throwable The exception to track.
+     * @param stackSize The max number of exceptions of the cause chain to report.
+     */
+    public synchronized void setException(Throwable throwable, int stackSize) {
         this.throwable = throwable;
-        updateException(throwable, stackSize);
+        this.stackSize = stackSize;
+        this.exceptionsConverted = false;
     }
 
     /**
@@ -152,21 +170,49 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
 
     @Override
     protected ExceptionData getData() {
+        convertExceptions();
         return data;
     }
 
     public List<ExceptionDetails> getExceptions() {
+        convertExceptions();
         return data.getExceptions();
     }
 
-    private void updateException(Throwable throwable, int stackSize) {
+    static void setMaxStackFrames(int value) {
+        maxStackFrames = value;
+    }
+
+    private synchronized void convertExceptions() {
+        if (exceptionsConverted) {
+            return;
+        }
+
         ArrayList<ExceptionDetails> exceptions = new ArrayList<ExceptionDetails>();
-        convertExceptionTree(throwable, null, exceptions, stackSize);
+        convertExceptionTree(throwable, null, exceptions, stackSize, maxStackFrames);
 
         data.setExceptions(exceptions);
+        exceptionsConverted = true;
     }
 
-    private static void convertExceptionTree(Throwable exception, ExceptionDetails parentExceptionDetails, List<ExceptionDetails> exceptions, int stackSize) {
+    private static int readMaxStackFrames() {
+        String value = System.getProperty(MAX_STACK_FRAMES_PROPERTY);
+        if (Strings.isNullOrEmpty(value)) {
+            return DEFAULT_MAX_STACK_FRAMES;
+        }
+        try {
+            int frames = Integer.parseInt(value.trim());
+            if (frames > 0) {
+                return frames;
+            }
+        } catch (NumberFormatException e) {
+            // chomp
+        }
+        InternalLogger.INSTANCE.warn("Invalid value '%s' for %s, using %d", value, MAX_STACK_FRAMES_PROPERTY, DEFAULT_MAX_STACK_FRAMES);
+        return DEFAULT_MAX_STACK_FRAMES;
+    }
+
+    private static void convertExceptionTree(Throwable exception, ExceptionDetails parentExceptionDetails, List<ExceptionDetails> exceptions, int stackSize, int maxFrames) {
         if (exception == null) {
             exception = new Exception("");
         }
@@ -175,15 +221,15 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
             return;
         }
 
-        ExceptionDetails exceptionDetails = createWithStackInfo(exception, parentExceptionDetails);
+        ExceptionDetails exceptionDetails = createWithStackInfo(exception, parentExceptionDetails, maxFrames);
         exceptions.add(exceptionDetails);
 
         if (exception.getCause() != null) {
-            convertExceptionTree(exception.getCause(), exceptionDetails, exceptions, stackSize - 1);
+            convertExceptionTree(exception.getCause(), exceptionDetails, exceptions, stackSize - 1, maxFrames);
         }
     }
 
-    private static ExceptionDetails createWithStackInfo(Throwable exception, ExceptionDetails parentExceptionDetails) {
+    private static ExceptionDetails createWithStackInfo(Throwable exception, ExceptionDetails parentExceptionDetails, int maxFrames) {
         if (exception == null) {
             throw new IllegalArgumentException("exception cannot be null");
         }
@@ -207,8 +253,18 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
         if (trace != null && trace.length > 0) {
             List<StackFrame> stack = exceptionDetails.getParsedStack();
 
-            // We need to present the stack trace in reverse order.
+            int frames = 0;
+            for (StackTraceElement elem : trace) {
+                if (!elem.isNativeMethod()) {
+                    ++frames;
+                }
+            }
+
+            // Past the budget keep the frames where the exception was thrown and the ones it was called from.
+            int head = frames <= maxFrames ? frames : maxFrames - maxFrames / 2;
+            int tailStart = frames <= maxFrames ? frames : frames - maxFrames / 2;
 
+            int frameIndex = 0;
             for (int idx = 0; idx < trace.length; idx++) {
                 StackTraceElement elem = trace[idx];
 
@@ -216,24 +272,21 @@ public final class ExceptionTelemetry extends BaseSampleSourceTelemetry<Exceptio
                     continue;
                 }
 
-                String className = elem.getClassName();
+                int position = frameIndex++;
+                if (position >= head && position < tailStart) {
+                    continue;
+                }
 
                 StackFrame frame = new StackFrame();
                 frame.setLevel(idx);
                 frame.setFileName(elem.getFileName());
                 frame.setLine(elem.getLineNumber());
-
-                if (!Strings.isNullOrEmpty(className)) {
-                    frame.setMethod(elem.getClassName() + "." + elem.getMethodName());
-                }
-                else {
-                    frame.setMethod(elem.getMethodName());
-                }
+                frame.setMethod(StackFrameMethodCache.INSTANCE.getMethod(elem));
 
                 stack.add(frame);
             }
 
-            exceptionDetails.setHasFullStack(true); // TODO: sanitize and trim exception stack trace.
+            exceptionDetails.setHasFullStack(frames <= maxFrames);
         }
 
         return exceptionDetails;
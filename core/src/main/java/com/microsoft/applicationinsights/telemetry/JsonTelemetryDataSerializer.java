@@ -357,6 +357,9 @@ public final class JsonTelemetryDataSerializer {
     }
 
     private String sanitizeStringForJSON(String text, int maxLength) {
+        if (text.length() <= maxLength - DELTA && !needsEscaping(text)) {
+            return text;
+        }
 
         final StringBuilder result = new StringBuilder();
         StringCharacterIterator iterator = new StringCharacterIterator(text);
@@ -401,6 +404,16 @@ public final class JsonTelemetryDataSerializer {
         return result.toString();
     }
 
+    private static boolean needsEscaping(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char curr = text.charAt(i);
+            if (curr == '\"' || curr == '\\' || curr == '/' || Character.isISOControl(curr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private String sanitizeKey(String key) {
         String sanitizedKey = trimAndTruncate(key, 150);
         sanitizedKey = sanitizeStringForJSON(sanitizedKey, 150);
@@ -150,7 +150,6 @@ public final class PageViewTelemetry extends BaseSampleSourceTelemetry<PageViewD
     protected void additionalSanitize() {
         data.setName(Sanitizer.sanitizeName(data.getName()));
         Sanitizer.sanitizeMeasurements(this.getMetrics());
-        Sanitizer.sanitizeUri(data.getUrl());
     }
 
     @Override
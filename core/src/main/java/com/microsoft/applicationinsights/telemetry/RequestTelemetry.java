@@ -301,7 +301,6 @@ public final class RequestTelemetry extends BaseSampleSourceTelemetry<RequestDat
         data.setName(Sanitizer.sanitizeName(data.getName()));
         data.setId(Sanitizer.sanitizeName(data.getId()));
         Sanitizer.sanitizeMeasurements(getMetrics());
-        Sanitizer.sanitizeUri(data.getUrl());
     }
 
     @Override
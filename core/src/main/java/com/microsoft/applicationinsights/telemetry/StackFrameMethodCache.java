@@ -0,0 +1,84 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.telemetry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Strings;
+
+/**
+ * A bounded cache of the method names reported for stack frames, keyed by the frame itself.
+ *
+ * Exceptions that are tracked repeatedly mostly share the same frames, so the 'class.method' string of a frame
+ * is built once and the same instance is handed to every {@link com.microsoft.applicationinsights.internal.schemav2.StackFrame}
+ * that reports it, rather than a new copy per frame of every exception.
+ */
+final class StackFrameMethodCache {
+    private final static int MAX_FRAMES = 4096;
+
+    static final StackFrameMethodCache INSTANCE = new StackFrameMethodCache(MAX_FRAMES);
+
+    private final Map<StackTraceElement, String> methods;
+
+    /**
+     * @param maxFrames The number of frames kept, the least recently used ones are dropped first.
+     *                  Zero disables the cache.
+     */
+    StackFrameMethodCache(final int maxFrames) {
+        methods = new LinkedHashMap<StackTraceElement, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StackTraceElement, String> eldest) {
+                return size() > maxFrames;
+            }
+        };
+    }
+
+    /**
+     * @param element The stack frame.
+     * @return The fully qualified method name of the frame.
+     */
+    String getMethod(StackTraceElement element) {
+        synchronized (methods) {
+            String method = methods.get(element);
+            if (method == null) {
+                method = toMethod(element);
+                methods.put(element, method);
+            }
+            return method;
+        }
+    }
+
+    int size() {
+        synchronized (methods) {
+            return methods.size();
+        }
+    }
+
+    private static String toMethod(StackTraceElement element) {
+        String className = element.getClassName();
+        if (Strings.isNullOrEmpty(className)) {
+            return element.getMethodName();
+        }
+        return className + "." + element.getMethodName();
+    }
+}
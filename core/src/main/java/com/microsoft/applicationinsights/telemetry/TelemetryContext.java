@@ -30,9 +30,7 @@ import com.microsoft.applicationinsights.extensibility.context.LocationContext;
 import com.microsoft.applicationinsights.extensibility.context.OperationContext;
 import com.microsoft.applicationinsights.extensibility.context.SessionContext;
 import com.microsoft.applicationinsights.extensibility.context.UserContext;
-import com.microsoft.applicationinsights.internal.util.MapUtil;
 
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -42,10 +40,15 @@ import java.util.concurrent.ConcurrentMap;
  * related telemetry items; and user, session and device data.
  * You can also set properties that are added to every telemetry item, and can
  * be used in the portal to filter the telemetry that used this context.
+ *
+ * A context that was initialized from another context, typically the one of the
+ * {@link com.microsoft.applicationinsights.TelemetryClient}, does not copy its tags and properties.
+ * It keeps a reference to them and only stores its own overrides, the values are merged when the
+ * telemetry is serialized.
  */
 public final class TelemetryContext {
-    private ConcurrentMap<String,String> properties;
-    private ConcurrentMap<String,String> tags;
+    private final ContextOverlayMap properties;
+    private final ContextOverlayMap tags;
 
     private String instrumentationKey;
     private ComponentContext component;
@@ -61,7 +64,8 @@ public final class TelemetryContext {
      * Default Ctor
      */
     public TelemetryContext() {
-        this(new ConcurrentHashMap<String, String>(), new ConcurrentHashMap<String, String>());
+        this.properties = new ContextOverlayMap();
+        this.tags = new ContextOverlayMap();
     }
 
     /**
@@ -196,16 +200,29 @@ public final class TelemetryContext {
         return tags;
     }
 
+    /**
+     * Initializes this context with the values of the source context.
+     * Tags and properties of the source are referenced rather than copied, and values already set
+     * on this context take precedence over them.
+     * @param source The context to take the default values from.
+     */
     public void initialize(TelemetryContext source) {
         if (Strings.isNullOrEmpty(this.instrumentationKey) && !Strings.isNullOrEmpty(source.getInstrumentationKey()))
             setInstrumentationKey(source.getInstrumentationKey());
 
-        if (source.tags != null && source.tags.size() > 0) {
-            MapUtil.copy(source.tags, this.tags);
-        }
-        if (source.properties != null && source.properties.size() > 0) {
-            MapUtil.copy(source.properties, this.properties);
+        if (source == this) {
+            return;
         }
+        tags.setDefaults(source.tags);
+        properties.setDefaults(source.properties);
+    }
+
+    /**
+     * Copies the inherited default properties into the properties map this context was created with,
+     * so that the telemetry data that owns that map serializes them.
+     */
+    void mergeDefaultProperties() {
+        properties.mergeDefaults();
     }
 
     public InternalContext getInternal() {
@@ -216,16 +233,12 @@ public final class TelemetryContext {
         return internal;
     }
 
-    TelemetryContext(ConcurrentMap<String, String> properties, ConcurrentMap<String, String> tags) {
+    TelemetryContext(ConcurrentMap<String, String> properties) {
         if (properties == null) {
             throw new IllegalArgumentException("properties cannot be null");
         }
 
-        if (tags == null) {
-            throw new IllegalArgumentException("tags cannot be null");
-        }
-
-        this.properties = properties;
-        this.tags = tags;
+        this.properties = new ContextOverlayMap(properties);
+        this.tags = new ContextOverlayMap();
     }
 }
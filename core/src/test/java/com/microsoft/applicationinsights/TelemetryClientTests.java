@@ -25,6 +25,7 @@ import java.net.URL;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.concurrent.TimeUnit;
@@ -32,6 +33,7 @@ import java.util.concurrent.TimeUnit;
 import com.microsoft.applicationinsights.channel.TelemetryChannel;
 import com.microsoft.applicationinsights.extensibility.ContextInitializer;
 import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
+import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
 import com.microsoft.applicationinsights.channel.TelemetrySampler;
 import com.microsoft.applicationinsights.internal.processor.RequestTelemetryFilter;
 import com.microsoft.applicationinsights.telemetry.*;
@@ -221,6 +223,25 @@ public final class TelemetryClientTests {
         Mockito.verify(mockTelemetryInitializer, Mockito.times(1)).initialize(mockTelemetry);
     }
 
+    @Test
+    public void testReplacedTelemetryComponentsAreCalled() {
+        TelemetryInitializer oldTelemetryInitializer = Mockito.mock(TelemetryInitializer.class);
+        configuration.getTelemetryInitializers().add(oldTelemetryInitializer);
+        TelemetryInitializer newTelemetryInitializer = Mockito.mock(TelemetryInitializer.class);
+        TelemetryProcessor newTelemetryProcessor = Mockito.mock(TelemetryProcessor.class);
+        configuration.replaceTelemetryComponents(Collections.singletonList(newTelemetryInitializer), Collections.singletonList(newTelemetryProcessor));
+
+        TelemetryContext mockContext = new TelemetryContext();
+        Telemetry mockTelemetry = Mockito.mock(Telemetry.class);
+        Mockito.doReturn(mockContext).when(mockTelemetry).getContext();
+        client.track(mockTelemetry);
+
+        Mockito.verify(oldTelemetryInitializer, Mockito.never()).initialize(mockTelemetry);
+        Mockito.verify(newTelemetryInitializer, Mockito.times(1)).initialize(mockTelemetry);
+        Mockito.verify(newTelemetryProcessor, Mockito.times(1)).process(mockTelemetry);
+        assertEquals(1, configuration.getTelemetryInitializers().size());
+    }
+
     @Test
     public void testTrackEventWithPropertiesAndMetrics() {
         Map<String, String> properties = new HashMap<String, String>() {{ put("key", "value"); }};
@@ -2,11 +2,14 @@ package com.microsoft.applicationinsights.channel.concrete.localforwarder;
 
 
 import com.microsoft.applicationinsights.internal.channel.TelemetriesTransmitter.TelemetriesFetcher;
+import com.microsoft.applicationinsights.internal.channel.common.Transmission;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionFileSystemOutput;
 import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
 import com.microsoft.localforwarder.library.inputs.contracts.AITelemetryServiceGrpc.AITelemetryServiceImplBase;
 import com.microsoft.localforwarder.library.inputs.contracts.AiResponse;
 import com.microsoft.localforwarder.library.inputs.contracts.Telemetry;
 import com.microsoft.localforwarder.library.inputs.contracts.TelemetryBatch;
+import io.grpc.Status;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.stub.StreamObserver;
@@ -14,6 +17,7 @@ import io.grpc.testing.GrpcCleanupRule;
 import io.grpc.util.MutableHandlerRegistry;
 import org.apache.commons.lang3.time.StopWatch;
 import org.junit.*;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -21,6 +25,8 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -30,15 +36,19 @@ public class LocalForwarderTelemetryTransmitterTest {
 
     private LocalForwarderTelemetriesTransmitter underTest;
     private final MutableHandlerRegistry serviceRegistry = new MutableHandlerRegistry();
+    private String serverName;
 
     @Rule
     public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
     private AITelemetryServiceImplBase fakeServer;
 
     @Before
     public void setup() throws IOException {
         StopWatch sw = StopWatch.createStarted();
-        String serverName = InProcessServerBuilder.generateName();
+        serverName = InProcessServerBuilder.generateName();
         grpcCleanup.register(
                 InProcessServerBuilder.forName(serverName)
                         .fallbackHandlerRegistry(serviceRegistry)
@@ -94,6 +104,7 @@ public class LocalForwarderTelemetryTransmitterTest {
         return new StreamObserver<AiResponse>() {
             @Override
             public void onNext(AiResponse value) {
+                latch.countDown();
                 System.out.println("sendNow NEXT: "+value);
             }
 
@@ -104,7 +115,6 @@ public class LocalForwarderTelemetryTransmitterTest {
 
             @Override
             public void onCompleted() {
-                latch.countDown();
                 System.out.println("sendNow DONE!");
             }
         };
@@ -133,6 +143,120 @@ public class LocalForwarderTelemetryTransmitterTest {
         assertTrue("timeout waiting for response", latch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void batchesAreSentOnTheSameStream() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final AtomicInteger streams = new AtomicInteger();
+        serviceRegistry.addService(new AITelemetryServiceImplBase() {
+            @Override
+            public StreamObserver<TelemetryBatch> sendTelemetryBatch(final StreamObserver<AiResponse> responseObserver) {
+                streams.incrementAndGet();
+                return fakeServer.sendTelemetryBatch(responseObserver);
+            }
+        });
+        underTest.setResponseObserver(createDefaultResponseObserverForLatch(latch));
+
+        for (int i = 0; i < 3; ++i) {
+            assertTrue("sendNow should return true", underTest.sendNow(generateTelemetryCollection()));
+        }
+
+        assertTrue("timeout waiting for responses", latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, streams.get());
+    }
+
+    @Test
+    public void batchesArePersistedWhenForwarderIsUnavailable() throws Exception {
+        underTest.stop(1, TimeUnit.SECONDS);
+        TransmissionFileSystemOutput spillOutput = new TransmissionFileSystemOutput(tempFolder.getRoot().getPath());
+        underTest = new LocalForwarderTelemetriesTransmitter(InProcessChannelBuilder.forName(InProcessServerBuilder.generateName()).directExecutor(), false, 0, spillOutput);
+
+        assertTrue("sendNow should return true", underTest.sendNow(generateTelemetryCollection()));
+        assertTrue("sendNow should return true", underTest.sendNow(generateTelemetryCollection()));
+        underTest.stop(5, TimeUnit.SECONDS);
+
+        int batches = 0;
+        Transmission transmission;
+        while ((transmission = spillOutput.fetchOldestFile()) != null) {
+            assertEquals(LocalForwarderTelemetriesTransmitter.PROTOBUF_CONTENT_TYPE, transmission.getWebContentType());
+            assertEquals(1, TelemetryBatch.parseFrom(transmission.getContent()).getItemsCount());
+            ++batches;
+        }
+        assertEquals(2, batches);
+    }
+
+    @Test
+    public void persistedBatchesAreSentOnceTheStreamIsReady() throws Exception {
+        underTest.stop(1, TimeUnit.SECONDS);
+        TransmissionFileSystemOutput spillOutput = new TransmissionFileSystemOutput(tempFolder.getRoot().getPath());
+        TelemetryBatch persisted = TelemetryBatch.newBuilder().addAllItems(generateTelemetryCollection()).build();
+        assertTrue(spillOutput.send(new Transmission(persisted.toByteArray(), LocalForwarderTelemetriesTransmitter.PROTOBUF_CONTENT_TYPE, "identity")));
+        underTest = new LocalForwarderTelemetriesTransmitter(InProcessChannelBuilder.forName(serverName).directExecutor(), false, 0, spillOutput);
+
+        final CountDownLatch latch = new CountDownLatch(2);
+        underTest.setResponseObserver(createDefaultResponseObserverForLatch(latch));
+        assertTrue("sendNow should return true", underTest.sendNow(generateTelemetryCollection()));
+
+        assertTrue("timeout waiting for responses", latch.await(5, TimeUnit.SECONDS));
+        assertNull(spillOutput.fetchOldestFile());
+    }
+
+    @Test
+    public void unacknowledgedBatchesArePersistedWhenTheStreamFails() throws Exception {
+        underTest.stop(1, TimeUnit.SECONDS);
+        final CountDownLatch received = new CountDownLatch(1);
+        final AtomicReference<StreamObserver<AiResponse>> serverResponses = new AtomicReference<StreamObserver<AiResponse>>();
+        serviceRegistry.addService(new AITelemetryServiceImplBase() {
+            @Override
+            public StreamObserver<TelemetryBatch> sendTelemetryBatch(final StreamObserver<AiResponse> responseObserver) {
+                serverResponses.set(responseObserver);
+                return new StreamObserver<TelemetryBatch>() {
+                    @Override
+                    public void onNext(TelemetryBatch value) {
+                        // The batch is read but never answered
+                        received.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                };
+            }
+        });
+        TransmissionFileSystemOutput spillOutput = new TransmissionFileSystemOutput(tempFolder.getRoot().getPath());
+        underTest = new LocalForwarderTelemetriesTransmitter(InProcessChannelBuilder.forName(serverName).directExecutor(), false, 0, spillOutput);
+
+        assertTrue("sendNow should return true", underTest.sendNow(generateTelemetryCollection()));
+        assertTrue("timeout waiting for the batch", received.await(5, TimeUnit.SECONDS));
+        assertNull(spillOutput.fetchOldestFile());
+
+        serverResponses.get().onError(Status.UNAVAILABLE.asRuntimeException());
+        underTest.stop(5, TimeUnit.SECONDS);
+
+        Transmission transmission = spillOutput.fetchOldestFile();
+        assertNotNull("the unacknowledged batch should be persisted", transmission);
+        assertEquals(1, TelemetryBatch.parseFrom(transmission.getContent()).getItemsCount());
+        assertNull(spillOutput.fetchOldestFile());
+    }
+
+    @Test
+    public void acknowledgedBatchesAreNotPersisted() throws Exception {
+        underTest.stop(1, TimeUnit.SECONDS);
+        TransmissionFileSystemOutput spillOutput = new TransmissionFileSystemOutput(tempFolder.getRoot().getPath());
+        underTest = new LocalForwarderTelemetriesTransmitter(InProcessChannelBuilder.forName(serverName).directExecutor(), false, 0, spillOutput);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        underTest.setResponseObserver(createDefaultResponseObserverForLatch(latch));
+        assertTrue("sendNow should return true", underTest.sendNow(generateTelemetryCollection()));
+        assertTrue("timeout waiting for response", latch.await(5, TimeUnit.SECONDS));
+        underTest.stop(5, TimeUnit.SECONDS);
+
+        assertNull(spillOutput.fetchOldestFile());
+    }
+
     private Collection<Telemetry> generateTelemetryCollection() {
         Collection<Telemetry> rval = new ArrayList<>();
 
@@ -0,0 +1,127 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.extensibility.initializer.docker.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContainerIdentityTests {
+    private static final String CONTAINER_ID = "3a8b6f0c1d2e4f5a6b7c8d9e0f1a2b3c4d5e6f7a8b9c0d1e2f3a4b5c6d7e8f90";
+
+    private File directory;
+    private File cgroupFile;
+    private File mountInfoFile;
+    private File downwardApiDirectory;
+    private File namespaceFile;
+
+    @Before
+    public void testInit() throws IOException {
+        directory = Files.createTempDirectory("container").toFile();
+        cgroupFile = new File(directory, "cgroup");
+        mountInfoFile = new File(directory, "mountinfo");
+        downwardApiDirectory = new File(directory, "podinfo");
+        namespaceFile = new File(directory, "namespace");
+    }
+
+    @After
+    public void testCleanup() {
+        for (File file : new File[] { new File(downwardApiDirectory, "name"), new File(downwardApiDirectory, "namespace"),
+                downwardApiDirectory, cgroupFile, mountInfoFile, namespaceFile, directory }) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testNotAContainer() throws IOException {
+        write(cgroupFile, "12:memory:/user.slice", "0::/init.scope");
+
+        ContainerIdentity identity = resolve(Collections.singletonMap("HOSTNAME", "laptop"));
+
+        Assert.assertFalse(identity.isContainer());
+        Assert.assertTrue(identity.getProperties().isEmpty());
+    }
+
+    @Test
+    public void testDockerContainerIdFromCgroup() throws IOException {
+        write(cgroupFile, "12:memory:/docker/" + CONTAINER_ID, "0::/system.slice/docker-" + CONTAINER_ID + ".scope");
+
+        ContainerIdentity identity = resolve(Collections.singletonMap("HOSTNAME", "3a8b6f0c1d2e"));
+
+        Assert.assertEquals(CONTAINER_ID, identity.getContainerId());
+        Assert.assertEquals("3a8b6f0c1d2e", identity.getProperties().get(Constants.CONTAINER_HOST_NAME_PROPERTY_KEY));
+        Assert.assertNull(identity.getProperties().get(Constants.KUBERNETES_NAMESPACE_PROPERTY_KEY));
+    }
+
+    @Test
+    public void testContainerIdFromMountInfoWithCgroupV2() throws IOException {
+        write(cgroupFile, "0::/");
+        write(mountInfoFile, "1 0 0:1 /var/lib/docker/containers/" + CONTAINER_ID + "/hostname /etc/hostname rw - ext4 /dev/sda1 rw");
+
+        Assert.assertEquals(CONTAINER_ID, resolve(Collections.<String, String>emptyMap()).getContainerId());
+    }
+
+    @Test
+    public void testKubernetesPodFromHostNameAndServiceAccount() throws IOException {
+        write(cgroupFile, "1:cpu:/kubepods/burstable/pod1234/" + CONTAINER_ID);
+        write(namespaceFile, "production");
+
+        ContainerIdentity identity = resolve(Collections.singletonMap("HOSTNAME", "web-5d9c7b-x2k4p"));
+
+        Assert.assertEquals("web-5d9c7b-x2k4p", identity.getProperties().get(Constants.KUBERNETES_POD_PROPERTY_KEY));
+        Assert.assertEquals("production", identity.getProperties().get(Constants.KUBERNETES_NAMESPACE_PROPERTY_KEY));
+    }
+
+    @Test
+    public void testKubernetesDownwardApiTakesPrecedence() throws IOException {
+        Assert.assertTrue(downwardApiDirectory.mkdir());
+        write(new File(downwardApiDirectory, "name"), "web-0");
+        write(new File(downwardApiDirectory, "namespace"), "staging");
+        write(namespaceFile, "production");
+        Map<String, String> environment = new HashMap<String, String>();
+        environment.put("HOSTNAME", "custom-host");
+
+        ContainerIdentity identity = resolve(environment);
+
+        Assert.assertEquals("web-0", identity.getProperties().get(Constants.KUBERNETES_POD_PROPERTY_KEY));
+        Assert.assertEquals("staging", identity.getProperties().get(Constants.KUBERNETES_NAMESPACE_PROPERTY_KEY));
+        Assert.assertEquals("custom-host", identity.getProperties().get(Constants.CONTAINER_HOST_NAME_PROPERTY_KEY));
+    }
+
+    private ContainerIdentity resolve(Map<String, String> environment) {
+        return ContainerIdentity.resolve(cgroupFile, mountInfoFile, downwardApiDirectory, namespaceFile, environment);
+    }
+
+    private static void write(File file, String... lines) throws IOException {
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -45,19 +45,21 @@ public class DockerContextPollerTests {
 
     @Before
     public void testInit() throws Exception {
+        reset(contextFileMock);
         when(dockerContextFactoryMock.createDockerContext(any(File.class))).thenReturn(dockerContextMock);
 
         contextPollerUnderTest = new DockerContextPoller(contextFileMock, dockerContextFactoryMock);
-        contextPollerUnderTest.THREAD_POLLING_INTERVAL_MS = 0;
     }
 
     @Test
     public void testDockerContextInitializedIfFileExists() {
         when(contextFileMock.exists()).thenReturn(true);
-        contextPollerUnderTest.run();
+
+        Assert.assertTrue(contextPollerUnderTest.poll());
 
         DockerContext dockerContext = contextPollerUnderTest.getDockerContext();
 
+        Assert.assertTrue(contextPollerUnderTest.isCompleted());
         Assert.assertEquals(dockerContextMock, dockerContext);
     }
 
@@ -72,8 +74,23 @@ public class DockerContextPollerTests {
             }
         }).when(contextFileMock).exists();
 
-        contextPollerUnderTest.run();
+        for (int i = 1; i < numberOfRetries; i++) {
+            Assert.assertFalse(contextPollerUnderTest.poll());
+            Assert.assertFalse(contextPollerUnderTest.isCompleted());
+        }
+        Assert.assertTrue(contextPollerUnderTest.poll());
 
         verify(contextFileMock, times(numberOfRetries)).exists();
+        Assert.assertEquals(dockerContextMock, contextPollerUnderTest.getDockerContext());
+    }
+
+    @Test
+    public void testFileIsNotCheckedAgainOnceCompleted() {
+        when(contextFileMock.exists()).thenReturn(true);
+
+        contextPollerUnderTest.poll();
+        contextPollerUnderTest.poll();
+
+        verify(contextFileMock, times(1)).exists();
     }
 }
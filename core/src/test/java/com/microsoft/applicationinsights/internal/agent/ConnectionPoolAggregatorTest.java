@@ -0,0 +1,203 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public final class ConnectionPoolAggregatorTest {
+    private static final long MS = 1000000L;
+
+    public static final class PoolMXBean {
+        public int getActiveConnections() {
+            return 3;
+        }
+
+        public int getIdleConnections() {
+            return 7;
+        }
+    }
+
+    // Shaped like HikariDataSource
+    public static final class PoolWithMXBean {
+        private final PoolMXBean pool;
+
+        PoolWithMXBean(PoolMXBean pool) {
+            this.pool = pool;
+        }
+
+        public String getPoolName() {
+            return "orders";
+        }
+
+        public PoolMXBean getHikariPoolMXBean() {
+            return pool;
+        }
+    }
+
+    // Shaped like the DBCP2 and Tomcat JDBC data sources
+    public static final class PoolWithCounters {
+        public String getUrl() {
+            return "jdbc:h2:mem:test";
+        }
+
+        public int getNumActive() {
+            return 1;
+        }
+
+        public int getNumIdle() {
+            return 2;
+        }
+    }
+
+    private TelemetryClient telemetryClient;
+    private ConnectionPoolAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        telemetryClient = mock(TelemetryClient.class);
+        aggregator = new ConnectionPoolAggregator(telemetryClient, 100, 3600);
+    }
+
+    @After
+    public void tearDown() {
+        aggregator.stop(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPoolNameFallsBackToUrlAndClassName() {
+        assertEquals("orders", ConnectionPoolAggregator.getPoolName(new PoolWithMXBean(null)));
+        assertEquals("jdbc:h2:mem:test", ConnectionPoolAggregator.getPoolName(new PoolWithCounters()));
+        assertEquals("Object", ConnectionPoolAggregator.getPoolName(new Object()));
+    }
+
+    @Test
+    public void testTimeouts() {
+        assertTrue(ConnectionPoolAggregator.isTimeout(new SQLTransientConnectionException("timeout")));
+        assertTrue(ConnectionPoolAggregator.isTimeout(new SQLException("timeout", new NoSuchElementException())));
+        assertFalse(ConnectionPoolAggregator.isTimeout(new SQLException("refused")));
+        assertFalse(ConnectionPoolAggregator.isTimeout(null));
+    }
+
+    @Test
+    public void testGaugesAreReadFromThePoolMXBean() {
+        ConnectionPoolAggregator.PoolGauges gauges = new ConnectionPoolAggregator.PoolGauges(new PoolWithMXBean(new PoolMXBean()));
+
+        assertEquals(3, gauges.getActive().intValue());
+        assertEquals(7, gauges.getIdle().intValue());
+    }
+
+    @Test
+    public void testGaugesOfAPoolThatHasNotStarted() {
+        ConnectionPoolAggregator.PoolGauges gauges = new ConnectionPoolAggregator.PoolGauges(new PoolWithMXBean(null));
+
+        assertNull(gauges.getActive());
+        assertNull(gauges.getIdle());
+    }
+
+    @Test
+    public void testGaugesAreReadFromTheDataSource() {
+        ConnectionPoolAggregator.PoolGauges gauges = new ConnectionPoolAggregator.PoolGauges(new PoolWithCounters());
+
+        assertEquals(1, gauges.getActive().intValue());
+        assertEquals(2, gauges.getIdle().intValue());
+    }
+
+    @Test
+    public void testFastWaitsAreOnlyAggregated() {
+        Object dataSource = new PoolWithCounters();
+
+        assertFalse(aggregator.record(dataSource, 2 * MS, null));
+        assertFalse(aggregator.record(dataSource, 20 * MS, null));
+
+        verify(telemetryClient, never()).track(any(Telemetry.class));
+    }
+
+    @Test
+    public void testSlowAndFailedWaitsAreAlsoReportedIndividually() {
+        Object dataSource = new PoolWithCounters();
+
+        assertTrue(aggregator.record(dataSource, 150 * MS, null));
+        assertTrue(aggregator.record(dataSource, 2 * MS, new SQLException("refused")));
+    }
+
+    @Test
+    public void testFlushSendsTheSummaryAndGaugesOfEveryPool() {
+        Object dataSource = new PoolWithMXBean(new PoolMXBean());
+        aggregator.record(dataSource, 2 * MS, null);
+        aggregator.record(dataSource, 40 * MS, null);
+        aggregator.record(dataSource, 3000 * MS, new SQLTransientConnectionException("timeout"));
+
+        aggregator.flush();
+
+        ArgumentCaptor<Telemetry> captor = ArgumentCaptor.forClass(Telemetry.class);
+        verify(telemetryClient, times(4)).track(captor.capture());
+        MetricTelemetry waitTime = findByName(captor.getAllValues(), ConnectionPoolAggregator.WAIT_TIME_METRIC_NAME);
+        assertNotNull(waitTime);
+        assertEquals(Integer.valueOf(3), waitTime.getCount());
+        assertEquals(3042.0, waitTime.getValue(), 0.001);
+        assertEquals(2.0, waitTime.getMin(), 0.001);
+        assertEquals(3000.0, waitTime.getMax(), 0.001);
+        assertEquals("50.0", waitTime.getProperties().get("P50"));
+        assertEquals("3000.0", waitTime.getProperties().get("P99"));
+        assertEquals("orders", waitTime.getProperties().get("Pool"));
+        assertEquals(1.0, findByName(captor.getAllValues(), ConnectionPoolAggregator.TIMEOUTS_METRIC_NAME).getValue(), 0.001);
+        assertEquals(3.0, findByName(captor.getAllValues(), ConnectionPoolAggregator.ACTIVE_CONNECTIONS_METRIC_NAME).getValue(), 0.001);
+        assertEquals(7.0, findByName(captor.getAllValues(), ConnectionPoolAggregator.IDLE_CONNECTIONS_METRIC_NAME).getValue(), 0.001);
+    }
+
+    @Test
+    public void testIdlePoolsAreNotReported() {
+        aggregator.record(new PoolWithMXBean(null), 2 * MS, null);
+        aggregator.flush();
+        aggregator.flush();
+
+        verify(telemetryClient, times(2)).track(any(Telemetry.class));
+    }
+
+    private static MetricTelemetry findByName(List<Telemetry> telemetries, String name) {
+        for (Telemetry telemetry : telemetries) {
+            if (name.equals(((MetricTelemetry) telemetry).getName())) {
+                return (MetricTelemetry) telemetry;
+            }
+        }
+        return null;
+    }
+}
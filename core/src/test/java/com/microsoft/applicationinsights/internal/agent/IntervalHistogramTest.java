@@ -0,0 +1,102 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class IntervalHistogramTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void testPercentilesAreBucketBounds() {
+        IntervalHistogram histogram = new IntervalHistogram();
+        for (int i = 0; i < 98; ++i) {
+            histogram.record(3 * MS, false);
+        }
+        histogram.record(150 * MS, false);
+        histogram.record(700 * MS, false);
+
+        IntervalHistogram.Snapshot snapshot = histogram.drain();
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(98 * 3 + 150 + 700, snapshot.getSumInMS(), 0.001);
+        assertEquals(3.0, snapshot.getMinInMS(), 0.001);
+        assertEquals(700.0, snapshot.getMaxInMS(), 0.001);
+        assertEquals(5.0, snapshot.getPercentileInMS(50), 0.001);
+        assertEquals(200.0, snapshot.getPercentileInMS(99), 0.001);
+        assertEquals(700.0, snapshot.getPercentileInMS(100), 0.001);
+    }
+
+    @Test
+    public void testDrainStartsANewInterval() {
+        IntervalHistogram histogram = new IntervalHistogram();
+        histogram.record(10 * MS, true);
+        histogram.record(30 * MS, false);
+
+        IntervalHistogram.Snapshot snapshot = histogram.drain();
+
+        assertEquals(2, snapshot.getCount());
+        assertEquals(1, snapshot.getFlaggedCount());
+        assertEquals(10.0, snapshot.getStandardDeviationInMS(), 0.001);
+        assertNull(histogram.drain());
+
+        histogram.record(5 * MS, false);
+        assertEquals(5.0, histogram.drain().getMinInMS(), 0.001);
+    }
+
+    @Test
+    public void testOnlyAnEmptyHistogramIsRetired() {
+        IntervalHistogram histogram = new IntervalHistogram();
+        histogram.record(10 * MS, false);
+
+        assertFalse(histogram.retireIfEmpty());
+        histogram.drain();
+        assertTrue(histogram.retireIfEmpty());
+
+        assertFalse(histogram.record(10 * MS, false));
+        assertNull(histogram.drain());
+    }
+
+    @Test
+    public void testMetricTelemetryHoldsTheSummary() {
+        IntervalHistogram histogram = new IntervalHistogram();
+        histogram.record(10 * MS, false);
+        histogram.record(30 * MS, false);
+
+        MetricTelemetry telemetry = histogram.drain().createMetricTelemetry("duration");
+
+        assertEquals("duration", telemetry.getName());
+        assertEquals(40.0, telemetry.getValue(), 0.001);
+        assertEquals(Integer.valueOf(2), telemetry.getCount());
+        assertEquals(10.0, telemetry.getMin(), 0.001);
+        assertEquals(30.0, telemetry.getMax(), 0.001);
+        assertEquals(10.0, telemetry.getStandardDeviation(), 0.001);
+        assertEquals("20.0", telemetry.getProperties().get("P50"));
+        assertEquals("30.0", telemetry.getProperties().get("P99"));
+    }
+}
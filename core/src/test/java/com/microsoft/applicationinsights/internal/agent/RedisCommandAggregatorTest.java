@@ -0,0 +1,115 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public final class RedisCommandAggregatorTest {
+    private static final long MS = 1000000L;
+
+    private TelemetryClient telemetryClient;
+    private RedisCommandAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        telemetryClient = mock(TelemetryClient.class);
+        aggregator = new RedisCommandAggregator(telemetryClient, 100 * MS, 3600);
+    }
+
+    @After
+    public void tearDown() {
+        aggregator.stop(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFastSuccessfulCommandsAreOnlyAggregated() {
+        assertFalse(aggregator.record("Jedis", "GET", 1 * MS, true));
+        assertFalse(aggregator.record("Jedis", "GET", 3 * MS, true));
+
+        verify(telemetryClient, never()).track(any(Telemetry.class));
+    }
+
+    @Test
+    public void testFailedAndSlowCommandsAreAlsoReportedIndividually() {
+        assertTrue(aggregator.record("Jedis", "GET", 1 * MS, false));
+        assertTrue(aggregator.record("Lettuce", "GET", 150 * MS, true));
+    }
+
+    @Test
+    public void testFlushSendsOneSummaryPerClientAndCommand() {
+        aggregator.record("Jedis", "GET", 1 * MS, true);
+        aggregator.record("Jedis", "GET", 3 * MS, false);
+        aggregator.record("Lettuce", "GET", 2 * MS, true);
+        aggregator.record("Jedis", "SET", 2 * MS, true);
+
+        aggregator.flush();
+
+        ArgumentCaptor<Telemetry> captor = ArgumentCaptor.forClass(Telemetry.class);
+        verify(telemetryClient, times(3)).track(captor.capture());
+        MetricTelemetry summary = find(captor.getAllValues(), "Jedis", "GET");
+        assertNotNull(summary);
+        assertEquals(RedisCommandAggregator.METRIC_NAME, summary.getName());
+        assertEquals(Integer.valueOf(2), summary.getCount());
+        assertEquals(4.0, summary.getValue(), 0.001);
+        assertEquals(1.0, summary.getMin(), 0.001);
+        assertEquals(3.0, summary.getMax(), 0.001);
+        assertEquals("1", summary.getProperties().get("FailedCount"));
+        assertEquals("2.0", summary.getProperties().get("P50"));
+        assertEquals("3.0", summary.getProperties().get("P99"));
+        assertNotNull(find(captor.getAllValues(), "Lettuce", "GET"));
+    }
+
+    @Test
+    public void testIdleCommandsAreNotReported() {
+        aggregator.record("Jedis", "GET", 1 * MS, true);
+        aggregator.flush();
+        aggregator.flush();
+
+        verify(telemetryClient, times(1)).track(any(Telemetry.class));
+    }
+
+    private static MetricTelemetry find(List<Telemetry> telemetries, String client, String command) {
+        for (Telemetry telemetry : telemetries) {
+            MetricTelemetry metric = (MetricTelemetry) telemetry;
+            if (client.equals(metric.getProperties().get("Client")) && command.equals(metric.getProperties().get("Command"))) {
+                return metric;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.agent;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public final class RedisCommandsTest {
+    public static class Queable {
+        protected int getPipelinedResponseLength() {
+            return 3;
+        }
+    }
+
+    // Shaped like 'redis.clients.jedis.Pipeline'
+    public static final class Pipeline extends Queable {
+    }
+
+    @Test
+    public void testPipelinedCommandsAreCountedFromTheBaseClass() {
+        assertEquals(3, RedisCommands.getPipelinedCommandCount(new Pipeline()));
+    }
+
+    @Test
+    public void testPipelinedCommandsOfAnUnknownClass() {
+        assertEquals(-1, RedisCommands.getPipelinedCommandCount(new Object()));
+        assertEquals(-1, RedisCommands.getPipelinedCommandCount(null));
+    }
+
+    @Test
+    public void testCommandsWithoutCompletionAreNotTracked() {
+        assertFalse(RedisCommands.registerCompletion(new Object(), new RecordingListener()));
+        assertFalse(RedisCommands.registerCompletion(null, new RecordingListener()));
+    }
+
+    @Test
+    public void testCompletionOfAFuture() throws Exception {
+        Class<?> futureClass = null;
+        try {
+            futureClass = Class.forName("java.util.concurrent.CompletableFuture");
+        } catch (ClassNotFoundException e) {
+            // Java 7
+        }
+        Assume.assumeNotNull(futureClass);
+
+        // Lettuce 5.0 commands are futures
+        Object future = futureClass.newInstance();
+        RecordingListener listener = new RecordingListener();
+        assertTrue(RedisCommands.registerCompletion(future, listener));
+        assertNull(listener.command.get());
+
+        IllegalStateException failure = new IllegalStateException();
+        futureClass.getMethod("completeExceptionally", Throwable.class).invoke(future, failure);
+
+        assertEquals("UNKNOWN", listener.command.get());
+        assertSame(failure, listener.throwable.get());
+    }
+
+    private static final class RecordingListener implements RedisCommands.CompletionListener {
+        final AtomicReference<String> command = new AtomicReference<String>();
+        final AtomicReference<Throwable> throwable = new AtomicReference<Throwable>();
+
+        @Override
+        public void onCompleted(String command, long durationInNS, Throwable throwable) {
+            this.command.set(command);
+            this.throwable.set(throwable);
+        }
+    }
+}
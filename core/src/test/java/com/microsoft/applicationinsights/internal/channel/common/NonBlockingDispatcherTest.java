@@ -21,14 +21,25 @@
 
 package com.microsoft.applicationinsights.internal.channel.common;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import com.microsoft.applicationinsights.internal.channel.TransmissionOutput;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import org.mockito.Mockito;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.anyObject;
 
 public class NonBlockingDispatcherTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
 
     @Test(expected = NullPointerException.class)
     public void nullTest() {
@@ -78,6 +89,37 @@ public class NonBlockingDispatcherTest {
         Mockito.verify(mockOutput2, Mockito.times(1)).send((Transmission) anyObject());
     }
 
+    @Test
+    public void testStopPersistsWhatWasNotDrained() throws Exception {
+        final Transmission notSent = new Transmission("notSent".getBytes(), "mockType", "mockEncoding");
+        DrainableTransmissionOutput drainableOutput = new DrainableTransmissionOutput() {
+            @Override
+            public List<Transmission> drain(long timeout, TimeUnit timeUnit) {
+                return Collections.singletonList(notSent);
+            }
+
+            @Override
+            public boolean send(Transmission transmission) {
+                return false;
+            }
+
+            @Override
+            public void stop(long timeout, TimeUnit timeUnit) {
+            }
+        };
+        TransmissionOutput mockOutput = Mockito.mock(TransmissionOutput.class);
+
+        File folder = tmpFolder.newFolder("spill");
+        TransmissionFileSystemOutput spillOutput = new TransmissionFileSystemOutput(folder.getAbsolutePath());
+        NonBlockingDispatcher tested = new NonBlockingDispatcher(new TransmissionOutput[] {drainableOutput, mockOutput}, spillOutput);
+
+        tested.stop(1L, TimeUnit.SECONDS);
+
+        Mockito.verify(mockOutput, Mockito.times(1)).stop(Mockito.anyLong(), (TimeUnit) anyObject());
+        assertEquals("notSent", new String(spillOutput.fetchOldestFile().getContent()));
+        assertNull(spillOutput.fetchOldestFile());
+    }
+
     private NonBlockingDispatcher createDispatcher() {
         TransmissionOutput mockOutput1 = Mockito.mock(TransmissionOutput.class);
         TransmissionOutput mockOutput2 = Mockito.mock(TransmissionOutput.class);
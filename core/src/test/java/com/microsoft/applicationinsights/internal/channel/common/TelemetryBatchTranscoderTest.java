@@ -0,0 +1,192 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.microsoft.applicationinsights.telemetry.BaseTelemetry;
+import com.microsoft.applicationinsights.telemetry.Duration;
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
+import com.microsoft.applicationinsights.telemetry.JsonTelemetryDataSerializer;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import com.microsoft.applicationinsights.telemetry.PageViewTelemetry;
+import com.microsoft.applicationinsights.telemetry.PerformanceCounterTelemetry;
+import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import com.microsoft.localforwarder.library.inputs.contracts.TelemetryBatch;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public final class TelemetryBatchTranscoderTest {
+    private final static String TEST_IKEY = "00000000-0000-0000-0000-000000000000";
+
+    @Test
+    public void testEveryTelemetryTypeIsWrittenBackAsTheSameJson() throws Exception {
+        RequestTelemetry request = new RequestTelemetry("GET /orders", new Date(), new Duration(1, 2, 3, 4, 5), "200", true);
+        request.setUrl("http://contoso.com/orders?id=1");
+        request.setSource("frontend");
+        request.getProperties().put("tenant", "contoso");
+        request.getMetrics().put("items", 3.5);
+        request.setSamplingPercentage(50.0);
+
+        RemoteDependencyTelemetry dependency = new RemoteDependencyTelemetry("SQL", "select \"name\" from orders", new Duration(35), false);
+        dependency.setType("SQL");
+        dependency.setResultCode("500");
+        dependency.setTarget("db.contoso.com");
+
+        EventTelemetry event = new EventTelemetry("OrderPlaced");
+        event.getProperties().put("line\nbreak", "tab\tand unicode é");
+
+        MetricTelemetry metric = new MetricTelemetry("QueueLength", 12.25);
+        metric.setCount(4);
+        metric.setMin(1.0);
+        metric.setMax(20.0);
+        metric.setStandardDeviation(0.5);
+
+        PageViewTelemetry pageView = new PageViewTelemetry("Home");
+        pageView.setUrl(new URI("http://contoso.com/home"));
+        pageView.setDuration(1500);
+
+        List<String> jsons = toJson(request, dependency, event, new TraceTelemetry("Order processed", SeverityLevel.Warning), metric,
+                new ExceptionTelemetry(new IllegalStateException("Order could not be processed")), pageView);
+
+        byte[] content = gzip(jsons);
+        TelemetryBatch batch = TelemetryBatchTranscoder.fromGzippedJson(content);
+        assertNotNull(batch);
+        assertEquals(jsons.size(), batch.getItemsCount());
+
+        List<String> sent = gunzip(content);
+        List<String> transcoded = gunzip(TelemetryBatchTranscoder.toGzippedJson(TelemetryBatch.parseFrom(batch.toByteArray())));
+        assertEquals(sent.size(), transcoded.size());
+        for (int i = 0; i < sent.size(); ++i) {
+            assertEquals(parse(sent.get(i)), parse(transcoded.get(i)));
+        }
+    }
+
+    @Test
+    public void testTelemetryWithoutContractIsNotTranscoded() throws Exception {
+        List<String> jsons = toJson(new EventTelemetry("OrderPlaced"), new PerformanceCounterTelemetry("Process", "CPU", "", 1.0));
+
+        assertNull(TelemetryBatchTranscoder.fromGzippedJson(gzip(jsons)));
+    }
+
+    @Test
+    public void testUnknownFieldIsNotTranscoded() throws Exception {
+        String json = toJson(new EventTelemetry("OrderPlaced")).get(0);
+
+        assertNotNull(TelemetryBatchTranscoder.fromGzippedJson(gzip(Collections.singletonList(json))));
+        assertNull(TelemetryBatchTranscoder.fromGzippedJson(gzip(Collections.singletonList(json.replace("\"ver\":", "\"unknown\":1,\"ver\":")))));
+    }
+
+    @Test
+    public void testDurationNotInTheSdkFormatIsNotTranscoded() throws Exception {
+        String json = toJson(new RequestTelemetry("GET /orders", new Date(), 1500, "200", true)).get(0);
+
+        assertNotNull(TelemetryBatchTranscoder.fromGzippedJson(gzip(Collections.singletonList(json))));
+        assertNull(TelemetryBatchTranscoder.fromGzippedJson(gzip(Collections.singletonList(json.replace("\"00:00:01.5000000\"", "\"00:00:01.5\"")))));
+    }
+
+    @Test
+    public void testContentThatIsNotGzippedJsonIsNotTranscoded() throws Exception {
+        assertNull(TelemetryBatchTranscoder.fromGzippedJson("not gzipped".getBytes()));
+        assertNull(TelemetryBatchTranscoder.fromGzippedJson(gzip(Collections.singletonList("[1, 2]"))));
+    }
+
+    private static List<String> toJson(BaseTelemetry<?>... telemetries) throws IOException {
+        List<String> jsons = new ArrayList<String>();
+        for (BaseTelemetry<?> telemetry : telemetries) {
+            telemetry.getContext().setInstrumentationKey(TEST_IKEY);
+            telemetry.getContext().getOperation().setId("operation");
+            telemetry.setTimestamp(new Date());
+            StringWriter writer = new StringWriter();
+            JsonTelemetryDataSerializer jsonWriter = new JsonTelemetryDataSerializer(writer);
+            telemetry.serialize(jsonWriter);
+            jsonWriter.close();
+            jsons.add(writer.toString());
+        }
+        return jsons;
+    }
+
+    private static byte[] gzip(List<String> jsons) {
+        return new GzipTelemetrySerializer().serialize(jsons).get().getContent();
+    }
+
+    private static List<String> gunzip(byte[] content) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(content))));
+        try {
+            List<String> lines = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+
+    // The SDK writes empty maps and lists as null, they are not written back
+    private static JsonElement parse(String json) {
+        return removeNulls(new JsonParser().parse(json));
+    }
+
+    private static JsonElement removeNulls(JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            Iterator<Map.Entry<String, JsonElement>> members = object.entrySet().iterator();
+            while (members.hasNext()) {
+                Map.Entry<String, JsonElement> member = members.next();
+                if (member.getValue().isJsonNull()) {
+                    members.remove();
+                } else {
+                    removeNulls(member.getValue());
+                }
+            }
+        } else if (element.isJsonArray()) {
+            for (JsonElement item : element.getAsJsonArray()) {
+                removeNulls(item);
+            }
+        }
+        return element;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.channel.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.microsoft.applicationinsights.telemetry.BaseTelemetry;
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import com.microsoft.applicationinsights.telemetry.JsonTelemetryDataSerializer;
+import com.microsoft.applicationinsights.telemetry.PerformanceCounterTelemetry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class TransmissionFileFormatTest {
+    private final static String MOCK_CONTENT_TYPE = "MockContent";
+    private final static String MOCK_ENCODING_TYPE = "MockEncoding";
+
+    @Test
+    public void testGzippedJsonIsStoredAsTelemetryBatch() throws Exception {
+        List<BaseTelemetry<?>> telemetries = new ArrayList<BaseTelemetry<?>>();
+        for (int i = 0; i < 20; ++i) {
+            EventTelemetry event = new EventTelemetry("OrderPlaced");
+            event.getProperties().put("orderId", String.valueOf(i));
+            telemetries.add(event);
+        }
+        Transmission transmission = createGzippedJson(telemetries);
+        transmission.setNumberOfSends(2);
+        transmission.setNumberOfPersistence(1);
+
+        byte[] file = write(transmission);
+        assertEquals(TransmissionFileFormat.CONTENT_GZIPPED_TELEMETRY_BATCH, getContentFormat(file, transmission));
+        assertTrue(file.length < transmission.getContent().length);
+
+        Transmission read = read(file);
+        assertEquals(transmission.getWebContentType(), read.getWebContentType());
+        assertEquals(transmission.getWebContentEncodingType(), read.getWebContentEncodingType());
+        assertEquals(transmission.getVersion(), read.getVersion());
+        assertEquals(2, read.getNumberOfSends());
+        assertEquals(1, read.getNumberOfPersistence());
+        assertEquals(TelemetryBatchTranscoder.fromGzippedJson(transmission.getContent()), TelemetryBatchTranscoder.fromGzippedJson(read.getContent()));
+    }
+
+    @Test
+    public void testGzippedJsonWithoutContractIsStoredAsIs() throws Exception {
+        Transmission transmission = createGzippedJson(Arrays.<BaseTelemetry<?>>asList(new PerformanceCounterTelemetry("Process", "CPU", "", 1.0)));
+
+        byte[] file = write(transmission);
+        assertEquals(TransmissionFileFormat.CONTENT_AS_IS, getContentFormat(file, transmission));
+        assertArrayEquals(transmission.getContent(), read(file).getContent());
+    }
+
+    @Test
+    public void testOtherContentIsStoredAsIs() throws Exception {
+        Transmission transmission = new Transmission("MockContent".getBytes(), MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE);
+
+        byte[] file = write(transmission);
+        assertEquals(TransmissionFileFormat.CONTENT_AS_IS, getContentFormat(file, transmission));
+        assertArrayEquals(transmission.getContent(), read(file).getContent());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownContentFormatIsNotRead() throws Exception {
+        Transmission transmission = new Transmission("MockContent".getBytes(), MOCK_CONTENT_TYPE, MOCK_ENCODING_TYPE);
+
+        byte[] file = write(transmission);
+        file[getContentFormatOffset(transmission)] = 42;
+        read(file);
+    }
+
+    private static Transmission createGzippedJson(List<BaseTelemetry<?>> telemetries) throws IOException {
+        List<String> jsons = new ArrayList<String>();
+        for (BaseTelemetry<?> telemetry : telemetries) {
+            telemetry.getContext().setInstrumentationKey("00000000-0000-0000-0000-000000000000");
+            telemetry.setTimestamp(new Date());
+            StringWriter writer = new StringWriter();
+            JsonTelemetryDataSerializer jsonWriter = new JsonTelemetryDataSerializer(writer);
+            telemetry.serialize(jsonWriter);
+            jsonWriter.close();
+            jsons.add(writer.toString());
+        }
+        return new GzipTelemetrySerializer().serialize(jsons).get();
+    }
+
+    private static byte[] write(Transmission transmission) throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        TransmissionFileFormat.write(Collections.singletonList(transmission), file);
+        return file.toByteArray();
+    }
+
+    private static Transmission read(byte[] file) throws IOException {
+        List<Transmission> transmissions = TransmissionFileFormat.read(new ByteArrayInputStream(file));
+        assertEquals(1, transmissions.size());
+        return transmissions.get(0);
+    }
+
+    private static int getContentFormat(byte[] file, Transmission transmission) {
+        return file[getContentFormatOffset(transmission)];
+    }
+
+    // The magic number, format version and count, then the version, sends, persistence and the two content types
+    private static int getContentFormatOffset(Transmission transmission) {
+        return 4 + 2 + 4 + 3 * 4 + 2 + transmission.getWebContentType().length() + 2 + transmission.getWebContentEncodingType().length();
+    }
+}
@@ -24,10 +24,15 @@ package com.microsoft.applicationinsights.internal.channel.common;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import com.microsoft.applicationinsights.internal.util.LocalFileSystemUtils;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
@@ -105,6 +110,73 @@ public final class TransmissionFileSystemOutputTest {
         }
     }
 
+    @Test
+    public void testSendAllIsWrittenToOneFileAndFetchedOneByOne() throws Exception {
+        File folder = tmpFolder.newFolder(TEMP_TEST_FOLDER+"3");
+        try {
+            TransmissionFileSystemOutput tested = new TransmissionFileSystemOutput(folder.getAbsolutePath());
+
+            List<Transmission> transmissions = new ArrayList<Transmission>();
+            for (int i = 1; i <= 5; ++i) {
+                String iAsString = String.valueOf(i);
+                transmissions.add(new Transmission((MOCK_CONTENT + iAsString).getBytes(), MOCK_CONTENT_TYPE_BASE + iAsString, MOCK_ENCODING_TYPE_BASE + iAsString));
+            }
+            assertTrue(tested.sendAll(transmissions));
+
+            assertEquals(1, FileUtils.listFiles(folder, new String[]{TRANSMISSION_FILE_EXTENSION}, false).size());
+
+            for (int i = 1; i <= 5; ++i) {
+                Transmission transmission = tested.fetchOldestFile();
+                assertNotNull(transmission);
+                assertEquals(MOCK_CONTENT + i, new String(transmission.getContent()));
+
+                // The transmissions that were not fetched yet stay on disk, a file each
+                assertEquals(5 - i, FileUtils.listFiles(folder, new String[]{TRANSMISSION_FILE_EXTENSION}, false).size());
+            }
+
+            assertNull(tested.fetchOldestFile());
+        } finally {
+            if (folder.exists()) {
+                FileUtils.deleteDirectory(folder);
+            }
+        }
+    }
+
+    @Test
+    public void testTransmissionMetadataIsPersisted() throws Exception {
+        File folder = tmpFolder.newFolder(TEMP_TEST_FOLDER+"4");
+        TransmissionFileSystemOutput tested = new TransmissionFileSystemOutput(folder.getAbsolutePath());
+
+        Transmission transmission = new Transmission(MOCK_CONTENT.getBytes(), MOCK_CONTENT_TYPE_BASE, MOCK_ENCODING_TYPE_BASE, 3);
+        transmission.setNumberOfSends(2);
+        transmission.setNumberOfPersistence(1);
+        assertTrue(tested.send(transmission));
+
+        Transmission fetched = tested.fetchOldestFile();
+        assertNotNull(fetched);
+        assertEquals(3, fetched.getVersion());
+        assertEquals(2, fetched.getNumberOfSends());
+        assertEquals(1, fetched.getNumberOfPersistence());
+        assertEquals(MOCK_CONTENT, new String(fetched.getContent()));
+    }
+
+    @Test
+    public void testFilesOfPreviousVersionsAreLoaded() throws Exception {
+        File folder = tmpFolder.newFolder(TEMP_TEST_FOLDER+"5");
+        ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(new File(folder, "Transmission1.trn")));
+        try {
+            output.writeObject(new Transmission(MOCK_CONTENT.getBytes(), MOCK_CONTENT_TYPE_BASE, MOCK_ENCODING_TYPE_BASE));
+        } finally {
+            output.close();
+        }
+        TransmissionFileSystemOutput tested = new TransmissionFileSystemOutput(folder.getAbsolutePath());
+
+        Transmission fetched = tested.fetchOldestFile();
+        assertNotNull(fetched);
+        assertEquals(MOCK_CONTENT_TYPE_BASE, fetched.getWebContentType());
+        assertEquals(MOCK_CONTENT, new String(fetched.getContent()));
+    }
+
     private TransmissionFileSystemOutput testSuccessfulSends(int amount) throws Exception {
         return testSuccessfulSends(amount, amount, null, null);
     }
@@ -0,0 +1,200 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.TestFramework.StubTelemetryChannel;
+import com.microsoft.applicationinsights.channel.TelemetrySampler;
+import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
+import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class ConfigurationFileWatcherTest {
+    private final static String HEADER = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<ApplicationInsights xmlns=\"http://schemas.microsoft.com/ApplicationInsights/2013/Settings\">\n";
+    private final static String FOOTER = "</ApplicationInsights>\n";
+    private final static String PROCESSOR = "  <TelemetryProcessors><CustomProcessors>\n" +
+            "    <Processor type=\"com.microsoft.applicationinsights.internal.config.ValidProcessorsWithSetters\">\n" +
+            "      <Add name=\"PropertyA\" value=\"%s\"/>\n" +
+            "    </Processor>\n" +
+            "  </CustomProcessors></TelemetryProcessors>\n";
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("ApplicationInsights", ".xml");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testWhiteSpaceAndCommentsAreNotChanges() {
+        Document previous = parse("<InstrumentationKey>A</InstrumentationKey><DisableTelemetry>false</DisableTelemetry>");
+        Document current = parse("\n  <!-- key -->\n  <InstrumentationKey> A </InstrumentationKey>\n\n  <DisableTelemetry>false</DisableTelemetry>");
+
+        assertTrue(ConfigurationFileWatcher.findChangedSections(previous, current).isEmpty());
+    }
+
+    @Test
+    public void testOnlyChangedSectionsAreFound() {
+        Document previous = parse("<InstrumentationKey>A</InstrumentationKey><DisableTelemetry>false</DisableTelemetry>");
+        Document current = parse("<InstrumentationKey>A</InstrumentationKey><DisableTelemetry>true</DisableTelemetry><SDKLogger/>");
+
+        Set<String> changed = ConfigurationFileWatcher.findChangedSections(previous, current);
+
+        assertEquals(2, changed.size());
+        assertTrue(changed.contains("DisableTelemetry"));
+        assertTrue(changed.contains("SDKLogger"));
+    }
+
+    @Test
+    public void testRemovedSectionIsFound() {
+        Document previous = parse("<InstrumentationKey>A</InstrumentationKey><DisableTelemetry>false</DisableTelemetry>");
+        Document current = parse("<InstrumentationKey>A</InstrumentationKey>");
+
+        assertEquals(Collections.singleton("DisableTelemetry"), ConfigurationFileWatcher.findChangedSections(previous, current));
+    }
+
+    @Test
+    public void testChangedPerformanceCounterSettingsAreFound() {
+        Document previous = parse("<PerformanceCounters collectionFrequencyInSec=\"60\"><Jmx><Add objectName=\"A\" attribute=\"B\" displayName=\"C\"/></Jmx><UseBuiltIn>true</UseBuiltIn></PerformanceCounters>");
+        Document current = parse("<PerformanceCounters collectionFrequencyInSec=\"30\"><Jmx><Add objectName=\"A\" attribute=\"B\" displayName=\"D\"/></Jmx><UseBuiltIn>true</UseBuiltIn><Plugin>P</Plugin></PerformanceCounters>");
+
+        Set<String> changed = ConfigurationFileWatcher.findChangedSettings(
+                (Element) previous.getDocumentElement().getFirstChild(), (Element) current.getDocumentElement().getFirstChild());
+
+        assertEquals(new HashSet<String>(Arrays.asList("collectionFrequencyInSec", "Jmx", "Plugin")), changed);
+    }
+
+    @Test
+    public void testReloadAppliesDisableTelemetry() throws IOException {
+        TelemetryConfiguration configuration = new TelemetryConfiguration();
+        ConfigurationFileWatcher watcher = createWatcher(configuration, "<DisableTelemetry>false</DisableTelemetry>");
+
+        write("<DisableTelemetry>true</DisableTelemetry>");
+        watcher.reload();
+
+        assertTrue(configuration.isTrackingDisabled());
+    }
+
+    @Test
+    public void testReloadReplacesProcessorsFromFileAndKeepsOthers() throws IOException {
+        TelemetryConfiguration configuration = new TelemetryConfiguration();
+        TelemetryProcessor fromCode = new TelemetryProcessor() {
+            @Override
+            public boolean process(Telemetry telemetry) {
+                return true;
+            }
+        };
+        ConfigurationFileWatcher watcher = createWatcher(configuration, String.format(PROCESSOR, "1"));
+        configuration.getTelemetryProcessors().add(fromCode);
+
+        write(String.format(PROCESSOR, "2"));
+        watcher.reload();
+
+        assertEquals(2, configuration.getTelemetryProcessors().size());
+        ValidProcessorsWithSetters fromFile = (ValidProcessorsWithSetters) configuration.getTelemetryProcessors().get(0);
+        assertEquals("2", fromFile.propertyA);
+        assertSame(fromCode, configuration.getTelemetryProcessors().get(1));
+    }
+
+    @Test
+    public void testReloadOfInvalidFileKeepsConfiguration() throws IOException {
+        TelemetryConfiguration configuration = new TelemetryConfiguration();
+        ConfigurationFileWatcher watcher = createWatcher(configuration, "<DisableTelemetry>false</DisableTelemetry>");
+
+        Files.write(file.toPath(), (HEADER + "<DisableTelemetry>true").getBytes(StandardCharsets.UTF_8));
+        watcher.reload();
+
+        assertFalse(configuration.isTrackingDisabled());
+    }
+
+    @Test
+    public void testFailedChangeIsAppliedWithTheNextReload() throws IOException {
+        TelemetryConfiguration configuration = new TelemetryConfiguration();
+        final AtomicInteger samplerChanges = new AtomicInteger();
+        configuration.setChannel(new StubTelemetryChannel() {
+            @Override
+            public void setSampler(TelemetrySampler telemetrySampler) {
+                if (samplerChanges.incrementAndGet() == 1) {
+                    throw new IllegalStateException("The first sampler is rejected");
+                }
+            }
+        });
+        ConfigurationFileWatcher watcher = createWatcher(configuration, "");
+
+        write("<Sampling/>");
+        try {
+            watcher.reload();
+            fail("The rejected sampler was not reported");
+        } catch (IllegalStateException expected) {
+        }
+        watcher.reload();
+
+        assertEquals(2, samplerChanges.get());
+    }
+
+    private ConfigurationFileWatcher createWatcher(TelemetryConfiguration configuration, String sections) throws IOException {
+        write(sections);
+        JaxbAppInsightsConfigurationBuilder builder = new JaxbAppInsightsConfigurationBuilder();
+        ApplicationInsightsXmlConfiguration xmlConfiguration = builder.build(Files.newInputStream(file.toPath()));
+        TelemetryConfigurationFactory factory = TelemetryConfigurationFactory.INSTANCE;
+        configuration.getTelemetryProcessors().addAll(factory.createTelemetryProcessors(xmlConfiguration));
+        configuration.setTrackingIsDisabled(xmlConfiguration.isDisableTelemetry());
+
+        return new ConfigurationFileWatcher(file, configuration, builder, xmlConfiguration,
+                Collections.<TelemetryInitializer>emptyList(), configuration.getTelemetryProcessors());
+    }
+
+    private void write(String sections) throws IOException {
+        Files.write(file.toPath(), Arrays.asList(HEADER + sections + FOOTER), StandardCharsets.UTF_8);
+    }
+
+    private static Document parse(String sections) {
+        return ConfigurationFileWatcher.parse((HEADER + sections + FOOTER).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -253,6 +253,23 @@ public class HeartbeatTests {
     Assert.assertEquals(2, ((MetricTelemetry)t).getValue(), 0.0);
   }
 
+  @Test
+  public void heartbeatPayloadReflectsChangedProperties() throws Exception {
+    HeartBeatProvider provider = new HeartBeatProvider();
+    Assert.assertTrue(provider.addHeartBeatProperty("test", "testVal", true));
+
+    Method m = provider.getClass().getDeclaredMethod("gatherData");
+    m.setAccessible(true);
+    MetricTelemetry first = (MetricTelemetry)m.invoke(provider);
+    Assert.assertTrue(provider.setHeartBeatProperty("test", "testVal2", false));
+    MetricTelemetry second = (MetricTelemetry)m.invoke(provider);
+
+    Assert.assertEquals("testVal", first.getProperties().get("test"));
+    Assert.assertEquals(0, first.getValue(), 0.0);
+    Assert.assertEquals("testVal2", second.getProperties().get("test"));
+    Assert.assertEquals(1, second.getValue(), 0.0);
+  }
+
   @Test
   public void sentHeartbeatContainsExpectedDefaultFields() throws Exception {
     HeartBeatProviderInterface mockProvider = Mockito.mock(HeartBeatProviderInterface.class);
@@ -0,0 +1,114 @@
+package com.microsoft.applicationinsights.internal.jmx;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JmxAttributeFetcherTest {
+    private final static String DOMAIN = "JSDKFetcherTests";
+
+    private MBeanServer server;
+    private List<JmxAttributeData> attributes;
+
+    @Before
+    public void setUp() {
+        server = ManagementFactory.getPlatformMBeanServer();
+        attributes = new ArrayList<JmxAttributeData>();
+        attributes.add(new JmxAttributeData("Int", "IntSample"));
+        attributes.add(new JmxAttributeData("Double", "DoubleSample"));
+        attributes.add(new JmxAttributeData("Long", "LongSample"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (ObjectName name : server.queryNames(new ObjectName(DOMAIN + ":*"), null)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testFetchWithChange() throws Exception {
+        JmxDataFetcherTest.TestStub testStub = register("TestStub", 1, 2.0, 3L);
+
+        JmxAttributeFetcher fetcher = new JmxAttributeFetcher(DOMAIN + ":type=TestStub", attributes);
+        verify(fetcher.fetch(), 1.0, 2.0, 3.0);
+
+        testStub.i = 1000;
+        testStub.d = 2000.0;
+        testStub.l = 3000L;
+
+        verify(fetcher.fetch(), 1000.0, 2000.0, 3000.0);
+    }
+
+    @Test
+    public void testPatternSumsAllObjects() throws Exception {
+        register("A", 1, 2.0, 3L);
+        register("B", 10, 20.0, 30L);
+
+        JmxAttributeFetcher fetcher = new JmxAttributeFetcher(DOMAIN + ":type=*", attributes);
+        verify(fetcher.fetch(), 11.0, 22.0, 33.0);
+    }
+
+    @Test
+    public void testObjectNamesAreRefreshed() throws Exception {
+        register("A", 1, 2.0, 3L);
+
+        JmxAttributeFetcher fetcher = new JmxAttributeFetcher(server, DOMAIN + ":type=*", attributes, 0);
+        verify(fetcher.fetch(), 1.0, 2.0, 3.0);
+
+        register("B", 10, 20.0, 30L);
+        verify(fetcher.fetch(), 11.0, 22.0, 33.0);
+
+        server.unregisterMBean(new ObjectName(DOMAIN + ":type=A"));
+        verify(fetcher.fetch(), 10.0, 20.0, 30.0);
+    }
+
+    @Test
+    public void testObjectNamesAreCached() throws Exception {
+        register("A", 1, 2.0, 3L);
+
+        JmxAttributeFetcher fetcher = new JmxAttributeFetcher(server, DOMAIN + ":type=*", attributes, Long.MAX_VALUE);
+        verify(fetcher.fetch(), 1.0, 2.0, 3.0);
+
+        register("B", 10, 20.0, 30L);
+        verify(fetcher.fetch(), 1.0, 2.0, 3.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadName() throws Exception {
+        register("TestStub", 1, 2.0, 3L);
+
+        new JmxAttributeFetcher(DOMAIN + ":type=NoSuchStub", attributes).fetch();
+    }
+
+    @Test(expected = Exception.class)
+    public void testBadAttributeName() throws Exception {
+        register("TestStub", 1, 2.0, 3L);
+
+        List<JmxAttributeData> wrongAttributes = new ArrayList<JmxAttributeData>();
+        wrongAttributes.add(new JmxAttributeData("Int", "WrongNameIntSample"));
+        new JmxAttributeFetcher(DOMAIN + ":type=TestStub", wrongAttributes).fetch();
+    }
+
+    private JmxDataFetcherTest.TestStub register(String type, int i, double d, long l) throws Exception {
+        JmxDataFetcherTest.TestStub testStub = new JmxDataFetcherTest.TestStub(i, d, l);
+        server.registerMBean(testStub, new ObjectName(DOMAIN + ":type=" + type));
+        return testStub;
+    }
+
+    private static void verify(Map<String, Double> result, double expectedInt, double expectedDouble, double expectedLong) {
+        assertEquals(3, result.size());
+        assertEquals(expectedInt, result.get("Int"), 0.0);
+        assertEquals(expectedDouble, result.get("Double"), 0.0);
+        assertEquals(expectedLong, result.get("Long"), 0.0);
+    }
+}
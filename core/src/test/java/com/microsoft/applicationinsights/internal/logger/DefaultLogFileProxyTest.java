@@ -0,0 +1,107 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.microsoft.applicationinsights.internal.util.LocalFileSystemUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class DefaultLogFileProxyTest {
+    private final static int SIZE_OF_MB = 1048576;
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = new File(LocalFileSystemUtils.getTempDir(), "JavaSDKLogProxyTests");
+        if (folder.exists()) {
+            FileUtils.deleteDirectory(folder);
+        }
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void testBufferedLinesCountTowardsTheSizeLimit() throws IOException {
+        DefaultLogFileProxy proxy = DefaultLogFileProxy.createNew(folder, "test", 0);
+        String line = createLine(100);
+        int lineSize = line.length() + System.getProperty("line.separator").length();
+        try {
+            long written = 0;
+            while (written + lineSize < SIZE_OF_MB) {
+                proxy.writeLine(line);
+                written += lineSize;
+            }
+            assertFalse(proxy.isFull());
+
+            // Not flushed, part of the lines is still only in the buffer
+            proxy.writeLine(line);
+            written += lineSize;
+            assertTrue(proxy.isFull());
+            assertTrue(getLogFile().length() < written);
+
+            proxy.flush();
+            assertEquals(written, getLogFile().length());
+        } finally {
+            proxy.close();
+        }
+    }
+
+    @Test
+    public void testCloseFlushesTheBuffer() throws IOException {
+        DefaultLogFileProxy proxy = DefaultLogFileProxy.createNew(folder, "test", 1);
+        proxy.writeLine("line 1");
+        proxy.writeLine("line 2");
+        assertEquals(0, getLogFile().length());
+
+        proxy.close();
+
+        assertEquals(Arrays.asList("line 1", "line 2"), FileUtils.readLines(getLogFile()));
+    }
+
+    private File getLogFile() {
+        Collection<File> files = FileUtils.listFiles(folder, new String[]{"jsl"}, false);
+        assertEquals(1, files.size());
+        return files.iterator().next();
+    }
+
+    private static String createLine(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+}
@@ -25,11 +25,17 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Queue;
 import java.util.Collection;
 import java.util.Map;
 import java.util.LinkedList;
 import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
@@ -39,6 +45,7 @@ import org.mockito.stubbing.Answer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
@@ -134,6 +141,152 @@ public final class FileLoggerOutputTest {
         Mockito.verify(mockProxy3, Mockito.never()).delete();
     }
 
+    @Test
+    public void testMessagesAreDroppedAndCountedWhenTheQueueIsFull() throws Exception {
+        File folder = createFolderForTest();
+        FileLoggerOutput tested = createFileLoggerOutput();
+        BlockingLogFileProxy proxy = new BlockingLogFileProxy();
+        tested.setLogProxyFactory(new SingleProxyFactory(proxy));
+        try {
+            // The first logging thread is stuck writing, so the ring fills up with the next messages
+            Thread first = logInBackground(tested, "first");
+            proxy.awaitFirstWrite();
+            for (int i = 0; i < FileLoggerOutput.MAX_PENDING_MESSAGES + 3; ++i) {
+                tested.log("line " + i);
+            }
+            proxy.release();
+            first.join(10000);
+            tested.close();
+        } finally {
+            proxy.release();
+            if (folder != null && folder.exists()) {
+                FileUtils.deleteDirectory(folder);
+            }
+        }
+
+        List<String> lines = proxy.getLines();
+        assertEquals(FileLoggerOutput.MAX_PENDING_MESSAGES + 2, lines.size());
+        assertEquals("first", lines.get(0));
+        assertEquals(String.format(FileLoggerOutput.DROPPED_MESSAGES_FORMAT, 3), lines.get(1));
+        assertEquals("line 0", lines.get(2));
+        assertEquals("line " + (FileLoggerOutput.MAX_PENDING_MESSAGES - 1), lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void testCloseWritesQueuedMessages() throws Exception {
+        File folder = createFolderForTest();
+        final FileLoggerOutput tested = createFileLoggerOutput();
+        BlockingLogFileProxy proxy = new BlockingLogFileProxy();
+        tested.setLogProxyFactory(new SingleProxyFactory(proxy));
+        try {
+            Thread first = logInBackground(tested, "first");
+            proxy.awaitFirstWrite();
+            for (int i = 0; i < 100; ++i) {
+                tested.log("line " + i);
+            }
+
+            Thread closer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    tested.close();
+                }
+            });
+            closer.start();
+            proxy.release();
+            first.join(10000);
+            closer.join(10000);
+        } finally {
+            proxy.release();
+            if (folder != null && folder.exists()) {
+                FileUtils.deleteDirectory(folder);
+            }
+        }
+
+        List<String> lines = proxy.getLines();
+        assertEquals(101, lines.size());
+        for (int i = 0; i < 100; ++i) {
+            assertEquals("line " + i, lines.get(i + 1));
+        }
+        assertTrue(proxy.isClosed());
+        assertTrue(proxy.isFlushed());
+    }
+
+    @Test
+    public void testFileIsChangedAtItsSizeLimit() throws IOException {
+        File folder = createFolderForTest();
+        FileLoggerOutput tested = createFileLoggerOutput();
+        // Files of 0 MB are full once they reach 1 MB
+        tested.setLogProxyFactory(new LogFileProxyFactory() {
+            @Override
+            public LogFileProxy create(File baseFolder, String uniquePrefix, int maxSizeInMB) throws IOException {
+                return DefaultLogFileProxy.createNew(baseFolder, uniquePrefix, 0);
+            }
+
+            @Override
+            public LogFileProxy attach(File logFile, int maxSizeInMB) throws IOException {
+                return DefaultLogFileProxy.attachToExistingFile(logFile, 0);
+            }
+        });
+        try {
+            char[] chars = new char[1023];
+            Arrays.fill(chars, 'x');
+            String line = new String(chars);
+            for (int i = 0; i < 1100; ++i) {
+                tested.log(line);
+            }
+            tested.close();
+
+            Collection<File> logs = FileUtils.listFiles(folder, new String[]{LOG_FILE_SUFFIX}, false);
+            assertEquals(2, logs.size());
+            long totalSize = 0;
+            for (File log : logs) {
+                totalSize += log.length();
+            }
+            assertEquals(1100 * (line.length() + System.getProperty("line.separator").length()), totalSize);
+        } finally {
+            if (folder != null && folder.exists()) {
+                FileUtils.deleteDirectory(folder);
+            }
+        }
+    }
+
+    @Test
+    public void testMessagesOfConcurrentThreadsAreAllWritten() throws Exception {
+        File folder = createFolderForTest();
+        final FileLoggerOutput tested = createFileLoggerOutput();
+        BlockingLogFileProxy proxy = new BlockingLogFileProxy();
+        proxy.release();
+        tested.setLogProxyFactory(new SingleProxyFactory(proxy));
+        final int messagesPerThread = 1000;
+        Thread[] threads = new Thread[4];
+        try {
+            for (int t = 0; t < threads.length; ++t) {
+                final int thread = t;
+                threads[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < messagesPerThread; ++i) {
+                            tested.log(thread + "-" + i);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join(10000);
+            }
+            tested.close();
+        } finally {
+            if (folder != null && folder.exists()) {
+                FileUtils.deleteDirectory(folder);
+            }
+        }
+
+        List<String> lines = proxy.getLines();
+        assertEquals(threads.length * messagesPerThread, lines.size());
+        assertEquals(threads.length * messagesPerThread, new HashSet<String>(lines).size());
+    }
+
     private void testFileLoggerOutputWithRealFiles(String[] lines) throws IOException {
         File folder = createFolderForTest();
         FileLoggerOutput tested = createFileLoggerOutput();
@@ -206,4 +359,96 @@ public final class FileLoggerOutputTest {
 
         return folder;
     }
+
+    private static Thread logInBackground(final FileLoggerOutput tested, final String message) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                tested.log(message);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static final class SingleProxyFactory implements LogFileProxyFactory {
+        private final LogFileProxy proxy;
+
+        private SingleProxyFactory(LogFileProxy proxy) {
+            this.proxy = proxy;
+        }
+
+        @Override
+        public LogFileProxy create(File baseFolder, String uniquePrefix, int maxSizeInMB) {
+            return proxy;
+        }
+
+        @Override
+        public LogFileProxy attach(File logFile, int maxSizeInMB) {
+            return proxy;
+        }
+    }
+
+    /**
+     * Blocks the thread doing the first write until released.
+     */
+    private static final class BlockingLogFileProxy implements LogFileProxy {
+        private final CountDownLatch firstWrite = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final List<String> lines = new ArrayList<String>();
+        private volatile boolean closed;
+        private volatile boolean flushed;
+
+        void awaitFirstWrite() throws InterruptedException {
+            assertTrue(firstWrite.await(5, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        synchronized List<String> getLines() {
+            return new ArrayList<String>(lines);
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        boolean isFlushed() {
+            return flushed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void delete() {
+        }
+
+        @Override
+        public void writeLine(String line) throws IOException {
+            synchronized (this) {
+                lines.add(line);
+            }
+            firstWrite.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public boolean isFull() {
+            return false;
+        }
+
+        @Override
+        public void flush() {
+            flushed = true;
+        }
+    }
 }
\ No newline at end of file
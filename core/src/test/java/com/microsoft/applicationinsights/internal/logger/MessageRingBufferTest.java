@@ -0,0 +1,115 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+package com.microsoft.applicationinsights.internal.logger;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class MessageRingBufferTest {
+    @Test
+    public void testMessagesAreTakenInOrderAcrossTheWrapAround() {
+        MessageRingBuffer tested = new MessageRingBuffer(4);
+        assertTrue(tested.isEmpty());
+        assertNull(tested.poll());
+
+        for (int i = 0; i < 10; ++i) {
+            assertTrue(tested.offer("message " + i));
+            assertTrue(tested.offer("next " + i));
+            assertFalse(tested.isEmpty());
+            assertEquals("message " + i, tested.poll());
+            assertEquals("next " + i, tested.poll());
+            assertTrue(tested.isEmpty());
+        }
+    }
+
+    @Test
+    public void testOfferFailsWhenFullUntilAMessageIsTaken() {
+        MessageRingBuffer tested = new MessageRingBuffer(2);
+        assertTrue(tested.offer("1"));
+        assertTrue(tested.offer("2"));
+        assertFalse(tested.offer("3"));
+
+        assertEquals("1", tested.poll());
+        assertTrue(tested.offer("3"));
+        assertEquals("2", tested.poll());
+        assertEquals("3", tested.poll());
+        assertNull(tested.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBeAPowerOfTwo() {
+        new MessageRingBuffer(3);
+    }
+
+    @Test
+    public void testConcurrentProducersLoseNothing() throws InterruptedException {
+        final int producers = 4;
+        final int messagesPerProducer = 10000;
+        final MessageRingBuffer tested = new MessageRingBuffer(64);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; ++p) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messagesPerProducer; ++i) {
+                        while (!tested.offer(producer + "-" + i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        Set<String> taken = new HashSet<String>();
+        int[] lastTaken = new int[producers];
+        Arrays.fill(lastTaken, -1);
+        while (taken.size() < producers * messagesPerProducer) {
+            String message = tested.poll();
+            if (message == null) {
+                Thread.yield();
+                continue;
+            }
+            assertTrue(taken.add(message));
+
+            // Messages of one producer keep their order
+            int separator = message.indexOf('-');
+            int producer = Integer.parseInt(message.substring(0, separator));
+            int index = Integer.parseInt(message.substring(separator + 1));
+            assertEquals(lastTaken[producer] + 1, index);
+            lastTaken[producer] = index;
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(tested.isEmpty());
+    }
+}
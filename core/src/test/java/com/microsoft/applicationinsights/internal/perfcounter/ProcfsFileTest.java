@@ -0,0 +1,98 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public final class ProcfsFileTest {
+    @Test
+    public void testNextLong() {
+        ProcfsFile file = new ProcfsFile("test");
+        file.setContent("key: 12 kB 34\nnext 56\n".getBytes());
+
+        assertTrue(file.lineStartsWith(ProcfsFile.key("key:")));
+        assertEquals(12, file.nextLong());
+        assertEquals(34, file.nextLong());
+        assertEquals(-1, file.nextLong());
+
+        assertTrue(file.nextLine());
+        assertEquals(56, file.nextLong());
+        assertFalse(file.nextLine());
+    }
+
+    @Test
+    public void testNonNumericValue() {
+        ProcfsFile file = new ProcfsFile("memory.max");
+        file.setContent("max\n".getBytes());
+
+        assertEquals(-1, file.nextLong());
+    }
+
+    @Test
+    public void testReadKeyedValuesWithMissingKey() {
+        ProcfsFile file = new ProcfsFile("test");
+        file.setContent("a 1\nb 2\nc 3\n".getBytes());
+
+        long[] values = new long[3];
+        assertEquals(2, file.readKeyedValues(new byte[][] {ProcfsFile.key("a"), ProcfsFile.key("x"), ProcfsFile.key("c")}, values));
+        assertArrayEquals(new long[] {1, -1, 3}, values);
+    }
+
+    @Test
+    public void testRefreshRereadsTheFile() throws Exception {
+        File temp = File.createTempFile("procfs", ".txt");
+        try {
+            write(temp, "value 1\n");
+            ProcfsFile file = new ProcfsFile(temp);
+            file.refresh();
+            assertEquals(1, file.nextLong());
+
+            StringBuilder large = new StringBuilder();
+            for (int i = 0; i < 2000; ++i) {
+                large.append("line ").append(i).append('\n');
+            }
+            large.append("value 2\n");
+            write(temp, large.toString());
+
+            file.refresh();
+            assertTrue(file.seekLine(ProcfsFile.key("value")));
+            assertEquals(2, file.nextLong());
+            file.close();
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static void write(File file, String content) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes());
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -25,36 +25,34 @@ import org.junit.Test;
 
 import static org.junit.Assert.*;
 
-public final class UnixProcessIOtParserTest {
+public final class UnixProcessIOPerformanceCounterTest {
     @Test
     public void testProcess() {
-        UnixProcessIOtParser parser = new UnixProcessIOtParser();
-
-        parser.process("rchar: 1661777");
-        assertFalse(parser.done());
-
-        parser.process("wchar: 7431");
-        assertFalse(parser.done());
-
-        parser.process("syscr: 1240");
-        assertFalse(parser.done());
-
-        parser.process("syscw: 123");
-        assertFalse(parser.done());
-
-        parser.process("read_bytes: 7335936");
-        assertFalse(parser.done());
-
-        parser.process("write_bytes: 12288");
-        assertTrue(parser.done());
-        assertEquals(7335936 + 12288, parser.getValue(), 0.0);
+        ProcfsFile processIO = new ProcfsFile("io");
+        processIO.setContent((
+                "rchar: 1661777\n" +
+                "wchar: 7431\n" +
+                "syscr: 1240\n" +
+                "syscw: 123\n" +
+                "read_bytes: 7335936\n" +
+                "write_bytes: 12288\n" +
+                "cancelled_write_bytes: 0\n" +
+                "write_bytes: 12288\n").getBytes());
+
+        long[] values = new long[2];
+        assertEquals(7335936 + 12288, UnixProcessIOPerformanceCounter.getProcessIO(processIO, values), 0.0);
+
+        processIO.rewind();
+        assertEquals(7335936 + 12288, UnixProcessIOPerformanceCounter.getProcessIO(processIO, values), 0.0);
+    }
 
-        parser.process("cancelled_write_bytes: 0");
-        assertTrue(parser.done());
-        assertEquals(7335936 + 12288, parser.getValue(), 0.0);
+    @Test
+    public void testProcessWithMissingValue() {
+        ProcfsFile processIO = new ProcfsFile("io");
+        processIO.setContent((
+                "rchar: 1661777\n" +
+                "read_bytes: 7335936\n").getBytes());
 
-        parser.process("write_bytes: 12288");
-        assertTrue(parser.done());
-        assertEquals(7335936 + 12288, parser.getValue(), 0.0);
+        assertEquals(-1, UnixProcessIOPerformanceCounter.getProcessIO(processIO, new long[2]), 0.0);
     }
-}
+}
\ No newline at end of file
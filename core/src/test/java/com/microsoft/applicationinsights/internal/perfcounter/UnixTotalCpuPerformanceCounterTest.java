@@ -0,0 +1,81 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public final class UnixTotalCpuPerformanceCounterTest {
+    private final static String STAT =
+            "cpu  100 10 50 800 40 0 0 0 0 0\n" +
+            "cpu0 60 5 20 400 15 0 0 0 0 0\n" +
+            "cpu1 40 5 30 400 25 0 0 0 0 0\n" +
+            "intr 123456 0 0\n" +
+            "ctxt 987654\n" +
+            "btime 1546300800\n";
+
+    @Test
+    public void testReadCpuTicks() {
+        ProcfsFile stat = new ProcfsFile("stat");
+        stat.setContent(STAT.getBytes());
+
+        long[] totals = new long[3];
+        long[] idles = new long[3];
+        int[] coreIds = new int[3];
+        assertEquals(3, UnixTotalCpuPerformanceCounter.readCpuTicks(stat, totals, idles, coreIds));
+
+        assertArrayEquals(new long[] {1000, 500, 500}, totals);
+        assertArrayEquals(new long[] {800, 400, 400}, idles);
+        assertArrayEquals(new int[] {-1, 0, 1}, coreIds);
+
+        assertTrue(stat.seekLine(ProcfsFile.key("ctxt")));
+        assertEquals(987654, stat.nextLong());
+    }
+
+    @Test
+    public void testReadCpuTicksCountsLinesBeyondArrays() {
+        ProcfsFile stat = new ProcfsFile("stat");
+        stat.setContent(STAT.getBytes());
+
+        long[] totals = new long[1];
+        long[] idles = new long[1];
+        assertEquals(3, UnixTotalCpuPerformanceCounter.readCpuTicks(stat, totals, idles, new int[1]));
+        assertEquals(1000, totals[0]);
+        assertEquals(800, idles[0]);
+    }
+
+    @Test
+    public void testCoreIdsComeFromTheLabels() {
+        // Cores 1 and 2 are offline
+        ProcfsFile stat = new ProcfsFile("stat");
+        stat.setContent((
+                "cpu  100 10 50 800 40 0 0 0 0 0\n" +
+                "cpu0 60 5 20 400 15 0 0 0 0 0\n" +
+                "cpu3 40 5 30 400 25 0 0 0 0 0\n" +
+                "intr 123456 0 0\n").getBytes());
+
+        int[] coreIds = new int[3];
+        assertEquals(3, UnixTotalCpuPerformanceCounter.readCpuTicks(stat, new long[3], new long[3], coreIds));
+        assertArrayEquals(new int[] {-1, 0, 3}, coreIds);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public final class UnixTotalMemoryPerformanceCounterTest {
+    @Test
+    public void testProcess() {
+        ProcfsFile memInfo = new ProcfsFile("meminfo");
+        memInfo.setContent((
+                "MemTotal:        3973736 kB\n" +
+                "MemFree:          431064 kB\n" +
+                "Buffers:           46604 kB\n" +
+                "Cached:           494648 kB\n" +
+                "Cached:           494648 kB\n").getBytes());
+
+        long[] values = new long[3];
+        assertEquals(972316 * 1024.0, UnixTotalMemoryPerformanceCounter.getTotalAvailableMemory(memInfo, values), 0.0);
+
+        memInfo.rewind();
+        assertEquals(972316 * 1024.0, UnixTotalMemoryPerformanceCounter.getTotalAvailableMemory(memInfo, values), 0.0);
+    }
+
+    @Test
+    public void testProcessWithMissingValue() {
+        ProcfsFile memInfo = new ProcfsFile("meminfo");
+        memInfo.setContent((
+                "MemTotal:        3973736 kB\n" +
+                "MemFree:          431064 kB\n" +
+                "Buffers:           46604 kB\n").getBytes());
+
+        assertEquals(-1, UnixTotalMemoryPerformanceCounter.getTotalAvailableMemory(memInfo, new long[3]), 0.0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter.jvm;
+
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public final class GCNotificationPerformanceCounterTest {
+    private static final String YOUNG = "Test Eden Space";
+    private static final String OLD = "Test Old Gen";
+
+    @Test
+    public void testAllocationIsHeapGrowthBetweenCollections() {
+        GCNotificationPerformanceCounter counter = createCounter();
+
+        counter.onCollection("Young", "end of minor GC", "Allocation Failure", 0, 5, usage(100, 10), usage(0, 20));
+        assertEquals(0, counter.getAllocatedBytes());
+
+        // 20 bytes were left after the first collection, 180 were used before the second one
+        counter.onCollection("Young", "end of minor GC", "Allocation Failure", 10, 5, usage(150, 30), usage(0, 45));
+        assertEquals(160, counter.getAllocatedBytes());
+    }
+
+    @Test
+    public void testPromotionIsOldGenerationGrowthDuringCollections() {
+        GCNotificationPerformanceCounter counter = createCounter();
+
+        counter.onCollection("Young", "end of minor GC", "Allocation Failure", 0, 5, usage(100, 10), usage(0, 20));
+        counter.onCollection("Old", "end of major GC", "Allocation Failure", 10, 5, usage(0, 100), usage(0, 40));
+        counter.onCollection("Young", "end of minor GC", "Allocation Failure", 20, 5, usage(100, 40), usage(0, 45));
+
+        assertEquals(15, counter.getPromotedBytes());
+    }
+
+    @Test
+    public void testSlowPausesAreKeptAsEvents() {
+        GCNotificationPerformanceCounter counter = createCounter();
+
+        counter.onCollection("Young", "end of minor GC", "Allocation Failure", 0, 99, usage(100, 10), usage(0, 20));
+        counter.onCollection("Old", "end of major GC", "System.gc()", 10, 100, usage(0, 100), usage(0, 40));
+
+        EventTelemetry event = counter.getSlowPauses().poll();
+        assertEquals(GCNotificationPerformanceCounter.SLOW_PAUSE_EVENT_NAME, event.getName());
+        assertEquals("Old", event.getProperties().get("GcName"));
+        assertEquals("System.gc()", event.getProperties().get("GcCause"));
+        assertEquals(100.0, event.getMetrics().get("DurationMs"), 0);
+        assertEquals(100.0 / (1024 * 1024), event.getMetrics().get(OLD + " Before MB"), 1e-12);
+        assertNull(counter.getSlowPauses().poll());
+        assertEquals(2, counter.getPauses().drain().getCount());
+    }
+
+    @Test
+    public void testConcurrentCyclesAreNotPauses() {
+        GCNotificationPerformanceCounter counter = createCounter();
+
+        counter.onCollection("ZGC Cycles", "end of GC cycle", "Warmup", 0, 1000, usage(100, 0), usage(10, 0));
+
+        assertEquals(0, counter.getPauses().drain().getCount());
+        assertNull(counter.getSlowPauses().poll());
+    }
+
+    private static GCNotificationPerformanceCounter createCounter() {
+        GCNotificationPerformanceCounter counter = new GCNotificationPerformanceCounter(100);
+        counter.addHeapPoolName(YOUNG);
+        counter.addHeapPoolName(OLD);
+        return counter;
+    }
+
+    private static Map<String, MemoryUsage> usage(long young, long old) {
+        Map<String, MemoryUsage> usage = new HashMap<String, MemoryUsage>();
+        usage.put(YOUNG, new MemoryUsage(0, young, 1000, 1000));
+        usage.put(OLD, new MemoryUsage(0, old, 1000, 1000));
+        return usage;
+    }
+}
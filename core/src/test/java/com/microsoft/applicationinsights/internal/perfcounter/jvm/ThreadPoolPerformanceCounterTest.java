@@ -0,0 +1,120 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter.jvm;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public final class ThreadPoolPerformanceCounterTest {
+    private MBeanServer server;
+
+    @Before
+    public void setUp() {
+        server = MBeanServerFactory.newMBeanServer();
+    }
+
+    @Test
+    public void testJettyPoolIsSampled() throws Exception {
+        server.registerMBean(new QueuedThreadPool(), new ObjectName("org.eclipse.jetty.util.thread:type=queuedthreadpool,id=0"));
+
+        List<ThreadPoolPerformanceCounter.PoolSample> samples = new ThreadPoolPerformanceCounter(server).sampleContainerPools();
+
+        assertEquals(1, samples.size());
+        ThreadPoolPerformanceCounter.PoolSample sample = samples.get(0);
+        assertEquals("0", sample.name);
+        assertEquals("Jetty", sample.poolType);
+        assertEquals(7, sample.activeThreads);
+        assertEquals(10, sample.threads);
+        assertEquals(200, sample.maxThreads);
+        assertEquals(3, sample.queueDepth);
+    }
+
+    @Test
+    public void testNoContainerPools() {
+        assertEquals(0, new ThreadPoolPerformanceCounter(server).sampleContainerPools().size());
+    }
+
+    // Jetty names its attributes in camel case, which a standard MBean cannot do
+    private static final class QueuedThreadPool implements DynamicMBean {
+        private final Map<String, Integer> attributes = new HashMap<String, Integer>();
+
+        QueuedThreadPool() {
+            attributes.put("busyThreads", 7);
+            attributes.put("threads", 10);
+            attributes.put("maxThreads", 200);
+            attributes.put("queueSize", 3);
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            if (!attributes.containsKey(attribute)) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return attributes.get(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                if (attributes.containsKey(name)) {
+                    list.add(new Attribute(name, attributes.get(name)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList list) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return new MBeanInfo(QueuedThreadPool.class.getName(), null, null, null, null, null);
+        }
+    }
+}
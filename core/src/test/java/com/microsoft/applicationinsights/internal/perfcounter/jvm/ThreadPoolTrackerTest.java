@@ -0,0 +1,128 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.perfcounter.jvm;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.applicationinsights.internal.util.DurationHistogram;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class ThreadPoolTrackerTest {
+    private ThreadPoolExecutor executor;
+
+    @Before
+    public void setUp() {
+        ThreadPoolTracker.INSTANCE.clear();
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        ThreadPoolTracker.INSTANCE.clear();
+    }
+
+    @Test
+    public void testStartedTaskRecordsItsQueueWait() throws InterruptedException {
+        Runnable task = createTask();
+
+        ThreadPoolTracker.INSTANCE.onTaskSubmitted(executor, task);
+        assertEquals(1, ThreadPoolTracker.INSTANCE.getPendingTaskCount());
+        Thread.sleep(5);
+        ThreadPoolTracker.INSTANCE.onTaskStarted(executor, new Thread("pool-7-thread-2"), task);
+
+        assertEquals(0, ThreadPoolTracker.INSTANCE.getPendingTaskCount());
+        ThreadPoolTracker.ExecutorStats stats = ThreadPoolTracker.INSTANCE.getExecutors().get(executor);
+        assertEquals("pool-7-thread", stats.getName());
+        DurationHistogram.Snapshot snapshot = stats.drainQueueWaits();
+        assertEquals(1, snapshot.getCount());
+        assertTrue(snapshot.getSumInMS() >= 5);
+        assertTrue(snapshot.getMaxInMS() >= 5);
+    }
+
+    @Test
+    public void testTaskThatWasNotSubmittedIsIgnored() {
+        ThreadPoolTracker.INSTANCE.onTaskSubmitted(executor, createTask());
+        ThreadPoolTracker.INSTANCE.onTaskStarted(executor, new Thread("pool-7-thread-1"), createTask());
+
+        assertEquals(1, ThreadPoolTracker.INSTANCE.getPendingTaskCount());
+        ThreadPoolTracker.ExecutorStats stats = ThreadPoolTracker.INSTANCE.getExecutors().get(executor);
+        assertEquals(0, stats.drainQueueWaits().getCount());
+        assertTrue(stats.getName().startsWith("ThreadPoolExecutor@"));
+    }
+
+    @Test
+    public void testNumberOfExecutorsIsBounded() {
+        ThreadPoolExecutor[] others = new ThreadPoolExecutor[ThreadPoolTracker.MAX_EXECUTORS];
+        for (int i = 0; i < others.length; ++i) {
+            others[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+            ThreadPoolTracker.INSTANCE.onTaskSubmitted(others[i], createTask());
+        }
+        ThreadPoolTracker.INSTANCE.onTaskSubmitted(executor, createTask());
+
+        assertEquals(ThreadPoolTracker.MAX_EXECUTORS, ThreadPoolTracker.INSTANCE.getExecutors().size());
+        assertEquals(ThreadPoolTracker.MAX_EXECUTORS, ThreadPoolTracker.INSTANCE.getPendingTaskCount());
+        for (ThreadPoolExecutor other : others) {
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResubmittedTaskIsCountedOnce() {
+        Runnable task = createTask();
+
+        ThreadPoolTracker.INSTANCE.onTaskSubmitted(executor, task);
+        ThreadPoolTracker.INSTANCE.onTaskSubmitted(executor, task);
+        assertEquals(1, ThreadPoolTracker.INSTANCE.getPendingTaskCount());
+
+        ThreadPoolTracker.INSTANCE.onTaskStarted(executor, new Thread("pool-7-thread-1"), task);
+        ThreadPoolTracker.INSTANCE.onTaskStarted(executor, new Thread("pool-7-thread-1"), task);
+        assertEquals(0, ThreadPoolTracker.INSTANCE.getPendingTaskCount());
+
+        ThreadPoolTracker.INSTANCE.recountPendingTasks();
+        assertEquals(0, ThreadPoolTracker.INSTANCE.getPendingTaskCount());
+    }
+
+    @Test
+    public void testPoolNameDropsTheWorkerNumber() {
+        assertEquals("pool-1-thread", ThreadPoolTracker.getPoolName("pool-1-thread-3"));
+        assertEquals("http-nio-8080-exec", ThreadPoolTracker.getPoolName("http-nio-8080-exec-10"));
+        assertEquals("qtp12345", ThreadPoolTracker.getPoolName("qtp12345-17"));
+        assertEquals("worker", ThreadPoolTracker.getPoolName("worker"));
+        assertEquals("42", ThreadPoolTracker.getPoolName("42"));
+    }
+
+    private static Runnable createTask() {
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.pipeline;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ArrayList;
+
+import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
+import com.microsoft.applicationinsights.extensibility.TelemetryProcessor;
+import com.microsoft.applicationinsights.internal.channel.samplingV2.FixedRateSamplingTelemetryProcessor;
+import com.microsoft.applicationinsights.internal.processor.TraceTelemetryFilter;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class TelemetryPipelineTest {
+    private static final class RecordingInitializer implements TelemetryInitializer {
+        private final List<String> calls;
+
+        private RecordingInitializer(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public void initialize(Telemetry telemetry) {
+            calls.add("initializer");
+        }
+    }
+
+    private static final class FailingInitializer implements TelemetryInitializer {
+        @Override
+        public void initialize(Telemetry telemetry) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static final class DroppingProcessor implements TelemetryProcessor {
+        @Override
+        public boolean process(Telemetry telemetry) {
+            return false;
+        }
+    }
+
+    private static final class RecordingProcessor implements TelemetryProcessor {
+        private final List<String> calls;
+
+        private RecordingProcessor(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public boolean process(Telemetry telemetry) {
+            calls.add("processor");
+            return true;
+        }
+    }
+
+    @Test
+    public void testEmptyComponentsCompileToEmptyPipeline() {
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(Collections.<TelemetryInitializer>emptyList(), Collections.<TelemetryProcessor>emptyList());
+
+        assertSame(TelemetryPipeline.EMPTY, pipeline);
+        assertTrue(pipeline.process(new TraceTelemetry("trace")));
+    }
+
+    @Test
+    public void testFailingInitializerDoesNotStopTheOthers() {
+        List<String> calls = new ArrayList<String>();
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(
+                Arrays.<TelemetryInitializer>asList(new FailingInitializer(), new RecordingInitializer(calls)),
+                Collections.<TelemetryProcessor>emptyList());
+        long failures = getStatistics(FailingInitializer.class).getFailures();
+
+        pipeline.initialize(new TraceTelemetry("trace"));
+
+        assertEquals(Collections.singletonList("initializer"), calls);
+        assertEquals(failures + 1, getStatistics(FailingInitializer.class).getFailures());
+    }
+
+    @Test
+    public void testDroppedTelemetryIsNotPassedToLaterProcessors() {
+        List<String> calls = new ArrayList<String>();
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(
+                Collections.<TelemetryInitializer>emptyList(),
+                Arrays.asList(new DroppingProcessor(), new RecordingProcessor(calls)));
+        long dropped = getStatistics(DroppingProcessor.class).getDropped();
+        long totalDropped = PipelineStatistics.INSTANCE.getDroppedTelemetryCount();
+
+        assertFalse(pipeline.process(new TraceTelemetry("trace")));
+
+        assertTrue(calls.isEmpty());
+        assertEquals(dropped + 1, getStatistics(DroppingProcessor.class).getDropped());
+        assertEquals(totalDropped + 1, PipelineStatistics.INSTANCE.getDroppedTelemetryCount());
+    }
+
+    @Test
+    public void testSamplingProcessorIsSkippedForExcludedTypes() {
+        FixedRateSamplingTelemetryProcessor sampler = new FixedRateSamplingTelemetryProcessor();
+        sampler.setSamplingPercentage("0");
+        sampler.addToExcludedType("Request");
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(
+                Collections.<TelemetryInitializer>emptyList(),
+                Collections.<TelemetryProcessor>singletonList(sampler));
+        long skipped = getStatistics(FixedRateSamplingTelemetryProcessor.class).getSkipped();
+
+        assertTrue(pipeline.process(new RequestTelemetry()));
+        assertFalse(pipeline.process(new TraceTelemetry("trace")));
+
+        assertEquals(skipped + 1, getStatistics(FixedRateSamplingTelemetryProcessor.class).getSkipped());
+    }
+
+    @Test
+    public void testTypesExcludedAfterCompilingAreNotSampled() {
+        FixedRateSamplingTelemetryProcessor sampler = new FixedRateSamplingTelemetryProcessor();
+        sampler.setSamplingPercentage("0");
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(
+                Collections.<TelemetryInitializer>emptyList(),
+                Collections.<TelemetryProcessor>singletonList(sampler));
+        assertFalse(pipeline.process(new TraceTelemetry("trace")));
+
+        sampler.addToExcludedType("Trace");
+
+        assertTrue(pipeline.process(new TraceTelemetry("trace")));
+    }
+
+    @Test
+    public void testTelemetryWithOperationIdIsSampledOutBeforeInitializers() {
+        List<String> calls = new ArrayList<String>();
+        FixedRateSamplingTelemetryProcessor sampler = new FixedRateSamplingTelemetryProcessor();
+        sampler.setSamplingPercentage("0");
+        sampler.setEarlySampling("true");
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(
+                Collections.<TelemetryInitializer>singletonList(new RecordingInitializer(calls)),
+                Collections.<TelemetryProcessor>singletonList(sampler));
+        long sampledOut = PipelineStatistics.INSTANCE.getSampledOutEarlyTelemetryCount();
+
+        TraceTelemetry telemetry = new TraceTelemetry("trace");
+        telemetry.getContext().getOperation().setId("operation");
+
+        assertTrue(pipeline.isSampledOut(telemetry));
+        assertEquals(sampledOut + 1, PipelineStatistics.INSTANCE.getSampledOutEarlyTelemetryCount());
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void testTelemetryWithoutOperationIdIsSampledByTheProcessor() {
+        FixedRateSamplingTelemetryProcessor sampler = new FixedRateSamplingTelemetryProcessor();
+        sampler.setSamplingPercentage("0");
+        sampler.setEarlySampling("true");
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(
+                Collections.<TelemetryInitializer>emptyList(),
+                Collections.<TelemetryProcessor>singletonList(sampler));
+
+        TraceTelemetry telemetry = new TraceTelemetry("trace");
+
+        assertFalse(pipeline.isSampledOut(telemetry));
+        assertFalse(pipeline.process(telemetry));
+    }
+
+    @Test
+    public void testKeptTelemetryIsStampedWithSamplingPercentage() {
+        FixedRateSamplingTelemetryProcessor sampler = new FixedRateSamplingTelemetryProcessor();
+        sampler.setSamplingPercentage("100");
+        sampler.setEarlySampling("true");
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(
+                Collections.<TelemetryInitializer>emptyList(),
+                Collections.<TelemetryProcessor>singletonList(sampler));
+
+        TraceTelemetry telemetry = new TraceTelemetry("trace");
+        telemetry.getContext().getOperation().setId("operation");
+
+        assertFalse(pipeline.isSampledOut(telemetry));
+        assertTrue(pipeline.process(telemetry));
+        assertEquals(100.0, telemetry.getSamplingPercentage(), 0.0);
+    }
+
+    @Test
+    public void testEarlySamplingIsOffByDefault() {
+        FixedRateSamplingTelemetryProcessor sampler = new FixedRateSamplingTelemetryProcessor();
+        sampler.setSamplingPercentage("0");
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(
+                Collections.<TelemetryInitializer>emptyList(),
+                Collections.<TelemetryProcessor>singletonList(sampler));
+
+        TraceTelemetry telemetry = new TraceTelemetry("trace");
+        telemetry.getContext().getOperation().setId("operation");
+
+        assertFalse(pipeline.isSampledOut(telemetry));
+        assertFalse(pipeline.process(telemetry));
+    }
+
+    @Test
+    public void testTypedProcessorIsCalledOnlyForItsType() {
+        TraceTelemetryFilter traceFilter = new TraceTelemetryFilter();
+        TelemetryPipeline pipeline = TelemetryPipeline.compile(
+                Collections.<TelemetryInitializer>emptyList(),
+                Collections.<TelemetryProcessor>singletonList(traceFilter));
+        long calls = getStatistics(TraceTelemetryFilter.class).getCalls();
+
+        assertTrue(pipeline.process(new RequestTelemetry()));
+        assertEquals(calls, getStatistics(TraceTelemetryFilter.class).getCalls());
+
+        assertFalse(pipeline.process(new TraceTelemetry("trace")));
+        assertEquals(calls + 1, getStatistics(TraceTelemetryFilter.class).getCalls());
+    }
+
+    private static StageStatistics getStatistics(Class<?> type) {
+        return PipelineStatistics.INSTANCE.getStatistics(type.getName());
+    }
+}
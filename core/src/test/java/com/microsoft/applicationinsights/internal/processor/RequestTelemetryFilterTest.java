@@ -92,4 +92,24 @@ public class RequestTelemetryFilterTest {
             }
         }
     }
+
+    @Test
+    public void testErrorCodesOutsideOfTheBitmap() throws Throwable {
+        RequestTelemetryFilter tested = new RequestTelemetryFilter();
+        tested.setNotNeededResponseCodes("590-610, 999, abc");
+
+        assertFalse(processResponseCode(tested, "595"));
+        assertFalse(processResponseCode(tested, "605"));
+        assertTrue(processResponseCode(tested, "611"));
+        assertFalse(processResponseCode(tested, "999"));
+        assertFalse(processResponseCode(tested, "abc"));
+        assertTrue(processResponseCode(tested, "xyz"));
+        assertFalse(processResponseCode(tested, "0595"));
+    }
+
+    private static boolean processResponseCode(RequestTelemetryFilter tested, String responseCode) {
+        RequestTelemetry rt = new RequestTelemetry();
+        rt.setResponseCode(responseCode);
+        return tested.process(rt);
+    }
 }
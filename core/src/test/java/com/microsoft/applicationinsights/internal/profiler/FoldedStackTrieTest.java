@@ -0,0 +1,106 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.profiler;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public final class FoldedStackTrieTest {
+    @Test
+    public void testStacksAreFoldedFromOperationToInnermostFrame() {
+        FoldedStackTrie trie = new FoldedStackTrie(100);
+        trie.add("GET /a", stack("C.inner", "B.middle", "A.outer"), null);
+        trie.add("GET /a", stack("C.inner", "B.middle", "A.outer"), null);
+        trie.add("GET /a", stack("B.middle", "A.outer"), "[BLOCKED]");
+        trie.add("GET /b", stack("A.outer"), null);
+
+        List<String> lines = trie.toFoldedLines();
+
+        assertEquals(Arrays.asList(
+                "GET /a;A.outer;B.middle;C.inner 2",
+                "GET /a;A.outer;B.middle;[BLOCKED] 1",
+                "GET /b;A.outer 1"), lines);
+        assertEquals(4, trie.getSampleCount());
+        assertEquals(0, trie.getTruncatedSampleCount());
+    }
+
+    @Test
+    public void testLinesOfTheSameMethodShareANode() {
+        FoldedStackTrie trie = new FoldedStackTrie(100);
+        trie.add("op", new StackTraceElement[] {new StackTraceElement("A", "run", "A.java", 10)}, null);
+        trie.add("op", new StackTraceElement[] {new StackTraceElement("A", "run", "A.java", 20)}, null);
+
+        assertEquals(Arrays.asList("op;A.run 2"), trie.toFoldedLines());
+        assertEquals(2, trie.getNodeCount());
+    }
+
+    @Test
+    public void testSamplesBeyondTheNodeLimitAreCountedAtTheDeepestNode() {
+        FoldedStackTrie trie = new FoldedStackTrie(3);
+        trie.add("op", stack("B.b", "A.a"), null);
+        trie.add("op", stack("C.c", "A.a"), null);
+        trie.add("other", stack("A.a"), null);
+
+        assertEquals(new HashSet<String>(Arrays.asList("op;A.a;B.b 1", "op;A.a 1", "[truncated] 1")),
+                new HashSet<String>(trie.toFoldedLines()));
+        assertEquals(3, trie.getNodeCount());
+        assertEquals(2, trie.getTruncatedSampleCount());
+    }
+
+    @Test
+    public void testOperationNamesCannotBreakTheFormat() {
+        FoldedStackTrie trie = new FoldedStackTrie(100);
+        trie.add("GET /a;b\nc", stack("A.a"), null);
+
+        assertEquals(Arrays.asList("GET /a:b c;A.a 1"), trie.toFoldedLines());
+    }
+
+    @Test
+    public void testOperationSampleCountsAreSortedByCount() {
+        FoldedStackTrie trie = new FoldedStackTrie(100);
+        trie.add("rare", stack("A.a"), null);
+        trie.add("hot", stack("A.a"), null);
+        trie.add("hot", stack("B.b"), null);
+
+        Iterator<Map.Entry<String, Long>> counts = trie.getOperationSampleCounts().entrySet().iterator();
+        Map.Entry<String, Long> first = counts.next();
+        assertEquals("hot", first.getKey());
+        assertEquals(2L, (long) first.getValue());
+        assertEquals("rare", counts.next().getKey());
+    }
+
+    private static StackTraceElement[] stack(String... frames) {
+        StackTraceElement[] stack = new StackTraceElement[frames.length];
+        for (int i = 0; i < frames.length; ++i) {
+            int dot = frames[i].lastIndexOf('.');
+            stack[i] = new StackTraceElement(frames[i].substring(0, dot), frames[i].substring(dot + 1), null, -1);
+        }
+        return stack;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.profiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import com.microsoft.applicationinsights.internal.util.Sanitizer;
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class StackSamplingTelemetryModuleTest {
+    @Test
+    public void testSamplingRateIsKeptInRange() {
+        StackSamplingTelemetryModule module = new StackSamplingTelemetryModule();
+
+        module.setSamplingRateInHz(1000);
+        assertEquals(StackSamplingTelemetryModule.MAX_SAMPLING_RATE_IN_HZ, module.getSamplingRateInHz());
+        module.setSamplingRateInHz(0);
+        assertEquals(StackSamplingTelemetryModule.MIN_SAMPLING_RATE_IN_HZ, module.getSamplingRateInHz());
+    }
+
+    @Test
+    public void testSamplingSlowsDownWhileItIsExpensiveAndRecoversAfterwards() {
+        StackSamplingTelemetryModule module = new StackSamplingTelemetryModule();
+        module.setSamplingRateInHz(20);
+        long period = TimeUnit.MILLISECONDS.toNanos(50);
+
+        // 2ms is 4% of a 50ms period
+        long slow = TimeUnit.MILLISECONDS.toNanos(2);
+        assertEquals(2 * period - slow, module.getNextSamplingDelay(slow));
+        assertEquals(4 * period - slow, module.getNextSamplingDelay(slow));
+        assertEquals(4 * period - slow, module.getNextSamplingDelay(slow));
+
+        long fast = TimeUnit.MICROSECONDS.toNanos(10);
+        assertEquals(2 * period - fast, module.getNextSamplingDelay(fast));
+        assertEquals(period - fast, module.getNextSamplingDelay(fast));
+        assertEquals(period - fast, module.getNextSamplingDelay(fast));
+    }
+
+    @Test
+    public void testFoldedStacksAreSentCompressed() throws IOException {
+        FoldedStackTrie trie = new FoldedStackTrie(100);
+        trie.add("GET /a", new StackTraceElement[] {new StackTraceElement("A", "a", null, -1)}, null);
+        trie.add("GET /a", new StackTraceElement[] {new StackTraceElement("A", "a", null, -1)}, null);
+
+        EventTelemetry telemetry = new StackSamplingTelemetryModule().createTelemetry(trie, 0);
+
+        assertEquals(StackSamplingTelemetryModule.EVENT_NAME, telemetry.getName());
+        assertEquals(Arrays.asList("GET /a;A.a 2"), decode(telemetry.getProperties().get(StackSamplingTelemetryModule.FOLDED_STACKS_PROPERTY)));
+        assertEquals("GET /a 2", telemetry.getProperties().get(StackSamplingTelemetryModule.HOT_OPERATIONS_PROPERTY));
+        assertEquals(2.0, telemetry.getMetrics().get(StackSamplingTelemetryModule.SAMPLE_COUNT_METRIC), 0);
+        assertEquals(0.0, telemetry.getMetrics().get(StackSamplingTelemetryModule.OMITTED_SAMPLE_COUNT_METRIC), 0);
+    }
+
+    @Test
+    public void testLeastSampledStacksAreLeftOutWhenTooLarge() throws IOException {
+        FoldedStackTrie trie = new FoldedStackTrie(100000);
+        for (int i = 0; i < 5000; ++i) {
+            StackTraceElement frame = new StackTraceElement("Class" + i + "x" + Integer.toHexString(i * 7919), "m" + i, null, -1);
+            trie.add("op", new StackTraceElement[] {frame}, null);
+            if (i < 10) {
+                trie.add("op", new StackTraceElement[] {frame}, null);
+            }
+        }
+
+        EventTelemetry telemetry = new StackSamplingTelemetryModule().createTelemetry(trie, 0);
+
+        String encoded = telemetry.getProperties().get(StackSamplingTelemetryModule.FOLDED_STACKS_PROPERTY);
+        assertTrue(encoded.length() <= Sanitizer.MAX_VALUE_LENGTH);
+        List<String> lines = decode(encoded);
+        assertTrue(lines.size() < 5000);
+        assertTrue(lines.get(0).endsWith(" 2"));
+        long sentSamples = 0;
+        for (String line : lines) {
+            sentSamples += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+        }
+        assertEquals(5010.0 - sentSamples, telemetry.getMetrics().get(StackSamplingTelemetryModule.OMITTED_SAMPLE_COUNT_METRIC), 0);
+    }
+
+    private static List<String> decode(String encoded) throws IOException {
+        GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(Base64.decodeBase64(encoded)));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = gzip.read(buffer)) > 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return Arrays.asList(new String(bytes.toByteArray(), "UTF-8").split("\n"));
+    }
+}
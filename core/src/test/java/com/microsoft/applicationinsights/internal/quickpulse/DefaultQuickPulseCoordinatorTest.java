@@ -47,15 +47,11 @@ public class DefaultQuickPulseCoordinatorTest {
                 .build();
 
         final DefaultQuickPulseCoordinator coordinator = new DefaultQuickPulseCoordinator(initData);
-        Thread thread = new Thread(coordinator);
-        thread.setDaemon(true);
-        thread.start();
-
-        Thread.sleep(1000);
+        for (int i = 0; i < 10; ++i) {
+            coordinator.runOnce();
+        }
         coordinator.stop();
 
-        thread.join();
-
         Mockito.verify(mockFetcher, Mockito.never()).prepareQuickPulseDataForSend();
 
         Mockito.verify(mockSender, Mockito.never()).startSending();
@@ -83,15 +79,11 @@ public class DefaultQuickPulseCoordinatorTest {
                 .build();
 
         final DefaultQuickPulseCoordinator coordinator = new DefaultQuickPulseCoordinator(initData);
-        Thread thread = new Thread(coordinator);
-        thread.setDaemon(true);
-        thread.start();
-
-        Thread.sleep(1000);
+        for (int i = 0; i < 10; ++i) {
+            coordinator.runOnce();
+        }
         coordinator.stop();
 
-        thread.join();
-
         Mockito.verify(mockFetcher, Mockito.atLeast(1)).prepareQuickPulseDataForSend();
 
         Mockito.verify(mockSender, Mockito.times(1)).startSending();
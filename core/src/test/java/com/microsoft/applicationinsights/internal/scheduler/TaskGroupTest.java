@@ -0,0 +1,135 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class TaskGroupTest {
+    @Test
+    public void testExecuteRunsTask() throws InterruptedException {
+        TaskGroup tasks = SdkScheduler.INSTANCE.createTaskGroup("testExecuteRunsTask");
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        assertTrue(tasks.execute("task", new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        tasks.stop(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPeriodicTaskRunsUntilStopped() throws InterruptedException {
+        TaskGroup tasks = SdkScheduler.INSTANCE.createTaskGroup("testPeriodicTaskRunsUntilStopped");
+        final AtomicInteger counter = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        tasks.scheduleAtFixedRate("task", new Runnable() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+                latch.countDown();
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        tasks.stop(1, TimeUnit.SECONDS);
+        int countAfterStop = counter.get();
+        Thread.sleep(100);
+
+        assertEquals(countAfterStop, counter.get());
+        assertTrue(tasks.isStopped());
+    }
+
+    @Test
+    public void testStoppedGroupRejectsTasks() {
+        TaskGroup tasks = SdkScheduler.INSTANCE.createTaskGroup("testStoppedGroupRejectsTasks");
+        tasks.stop(1, TimeUnit.SECONDS);
+
+        assertFalse(tasks.execute("task", new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+    }
+
+    @Test
+    public void testDelayedTaskRunsOnStopWhenRequested() {
+        TaskGroup tasks = SdkScheduler.INSTANCE.createIoTaskGroup("testDelayedTaskRunsOnStopWhenRequested", true);
+        final AtomicInteger counter = new AtomicInteger();
+
+        tasks.schedule("task", new Runnable() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        }, 1, TimeUnit.HOURS);
+        tasks.stop(5, TimeUnit.SECONDS);
+
+        assertEquals(1, counter.get());
+    }
+
+    @Test
+    public void testDelayedTaskIsCancelledOnStop() throws InterruptedException {
+        TaskGroup tasks = SdkScheduler.INSTANCE.createTaskGroup("testDelayedTaskIsCancelledOnStop");
+        final AtomicInteger counter = new AtomicInteger();
+
+        tasks.schedule("task", new Runnable() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        tasks.stop(1, TimeUnit.SECONDS);
+        Thread.sleep(100);
+
+        assertEquals(0, counter.get());
+    }
+
+    @Test
+    public void testStatisticsAreRecorded() throws InterruptedException {
+        TaskGroup tasks = SdkScheduler.INSTANCE.createTaskGroup("testStatisticsAreRecorded");
+
+        tasks.execute("failing", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected");
+            }
+        });
+        tasks.stop(5, TimeUnit.SECONDS);
+
+        TaskStatistics statistics = SdkScheduler.INSTANCE.getOrCreateStatistics("testStatisticsAreRecorded/failing");
+        assertEquals(1, statistics.getRuns());
+        assertEquals(1, statistics.getFailures());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.internal.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public final class DurationHistogramTest {
+    private static final long MICROS = 1000L;
+    private static final long MS = 1000000L;
+
+    @Test
+    public void testPercentilesAreBucketBounds() {
+        DurationHistogram histogram = new DurationHistogram();
+        for (int i = 0; i < 98; ++i) {
+            histogram.record(3 * MS);
+        }
+        histogram.record(150 * MS);
+        histogram.record(700 * MS);
+
+        DurationHistogram.Snapshot snapshot = histogram.drain();
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(98 * 3 + 150 + 700, snapshot.getSumInMS(), 0.001);
+        assertEquals(700.0, snapshot.getMaxInMS(), 0.001);
+        assertEquals(5.0, snapshot.getPercentileInMS(50), 0.001);
+        assertEquals(200.0, snapshot.getPercentileInMS(99), 0.001);
+        assertEquals(700.0, snapshot.getPercentileInMS(100), 0.001);
+        assertEquals(0, histogram.drain().getCount());
+    }
+
+    @Test
+    public void testDurationsBelowOneMillisecondAreToldApart() {
+        DurationHistogram histogram = new DurationHistogram();
+        for (int i = 0; i < 90; ++i) {
+            histogram.record(30 * MICROS);
+        }
+        for (int i = 0; i < 10; ++i) {
+            histogram.record(400 * MICROS);
+        }
+
+        DurationHistogram.Snapshot snapshot = histogram.drain();
+
+        assertEquals(0.05, snapshot.getPercentileInMS(50), 0.0001);
+        assertEquals(0.4, snapshot.getPercentileInMS(95), 0.0001);
+        assertEquals(0.4, snapshot.getMaxInMS(), 0.0001);
+        assertEquals(90 * 0.03 + 10 * 0.4, snapshot.getSumInMS(), 0.0001);
+    }
+}
@@ -22,9 +22,14 @@
 package com.microsoft.applicationinsights.telemetry;
 
 import java.io.IOException;
+import java.util.List;
+
+import com.microsoft.applicationinsights.internal.schemav2.ExceptionDetails;
+import com.microsoft.applicationinsights.internal.schemav2.StackFrame;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -96,6 +101,52 @@ public final class ExceptionTelemetryTest {
         assertSame(error, telemetry.getThrowable());
     }
 
+    @Test
+    public void testLongStackKeepsHeadAndTailFrames() {
+        Exception exception = new Exception("mock");
+        StackTraceElement[] trace = new StackTraceElement[10];
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = new StackTraceElement("com.mock.Class" + i, "method", "Class" + i + ".java", i);
+        }
+        exception.setStackTrace(trace);
+
+        ExceptionTelemetry.setMaxStackFrames(4);
+        try {
+            ExceptionTelemetry telemetry = new ExceptionTelemetry(exception);
+
+            ExceptionDetails details = telemetry.getExceptions().get(0);
+            assertFalse(details.getHasFullStack());
+            List<StackFrame> stack = details.getParsedStack();
+            assertEquals(4, stack.size());
+            assertEquals(0, stack.get(0).getLevel());
+            assertEquals(1, stack.get(1).getLevel());
+            assertEquals(8, stack.get(2).getLevel());
+            assertEquals("com.mock.Class9.method", stack.get(3).getMethod());
+        } finally {
+            ExceptionTelemetry.setMaxStackFrames(256);
+        }
+    }
+
+    @Test
+    public void testShortStackIsFull() {
+        ExceptionTelemetry telemetry = new ExceptionTelemetry(new IOException("mock"));
+
+        ExceptionDetails details = telemetry.getExceptions().get(0);
+        assertTrue(details.getHasFullStack());
+        assertFalse(details.getParsedStack().isEmpty());
+    }
+
+    @Test
+    public void testSetExceptionReplacesConvertedExceptions() {
+        ExceptionTelemetry telemetry = new ExceptionTelemetry(new IOException("mocka"));
+        assertEquals(1, telemetry.getExceptions().size());
+
+        telemetry.setException(new IOException("mockb", new IllegalArgumentException("mockc")));
+
+        assertEquals(2, telemetry.getExceptions().size());
+        assertEquals("mockb", telemetry.getExceptions().get(0).getMessage());
+    }
+
     private static void testSeverityLevel(SeverityLevel severityLevel) {
         ExceptionTelemetry telemetry = new ExceptionTelemetry(new IllegalArgumentException("mockb"));
 
@@ -24,6 +24,11 @@ package com.microsoft.applicationinsights.telemetry;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Date;
+
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -72,4 +77,71 @@ public final class TelemetryContextTest {
 
         Assert.assertEquals(TEST_IKEY, contextToInitialize.getInstrumentationKey());
     }
+
+    @Test
+    public void testInitializedContextExposesSourceTagsAndProperties() {
+        TelemetryContext source = new TelemetryContext();
+        source.getTags().put("tag", "sourceTag");
+        source.getProperties().put("property", "sourceProperty");
+
+        TelemetryContext context = new TelemetryContext();
+        context.initialize(source);
+
+        assertEquals("sourceTag", context.getTags().get("tag"));
+        assertEquals("sourceProperty", context.getProperties().get("property"));
+        assertEquals(1, context.getTags().size());
+        assertEquals(1, context.getProperties().size());
+    }
+
+    @Test
+    public void testExistingValuesAreNotOverridenWhenContextInitialized() {
+        TelemetryContext source = new TelemetryContext();
+        source.getTags().put("tag", "sourceTag");
+
+        TelemetryContext context = new TelemetryContext();
+        context.getTags().put("tag", "itemTag");
+        context.initialize(source);
+
+        assertEquals("itemTag", context.getTags().get("tag"));
+        assertEquals(1, context.getTags().size());
+    }
+
+    @Test
+    public void testChangesToInitializedContextDoNotAffectSource() {
+        TelemetryContext source = new TelemetryContext();
+        source.getTags().put("tag", "sourceTag");
+        source.getTags().put("other", "otherTag");
+
+        TelemetryContext context = new TelemetryContext();
+        context.initialize(source);
+        context.getTags().put("tag", "itemTag");
+        context.getTags().remove("other");
+
+        assertEquals("itemTag", context.getTags().get("tag"));
+        assertFalse(context.getTags().containsKey("other"));
+        assertEquals(1, context.getTags().size());
+        assertEquals("sourceTag", source.getTags().get("tag"));
+        assertEquals("otherTag", source.getTags().get("other"));
+    }
+
+    @Test
+    public void testSourcePropertiesAreSerialized() throws IOException {
+        TelemetryContext source = new TelemetryContext();
+        source.setInstrumentationKey(TEST_IKEY);
+        source.getTags().put("tag", "sourceTag");
+        source.getProperties().put("property", "sourceProperty");
+
+        EventTelemetry telemetry = new EventTelemetry("event");
+        telemetry.setTimestamp(new Date());
+        telemetry.getContext().initialize(source);
+
+        StringWriter writer = new StringWriter();
+        JsonTelemetryDataSerializer serializer = new JsonTelemetryDataSerializer(writer);
+        telemetry.serialize(serializer);
+        serializer.close();
+
+        String json = writer.toString();
+        assertTrue(json.contains("\"tag\":\"sourceTag\""));
+        assertTrue(json.contains("\"property\":\"sourceProperty\""));
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.io.IOUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Measures the cost of recomputing the frames of the classes the agent instruments, with and without the
+ * {@link ClassHierarchyCache}.
+ *
+ * Each class of the JDK under a package prefix is read and written back with {@link CustomClassWriter} and
+ * {@link ClassWriter#COMPUTE_FRAMES}, which is what the agent does with every class it instruments. Each round
+ * starts with an empty cache, as an application does when it starts.
+ *
+ * The class lives in the agent package to use its package private cache.
+ * Settings are system properties: bench.class.prefix (java/util/), bench.max.classes (2000), bench.rounds (5) and
+ * bench.cache.sizes (0,2048), where a size of 0 reads the class file of a type on every look up.
+ */
+public final class ClassHierarchyBenchmark {
+    private final static double NANOS_IN_MILLI = 1000000.0;
+
+    public static void main(String[] args) throws Exception {
+        String prefix = System.getProperty("bench.class.prefix", "java/util/");
+        int maxClasses = Integer.getInteger("bench.max.classes", 2000);
+        int rounds = Integer.getInteger("bench.rounds", 5);
+        String[] cacheSizes = System.getProperty("bench.cache.sizes", "0,2048").split(",");
+
+        List<byte[]> classFiles = readJdkClassFiles(prefix, maxClasses);
+        System.out.printf("%d class files under '%s'%n", classFiles.size(), prefix);
+        System.out.printf("%-10s %10s %10s %12s %12s %9s%n", "cache", "firstMs", "bestMs", "classReads", "cacheHits", "failures");
+
+        for (String cacheSize : cacheSizes) {
+            int maxTypes = Integer.parseInt(cacheSize.trim());
+            double firstMillis = 0;
+            double bestMillis = Double.MAX_VALUE;
+            long reads = 0;
+            long hits = 0;
+            int failures = 0;
+            for (int round = 0; round < rounds; ++round) {
+                ClassHierarchyCache cache = new ClassHierarchyCache(maxTypes);
+                failures = 0;
+                long start = System.nanoTime();
+                for (byte[] classFile : classFiles) {
+                    if (!recomputeFrames(classFile, cache)) {
+                        ++failures;
+                    }
+                }
+                double millis = (System.nanoTime() - start) / NANOS_IN_MILLI;
+                if (round == 0) {
+                    firstMillis = millis;
+                }
+                bestMillis = Math.min(bestMillis, millis);
+                reads = cache.getMisses();
+                hits = cache.getHits();
+            }
+            System.out.printf("%-10s %10.1f %10.1f %12d %12d %9d%n", maxTypes == 0 ? "none" : String.valueOf(maxTypes),
+                    firstMillis, bestMillis, reads, hits, failures);
+        }
+    }
+
+    private static boolean recomputeFrames(byte[] classFile, ClassHierarchyCache cache) {
+        try {
+            ClassReader reader = new ClassReader(classFile);
+            ClassWriter writer = new CustomClassWriter(ClassWriter.COMPUTE_FRAMES, ClassLoader.getSystemClassLoader(), cache);
+            reader.accept(writer, ClassReader.SKIP_FRAMES);
+            return writer.toByteArray().length > 0;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static List<byte[]> readJdkClassFiles(final String prefix, final int maxClasses) throws IOException {
+        final List<byte[]> classFiles = new ArrayList<byte[]>();
+        URL stringClass = ClassLoader.getSystemResource("java/lang/String.class");
+        if ("jar".equals(stringClass.getProtocol())) {
+            // Java 8 and earlier, the classes are in rt.jar
+            JarFile jar = ((JarURLConnection) stringClass.openConnection()).getJarFile();
+            List<JarEntry> entries = Collections.list(jar.entries());
+            for (JarEntry entry : entries) {
+                if (classFiles.size() == maxClasses) {
+                    break;
+                }
+                if (entry.getName().startsWith(prefix) && entry.getName().endsWith(".class")) {
+                    InputStream is = jar.getInputStream(entry);
+                    try {
+                        classFiles.add(IOUtils.toByteArray(is));
+                    } finally {
+                        is.close();
+                    }
+                }
+            }
+        } else {
+            // Java 9 and later, the classes are in the run time image
+            FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            Files.walkFileTree(jrt.getPath("/modules/java.base/" + prefix), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    if (file.toString().endsWith(".class")) {
+                        classFiles.add(Files.readAllBytes(file));
+                    }
+                    return classFiles.size() == maxClasses ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return classFiles;
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.channel.concrete.localforwarder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.microsoft.applicationinsights.internal.channel.common.GzipTelemetrySerializer;
+import com.microsoft.applicationinsights.internal.channel.common.Transmission;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionFileFormat;
+import com.microsoft.localforwarder.library.inputs.contracts.Telemetry;
+import com.microsoft.localforwarder.library.inputs.contracts.TelemetryBatch;
+import com.microsoft.applicationinsights.telemetry.BaseTelemetry;
+import com.microsoft.applicationinsights.telemetry.Duration;
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
+import com.microsoft.applicationinsights.telemetry.JsonTelemetryDataSerializer;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import com.microsoft.applicationinsights.telemetry.RemoteDependencyTelemetry;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+
+/**
+ * Compares the size and CPU cost of the encodings a batch of telemetry can be persisted with:
+ * <ul>
+ *     <li>gzipped JSON in a Java serialized {@link Transmission}, the files of earlier versions of the SDK</li>
+ *     <li>gzipped JSON transcoded to a gzipped protobuf batch in a {@link TransmissionFileFormat} file, the files of the in-process channel</li>
+ *     <li>a protobuf {@link TelemetryBatch} in a {@link TransmissionFileFormat} file, the files of the LocalForwarder channel</li>
+ *     <li>the same protobuf batch, gzipped</li>
+ * </ul>
+ *
+ * Encoding starts from the telemetry objects and includes the JSON serialization or the protobuf transformation.
+ * Decoding reads the file back into the form it is sent in: the gzipped JSON lines for the ingestion endpoint, which
+ * includes transcoding the batch back to JSON, or the batch for the LocalForwarder.
+ *
+ * The class lives in the LocalForwarder package to use its package private model transformer.
+ * Settings are system properties: bench.batch.size (500), bench.warmup.iterations (200) and bench.iterations (1000).
+ */
+public final class EncodingBenchmark {
+    private final static String TEST_IKEY = "00000000-0000-0000-0000-000000000000";
+    private final static double NANOS_IN_MICRO = 1000.0;
+
+    private interface Encoding {
+        String getName();
+
+        byte[] encode(List<BaseTelemetry<?>> telemetries) throws IOException;
+
+        // Returns something derived from the decoded content, so that the decoding is not optimized away
+        int decode(byte[] encoded) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int batchSize = Integer.getInteger("bench.batch.size", 500);
+        int warmupIterations = Integer.getInteger("bench.warmup.iterations", 200);
+        int iterations = Integer.getInteger("bench.iterations", 1000);
+
+        List<BaseTelemetry<?>> telemetries = createTelemetries(batchSize);
+        List<Encoding> encodings = new ArrayList<Encoding>();
+        encodings.add(new SerializedJsonEncoding());
+        encodings.add(new TranscodedJsonEncoding());
+        encodings.add(new ProtobufEncoding(false));
+        encodings.add(new ProtobufEncoding(true));
+
+        System.out.println(String.format("   EncodingBenchmark: %d items per batch, %d iterations", batchSize, iterations));
+        System.out.println(String.format("%-28s %14s %14s %18s %18s", "Encoding", "Bytes", "Bytes/item", "Encode us/batch", "Decode us/batch"));
+        for (Encoding encoding : encodings) {
+            run(encoding, telemetries, warmupIterations);
+            Result result = run(encoding, telemetries, iterations);
+            System.out.println(String.format("%-28s %14d %14.1f %18.1f %18.1f",
+                    encoding.getName(),
+                    result.sizeInBytes,
+                    (double) result.sizeInBytes / batchSize,
+                    result.encodeNanos / NANOS_IN_MICRO / iterations,
+                    result.decodeNanos / NANOS_IN_MICRO / iterations));
+        }
+    }
+
+    private static Result run(Encoding encoding, List<BaseTelemetry<?>> telemetries, int iterations) throws IOException {
+        Result result = new Result();
+        int blackHole = 0;
+        for (int i = 0; i < iterations; ++i) {
+            long start = System.nanoTime();
+            byte[] encoded = encoding.encode(telemetries);
+            long encodedAt = System.nanoTime();
+            blackHole += encoding.decode(encoded);
+            long end = System.nanoTime();
+
+            result.encodeNanos += encodedAt - start;
+            result.decodeNanos += end - encodedAt;
+            result.sizeInBytes = encoded.length;
+        }
+        if (blackHole == 42) {
+            System.out.println();
+        }
+        return result;
+    }
+
+    private static List<BaseTelemetry<?>> createTelemetries(int count) {
+        List<BaseTelemetry<?>> telemetries = new ArrayList<BaseTelemetry<?>>(count);
+        for (int i = 0; i < count; ++i) {
+            BaseTelemetry<?> telemetry;
+            switch (i % 6) {
+                case 0:
+                    RequestTelemetry request = new RequestTelemetry("GET /orders/" + i, new Date(), 120 + i % 50, "200", true);
+                    request.getProperties().put("tenant", "contoso");
+                    telemetry = request;
+                    break;
+
+                case 1:
+                    RemoteDependencyTelemetry dependency = new RemoteDependencyTelemetry("GET /inventory/" + i, "https://inventory.contoso.com/items/" + i, new Duration(35 + i % 20), true);
+                    dependency.setType("HTTP");
+                    dependency.setResultCode("200");
+                    dependency.setTarget("inventory.contoso.com");
+                    telemetry = dependency;
+                    break;
+
+                case 2:
+                    EventTelemetry event = new EventTelemetry("OrderPlaced");
+                    event.getProperties().put("orderId", String.valueOf(i));
+                    event.getMetrics().put("total", 99.5 + i);
+                    telemetry = event;
+                    break;
+
+                case 3:
+                    telemetry = new TraceTelemetry("Processing order " + i + " for tenant contoso");
+                    break;
+
+                case 4:
+                    telemetry = new MetricTelemetry("QueueLength", i % 100);
+                    break;
+
+                default:
+                    telemetry = new ExceptionTelemetry(new IllegalStateException("Order " + i + " could not be processed"));
+                    break;
+            }
+            telemetry.getContext().setInstrumentationKey(TEST_IKEY);
+            telemetry.getContext().getOperation().setId("operation" + i);
+            telemetry.getContext().getCloud().setRole("orders");
+            telemetry.setTimestamp(new Date());
+            telemetries.add(telemetry);
+        }
+        return telemetries;
+    }
+
+    private static List<String> toJson(List<BaseTelemetry<?>> telemetries) throws IOException {
+        List<String> jsons = new ArrayList<String>(telemetries.size());
+        for (BaseTelemetry<?> telemetry : telemetries) {
+            StringWriter writer = new StringWriter();
+            JsonTelemetryDataSerializer jsonWriter = new JsonTelemetryDataSerializer(writer);
+            telemetry.serialize(jsonWriter);
+            jsonWriter.close();
+            jsons.add(writer.toString());
+        }
+        return jsons;
+    }
+
+    private static int countLines(byte[] gzippedJson) throws IOException {
+        InputStream input = new GZIPInputStream(new ByteArrayInputStream(gzippedJson));
+        try {
+            byte[] buffer = new byte[8192];
+            int lines = 0;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                for (int i = 0; i < read; ++i) {
+                    if (buffer[i] == '\n') {
+                        ++lines;
+                    }
+                }
+            }
+            return lines;
+        } finally {
+            input.close();
+        }
+    }
+
+    private static final class SerializedJsonEncoding implements Encoding {
+        private final GzipTelemetrySerializer serializer = new GzipTelemetrySerializer();
+
+        @Override
+        public String getName() {
+            return "gzip JSON, Java serialized";
+        }
+
+        @Override
+        public byte[] encode(List<BaseTelemetry<?>> telemetries) throws IOException {
+            Transmission transmission = serializer.serialize(toJson(telemetries)).get();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream output = new ObjectOutputStream(bytes);
+            output.writeObject(transmission);
+            output.close();
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public int decode(byte[] encoded) throws IOException {
+            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(encoded));
+            try {
+                return countLines(((Transmission) input.readObject()).getContent());
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e.toString());
+            } finally {
+                input.close();
+            }
+        }
+    }
+
+    private static final class TranscodedJsonEncoding implements Encoding {
+        private final GzipTelemetrySerializer serializer = new GzipTelemetrySerializer();
+
+        @Override
+        public String getName() {
+            return "gzip JSON as gzip protobuf";
+        }
+
+        @Override
+        public byte[] encode(List<BaseTelemetry<?>> telemetries) throws IOException {
+            Transmission transmission = serializer.serialize(toJson(telemetries)).get();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            TransmissionFileFormat.write(Collections.singletonList(transmission), bytes);
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public int decode(byte[] encoded) throws IOException {
+            return countLines(TransmissionFileFormat.read(new ByteArrayInputStream(encoded)).get(0).getContent());
+        }
+    }
+
+    private static final class ProtobufEncoding implements Encoding {
+        private final boolean gzip;
+
+        ProtobufEncoding(boolean gzip) {
+            this.gzip = gzip;
+        }
+
+        @Override
+        public String getName() {
+            return gzip ? "gzip protobuf" : "protobuf";
+        }
+
+        @Override
+        public byte[] encode(List<BaseTelemetry<?>> telemetries) throws IOException {
+            TelemetryBatch.Builder batch = TelemetryBatch.newBuilder();
+            for (BaseTelemetry<?> telemetry : telemetries) {
+                Telemetry transformed = LocalForwarderModelTransformer.transform(telemetry);
+                if (transformed != null) {
+                    batch.addItems(transformed);
+                }
+            }
+            byte[] content = batch.build().toByteArray();
+            if (gzip) {
+                ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+                GZIPOutputStream zipStream = new GZIPOutputStream(zipped);
+                zipStream.write(content);
+                zipStream.close();
+                content = zipped.toByteArray();
+            }
+
+            Transmission transmission = new Transmission(content, LocalForwarderTelemetriesTransmitter.PROTOBUF_CONTENT_TYPE, gzip ? "gzip" : "identity");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            TransmissionFileFormat.write(Collections.singletonList(transmission), bytes);
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public int decode(byte[] encoded) throws IOException {
+            byte[] content = TransmissionFileFormat.read(new ByteArrayInputStream(encoded)).get(0).getContent();
+            InputStream input = new ByteArrayInputStream(content);
+            if (gzip) {
+                input = new GZIPInputStream(input);
+            }
+            try {
+                return TelemetryBatch.parseFrom(input).getItemsCount();
+            } finally {
+                input.close();
+            }
+        }
+    }
+
+    private static final class Result {
+        long sizeInBytes;
+        long encodeNanos;
+        long decodeNanos;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.core.soak;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the ingestion endpoint that only counts what it receives.
+ *
+ * Unlike the smoke tests' MockedAppInsightsIngestionServlet, nothing is parsed or retained, so it can take
+ * hours of load. A configurable share of the requests is answered with a fault instead of a 200:
+ * the connection is dropped, or the response is a 429 with a Retry-After header, a 503, or a 206 that rejects
+ * every other item with a retriable status code. Every response can also be delayed.
+ */
+final class FaultInjectingIngestionServer {
+    private static final String TRACK_PATH = "/v2/track";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int PARTIAL_SUCCESS_ERROR_STATUS_CODE = 503;
+
+    // The format ThrottlingHandler parses, always in GMT
+    private static final ThreadLocal<SimpleDateFormat> retryAfterFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat format = new SimpleDateFormat("E, dd MMM yyyy HH:mm:ss", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format;
+        }
+    };
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile long latencyInMillis;
+    private volatile int disconnectPercentage;
+    private volatile int throttledPercentage;
+    private volatile int unavailablePercentage;
+    private volatile int partialSuccessPercentage;
+    private volatile int retryAfterInSeconds = 5;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong itemsReceived = new AtomicLong();
+    private final AtomicLong itemsAccepted = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong throttledResponses = new AtomicLong();
+    private final AtomicLong unavailableResponses = new AtomicLong();
+    private final AtomicLong partialSuccessResponses = new AtomicLong();
+
+    /**
+     * @param numberOfThreads The number of requests that are handled concurrently.
+     */
+    public FaultInjectingIngestionServer(int numberOfThreads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(TRACK_PATH, new TrackHandler());
+        executor = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "FakeIngestion-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getEndpointAddress() {
+        return "http://localhost:" + server.getAddress().getPort() + TRACK_PATH;
+    }
+
+    public void setLatencyInMillis(long latencyInMillis) {
+        this.latencyInMillis = latencyInMillis;
+    }
+
+    public void setDisconnectPercentage(int disconnectPercentage) {
+        this.disconnectPercentage = disconnectPercentage;
+    }
+
+    public void setThrottledPercentage(int throttledPercentage) {
+        this.throttledPercentage = throttledPercentage;
+    }
+
+    public void setUnavailablePercentage(int unavailablePercentage) {
+        this.unavailablePercentage = unavailablePercentage;
+    }
+
+    public void setPartialSuccessPercentage(int partialSuccessPercentage) {
+        this.partialSuccessPercentage = partialSuccessPercentage;
+    }
+
+    public void setRetryAfterInSeconds(int retryAfterInSeconds) {
+        this.retryAfterInSeconds = retryAfterInSeconds;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @return The number of items that were received, including the ones that were answered with a fault.
+     */
+    public long getItemsReceived() {
+        return itemsReceived.get();
+    }
+
+    /**
+     * @return The number of items that were acknowledged as accepted.
+     */
+    public long getItemsAccepted() {
+        return itemsAccepted.get();
+    }
+
+    public long getDisconnects() {
+        return disconnects.get();
+    }
+
+    public long getThrottledResponses() {
+        return throttledResponses.get();
+    }
+
+    public long getUnavailableResponses() {
+        return unavailableResponses.get();
+    }
+
+    public long getPartialSuccessResponses() {
+        return partialSuccessResponses.get();
+    }
+
+    private final class TrackHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                requests.incrementAndGet();
+                int items = countItems(exchange);
+                itemsReceived.addAndGet(items);
+
+                long latency = latencyInMillis;
+                if (latency > 0) {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(latency);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                int dice = ThreadLocalRandom.current().nextInt(100);
+                if ((dice -= disconnectPercentage) < 0) {
+                    // Closing the exchange before the response headers were sent drops the connection
+                    disconnects.incrementAndGet();
+                    return;
+                }
+                if ((dice -= throttledPercentage) < 0) {
+                    throttledResponses.incrementAndGet();
+                    Date retryAfter = new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(retryAfterInSeconds));
+                    exchange.getResponseHeaders().set("Retry-After", retryAfterFormat.get().format(retryAfter));
+                    respond(exchange, 429, "");
+                    return;
+                }
+                if ((dice -= unavailablePercentage) < 0) {
+                    unavailableResponses.incrementAndGet();
+                    respond(exchange, 503, "");
+                    return;
+                }
+                if ((dice -= partialSuccessPercentage) < 0 && items > 1) {
+                    partialSuccessResponses.incrementAndGet();
+                    respond(exchange, 206, rejectEveryOtherItem(items));
+                    return;
+                }
+
+                itemsAccepted.addAndGet(items);
+                respond(exchange, 200, "{\"itemsReceived\":" + items + ",\"itemsAccepted\":" + items + ",\"errors\":[]}");
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private String rejectEveryOtherItem(int items) {
+            StringBuilder errors = new StringBuilder();
+            int rejected = 0;
+            for (int index = 1; index < items; index += 2) {
+                if (rejected++ > 0) {
+                    errors.append(',');
+                }
+                errors.append("{\"index\":").append(index)
+                      .append(",\"statusCode\":").append(PARTIAL_SUCCESS_ERROR_STATUS_CODE)
+                      .append(",\"message\":\"Injected by the soak test\"}");
+            }
+            int accepted = items - rejected;
+            itemsAccepted.addAndGet(accepted);
+            return "{\"itemsReceived\":" + items + ",\"itemsAccepted\":" + accepted + ",\"errors\":[" + errors + "]}";
+        }
+
+        // The body is a gzipped list of new line separated json envelopes
+        private int countItems(HttpExchange exchange) throws IOException {
+            CountingInputStream body = new CountingInputStream(exchange.getRequestBody());
+            InputStream content = body;
+            if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                content = new GZIPInputStream(body);
+            }
+            int items = 0;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(content, UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    ++items;
+                }
+            }
+            bytesReceived.addAndGet(body.count);
+            return items;
+        }
+
+        private void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+            byte[] bytes = body.getBytes(UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(statusCode, bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length > 0) {
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends InputStream {
+        private final InputStream in;
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                ++count;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
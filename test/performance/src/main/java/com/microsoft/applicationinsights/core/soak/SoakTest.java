@@ -0,0 +1,371 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.core.soak;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.channel.concrete.TelemetryChannelBase;
+import com.microsoft.applicationinsights.channel.concrete.inprocess.InProcessTelemetryChannel;
+import com.microsoft.applicationinsights.internal.channel.common.TransmissionFileSystemOutput;
+import com.microsoft.applicationinsights.internal.util.LocalFileSystemUtils;
+import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+
+/**
+ * Drives a {@link TelemetryClient} with the in-process channel from several threads at a fixed rate,
+ * against a local {@link FaultInjectingIngestionServer}, for as long as a soak should last.
+ *
+ * Unlike {@link com.microsoft.applicationinsights.core.volume.ThroughputTest} the whole channel is exercised:
+ * serialization, gzip, HTTP, the back-off policies and the disk persistence.
+ *
+ * Every report interval a line is printed with the items tracked and accepted per second, the latency of track()
+ * calls, the backlog of items not yet accepted, the size of the persisted transmissions, and the heap and GC usage.
+ * When the load stops the channel is given time to drain and a summary with the number of items lost is printed.
+ *
+ * Settings are read from Soak.properties and can be overridden with system properties of the same name.
+ */
+public final class SoakTest {
+    private final static String CONFIGURATION_FILE = "Soak.properties";
+    private final static String TEST_IKEY = "00000000-0000-0000-0000-000000000000";
+    private final static String MOCK_EVENT_NAME = "MOCK_EVENT";
+    private final static String MOCK_TRACE_NAME = "MOCK_TRACE_NAME";
+    private final static String MOCK_REQUEST_NAME = "MOCK_REQUEST_NAME";
+    private final static String MOCK_METRIC_NAME = "MOCK_METRIC_NAME";
+    private final static double MOCK_METRIC_VALUE = 120.9;
+
+    private final static double NANOS_IN_MICRO = 1000.0;
+    private final static double BYTES_IN_MEGABYTE = 1024.0 * 1024.0;
+
+    private final Properties properties;
+    private final File transmissionsFolder = new File(LocalFileSystemUtils.getTempDir(), TransmissionFileSystemOutput.TRANSMISSION_DEFAULT_FOLDER);
+    private final List<LoadThread> loadThreads = new ArrayList<LoadThread>();
+
+    private volatile boolean loadStopped;
+    private long peakHeapUsedInBytes;
+    private long peakSpilledBytes;
+
+    private SoakTest(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new SoakTest(loadProperties()).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        int numberOfThreads = getInt("soak.threads", 8);
+        int itemsPerSecondPerThread = getInt("soak.items.per.second.per.thread", 1000);
+        long durationInSeconds = getInt("soak.duration.in.seconds", 3600);
+        long reportIntervalInSeconds = getInt("soak.report.interval.in.seconds", 10);
+        long drainTimeoutInSeconds = getInt("soak.drain.timeout.in.seconds", 120);
+
+        FaultInjectingIngestionServer server = new FaultInjectingIngestionServer(getInt("soak.server.threads", 8));
+        server.setLatencyInMillis(getInt("soak.server.latency.in.millis", 0));
+        server.setDisconnectPercentage(getInt("soak.server.disconnect.percentage", 0));
+        server.setThrottledPercentage(getInt("soak.server.throttled.percentage", 0));
+        server.setUnavailablePercentage(getInt("soak.server.unavailable.percentage", 0));
+        server.setPartialSuccessPercentage(getInt("soak.server.partial.success.percentage", 0));
+        server.setRetryAfterInSeconds(getInt("soak.server.retry.after.in.seconds", 5));
+        server.start();
+
+        Map<String, String> channelSettings = new HashMap<String, String>();
+        channelSettings.put(TelemetryChannelBase.ENDPOINT_ADDRESS_NAME, server.getEndpointAddress());
+        channelSettings.put(TelemetryChannelBase.THROTTLING_ENABLED_NAME, "true");
+        putIfSet(channelSettings, TelemetryChannelBase.MAX_TELEMETRY_BUFFER_CAPACITY_NAME, "soak.channel.max.telemetry.buffer.capacity");
+        putIfSet(channelSettings, TelemetryChannelBase.FLUSH_BUFFER_TIMEOUT_IN_SECONDS_NAME, "soak.channel.flush.interval.in.seconds");
+        putIfSet(channelSettings, TelemetryChannelBase.MAX_TRANSMISSION_STORAGE_CAPACITY_NAME, "soak.channel.max.transmission.storage.capacity.in.mb");
+        InProcessTelemetryChannel channel = new InProcessTelemetryChannel(channelSettings);
+
+        TelemetryConfiguration configuration = new TelemetryConfiguration();
+        configuration.setInstrumentationKey(TEST_IKEY);
+        configuration.setChannel(channel);
+        TelemetryClient telemetryClient = new TelemetryClient(configuration);
+
+        System.err.println("   SoakTest");
+        System.err.printf("   %d threads x %d items/second for %d seconds against %s%n",
+                numberOfThreads, itemsPerSecondPerThread, durationInSeconds, server.getEndpointAddress());
+        System.err.printf("   %.2f MB of transmissions were already persisted in %s%n",
+                getSpilledBytes() / BYTES_IN_MEGABYTE, transmissionsFolder);
+
+        for (int i = 0; i < numberOfThreads; ++i) {
+            LoadThread thread = new LoadThread(telemetryClient, itemsPerSecondPerThread, i);
+            loadThreads.add(thread);
+            thread.start();
+        }
+
+        System.err.println("seconds, tracked/s, accepted/s, track p50 us, track p99 us, track max us, backlog, spilled MB, heap MB, gc count, gc ms");
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationInSeconds);
+        IntervalState previous = new IntervalState(start, new LatencyHistogram.Snapshot(), 0, getGcCount(), getGcTimeInMillis());
+        while (System.nanoTime() < end) {
+            LockSupport.parkNanos(Math.min(TimeUnit.SECONDS.toNanos(reportIntervalInSeconds), end - System.nanoTime()));
+            previous = report(start, previous, server);
+        }
+
+        loadStopped = true;
+        for (LoadThread thread : loadThreads) {
+            thread.join();
+        }
+        long loadTimeInNanos = System.nanoTime() - start;
+        channel.flush();
+
+        System.err.println("   Load stopped, waiting for the channel to drain");
+        long tracked = getTracked().getTotalCount();
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainTimeoutInSeconds);
+        while (server.getItemsAccepted() < tracked && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(Math.min(TimeUnit.SECONDS.toNanos(reportIntervalInSeconds), drainDeadline - System.nanoTime()));
+            previous = report(start, previous, server);
+        }
+
+        printSummary(tracked, loadTimeInNanos, server);
+
+        channel.stop(10, TimeUnit.SECONDS);
+        server.stop();
+    }
+
+    private IntervalState report(long start, IntervalState previous, FaultInjectingIngestionServer server) {
+        long now = System.nanoTime();
+        LatencyHistogram.Snapshot tracked = getTracked();
+        LatencyHistogram.Snapshot interval = tracked.minus(previous.tracked);
+        long accepted = server.getItemsAccepted();
+        long gcCount = getGcCount();
+        long gcTimeInMillis = getGcTimeInMillis();
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long spilledBytes = getSpilledBytes();
+        peakHeapUsedInBytes = Math.max(peakHeapUsedInBytes, heapUsed);
+        peakSpilledBytes = Math.max(peakSpilledBytes, spilledBytes);
+
+        double seconds = (now - previous.timeInNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        System.err.printf("%d, %.0f, %.0f, %.1f, %.1f, %.1f, %d, %.2f, %.1f, %d, %d%n",
+                TimeUnit.NANOSECONDS.toSeconds(now - start),
+                interval.getTotalCount() / seconds,
+                (accepted - previous.accepted) / seconds,
+                interval.getValueAtPercentile(50) / NANOS_IN_MICRO,
+                interval.getValueAtPercentile(99) / NANOS_IN_MICRO,
+                interval.getMax() / NANOS_IN_MICRO,
+                tracked.getTotalCount() - accepted,
+                spilledBytes / BYTES_IN_MEGABYTE,
+                heapUsed / BYTES_IN_MEGABYTE,
+                gcCount - previous.gcCount,
+                gcTimeInMillis - previous.gcTimeInMillis);
+
+        return new IntervalState(now, tracked, accepted, gcCount, gcTimeInMillis);
+    }
+
+    private void printSummary(long tracked, long loadTimeInNanos, FaultInjectingIngestionServer server) {
+        LatencyHistogram.Snapshot all = getTracked();
+        long accepted = server.getItemsAccepted();
+        double loadTimeInSeconds = loadTimeInNanos / (double) TimeUnit.SECONDS.toNanos(1);
+
+        System.err.println("--------------------------------------------");
+        System.err.println("---------------     Results      -----------");
+        System.err.println("--------------------------------------------");
+        System.err.println("Tracked                        : " + tracked);
+        System.err.println("Accepted                       : " + accepted);
+        System.err.println("Lost                           : " + Math.max(0, tracked - accepted));
+        System.err.println("Duplicates                     : " + Math.max(0, accepted - tracked));
+        System.err.println("Tracked events/second          : " + tracked / loadTimeInSeconds);
+        System.err.println("Accepted events/second         : " + accepted / loadTimeInSeconds);
+        System.err.println("track() p50 (us)               : " + all.getValueAtPercentile(50) / NANOS_IN_MICRO);
+        System.err.println("track() p99 (us)               : " + all.getValueAtPercentile(99) / NANOS_IN_MICRO);
+        System.err.println("track() p99.9 (us)             : " + all.getValueAtPercentile(99.9) / NANOS_IN_MICRO);
+        System.err.println("track() max (us)               : " + all.getMax() / NANOS_IN_MICRO);
+        System.err.println("Requests                       : " + server.getRequests());
+        System.err.println("Received (MB)                  : " + server.getBytesReceived() / BYTES_IN_MEGABYTE);
+        System.err.println("Injected disconnects           : " + server.getDisconnects());
+        System.err.println("Injected 429 responses         : " + server.getThrottledResponses());
+        System.err.println("Injected 503 responses         : " + server.getUnavailableResponses());
+        System.err.println("Injected 206 responses         : " + server.getPartialSuccessResponses());
+        System.err.println("Peak persisted (MB)            : " + peakSpilledBytes / BYTES_IN_MEGABYTE);
+        System.err.println("Still persisted (MB)           : " + getSpilledBytes() / BYTES_IN_MEGABYTE);
+        System.err.println("Peak heap used (MB)            : " + peakHeapUsedInBytes / BYTES_IN_MEGABYTE);
+        System.err.println("GC count                       : " + getGcCount());
+        System.err.println("GC time (ms)                   : " + getGcTimeInMillis());
+        System.err.println("--------------------------------------------");
+    }
+
+    private LatencyHistogram.Snapshot getTracked() {
+        LatencyHistogram.Snapshot sum = new LatencyHistogram.Snapshot();
+        for (LoadThread thread : loadThreads) {
+            sum = sum.plus(thread.latencies.snapshot());
+        }
+        return sum;
+    }
+
+    private long getSpilledBytes() {
+        File[] files = transmissionsFolder.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(TransmissionFileSystemOutput.TRANSMISSION_FILE_EXTENSION)) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcTimeInMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private void putIfSet(Map<String, String> settings, String name, String property) {
+        String value = properties.getProperty(property);
+        if (value != null && !value.trim().isEmpty()) {
+            settings.put(name, value.trim());
+        }
+    }
+
+    private int getInt(String property, int defaultValue) {
+        String value = properties.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value '" + value + "' for " + property + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static Properties loadProperties() throws IOException {
+        Properties properties = new Properties();
+        InputStream inputStream = SoakTest.class.getClassLoader().getResourceAsStream(CONFIGURATION_FILE);
+        if (inputStream != null) {
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } else {
+            System.err.println("Failed to read " + CONFIGURATION_FILE + ", will use default values");
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("soak.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return properties;
+    }
+
+    private static final class IntervalState {
+        final long timeInNanos;
+        final LatencyHistogram.Snapshot tracked;
+        final long accepted;
+        final long gcCount;
+        final long gcTimeInMillis;
+
+        IntervalState(long timeInNanos, LatencyHistogram.Snapshot tracked, long accepted, long gcCount, long gcTimeInMillis) {
+            this.timeInNanos = timeInNanos;
+            this.tracked = tracked;
+            this.accepted = accepted;
+            this.gcCount = gcCount;
+            this.gcTimeInMillis = gcTimeInMillis;
+        }
+    }
+
+    /**
+     * Calls track() at a fixed rate and records how long every call took.
+     * If the thread falls behind it catches up without sleeping, up to one second worth of items.
+     */
+    private final class LoadThread extends Thread {
+        private final TelemetryClient telemetryClient;
+        private final long intervalInNanos;
+        final LatencyHistogram latencies = new LatencyHistogram();
+
+        LoadThread(TelemetryClient telemetryClient, int itemsPerSecond, int index) {
+            super("SoakTest-load-" + index);
+            setDaemon(true);
+            this.telemetryClient = telemetryClient;
+            this.intervalInNanos = itemsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / itemsPerSecond : 0;
+        }
+
+        @Override
+        public void run() {
+            long next = System.nanoTime();
+            long maxLag = TimeUnit.SECONDS.toNanos(1);
+            for (int i = 0; !loadStopped; ++i) {
+                if (intervalInNanos > 0) {
+                    long now = System.nanoTime();
+                    if (next > now) {
+                        LockSupport.parkNanos(next - now);
+                    } else if (now - next > maxLag) {
+                        next = now - maxLag;
+                    }
+                    next += intervalInNanos;
+                }
+
+                long before = System.nanoTime();
+                track(i);
+                latencies.record(System.nanoTime() - before);
+            }
+        }
+
+        private void track(int i) {
+            switch (i % 4) {
+                case 0:
+                    telemetryClient.trackEvent(MOCK_EVENT_NAME);
+                    break;
+
+                case 1:
+                    telemetryClient.trackMetric(MOCK_METRIC_NAME, MOCK_METRIC_VALUE);
+                    break;
+
+                case 2:
+                    telemetryClient.trackTrace(MOCK_TRACE_NAME);
+                    break;
+
+                default:
+                    telemetryClient.trackRequest(new RequestTelemetry(MOCK_REQUEST_NAME, new Date(), 10, "200", true));
+                    break;
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package com.microsoft.applicationinsights.web.extensibility.modules;
 
 import java.util.Date;
+import java.util.Map;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
@@ -34,24 +35,72 @@ import com.microsoft.applicationinsights.extensibility.TelemetryModule;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
 import com.microsoft.applicationinsights.telemetry.Duration;
 import com.microsoft.applicationinsights.telemetry.RequestTelemetry;
+import com.microsoft.applicationinsights.web.internal.RequestResourceUsage;
 import com.microsoft.applicationinsights.web.internal.RequestTelemetryContext;
 import com.microsoft.applicationinsights.web.internal.ThreadContext;
+import com.microsoft.applicationinsights.web.internal.ThreadResourceMeter;
 import com.microsoft.applicationinsights.web.internal.correlation.TelemetryCorrelationUtils;
 
 /**
  * Created by yonisha on 2/2/2015.
+ * <p>
+ * With the 'TrackResourceUsage' parameter set to true, the CPU time and the bytes allocated by the thread that
+ * handles a request are added to its telemetry as the {@link #CPU_TIME_METRIC_NAME} and
+ * {@link #ALLOCATED_BYTES_METRIC_NAME} measurements, and added up per request name in {@link RequestResourceUsage}.
+ * A value the JVM cannot measure is left out. Work that a request hands to other threads is not included.
+ * <p>
+ * {@code
+ *  <Add type="com.microsoft.applicationinsights.web.extensibility.modules.WebRequestTrackingTelemetryModule">
+ *      <Param name="TrackResourceUsage" value="true"/>
+ *  </Add>
+ * }
  */
 public class WebRequestTrackingTelemetryModule implements WebTelemetryModule, TelemetryModule {
 
     // region Members
 
+    public static final String TRACK_RESOURCE_USAGE_PARAMETER = "TrackResourceUsage";
+    public static final String CPU_TIME_METRIC_NAME = "RequestThreadCpuTimeMs";
+    public static final String ALLOCATED_BYTES_METRIC_NAME = "RequestThreadAllocatedBytes";
+
+    private final static double NANOS_IN_MILLI = 1000000.0;
+
     private TelemetryClient telemetryClient;
     private boolean isInitialized = false;
+    private boolean trackResourceUsage = false;
 
     // endregion Members
 
     // region Public
 
+    public WebRequestTrackingTelemetryModule() {
+    }
+
+    /**
+     * Creates the module with the parameters of its element in ApplicationInsights.xml.
+     * @param properties The parameters.
+     */
+    public WebRequestTrackingTelemetryModule(Map<String, String> properties) {
+        if (properties != null) {
+            String trackResourceUsage = properties.get(TRACK_RESOURCE_USAGE_PARAMETER);
+            if (trackResourceUsage != null) {
+                setTrackResourceUsage(Boolean.parseBoolean(trackResourceUsage.trim()));
+            }
+        }
+    }
+
+    /**
+     * Sets whether the CPU time and allocated bytes of each request are measured.
+     * @param trackResourceUsage True to measure them.
+     */
+    public void setTrackResourceUsage(boolean trackResourceUsage) {
+        this.trackResourceUsage = trackResourceUsage;
+    }
+
+    public boolean isTrackResourceUsage() {
+        return trackResourceUsage;
+    }
+
     /**
      * Begin request processing.
      * @param req The request to process
@@ -79,16 +128,16 @@ public class WebRequestTrackingTelemetryModule implements WebTelemetryModule, Te
 
             telemetry.setHttpMethod(method);
             if (!CommonUtils.isNullOrEmpty(query)) {
-                telemetry.setUrl(String.format("%s://%s%s?%s", scheme, host, rURI, query));
+                telemetry.setUrl(scheme + "://" + host + rURI + "?" + query);
             }
             else {
-                telemetry.setUrl(String.format("%s://%s%s", scheme, host, rURI));
+                telemetry.setUrl(scheme + "://" + host + rURI);
             }
 
             // TODO: this is a very naive implementation, which doesn't take into account various MVC f/ws implementation.
             // Next step is to implement the smart request name calculation which will support the leading MVC f/ws.
             String rUriWithoutSessionId = removeSessionIdFromUri(rURI);
-            telemetry.setName(String.format("%s %s", method, rUriWithoutSessionId));
+            telemetry.setName(method + " " + rUriWithoutSessionId);
             telemetry.getContext().getUser().setUserAgent(userAgent);
             telemetry.setTimestamp(new Date(context.getRequestStartTimeTicks()));
 
@@ -96,6 +145,11 @@ public class WebRequestTrackingTelemetryModule implements WebTelemetryModule, Te
             HttpServletResponse response = (HttpServletResponse) res;
             TelemetryCorrelationUtils.resolveCorrelation(request, response, telemetry);
 
+            if (trackResourceUsage) {
+                // Read last, so the work of the module is left out of the request
+                context.setThreadCpuTimeAtStart(ThreadResourceMeter.INSTANCE.getCurrentThreadCpuTime());
+                context.setThreadAllocatedBytesAtStart(ThreadResourceMeter.INSTANCE.getCurrentThreadAllocatedBytes());
+            }
         } catch (Exception e) {
             String moduleClassName = this.getClass().getSimpleName();
             InternalLogger.INSTANCE.error("Telemetry module %s onBeginRequest failed with exception: %s", moduleClassName, e.toString());
@@ -119,6 +173,10 @@ public class WebRequestTrackingTelemetryModule implements WebTelemetryModule, Te
             RequestTelemetryContext context = ThreadContext.getRequestTelemetryContext();
             RequestTelemetry telemetry = context.getHttpRequestTelemetry();
 
+            if (trackResourceUsage) {
+                recordResourceUsage(context, telemetry);
+            }
+
             long endTime = new Date().getTime();
 
             ApplicationInsightsHttpResponseWrapper response = ((ApplicationInsightsHttpResponseWrapper)res);
@@ -159,6 +217,32 @@ public class WebRequestTrackingTelemetryModule implements WebTelemetryModule, Te
 
     // region Private
 
+    private void recordResourceUsage(RequestTelemetryContext context, RequestTelemetry telemetry) {
+        long cpuTime = -1;
+        long startCpuTime = context.getThreadCpuTimeAtStart();
+        if (startCpuTime != -1) {
+            long endCpuTime = ThreadResourceMeter.INSTANCE.getCurrentThreadCpuTime();
+            if (endCpuTime != -1) {
+                cpuTime = endCpuTime - startCpuTime;
+                telemetry.getMetrics().put(CPU_TIME_METRIC_NAME, cpuTime / NANOS_IN_MILLI);
+            }
+        }
+
+        long allocatedBytes = -1;
+        long startAllocatedBytes = context.getThreadAllocatedBytesAtStart();
+        if (startAllocatedBytes != -1) {
+            long endAllocatedBytes = ThreadResourceMeter.INSTANCE.getCurrentThreadAllocatedBytes();
+            if (endAllocatedBytes != -1) {
+                allocatedBytes = endAllocatedBytes - startAllocatedBytes;
+                telemetry.getMetrics().put(ALLOCATED_BYTES_METRIC_NAME, (double) allocatedBytes);
+            }
+        }
+
+        if (cpuTime != -1 || allocatedBytes != -1) {
+            RequestResourceUsage.INSTANCE.record(telemetry.getName(), cpuTime, allocatedBytes);
+        }
+    }
+
     /*
      * Servlets sometimes rewrite the request url to include a session id represented by ';jsessionid=<some_string>',
      * in order to cope with client which have cookies disabled.
@@ -0,0 +1,201 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.web.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.shutdown.SDKShutdownActivity;
+import com.microsoft.applicationinsights.internal.shutdown.Stoppable;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * The CPU time and allocated bytes of the requests, aggregated per operation name and exposed through the
+ * {@link RequestResourceUsageMXBean}.
+ *
+ * Up to {@link #MAX_OPERATIONS} operation names are kept, the requests of any other operation are added up
+ * under {@link #OTHER_OPERATIONS}, so that request names that embed ids do not grow the table without bound.
+ */
+public enum RequestResourceUsage implements RequestResourceUsageMXBean, Stoppable {
+    INSTANCE;
+
+    public final static int MAX_OPERATIONS = 1000;
+    public final static String OTHER_OPERATIONS = "(other)";
+
+    private final static String MBEAN_NAME_FORMAT = "com.microsoft.applicationinsights:type=RequestResourceUsage,id=%d";
+    private final static double NANOS_IN_MILLI = 1000000.0;
+
+    private final ConcurrentMap<String, OperationUsage> operations = new ConcurrentHashMap<String, OperationUsage>();
+    private final AtomicLong measuredRequests = new AtomicLong();
+    private ObjectName mbeanName;
+
+    /**
+     * The totals of the requests of one operation.
+     */
+    public static final class OperationUsage {
+        private final String name;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong cpuTimeNanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+
+        private OperationUsage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getCpuTimeInNanos() {
+            return cpuTimeNanos.get();
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes.get();
+        }
+
+        private void add(long cpuTimeNanos, long allocatedBytes) {
+            requests.incrementAndGet();
+            if (cpuTimeNanos > 0) {
+                this.cpuTimeNanos.addAndGet(cpuTimeNanos);
+            }
+            if (allocatedBytes > 0) {
+                this.allocatedBytes.addAndGet(allocatedBytes);
+            }
+        }
+
+        @Override
+        public String toString() {
+            long currentRequests = requests.get();
+            return String.format("%s: requests=%d, cpuMs=%.1f, avgCpuMs=%.3f, allocatedBytes=%d, avgAllocatedBytes=%d",
+                    name, currentRequests, cpuTimeNanos.get() / NANOS_IN_MILLI,
+                    currentRequests == 0 ? 0.0 : cpuTimeNanos.get() / NANOS_IN_MILLI / currentRequests,
+                    allocatedBytes.get(), currentRequests == 0 ? 0 : allocatedBytes.get() / currentRequests);
+        }
+    }
+
+    /**
+     * @param operationName The name of the operation the request belongs to.
+     * @param cpuTimeNanos The CPU time of the request, or a negative value if it was not measured.
+     * @param allocatedBytes The bytes the request allocated, or a negative value if they were not measured.
+     */
+    public void record(String operationName, long cpuTimeNanos, long allocatedBytes) {
+        if (operationName == null) {
+            operationName = OTHER_OPERATIONS;
+        }
+
+        OperationUsage usage = operations.get(operationName);
+        if (usage == null) {
+            if (operations.size() >= MAX_OPERATIONS) {
+                operationName = OTHER_OPERATIONS;
+            }
+            OperationUsage newUsage = new OperationUsage(operationName);
+            usage = operations.putIfAbsent(operationName, newUsage);
+            if (usage == null) {
+                usage = newUsage;
+                registerMBean();
+            }
+        }
+
+        usage.add(cpuTimeNanos, allocatedBytes);
+        measuredRequests.incrementAndGet();
+    }
+
+    /**
+     * @param operationName The name of an operation.
+     * @return Its totals, or null if none of its requests was measured.
+     */
+    public OperationUsage getOperationUsage(String operationName) {
+        return operations.get(operationName);
+    }
+
+    @Override
+    public long getMeasuredRequestCount() {
+        return measuredRequests.get();
+    }
+
+    @Override
+    public String[] getOperationStatistics() {
+        List<OperationUsage> usages = new ArrayList<OperationUsage>(operations.values());
+        Collections.sort(usages, new Comparator<OperationUsage>() {
+            @Override
+            public int compare(OperationUsage o1, OperationUsage o2) {
+                long cpu1 = o1.getCpuTimeInNanos();
+                long cpu2 = o2.getCpuTimeInNanos();
+                return cpu1 < cpu2 ? 1 : (cpu1 == cpu2 ? 0 : -1);
+            }
+        });
+
+        String[] lines = new String[usages.size()];
+        for (int i = 0; i < lines.length; ++i) {
+            lines[i] = usages.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public synchronized void stop(long timeout, TimeUnit timeUnit) {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(mbeanName)) {
+                server.unregisterMBean(mbeanName);
+            }
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.trace("Failed to unregister RequestResourceUsage MBean: %s", e.toString());
+        }
+        mbeanName = null;
+    }
+
+    private synchronized void registerMBean() {
+        if (mbeanName != null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(String.format(MBEAN_NAME_FORMAT, System.identityHashCode(this)));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+            mbeanName = name;
+            SDKShutdownActivity.INSTANCE.register(this);
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.trace("Failed to register RequestResourceUsage MBean: %s", ExceptionUtils.getStackTrace(e));
+        }
+    }
+}
@@ -41,6 +41,8 @@ public class RequestTelemetryContext {
     private HttpServletRequest servletRequest;
     private final CorrelationContext correlationContext;
     private final AtomicInteger currentChildId = new AtomicInteger();
+    private long threadCpuTimeAtStart = -1;
+    private long threadAllocatedBytesAtStart = -1;
 
     /**
      * Constructs new RequestTelemetryContext object.
@@ -144,4 +146,36 @@ public class RequestTelemetryContext {
 	public int incrementChildId() {
 		return this.currentChildId.addAndGet(1);
 	}
+
+    /**
+     * Gets the CPU time of the request thread when the request started.
+     * @return The CPU time in nanoseconds, or -1 if it was not measured.
+     */
+    public long getThreadCpuTimeAtStart() {
+        return threadCpuTimeAtStart;
+    }
+
+    /**
+     * Sets the CPU time of the request thread when the request started.
+     * @param threadCpuTimeAtStart The CPU time in nanoseconds, or -1 if it was not measured.
+     */
+    public void setThreadCpuTimeAtStart(long threadCpuTimeAtStart) {
+        this.threadCpuTimeAtStart = threadCpuTimeAtStart;
+    }
+
+    /**
+     * Gets the bytes the request thread had allocated when the request started.
+     * @return The allocated bytes, or -1 if they were not measured.
+     */
+    public long getThreadAllocatedBytesAtStart() {
+        return threadAllocatedBytesAtStart;
+    }
+
+    /**
+     * Sets the bytes the request thread had allocated when the request started.
+     * @param threadAllocatedBytesAtStart The allocated bytes, or -1 if they were not measured.
+     */
+    public void setThreadAllocatedBytesAtStart(long threadAllocatedBytesAtStart) {
+        this.threadAllocatedBytesAtStart = threadAllocatedBytesAtStart;
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.web.internal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+
+/**
+ * Reads the CPU time and the allocated bytes of the current thread.
+ *
+ * Support is checked once. A JVM that cannot measure a value, or fails to, reports -1 for it from then on,
+ * so the callers pay for a single field read.
+ */
+public enum ThreadResourceMeter {
+    INSTANCE;
+
+    private final ThreadMXBean threadMXBean;
+    private volatile boolean cpuTimeSupported;
+    private volatile AllocatedBytesReader allocatedBytesReader;
+
+    ThreadResourceMeter() {
+        threadMXBean = ManagementFactory.getThreadMXBean();
+        cpuTimeSupported = enableCpuTime(threadMXBean);
+        allocatedBytesReader = createAllocatedBytesReader(threadMXBean);
+        InternalLogger.INSTANCE.trace("Thread resource meter: cpu time supported=%s, allocated bytes supported=%s",
+                cpuTimeSupported, allocatedBytesReader != null);
+    }
+
+    /**
+     * @return The CPU time of the current thread in nanoseconds, or -1 if the JVM cannot measure it.
+     */
+    public long getCurrentThreadCpuTime() {
+        if (!cpuTimeSupported) {
+            return -1;
+        }
+        try {
+            return threadMXBean.getCurrentThreadCpuTime();
+        } catch (Exception e) {
+            cpuTimeSupported = false;
+            InternalLogger.INSTANCE.error("Failed to read the thread cpu time, it will not be measured: %s", e.toString());
+            return -1;
+        }
+    }
+
+    /**
+     * @return The bytes the current thread allocated since it started, or -1 if the JVM cannot measure them.
+     */
+    public long getCurrentThreadAllocatedBytes() {
+        AllocatedBytesReader reader = allocatedBytesReader;
+        if (reader == null) {
+            return -1;
+        }
+        try {
+            return reader.getCurrentThreadAllocatedBytes();
+        } catch (Exception e) {
+            allocatedBytesReader = null;
+            InternalLogger.INSTANCE.error("Failed to read the thread allocated bytes, they will not be measured: %s", e.toString());
+            return -1;
+        }
+    }
+
+    private static boolean enableCpuTime(ThreadMXBean threadMXBean) {
+        try {
+            if (!threadMXBean.isCurrentThreadCpuTimeSupported()) {
+                return false;
+            }
+            if (!threadMXBean.isThreadCpuTimeEnabled()) {
+                threadMXBean.setThreadCpuTimeEnabled(true);
+            }
+            return true;
+        } catch (Exception e) {
+            InternalLogger.INSTANCE.trace("Thread cpu time is not available: %s", e.toString());
+            return false;
+        }
+    }
+
+    private static AllocatedBytesReader createAllocatedBytesReader(ThreadMXBean threadMXBean) {
+        try {
+            return AllocatedBytesReader.create(threadMXBean);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            // No com.sun.management on this JVM, or it refused to enable the measurement
+            InternalLogger.INSTANCE.trace("Thread allocated bytes are not available: %s", t.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the allocated bytes through {@code com.sun.management.ThreadMXBean}, which only some JVMs have,
+     * so the class is not loaded unless it is there.
+     */
+    private static final class AllocatedBytesReader {
+        private final com.sun.management.ThreadMXBean threadMXBean;
+
+        private AllocatedBytesReader(com.sun.management.ThreadMXBean threadMXBean) {
+            this.threadMXBean = threadMXBean;
+        }
+
+        static AllocatedBytesReader create(ThreadMXBean threadMXBean) {
+            if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (!sunThreadMXBean.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            if (!sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return new AllocatedBytesReader(sunThreadMXBean);
+        }
+
+        long getCurrentThreadAllocatedBytes() {
+            return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
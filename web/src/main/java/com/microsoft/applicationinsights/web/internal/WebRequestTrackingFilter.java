@@ -46,6 +46,7 @@ import com.microsoft.applicationinsights.extensibility.ContextInitializer;
 import com.microsoft.applicationinsights.internal.config.WebReflectionUtils;
 import com.microsoft.applicationinsights.internal.agent.AgentConnector;
 import com.microsoft.applicationinsights.internal.logger.InternalLogger;
+import com.microsoft.applicationinsights.internal.profiler.RequestThreads;
 import com.microsoft.applicationinsights.internal.util.ThreadLocalCleaner;
 import com.microsoft.applicationinsights.web.extensibility.initializers.WebAppNameContextInitializer;
 import org.apache.commons.lang3.StringUtils;
@@ -128,6 +129,7 @@ public final class WebRequestTrackingFilter implements Filter {
     private void cleanup() {
         try {
             ThreadContext.remove();
+            RequestThreads.INSTANCE.onRequestEnded();
 
             setKeyOnTLS(null);
             for (ThreadLocalCleaner cleaner : cleaners) {
@@ -219,6 +221,7 @@ public final class WebRequestTrackingFilter implements Filter {
             ThreadContext.setRequestTelemetryContext(context);
 
             webModulesContainer.invokeOnBeginRequest(req, res);
+            RequestThreads.INSTANCE.onRequestStarted(context.getHttpRequestTelemetry());
         } catch (Exception e) {
             InternalLogger.INSTANCE.error(
                     "Failed to invoke OnBeginRequest on telemetry modules with the following exception: %s",
@@ -0,0 +1,85 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.web.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class RequestResourceUsageTests {
+    @Test
+    public void testUsageIsAddedUpPerOperation() {
+        String operation = "GET /resource-usage-" + System.nanoTime();
+
+        RequestResourceUsage.INSTANCE.record(operation, 1000, 200);
+        RequestResourceUsage.INSTANCE.record(operation, 3000, -1);
+
+        RequestResourceUsage.OperationUsage usage = RequestResourceUsage.INSTANCE.getOperationUsage(operation);
+        assertNotNull(usage);
+        assertEquals(2, usage.getRequests());
+        assertEquals(4000, usage.getCpuTimeInNanos());
+        assertEquals(200, usage.getAllocatedBytes());
+    }
+
+    @Test
+    public void testOperationStatisticsAreSortedByCpuTime() {
+        String cheap = "GET /cheap-" + System.nanoTime();
+        String expensive = "GET /expensive-" + System.nanoTime();
+
+        RequestResourceUsage.INSTANCE.record(cheap, 1, 0);
+        RequestResourceUsage.INSTANCE.record(expensive, Long.MAX_VALUE / 2, 0);
+
+        String[] statistics = RequestResourceUsage.INSTANCE.getOperationStatistics();
+        assertTrue(statistics[0].startsWith(expensive));
+    }
+
+    @Test
+    public void testThreadCpuTimeIsMeasuredWhenSupported() {
+        long start = ThreadResourceMeter.INSTANCE.getCurrentThreadCpuTime();
+        if (start == -1) {
+            return;
+        }
+
+        long sum = 0;
+        for (int i = 0; i < 10000000; ++i) {
+            sum += i % 7;
+        }
+
+        assertTrue(sum > 0);
+        assertTrue(ThreadResourceMeter.INSTANCE.getCurrentThreadCpuTime() > start);
+    }
+
+    @Test
+    public void testThreadAllocatedBytesAreMeasuredWhenSupported() {
+        long start = ThreadResourceMeter.INSTANCE.getCurrentThreadAllocatedBytes();
+        if (start == -1) {
+            return;
+        }
+
+        byte[] allocated = new byte[1024 * 1024];
+
+        assertEquals(1024 * 1024, allocated.length);
+        assertTrue(ThreadResourceMeter.INSTANCE.getCurrentThreadAllocatedBytes() - start >= 1024 * 1024);
+    }
+}